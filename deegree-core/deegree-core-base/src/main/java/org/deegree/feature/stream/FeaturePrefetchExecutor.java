@@ -0,0 +1,243 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.deegree.commons.utils.MBeanUtils;
+import org.slf4j.Logger;
+
+/**
+ * Bounded thread pool that runs the producers of {@link ThreadedFeatureInputStream}s.
+ * <p>
+ * The pool has a fixed number of threads and a bounded queue of waiting producers. If
+ * both are exhausted, {@link #execute(Runnable)} returns <code>false</code> and the
+ * caller is expected to read the features synchronously instead. The instance is
+ * global, it can be reconfigured using {@link #configure(int, int)}, eg. when the
+ * workspace is (re-)initialized. The statistics of the global instance are published
+ * as an MBean, see {@link FeaturePrefetchExecutorMBean}.
+ * </p>
+ */
+public class FeaturePrefetchExecutor implements FeaturePrefetchExecutorMBean {
+
+	private static final Logger LOG = getLogger(FeaturePrefetchExecutor.class);
+
+	/** Default number of producer threads. */
+	public static final int DEFAULT_MAX_THREADS = 10;
+
+	/** Default number of producers that may wait for a free thread. */
+	public static final int DEFAULT_MAX_QUEUED = 100;
+
+	private static final String MBEAN_TYPE = "FeaturePrefetchExecutor";
+
+	private static final String MBEAN_NAME = "global";
+
+	private static FeaturePrefetchExecutor instance;
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicInteger activeProducers = new AtomicInteger();
+
+	private final AtomicLong executedProducers = new AtomicLong();
+
+	private final AtomicLong rejectedProducers = new AtomicLong();
+
+	private final AtomicLong queueWaitNanos = new AtomicLong();
+
+	private final AtomicLong producedFeatures = new AtomicLong();
+
+	private final AtomicLong producerNanos = new AtomicLong();
+
+	/**
+	 * @param maxThreads number of producer threads, must be positive
+	 * @param maxQueued number of producers that may wait for a free thread, must be
+	 * positive
+	 */
+	public FeaturePrefetchExecutor(int maxThreads, int maxQueued) {
+		executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, SECONDS,
+				new ArrayBlockingQueue<Runnable>(maxQueued), new PrefetchThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return the global instance, never <code>null</code>
+	 */
+	public static synchronized FeaturePrefetchExecutor getInstance() {
+		if (instance == null) {
+			instance = new FeaturePrefetchExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_QUEUED);
+			MBeanUtils.register(MBEAN_TYPE, MBEAN_NAME, instance, FeaturePrefetchExecutorMBean.class);
+		}
+		return instance;
+	}
+
+	/**
+	 * Replaces the global instance with a new one using the given limits. Producers
+	 * already running on the old instance are finished before its threads terminate.
+	 * @param maxThreads number of producer threads, must be positive
+	 * @param maxQueued number of producers that may wait for a free thread, must be
+	 * positive
+	 */
+	public static synchronized void configure(int maxThreads, int maxQueued) {
+		LOG.info("Using {} threads and a queue of {} for feature prefetching.", maxThreads, maxQueued);
+		FeaturePrefetchExecutor old = instance;
+		instance = new FeaturePrefetchExecutor(maxThreads, maxQueued);
+		MBeanUtils.register(MBEAN_TYPE, MBEAN_NAME, instance, FeaturePrefetchExecutorMBean.class);
+		if (old != null) {
+			old.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Shuts down the global instance.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.executor.shutdown();
+			instance = null;
+			MBeanUtils.unregister(MBEAN_TYPE, MBEAN_NAME);
+		}
+	}
+
+	/**
+	 * Runs a producer of a {@link ThreadedFeatureInputStream}. The producer must report
+	 * the number of features it has produced using {@link #addProducedFeatures(long)} on
+	 * this instance.
+	 * @param producer the producer to run, must not be <code>null</code>
+	 * @return <code>true</code> if the producer has been scheduled, <code>false</code> if
+	 * the executor is saturated (or shut down)
+	 */
+	public boolean execute(final Runnable producer) {
+		final long queued = System.nanoTime();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					long started = System.nanoTime();
+					queueWaitNanos.addAndGet(started - queued);
+					activeProducers.incrementAndGet();
+					try {
+						producer.run();
+					}
+					finally {
+						activeProducers.decrementAndGet();
+						executedProducers.incrementAndGet();
+						producerNanos.addAndGet(System.nanoTime() - started);
+					}
+				}
+			});
+			return true;
+		}
+		catch (RejectedExecutionException e) {
+			rejectedProducers.incrementAndGet();
+			return false;
+		}
+	}
+
+	void addProducedFeatures(long count) {
+		producedFeatures.addAndGet(count);
+	}
+
+	@Override
+	public int getActiveProducers() {
+		return activeProducers.get();
+	}
+
+	@Override
+	public int getQueuedProducers() {
+		return executor.getQueue().size();
+	}
+
+	@Override
+	public long getExecutedProducers() {
+		return executedProducers.get();
+	}
+
+	@Override
+	public long getRejectedProducers() {
+		return rejectedProducers.get();
+	}
+
+	@Override
+	public long getProducedFeatures() {
+		return producedFeatures.get();
+	}
+
+	@Override
+	public double getAverageQueueWaitMillis() {
+		long executed = executedProducers.get();
+		if (executed == 0) {
+			return 0;
+		}
+		return queueWaitNanos.get() / 1000000.0 / executed;
+	}
+
+	@Override
+	public double getFeaturesPerSecond() {
+		long nanos = producerNanos.get();
+		if (nanos == 0) {
+			return 0;
+		}
+		return producedFeatures.get() * 1000000000.0 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return "active producers: " + getActiveProducers() + ", queued producers: " + getQueuedProducers()
+				+ ", rejected producers: " + getRejectedProducers() + ", avg. queue wait (ms): "
+				+ getAverageQueueWaitMillis() + ", features/s: " + getFeaturesPerSecond();
+	}
+
+	private static class PrefetchThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "feature-prefetch-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+
+	}
+
+}
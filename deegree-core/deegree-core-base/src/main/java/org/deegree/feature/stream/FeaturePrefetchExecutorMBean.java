@@ -0,0 +1,81 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+/**
+ * Management interface of the {@link FeaturePrefetchExecutor}, the global instance is
+ * published as <code>org.deegree:type=FeaturePrefetchExecutor,name="global"</code>.
+ */
+public interface FeaturePrefetchExecutorMBean {
+
+	/**
+	 * @return number of producers currently running
+	 */
+	int getActiveProducers();
+
+	/**
+	 * @return number of producers currently waiting for a free thread
+	 */
+	int getQueuedProducers();
+
+	/**
+	 * @return number of producers that have finished
+	 */
+	long getExecutedProducers();
+
+	/**
+	 * @return number of producers that have been rejected because the executor was
+	 * saturated
+	 */
+	long getRejectedProducers();
+
+	/**
+	 * @return number of features produced by finished producers
+	 */
+	long getProducedFeatures();
+
+	/**
+	 * @return average time in milliseconds that finished producers have waited for a free
+	 * thread
+	 */
+	double getAverageQueueWaitMillis();
+
+	/**
+	 * @return number of features produced by finished producers, per second of producer
+	 * run time
+	 */
+	double getFeaturesPerSecond();
+
+}
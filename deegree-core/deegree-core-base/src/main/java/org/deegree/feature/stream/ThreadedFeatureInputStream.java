@@ -46,8 +46,6 @@ package org.deegree.feature.stream;
 import java.util.Iterator;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
@@ -59,6 +57,10 @@ import org.slf4j.LoggerFactory;
 /**
  * {@link FeatureInputStream} that uses a separate thread to keep an internal queue of
  * features filled.
+ * <p>
+ * The producer threads are managed by the {@link FeaturePrefetchExecutor}. If it is
+ * saturated, the features are read synchronously from the wrapped stream instead.
+ * </p>
  *
  * @author <a href="mailto:reijer.copier@idgis.nl">Reijer Copier</a>
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
@@ -68,11 +70,15 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
 	private static Logger LOG = LoggerFactory.getLogger(ThreadedFeatureInputStream.class);
 
-	// TODO where to manage this?
-	private static ExecutorService service = Executors.newFixedThreadPool(10);
+	/**
+	 * Default number of features that are fetched in advance.
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 100;
 
 	private final Consumer iterator;
 
+	private final FeatureInputStream synchronousStream;
+
 	/**
 	 * Creates a new {@link ThreadedFeatureInputStreamTest} based on the given
 	 * {@link FeatureInputStream}.
@@ -80,17 +86,33 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 	 * @param queueSize
 	 */
 	public ThreadedFeatureInputStream(final FeatureInputStream featureInputStream, final int queueSize) {
+		this(featureInputStream, queueSize, FeaturePrefetchExecutor.getInstance());
+	}
+
+	ThreadedFeatureInputStream(final FeatureInputStream featureInputStream, final int queueSize,
+			final FeaturePrefetchExecutor executor) {
 		final BlockingQueue<ProducerMessage> producerQueue = new ArrayBlockingQueue<ProducerMessage>(queueSize, true);
 		final BlockingQueue<ConsumerMessage> consumerQueue = new ArrayBlockingQueue<ConsumerMessage>(1, true);
 
-		iterator = new Consumer(producerQueue, consumerQueue);
-
-		service.execute(new Producer(featureInputStream, producerQueue, consumerQueue));
+		if (executor.execute(new Producer(featureInputStream, producerQueue, consumerQueue, executor))) {
+			iterator = new Consumer(producerQueue, consumerQueue);
+			synchronousStream = null;
+		}
+		else {
+			LOG.debug("Feature prefetching is saturated, reading features synchronously.");
+			iterator = null;
+			synchronousStream = featureInputStream;
+		}
 	}
 
 	@Override
 	public void close() {
-		iterator.close();
+		if (synchronousStream != null) {
+			synchronousStream.close();
+		}
+		else {
+			iterator.close();
+		}
 	}
 
 	@Override
@@ -100,6 +122,9 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
 	@Override
 	public Iterator<Feature> iterator() {
+		if (synchronousStream != null) {
+			return synchronousStream.iterator();
+		}
 		return iterator;
 	}
 
@@ -350,15 +375,19 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
 		private final BlockingQueue<ConsumerMessage> consumerQueue;
 
+		private final FeaturePrefetchExecutor executor;
+
 		protected Producer(FeatureInputStream featureInputStream, BlockingQueue<ProducerMessage> producerQueue,
-				BlockingQueue<ConsumerMessage> consumerQueue) {
+				BlockingQueue<ConsumerMessage> consumerQueue, FeaturePrefetchExecutor executor) {
 			this.featureInputStream = featureInputStream;
 			this.producerQueue = producerQueue;
 			this.consumerQueue = consumerQueue;
+			this.executor = executor;
 		}
 
 		@Override
 		public void run() {
+			long produced = 0;
 			try {
 				LOG.debug("Producer started");
 
@@ -372,6 +401,7 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
 					LOG.debug("Feature produced");
 					producerQueue.put(new ProducerFeatureMessage(f));
+					++produced;
 				}
 			}
 			catch (InterruptedException e) {
@@ -388,6 +418,7 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 			}
 			finally {
 				featureInputStream.close();
+				executor.addProducedFeatures(produced);
 
 				try {
 					producerQueue.put(new ProducerFinishedMessage());
@@ -403,10 +434,10 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 	}
 
 	/**
-	 *
+	 * Shuts down the {@link FeaturePrefetchExecutor}.
 	 */
 	public static void shutdown() {
-		service.shutdown();
+		FeaturePrefetchExecutor.shutdown();
 	}
 
 }
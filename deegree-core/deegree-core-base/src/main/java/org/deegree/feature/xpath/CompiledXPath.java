@@ -0,0 +1,237 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.xpath;
+
+import static org.deegree.commons.utils.TunableParameter.get;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.feature.xpath.node.ElementNode;
+import org.deegree.feature.xpath.node.XPathNode;
+import org.deegree.filter.expression.ValueReference;
+import org.jaxen.JaxenException;
+import org.jaxen.XPath;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.NameStep;
+import org.jaxen.expr.Step;
+import org.jaxen.saxpath.Axis;
+
+/**
+ * Compiled form of a {@link ValueReference} that can be evaluated against any number of
+ * context nodes.
+ * <p>
+ * Compiled paths are cached by expression text and namespace bindings, so evaluating the
+ * same property path on many objects does not parse the expression again for every
+ * object. Relative paths that consist of plain child steps (e.g.
+ * <code>app:lage/app:Lage/app:name</code>) are evaluated by walking the object graph
+ * directly, all other paths are evaluated by a shared {@link GMLObjectXPath}.
+ * </p>
+ */
+class CompiledXPath {
+
+	private static final int CACHE_SIZE = get("deegree.cache.xpath", 1024);
+
+	private static final ConcurrentHashMap<Key, CompiledXPath> CACHE = new ConcurrentHashMap<Key, CompiledXPath>();
+
+	private static final GMLObjectNavigator NAVIGATOR = new GMLObjectNavigator(null);
+
+	private final QName[] childSteps;
+
+	private final XPath xpath;
+
+	private CompiledXPath(QName[] childSteps, XPath xpath) {
+		this.childSteps = childSteps;
+		this.xpath = xpath;
+	}
+
+	/**
+	 * Returns the compiled form of the given {@link ValueReference}.
+	 * @param valueRef value reference to compile, must not be <code>null</code>
+	 * @return compiled path, never <code>null</code>
+	 * @throws JaxenException if the expression is not a valid XPath expression
+	 */
+	static CompiledXPath compile(ValueReference valueRef) throws JaxenException {
+		if (CACHE_SIZE <= 0) {
+			return create(valueRef);
+		}
+		Key key = new Key(valueRef.getAsText(), valueRef.getNsContext());
+		CompiledXPath compiled = CACHE.get(key);
+		if (compiled == null) {
+			compiled = create(valueRef);
+			if (CACHE.size() >= CACHE_SIZE) {
+				// no need for exact LRU semantics here, just start over
+				CACHE.clear();
+			}
+			CACHE.putIfAbsent(key, compiled);
+		}
+		return compiled;
+	}
+
+	private static CompiledXPath create(ValueReference valueRef) throws JaxenException {
+		QName[] childSteps = getChildSteps(valueRef);
+		if (childSteps != null) {
+			return new CompiledXPath(childSteps, null);
+		}
+		XPath xpath = new GMLObjectXPath(valueRef.getAsText(), null);
+		xpath.setNamespaceContext(valueRef.getNsContext());
+		return new CompiledXPath(null, xpath);
+	}
+
+	private static QName[] getChildSteps(ValueReference valueRef) {
+		Expr expr = valueRef.getAsXPath();
+		if (!(expr instanceof LocationPath) || ((LocationPath) expr).isAbsolute()) {
+			return null;
+		}
+		List<?> steps = ((LocationPath) expr).getSteps();
+		if (steps.isEmpty()) {
+			return null;
+		}
+		QName[] names = new QName[steps.size()];
+		int i = 0;
+		for (Object o : steps) {
+			Step step = (Step) o;
+			if (!(step instanceof NameStep) || step.getAxis() != Axis.CHILD || !step.getPredicates().isEmpty()) {
+				return null;
+			}
+			NameStep nameStep = (NameStep) step;
+			if ("*".equals(nameStep.getLocalName())) {
+				return null;
+			}
+			String ns = "";
+			if (!nameStep.getPrefix().isEmpty()) {
+				ns = valueRef.getNsContext().translateNamespacePrefixToUri(nameStep.getPrefix());
+				if (ns == null) {
+					// leave reporting of the unbound prefix to Jaxen
+					return null;
+				}
+			}
+			names[i++] = new QName(ns, nameStep.getLocalName());
+		}
+		return names;
+	}
+
+	/**
+	 * Returns whether this path consists of plain child steps only. These paths are
+	 * evaluated without Jaxen.
+	 * @return <code>true</code>, if the path consists of child steps only
+	 */
+	boolean isChildPath() {
+		return childSteps != null;
+	}
+
+	/**
+	 * Evaluates this path against the given context node.
+	 * @param contextNode context node, must not be <code>null</code>
+	 * @return selected nodes, may be empty, but never <code>null</code>
+	 * @throws JaxenException if the evaluation fails
+	 */
+	List<?> selectNodes(XPathNode<?> contextNode) throws JaxenException {
+		if (childSteps == null) {
+			return xpath.selectNodes(contextNode);
+		}
+		List<Object> nodes = Collections.<Object> singletonList(contextNode);
+		for (QName name : childSteps) {
+			List<Object> children = new ArrayList<Object>();
+			for (Object node : nodes) {
+				Iterator<?> iter = NAVIGATOR.getChildAxisIterator(node);
+				while (iter.hasNext()) {
+					Object child = iter.next();
+					if (child instanceof ElementNode<?> && matches((ElementNode<?>) child, name)) {
+						children.add(child);
+					}
+				}
+			}
+			if (children.isEmpty()) {
+				return children;
+			}
+			nodes = children;
+		}
+		return nodes;
+	}
+
+	private static boolean matches(ElementNode<?> node, QName name) {
+		if (!name.getLocalPart().equals(node.getLocalName())) {
+			return false;
+		}
+		String ns = node.getNamespaceUri();
+		return name.getNamespaceURI().equals(ns == null ? "" : ns);
+	}
+
+	private static final class Key {
+
+		private final String text;
+
+		private final Map<String, String> bindings = new TreeMap<String, String>();
+
+		private final int hash;
+
+		Key(String text, NamespaceBindings nsContext) {
+			this.text = text;
+			Iterator<String> prefixes = nsContext.getPrefixes();
+			while (prefixes.hasNext()) {
+				String prefix = prefixes.next();
+				bindings.put(prefix, nsContext.translateNamespacePrefixToUri(prefix));
+			}
+			this.hash = Objects.hash(text, bindings);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) obj;
+			return text.equals(that.text) && bindings.equals(that.bindings);
+		}
+
+	}
+
+}
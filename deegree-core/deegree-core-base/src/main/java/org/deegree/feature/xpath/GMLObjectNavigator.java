@@ -305,16 +305,34 @@ class GMLObjectNavigator extends DefaultNavigator {
 
 	/**
 	 * Returns the top-level document node.
+	 * <p>
+	 * If this navigator has been created without a root, the document node is derived from
+	 * the topmost ancestor of the context node (which must be a {@link GMLObjectNode}).
+	 * This allows to use a single compiled XPath for any number of root objects.
+	 * </p>
 	 * @param contextNode any node in the document
 	 * @return the root node
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public Object getDocumentNode(Object contextNode) {
-		if (documentNode == null) {
-			String msg = "getDocumentNode(Object) not possible, no document node provided";
-			throw new UnsupportedOperationException(msg);
+		if (documentNode != null) {
+			return documentNode;
+		}
+		if (contextNode instanceof DocumentNode) {
+			return contextNode;
+		}
+		if (contextNode instanceof XPathNode<?>) {
+			XPathNode<?> node = (XPathNode<?>) contextNode;
+			while (node.getParent() != null) {
+				node = node.getParent();
+			}
+			if (node instanceof GMLObjectNode<?, ?>) {
+				return new DocumentNode((GMLObjectNode<GMLObject, ? extends GMLObject>) node);
+			}
 		}
-		return documentNode;
+		String msg = "getDocumentNode(Object) not possible, no document node provided";
+		throw new UnsupportedOperationException(msg);
 	}
 
 	/**
@@ -53,7 +53,6 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.filter.expression.ValueReference;
 import org.jaxen.JaxenException;
-import org.jaxen.XPath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -110,91 +109,56 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
 			return props.toArray(propArray);
 		}
 
-		TypedObjectNode[] resultValues = null;
 		try {
+			CompiledXPath xpath = CompiledXPath.compile(propName);
+			GMLObjectNode<GMLObject, GMLObject> contextNode = new GMLObjectNode<GMLObject, GMLObject>(null, context);
+			if (xpath.isChildPath()) {
+				return toTypedObjectNodes(xpath.selectNodes(contextNode));
+			}
 			synchronized (context) {
-				XPath xpath = new GMLObjectXPath(propName.getAsText(), context);
-				xpath.setNamespaceContext(propName.getNsContext());
-				List<?> selectedNodes;
-				selectedNodes = xpath.selectNodes(new GMLObjectNode<GMLObject, GMLObject>(null, context));
-				resultValues = new TypedObjectNode[selectedNodes.size()];
-				int i = 0;
-				for (Object node : selectedNodes) {
-					if (node instanceof XPathNode<?>) {
-						resultValues[i++] = ((XPathNode<?>) node).getValue();
-					}
-					else if (node instanceof String || node instanceof Double || node instanceof Boolean) {
-						resultValues[i++] = new PrimitiveValue(node);
-					}
-					else {
-						throw new RuntimeException("Internal error. Encountered unexpected value of type '"
-								+ node.getClass().getName() + "' (=" + node + ") during XPath-evaluation.");
-					}
-				}
+				return toTypedObjectNodes(xpath.selectNodes(contextNode));
 			}
 		}
 		catch (JaxenException e) {
-			e.printStackTrace();
+			LOG.debug("Evaluating XPath '{}' failed: {}", propName.getAsText(), e.getMessage());
+			LOG.trace("Stack trace:", e);
 			throw new FilterEvaluationException(e.getMessage());
 		}
-		return resultValues;
 	}
 
 	public TypedObjectNode[] eval(ElementNode element, ValueReference propName) throws FilterEvaluationException {
-
-		TypedObjectNode[] resultValues = null;
 		try {
-			XPath xpath = new GMLObjectXPath(propName.getAsText(), null);
-			xpath.setNamespaceContext(propName.getNsContext());
-			List<?> selectedNodes;
-			selectedNodes = xpath.selectNodes(new XMLElementNode(null, element));
-			resultValues = new TypedObjectNode[selectedNodes.size()];
-			int i = 0;
-			for (Object node : selectedNodes) {
-				if (node instanceof XPathNode<?>) {
-					resultValues[i++] = ((XPathNode<?>) node).getValue();
-				}
-				else if (node instanceof String || node instanceof Double || node instanceof Boolean) {
-					resultValues[i++] = new PrimitiveValue(node);
-				}
-				else {
-					throw new RuntimeException("Internal error. Encountered unexpected value of type '"
-							+ node.getClass().getName() + "' (=" + node + ") during XPath-evaluation.");
-				}
-			}
+			return toTypedObjectNodes(CompiledXPath.compile(propName).selectNodes(new XMLElementNode(null, element)));
 		}
 		catch (JaxenException e) {
 			throw new FilterEvaluationException(e.getMessage());
 		}
-		return resultValues;
 	}
 
 	public TypedObjectNode[] eval(Property element, ValueReference propName) throws FilterEvaluationException {
-
-		TypedObjectNode[] resultValues = null;
 		try {
-			XPath xpath = new GMLObjectXPath(propName.getAsText(), null);
-			xpath.setNamespaceContext(propName.getNsContext());
-			List<?> selectedNodes;
-			selectedNodes = xpath.selectNodes(new PropertyNode(null, element));
-			resultValues = new TypedObjectNode[selectedNodes.size()];
-			int i = 0;
-			for (Object node : selectedNodes) {
-				if (node instanceof XPathNode<?>) {
-					resultValues[i++] = ((XPathNode<?>) node).getValue();
-				}
-				else if (node instanceof String || node instanceof Double || node instanceof Boolean) {
-					resultValues[i++] = new PrimitiveValue(node);
-				}
-				else {
-					throw new RuntimeException("Internal error. Encountered unexpected value of type '"
-							+ node.getClass().getName() + "' (=" + node + ") during XPath-evaluation.");
-				}
-			}
+			return toTypedObjectNodes(CompiledXPath.compile(propName).selectNodes(new PropertyNode(null, element)));
 		}
 		catch (JaxenException e) {
 			throw new FilterEvaluationException(e.getMessage());
 		}
+	}
+
+	private TypedObjectNode[] toTypedObjectNodes(List<?> selectedNodes) {
+		TypedObjectNode[] resultValues = new TypedObjectNode[selectedNodes.size()];
+		int i = 0;
+		for (Object node : selectedNodes) {
+			if (node instanceof XPathNode<?>) {
+				resultValues[i++] = ((XPathNode<?>) node).getValue();
+			}
+			else if (node instanceof String || node instanceof Double || node instanceof Boolean) {
+				resultValues[i++] = new PrimitiveValue(node);
+			}
+			else {
+				throw new RuntimeException("Internal error. Encountered unexpected value of type '"
+						+ node.getClass().getName() + "' (=" + node + ") during XPath-evaluation.");
+			}
+		}
 		return resultValues;
 	}
 
@@ -40,6 +40,7 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.geometry.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 /**
  * If a geometry spatially disjoins an other geometry.
@@ -72,6 +73,11 @@ public class Disjoint extends SpatialOperator {
 			Geometry geom = checkGeometryOrNull(paramValue);
 			if (geom != null) {
 				Geometry transformedLiteral = getCompatibleGeometry(geom, param2AsGeometry);
+				PreparedGeometry prepared = getPreparedGeometry(transformedLiteral);
+				org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry(geom);
+				if (prepared != null && jtsGeom != null) {
+					return prepared.disjoint(jtsGeom);
+				}
 				return geom.isDisjoint(transformedLiteral);
 			}
 		}
@@ -43,6 +43,7 @@ import org.deegree.filter.XPathEvaluator;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -86,8 +87,7 @@ public class Intersects extends SpatialOperator {
 			for (TypedObjectNode paramValue : param1.evaluate(obj, xpathEvaluator)) {
 				Geometry param1Value = checkGeometryOrNull(paramValue);
 				if (param1Value != null) {
-					Geometry transformedGeom = getCompatibleGeometry(param1Value, param2AsGeometry);
-					return transformedGeom.intersects(param1Value);
+					return intersectsLiteral(param1Value);
 				}
 			}
 		}
@@ -98,30 +98,21 @@ public class Intersects extends SpatialOperator {
 			for (Property prop : f.getProperties()) {
 				if (prop.getValue() instanceof Geometry) {
 					foundGeom = true;
-					Geometry geom = (Geometry) prop.getValue();
-					Geometry transformedGeom = getCompatibleGeometry(param2AsGeometry, geom);
-					if (transformedGeom.intersects(param2AsGeometry)) {
+					if (intersectsLiteral((Geometry) prop.getValue())) {
 						return true;
 					}
 				}
 			}
 			if (!foundGeom) {
 				Envelope env = f.getEnvelope();
-				if (env != null) {
-					Geometry g = getCompatibleGeometry(param2AsGeometry, env);
-					if (g.intersects(param2AsGeometry)) {
-						return true;
-					}
+				if (env != null && intersectsLiteral(env)) {
+					return true;
 				}
 			}
 			if (f.getExtraProperties() != null) {
 				for (Property prop : f.getExtraProperties().getProperties()) {
-					if (prop.getValue() instanceof Geometry) {
-						Geometry geom = (Geometry) prop.getValue();
-						Geometry transformedGeom = getCompatibleGeometry(param2AsGeometry, geom);
-						if (transformedGeom.intersects(param2AsGeometry)) {
-							return true;
-						}
+					if (prop.getValue() instanceof Geometry && intersectsLiteral((Geometry) prop.getValue())) {
+						return true;
 					}
 				}
 			}
@@ -132,6 +123,16 @@ public class Intersects extends SpatialOperator {
 		return false;
 	}
 
+	private boolean intersectsLiteral(Geometry geom) throws FilterEvaluationException {
+		Geometry transformedLiteral = getCompatibleGeometry(geom, param2AsGeometry);
+		PreparedGeometry prepared = getPreparedGeometry(transformedLiteral);
+		org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry(geom);
+		if (prepared != null && jtsGeom != null) {
+			return prepared.intersects(jtsGeom);
+		}
+		return transformedLiteral.intersects(geom);
+	}
+
 	@Override
 	public String toString(String indent) {
 		String s = indent + "-Intersects\n";
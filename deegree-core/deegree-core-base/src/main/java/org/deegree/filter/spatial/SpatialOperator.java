@@ -34,8 +34,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.filter.spatial;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
@@ -48,6 +48,10 @@ import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.i18n.Messages;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.refs.GeometryReference;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,7 +65,9 @@ public abstract class SpatialOperator implements Operator {
 
 	private static final Logger LOG = LoggerFactory.getLogger(SpatialOperator.class);
 
-	private final Map<String, Geometry> srsNameToTransformedGeometry = new HashMap<String, Geometry>();
+	private final Map<String, Geometry> srsNameToTransformedGeometry = new ConcurrentHashMap<String, Geometry>();
+
+	private final Map<String, PreparedLiteral> srsNameToPreparedGeometry = new ConcurrentHashMap<>();
 
 	protected final Expression param1;
 
@@ -248,7 +254,7 @@ public abstract class SpatialOperator implements Operator {
 		Geometry transformedLiteral = literal;
 		ICRS paramCRS = param.getCoordinateSystem();
 		ICRS literalCRS = literal.getCoordinateSystem();
-		if (literalCRS != null && !(paramCRS.equals(literalCRS))) {
+		if (literalCRS != null && paramCRS != null && !(paramCRS.equals(literalCRS))) {
 			LOG.debug("Need transformed literal geometry for evaluation: {} -> {}", literalCRS.getAlias(),
 					paramCRS.getAlias());
 			transformedLiteral = srsNameToTransformedGeometry.get(paramCRS.getAlias());
@@ -266,6 +272,61 @@ public abstract class SpatialOperator implements Operator {
 		return transformedLiteral;
 	}
 
+	/**
+	 * Returns a prepared (indexed) JTS representation of the given literal geometry. The
+	 * prepared geometry is built lazily on first use and reused for all subsequent
+	 * evaluations with a literal in the same CRS, so the indexes of complex literal
+	 * geometries are not rebuilt for every evaluated object.
+	 * @param literal literal geometry as returned by
+	 * {@link #getCompatibleGeometry(Geometry, Geometry)}, must not be <code>null</code>
+	 * @return prepared geometry, or <code>null</code> if the literal is not backed by a
+	 * JTS geometry
+	 */
+	protected PreparedGeometry getPreparedGeometry(Geometry literal) {
+		ICRS crs = literal.getCoordinateSystem();
+		String key = crs != null ? crs.getAlias() : "";
+		PreparedLiteral prepared = srsNameToPreparedGeometry.get(key);
+		if (prepared == null || prepared.literal != literal) {
+			org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry(literal);
+			if (jtsGeom == null) {
+				return null;
+			}
+			prepared = new PreparedLiteral(literal, PreparedGeometryFactory.prepare(jtsGeom));
+			srsNameToPreparedGeometry.put(key, prepared);
+		}
+		return prepared.prepared;
+	}
+
+	/**
+	 * Returns the JTS representation of the given geometry.
+	 * @param geom geometry, must not be <code>null</code>
+	 * @return JTS geometry, or <code>null</code> if the geometry is not backed by a JTS
+	 * geometry
+	 */
+	protected static org.locationtech.jts.geom.Geometry getJTSGeometry(Geometry geom) {
+		Geometry resolved = geom;
+		if (geom instanceof GeometryReference<?>) {
+			resolved = ((GeometryReference<?>) geom).getReferencedObject();
+		}
+		if (resolved instanceof AbstractDefaultGeometry) {
+			return ((AbstractDefaultGeometry) resolved).getJTSGeometry();
+		}
+		return null;
+	}
+
 	public abstract Object[] getParams();
 
+	private static class PreparedLiteral {
+
+		private final Geometry literal;
+
+		private final PreparedGeometry prepared;
+
+		private PreparedLiteral(Geometry literal, PreparedGeometry prepared) {
+			this.literal = literal;
+			this.prepared = prepared;
+		}
+
+	}
+
 }
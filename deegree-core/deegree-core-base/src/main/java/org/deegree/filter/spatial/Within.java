@@ -40,6 +40,7 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.geometry.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 /**
  * If a geometry is spatially within an other geometry.
@@ -71,6 +72,12 @@ public class Within extends SpatialOperator {
 			Geometry geom = checkGeometryOrNull(paramValue);
 			if (geom != null) {
 				Geometry transformedLiteral = getCompatibleGeometry(geom, param2AsGeometry);
+				PreparedGeometry prepared = getPreparedGeometry(transformedLiteral);
+				org.locationtech.jts.geom.Geometry jtsGeom = getJTSGeometry(geom);
+				if (prepared != null && jtsGeom != null) {
+					// geom within literal <=> literal contains geom
+					return prepared.contains(jtsGeom);
+				}
 				return geom.isWithin(transformedLiteral);
 			}
 		}
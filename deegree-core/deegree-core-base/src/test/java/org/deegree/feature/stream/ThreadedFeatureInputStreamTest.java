@@ -42,6 +42,7 @@ package org.deegree.feature.stream;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 
 import org.deegree.feature.Feature;
 import org.deegree.feature.stream.ThreadedFeatureInputStream.Consumer;
@@ -74,7 +75,8 @@ public class ThreadedFeatureInputStreamTest {
 		BlockingQueue<ProducerMessage> producerQueue = mock(BlockingQueue.class);
 		BlockingQueue<ConsumerMessage> consumerQueue = mock(BlockingQueue.class);
 
-		Producer producer = new Producer(featureInputStream, producerQueue, consumerQueue);
+		FeaturePrefetchExecutor executor = new FeaturePrefetchExecutor(1, 1);
+		Producer producer = new Producer(featureInputStream, producerQueue, consumerQueue, executor);
 		producer.run();
 
 		verify(consumerQueue, atLeastOnce()).poll();
@@ -85,6 +87,7 @@ public class ThreadedFeatureInputStreamTest {
 		producerQueueOrder.verify(producerQueue).put(new ProducerFinishedMessage());
 
 		verify(featureInputStream).close();
+		assertEquals(2, executor.getProducedFeatures());
 	}
 
 	@Test
@@ -104,7 +107,8 @@ public class ThreadedFeatureInputStreamTest {
 		BlockingQueue<ProducerMessage> producerQueue = mock(BlockingQueue.class);
 		BlockingQueue<ConsumerMessage> consumerQueue = mock(BlockingQueue.class);
 
-		Producer producer = new Producer(featureInputStream, producerQueue, consumerQueue);
+		FeaturePrefetchExecutor executor = new FeaturePrefetchExecutor(1, 1);
+		Producer producer = new Producer(featureInputStream, producerQueue, consumerQueue, executor);
 		producer.run();
 
 		InOrder producerQueueOrder = inOrder(producerQueue);
@@ -130,7 +134,8 @@ public class ThreadedFeatureInputStreamTest {
 		BlockingQueue<ConsumerMessage> consumerQueue = mock(BlockingQueue.class);
 		when(consumerQueue.poll()).thenReturn(null, new ConsumerClosingMessage());
 
-		Producer producer = new Producer(featureInputStream, producerQueue, consumerQueue);
+		FeaturePrefetchExecutor executor = new FeaturePrefetchExecutor(1, 1);
+		Producer producer = new Producer(featureInputStream, producerQueue, consumerQueue, executor);
 		producer.run();
 
 		verify(producerQueue).put(new ProducerFinishedMessage());
@@ -199,4 +204,82 @@ public class ThreadedFeatureInputStreamTest {
 		consumer.next();
 	}
 
+	@Test
+	public void testExecutorRejectsWhenSaturated() throws Exception {
+		FeaturePrefetchExecutor executor = new FeaturePrefetchExecutor(1, 1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		Runnable blocking = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+				}
+				catch (InterruptedException e) {
+					// finish
+				}
+			}
+		};
+		assertTrue(executor.execute(blocking));
+		assertTrue(executor.execute(blocking));
+		assertFalse(executor.execute(blocking));
+		assertEquals(1, executor.getRejectedProducers());
+		latch.countDown();
+	}
+
+	@Test
+	public void testSynchronousFallbackWhenSaturated() throws Exception {
+		FeaturePrefetchExecutor executor = new FeaturePrefetchExecutor(1, 1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		Runnable blocking = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+				}
+				catch (InterruptedException e) {
+					// finish
+				}
+			}
+		};
+		assertTrue(executor.execute(blocking));
+		assertTrue(executor.execute(blocking));
+
+		Feature[] features = new Feature[] { mock(Feature.class), mock(Feature.class) };
+		FeatureInputStream featureInputStream = mock(FeatureInputStream.class);
+		when(featureInputStream.iterator()).thenReturn(Arrays.asList(features).iterator());
+
+		ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream(featureInputStream, 10, executor);
+		Iterator<Feature> iter = stream.iterator();
+		assertEquals(features[0], iter.next());
+		assertEquals(features[1], iter.next());
+		assertFalse(iter.hasNext());
+		stream.close();
+
+		verify(featureInputStream).close();
+		assertEquals(1, executor.getRejectedProducers());
+		assertEquals(0, executor.getProducedFeatures());
+		latch.countDown();
+	}
+
+	@Test
+	public void testProducerCreditsStartingExecutor() throws Exception {
+		FeaturePrefetchExecutor executor = new FeaturePrefetchExecutor(1, 1);
+		Feature[] features = new Feature[] { mock(Feature.class), mock(Feature.class), mock(Feature.class) };
+		FeatureInputStream featureInputStream = mock(FeatureInputStream.class);
+		when(featureInputStream.iterator()).thenReturn(Arrays.asList(features).iterator());
+
+		ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream(featureInputStream, 10, executor);
+		// the global instance is replaced while the producer is running
+		FeaturePrefetchExecutor.configure(1, 1);
+		try {
+			assertEquals(3, stream.count());
+			verify(featureInputStream, timeout(5000)).close();
+			assertEquals(3, executor.getProducedFeatures());
+			assertEquals(0, FeaturePrefetchExecutor.getInstance().getProducedFeatures());
+		}
+		finally {
+			FeaturePrefetchExecutor.shutdown();
+		}
+	}
+
 }
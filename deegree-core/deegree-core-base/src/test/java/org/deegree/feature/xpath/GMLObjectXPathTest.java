@@ -38,8 +38,11 @@ import static java.lang.Boolean.TRUE;
 import static org.deegree.commons.tom.primitive.BaseType.BOOLEAN;
 import static org.deegree.commons.tom.primitive.BaseType.DOUBLE;
 import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -64,6 +67,7 @@ import org.deegree.gml.GMLVersion;
 import org.deegree.gml.feature.GMLFeatureReaderTest;
 import org.deegree.gml.schema.GMLAppSchemaReader;
 import org.deegree.workspace.standard.DefaultWorkspace;
+import org.jaxen.JaxenException;
 import org.jaxen.SimpleNamespaceContext;
 import org.junit.Assert;
 import org.junit.Before;
@@ -353,6 +357,26 @@ public class GMLObjectXPathTest {
 		assertEquals("POLYGON_1", ((PrimitiveValue) result[0]).getAsText());
 	}
 
+	@Test
+	public void testXPathChildStepsSameAsJaxen() throws FilterEvaluationException {
+		String xpath = "gml:featureMember/app:Philosopher/app:placeOfBirth/app:Place/app:name";
+		TypedObjectNode[] result = new TypedObjectNodeXPathEvaluator().eval(fc, new ValueReference(xpath, nsContext));
+		// the predicate forces evaluation by Jaxen
+		TypedObjectNode[] expected = new TypedObjectNodeXPathEvaluator().eval(fc,
+				new ValueReference(xpath + "[true()]", nsContext));
+		assertTrue(result.length > 0);
+		assertArrayEquals(expected, result);
+	}
+
+	@Test
+	public void testCompiledXPathIsCached() throws JaxenException {
+		String xpath = "app:placeOfBirth/app:Place/app:name";
+		CompiledXPath compiled = CompiledXPath.compile(new ValueReference(xpath, nsContext));
+		assertTrue(compiled.isChildPath());
+		assertSame(compiled, CompiledXPath.compile(new ValueReference(xpath, nsContext)));
+		assertFalse(CompiledXPath.compile(new ValueReference(xpath + "[1]", nsContext)).isChildPath());
+	}
+
 	// @Test
 	// public void testXPath23()
 	// throws FilterEvaluationException {
@@ -0,0 +1,180 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.io.WKTReader;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests the evaluation of {@link SpatialOperator}s that use a prepared literal geometry.
+ */
+public class SpatialOperatorTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SpatialOperatorTest.class);
+
+	private static final XPathEvaluator<Geometry> EVALUATOR = new XPathEvaluator<Geometry>() {
+
+		@Override
+		public TypedObjectNode[] eval(Geometry context, ValueReference valueRef) {
+			return new TypedObjectNode[] { context };
+		}
+
+		@Override
+		public String getId(Geometry context) {
+			return context.getId();
+		}
+	};
+
+	private final ValueReference geomProp = new ValueReference("geom", null);
+
+	private ICRS crs;
+
+	private Geometry literal;
+
+	private List<Geometry> geometries;
+
+	@Before
+	public void setUp() throws Exception {
+		crs = CRSManager.lookup("EPSG:25832");
+		literal = new WKTReader(crs).read(createStar(500000, 5000000, 10000, 2000));
+		geometries = new ArrayList<Geometry>();
+		WKTReader reader = new WKTReader(crs);
+		for (int x = 0; x < 50; x++) {
+			for (int y = 0; y < 50; y++) {
+				double minX = 489000 + x * 450;
+				double minY = 4989000 + y * 450;
+				geometries.add(reader.read("POINT (" + minX + " " + minY + ")"));
+				geometries.add(reader.read("POLYGON ((" + minX + " " + minY + "," + (minX + 300) + " " + minY + ","
+						+ (minX + 300) + " " + (minY + 300) + "," + minX + " " + (minY + 300) + "," + minX + " "
+						+ minY + "))"));
+			}
+		}
+	}
+
+	@Test
+	public void testIntersects() throws FilterEvaluationException {
+		Intersects op = new Intersects(geomProp, literal);
+		for (Geometry geom : geometries) {
+			assertEquals(literal.intersects(geom), op.evaluate(geom, EVALUATOR));
+		}
+	}
+
+	@Test
+	public void testWithin() throws FilterEvaluationException {
+		Within op = new Within(geomProp, literal);
+		for (Geometry geom : geometries) {
+			assertEquals(geom.isWithin(literal), op.evaluate(geom, EVALUATOR));
+		}
+	}
+
+	@Test
+	public void testDisjoint() throws FilterEvaluationException {
+		Disjoint op = new Disjoint(geomProp, literal);
+		for (Geometry geom : geometries) {
+			assertEquals(geom.isDisjoint(literal), op.evaluate(geom, EVALUATOR));
+		}
+	}
+
+	@Test
+	public void testPreparedGeometryIsReused() {
+		Intersects op = new Intersects(geomProp, literal);
+		assertSame(op.getPreparedGeometry(literal), op.getPreparedGeometry(literal));
+	}
+
+	/**
+	 * Compares the evaluation time against the unprepared predicate. Enable with
+	 * <code>-Dbenchmark=true</code>.
+	 */
+	@Test
+	public void benchmarkIntersects() throws FilterEvaluationException {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+		Intersects op = new Intersects(geomProp, literal);
+		int rounds = 20;
+		long start = System.nanoTime();
+		int unprepared = 0;
+		for (int i = 0; i < rounds; i++) {
+			for (Geometry geom : geometries) {
+				if (literal.intersects(geom)) {
+					unprepared++;
+				}
+			}
+		}
+		long unpreparedTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		int prepared = 0;
+		for (int i = 0; i < rounds; i++) {
+			for (Geometry geom : geometries) {
+				if (op.evaluate(geom, EVALUATOR)) {
+					prepared++;
+				}
+			}
+		}
+		long preparedTime = System.nanoTime() - start;
+		assertEquals(unprepared, prepared);
+		LOG.info("Intersects on " + geometries.size() * rounds + " geometries: unprepared " + unpreparedTime / 1000000
+				+ " ms, prepared " + preparedTime / 1000000 + " ms");
+	}
+
+	private static String createStar(double centerX, double centerY, double radius, int vertices) {
+		StringBuilder sb = new StringBuilder("POLYGON ((");
+		for (int i = 0; i <= vertices; i++) {
+			double angle = 2 * Math.PI * (i % vertices) / vertices;
+			double r = i % 2 == 0 ? radius : radius * 0.6;
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(centerX + r * Math.cos(angle)).append(' ').append(centerY + r * Math.sin(angle));
+		}
+		return sb.append("))").toString();
+	}
+
+}
@@ -0,0 +1,396 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.commons.utils.Pair;
+
+/**
+ * Read-optimized, static {@link SpatialIndex} for <code>long</code> values (e.g. record
+ * numbers or file offsets).
+ * <p>
+ * The entries are sorted by the Hilbert value of their envelope centers and packed
+ * bottom-up into completely filled nodes. All nodes are kept in two flat arrays: one
+ * holding the four <code>float</code> ordinates of every node envelope and one holding
+ * a <code>long</code> per node, which is the value for leaf entries and the position of
+ * the first child for inner nodes. As the tree does not contain any object references,
+ * it can be written to disk as is and memory-mapped from there without deserialization,
+ * see {@link #write(File)} and {@link #load(File)}.
+ * <p>
+ * The index is built once using {@link #insertBulk(List)}, single inserts and removals
+ * are not supported.
+ *
+ * @see RTree
+ */
+public class PackedRTree extends SpatialIndex<Long> {
+
+	private static final int MAGIC = 0x44505254;
+
+	private static final int VERSION = 1;
+
+	/* magic, version, flags, node size, number of items, number of nodes, number of levels */
+	private static final int HEADER_INTS = 7;
+
+	private static final int HILBERT_ORDER = 15;
+
+	private static final int HILBERT_MAX = (1 << HILBERT_ORDER) - 1;
+
+	private final int nodeSize;
+
+	private boolean extraFlag;
+
+	private int numItems;
+
+	/* exclusive end position of every level, starting with the leaf level */
+	private int[] levelBounds = new int[0];
+
+	private FloatBuffer boxes = FloatBuffer.allocate(0);
+
+	private LongBuffer values = LongBuffer.allocate(0);
+
+	/**
+	 * @param nodeSize maximum number of children of a node, values smaller than 2 select
+	 * the default of 16
+	 */
+	public PackedRTree(int nodeSize) {
+		this.nodeSize = nodeSize < 2 ? 16 : nodeSize;
+	}
+
+	/**
+	 * Memory-maps an index written by {@link #write(File)}.
+	 * @param file to load from, must not be <code>null</code>
+	 * @return the index, backed by the mapped file
+	 * @throws IOException if the file cannot be read or has not been written by this class
+	 */
+	public static PackedRTree load(File file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+			buffer = channel.map(READ_ONLY, 0, channel.size());
+		}
+		if (buffer.capacity() < HEADER_INTS * 4 || buffer.getInt(0) != MAGIC) {
+			throw new IOException("File '" + file + "' does not contain a packed rtree.");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported packed rtree version " + buffer.getInt(4) + " in '" + file + "'.");
+		}
+		PackedRTree tree = new PackedRTree(buffer.getInt(12));
+		tree.extraFlag = buffer.getInt(8) != 0;
+		tree.numItems = buffer.getInt(16);
+		int numNodes = buffer.getInt(20);
+		tree.levelBounds = new int[buffer.getInt(24)];
+		int pos = HEADER_INTS * 4;
+		for (int i = 0; i < tree.levelBounds.length; ++i) {
+			tree.levelBounds[i] = buffer.getInt(pos);
+			pos += 4;
+		}
+		pos = align(pos);
+		long expected = pos + numNodes * 16L + numNodes * 8L;
+		if (buffer.capacity() != expected) {
+			throw new IOException("Packed rtree file '" + file + "' is truncated or corrupt.");
+		}
+		tree.boxes = buffer.position(pos).slice().asFloatBuffer().limit(numNodes * 4);
+		tree.values = buffer.position(pos + numNodes * 16).slice().asLongBuffer();
+		return tree;
+	}
+
+	/**
+	 * Writes the index to the given file, it can be mapped again using
+	 * {@link #load(File)}.
+	 * @param file to write to, an existing file is overwritten
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		int numNodes = boxes.limit() / 4;
+		int dataStart = align(HEADER_INTS * 4 + levelBounds.length * 4);
+		ByteBuffer header = ByteBuffer.allocate(dataStart);
+		header.putInt(MAGIC).putInt(VERSION).putInt(extraFlag ? 1 : 0).putInt(nodeSize);
+		header.putInt(numItems).putInt(numNodes).putInt(levelBounds.length);
+		for (int bound : levelBounds) {
+			header.putInt(bound);
+		}
+		header.rewind();
+		ByteBuffer data = ByteBuffer.allocate(numNodes * 16 + numNodes * 8);
+		for (int i = 0; i < numNodes * 4; ++i) {
+			data.putFloat(boxes.get(i));
+		}
+		for (int i = 0; i < numNodes; ++i) {
+			data.putLong(values.get(i));
+		}
+		data.rewind();
+		try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+		}
+	}
+
+	@Override
+	public List<Long> query(float[] envelope) {
+		List<Long> result = new ArrayList<Long>();
+		if (numItems == 0) {
+			return result;
+		}
+		int rootLevel = levelBounds.length - 1;
+		int root = levelBounds[rootLevel] - 1;
+		if (!intersects(envelope, root)) {
+			return result;
+		}
+		// pending inner nodes, encoded as pairs of position and level
+		int[] stack = new int[16];
+		int size = 0;
+		int node = root;
+		int level = rootLevel;
+		while (true) {
+			int first = (int) values.get(node);
+			int end = Math.min(first + nodeSize, levelBounds[level - 1]);
+			for (int child = first; child < end; ++child) {
+				if (!intersects(envelope, child)) {
+					continue;
+				}
+				if (level == 1) {
+					result.add(values.get(child));
+				}
+				else {
+					if (size + 2 > stack.length) {
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					}
+					stack[size++] = child;
+					stack[size++] = level - 1;
+				}
+			}
+			if (size == 0) {
+				break;
+			}
+			level = stack[--size];
+			node = stack[--size];
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the index from the given values with their envelopes, replacing the
+	 * current content. Entries without an envelope are ignored.
+	 * @param listOfObjects
+	 */
+	@Override
+	public void insertBulk(List<Pair<float[], Long>> listOfObjects) {
+		List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>(listOfObjects.size());
+		float[] extent = { Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for (Pair<float[], Long> entry : listOfObjects) {
+			float[] env = entry.first;
+			if (env == null) {
+				continue;
+			}
+			entries.add(entry);
+			extent[0] = Math.min(extent[0], env[0]);
+			extent[1] = Math.min(extent[1], env[1]);
+			extent[2] = Math.max(extent[2], env[2]);
+			extent[3] = Math.max(extent[3], env[3]);
+		}
+		clear();
+		if (entries.isEmpty()) {
+			return;
+		}
+		numItems = entries.size();
+
+		List<Integer> bounds = new ArrayList<Integer>();
+		int numNodes = numItems;
+		int count = numItems;
+		bounds.add(numNodes);
+		while (count > 1) {
+			count = (count + nodeSize - 1) / nodeSize;
+			numNodes += count;
+			bounds.add(numNodes);
+		}
+		if (bounds.size() == 1) {
+			// a single entry still gets a root node, so every query starts at an inner node
+			numNodes++;
+			bounds.add(numNodes);
+		}
+		levelBounds = new int[bounds.size()];
+		for (int i = 0; i < levelBounds.length; ++i) {
+			levelBounds[i] = bounds.get(i);
+		}
+
+		// sort by hilbert value of the centers, keeping the original position in the low
+		// bits
+		float width = extent[2] - extent[0];
+		float height = extent[3] - extent[1];
+		long[] keys = new long[numItems];
+		for (int i = 0; i < numItems; ++i) {
+			float[] env = entries.get(i).first;
+			int x = scale((env[0] + env[2]) / 2 - extent[0], width);
+			int y = scale((env[1] + env[3]) / 2 - extent[1], height);
+			keys[i] = ((long) hilbert(x, y) << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		float[] boxArray = new float[numNodes * 4];
+		long[] valueArray = new long[numNodes];
+		for (int i = 0; i < numItems; ++i) {
+			Pair<float[], Long> entry = entries.get((int) keys[i]);
+			System.arraycopy(entry.first, 0, boxArray, i * 4, 4);
+			valueArray[i] = entry.second;
+		}
+		int pos = numItems;
+		for (int level = 1; level < levelBounds.length; ++level) {
+			int start = level == 1 ? 0 : levelBounds[level - 2];
+			int end = levelBounds[level - 1];
+			for (int first = start; first < end; first += nodeSize) {
+				int last = Math.min(first + nodeSize, end);
+				float[] box = { Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+				for (int child = first; child < last; ++child) {
+					box[0] = Math.min(box[0], boxArray[child * 4]);
+					box[1] = Math.min(box[1], boxArray[child * 4 + 1]);
+					box[2] = Math.max(box[2], boxArray[child * 4 + 2]);
+					box[3] = Math.max(box[3], boxArray[child * 4 + 3]);
+				}
+				System.arraycopy(box, 0, boxArray, pos * 4, 4);
+				valueArray[pos++] = first;
+			}
+		}
+		boxes = FloatBuffer.wrap(boxArray);
+		values = LongBuffer.wrap(valueArray);
+	}
+
+	@Override
+	public void clear() {
+		numItems = 0;
+		levelBounds = new int[0];
+		boxes = FloatBuffer.allocate(0);
+		values = LongBuffer.allocate(0);
+	}
+
+	/**
+	 * @throws UnsupportedOperationException always, the index is static
+	 */
+	@Override
+	public boolean insert(float[] envelope, Long object) {
+		throw new UnsupportedOperationException("A packed rtree cannot be modified, use insertBulk instead.");
+	}
+
+	/**
+	 * @throws UnsupportedOperationException always, the index is static
+	 */
+	@Override
+	public boolean remove(Long object) {
+		throw new UnsupportedOperationException("A packed rtree cannot be modified, use insertBulk instead.");
+	}
+
+	/**
+	 * @return the number of indexed values
+	 */
+	public int size() {
+		return numItems;
+	}
+
+	/**
+	 * @return extra flag stored with the index (used for hacking around buggy shp files)
+	 */
+	public boolean getExtraFlag() {
+		return extraFlag;
+	}
+
+	/**
+	 * @param extraFlag to store with the index
+	 */
+	public void setExtraFlag(boolean extraFlag) {
+		this.extraFlag = extraFlag;
+	}
+
+	private boolean intersects(float[] envelope, int node) {
+		if (envelope == null) {
+			return true;
+		}
+		int off = node * 4;
+		return envelope[0] <= boxes.get(off + 2) && boxes.get(off) <= envelope[2] && envelope[1] <= boxes.get(off + 3)
+				&& boxes.get(off + 1) <= envelope[3];
+	}
+
+	private static int align(int pos) {
+		return (pos + 7) & ~7;
+	}
+
+	private static int scale(float value, float range) {
+		if (range <= 0) {
+			return 0;
+		}
+		return (int) Math.min(HILBERT_MAX, Math.max(0, Math.floor(HILBERT_MAX * value / range)));
+	}
+
+	/**
+	 * @return the distance of the given cell along a hilbert curve covering a grid of
+	 * 2^15 x 2^15 cells
+	 */
+	private static long hilbert(int x, int y) {
+		long d = 0;
+		for (int s = 1 << (HILBERT_ORDER - 1); s > 0; s >>= 1) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			// rotate the quadrant
+			if (ry == 0) {
+				if (rx == 1) {
+					x = HILBERT_MAX - x;
+					y = HILBERT_MAX - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+}
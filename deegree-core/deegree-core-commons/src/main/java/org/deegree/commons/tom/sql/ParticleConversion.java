@@ -60,4 +60,18 @@ public class ParticleConversion<T extends TypedObjectNode> {
 		converter.setParticle(stmt, particle, paramIndex);
 	}
 
+	/**
+	 * @return the particle to be converted, may be <code>null</code>
+	 */
+	public T getParticle() {
+		return particle;
+	}
+
+	/**
+	 * @return the converter, never <code>null</code>
+	 */
+	public ParticleConverter<T> getConverter() {
+		return converter;
+	}
+
 }
@@ -0,0 +1,108 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+
+/**
+ * Static utility methods to publish runtime statistics as MBeans on the platform MBean
+ * server. The beans are registered in the <code>org.deegree</code> domain. Failures are
+ * logged, they never affect the caller.
+ */
+public class MBeanUtils {
+
+	private static final Logger LOG = getLogger(MBeanUtils.class);
+
+	private MBeanUtils() {
+		// utility class
+	}
+
+	/**
+	 * Registers the given bean, an already registered bean with the same name is
+	 * replaced.
+	 * @param type the value of the type key property, never <code>null</code>
+	 * @param name the value of the name key property, never <code>null</code>
+	 * @param bean the bean to register, never <code>null</code>
+	 * @param iface the management interface implemented by the bean, never
+	 * <code>null</code>
+	 */
+	public static <T> void register(String type, String name, T bean, Class<T> iface) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = getObjectName(type, name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(new StandardMBean(bean, iface), objectName);
+		}
+		catch (JMException | RuntimeException e) {
+			LOG.warn("Could not register MBean {}/{}: {}", type, name, e.getMessage());
+			LOG.trace("Stack trace:", e);
+		}
+	}
+
+	/**
+	 * Unregisters the bean with the given name, if any.
+	 * @param type the value of the type key property, never <code>null</code>
+	 * @param name the value of the name key property, never <code>null</code>
+	 */
+	public static void unregister(String type, String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = getObjectName(type, name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		}
+		catch (JMException | RuntimeException e) {
+			LOG.warn("Could not unregister MBean {}/{}: {}", type, name, e.getMessage());
+			LOG.trace("Stack trace:", e);
+		}
+	}
+
+	private static ObjectName getObjectName(String type, String name) throws JMException {
+		return new ObjectName("org.deegree:type=" + type + ",name=" + ObjectName.quote(name));
+	}
+
+}
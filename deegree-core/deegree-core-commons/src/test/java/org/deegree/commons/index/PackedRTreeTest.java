@@ -0,0 +1,132 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.deegree.commons.utils.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PackedRTree}.
+ */
+public class PackedRTreeTest {
+
+	private final List<Pair<float[], Long>> entries = new ArrayList<Pair<float[], Long>>();
+
+	@Before
+	public void createEntries() {
+		Random random = new Random(42);
+		for (long i = 0; i < 1000; i++) {
+			float x = random.nextFloat() * 1000;
+			float y = random.nextFloat() * 1000;
+			entries.add(new Pair<float[], Long>(new float[] { x, y, x + random.nextFloat() * 20,
+					y + random.nextFloat() * 20 }, i));
+		}
+	}
+
+	@Test
+	public void testQuery() {
+		PackedRTree tree = new PackedRTree(4);
+		tree.insertBulk(entries);
+		assertEquals(1000, tree.size());
+		assertQuery(tree, new float[] { 0, 0, 1000, 1000 });
+		assertQuery(tree, new float[] { 100, 200, 150, 400 });
+		assertQuery(tree, new float[] { 500, 500, 500, 500 });
+		assertQuery(tree, new float[] { 2000, 2000, 3000, 3000 });
+	}
+
+	@Test
+	public void testSingleEntry() {
+		PackedRTree tree = new PackedRTree(16);
+		tree.insertBulk(entries.subList(0, 1));
+		assertQuery(tree, entries.get(0).first);
+		assertQuery(tree, new float[] { 2000, 2000, 3000, 3000 });
+	}
+
+	@Test
+	public void testWriteAndLoad() throws IOException {
+		PackedRTree tree = new PackedRTree(16);
+		tree.insertBulk(entries);
+		tree.setExtraFlag(true);
+
+		File tempFile = File.createTempFile("packedrtree", ".rti");
+		tempFile.deleteOnExit();
+		tree.write(tempFile);
+
+		PackedRTree loaded = PackedRTree.load(tempFile);
+		assertTrue(loaded.getExtraFlag());
+		assertEquals(tree.size(), loaded.size());
+		float[] box = new float[] { 300, 300, 420, 380 };
+		assertEquals(tree.query(box), loaded.query(box));
+		assertQuery(loaded, box);
+	}
+
+	@Test(expected = IOException.class)
+	public void testLoadRTreeFile() throws IOException {
+		RTree<Long> tree = new RTree<Long>(new float[] { 0, 0, 1020, 1020 }, 16);
+		tree.insertBulk(entries);
+
+		File tempFile = File.createTempFile("rtree", ".rti");
+		tempFile.deleteOnExit();
+		tree.writeTreeToDisk(tempFile.getCanonicalPath());
+
+		PackedRTree.load(tempFile);
+	}
+
+	private void assertQuery(PackedRTree tree, float[] box) {
+		Set<Long> expected = new HashSet<Long>();
+		for (Pair<float[], Long> entry : entries.subList(0, tree.size())) {
+			float[] env = entry.first;
+			if (env[0] <= box[2] && box[0] <= env[2] && env[1] <= box[3] && box[1] <= env[3]) {
+				expected.add(entry.second);
+			}
+		}
+		List<Long> result = tree.query(box);
+		assertEquals(expected.size(), result.size());
+		assertEquals(expected, new HashSet<Long>(result));
+	}
+
+}
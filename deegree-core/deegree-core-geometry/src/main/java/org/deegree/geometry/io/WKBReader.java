@@ -34,37 +34,234 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
-import org.deegree.cs.coordinatesystems.ICRS;
-import org.deegree.geometry.Geometry;
-import org.locationtech.jts.io.InputStreamInStream;
-import org.locationtech.jts.io.ParseException;
+import static org.deegree.geometry.precision.PrecisionModel.DEFAULT_PRECISION_MODEL;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
 
-import static org.deegree.geometry.utils.GeometryUtils.createFromJTS;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
+import org.deegree.geometry.standard.multi.DefaultMultiLineString;
+import org.deegree.geometry.standard.multi.DefaultMultiPoint;
+import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.primitive.DefaultLineString;
+import org.deegree.geometry.standard.primitive.DefaultLinearRing;
+import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.primitive.DefaultPolygon;
+import org.locationtech.jts.io.ParseException;
 
 /**
  * Reads {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * The decoder reads the binary representation directly into deegree geometries backed
+ * by {@link PackedPoints}, the JTS representation is only built when a topological
+ * operation requires it. Besides OGC WKB, the PostGIS EWKB flags (Z, M, SRID) and the
+ * ISO type codes (1000 + type for Z, 2000 + type for M, 3000 + type for ZM) are
+ * understood. M values are skipped, the SRID is ignored (the CRS is provided by the
+ * caller). Empty geometries are returned as <code>null</code>.
+ * </p>
  *
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries
- * (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  *
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  */
 public class WKBReader {
 
+	private static final int WKB_POINT = 1;
+
+	private static final int WKB_LINESTRING = 2;
+
+	private static final int WKB_POLYGON = 3;
+
+	private static final int WKB_MULTIPOINT = 4;
+
+	private static final int WKB_MULTILINESTRING = 5;
+
+	private static final int WKB_MULTIPOLYGON = 6;
+
+	private static final int WKB_GEOMETRYCOLLECTION = 7;
+
+	private static final int EWKB_Z = 0x80000000;
+
+	private static final int EWKB_M = 0x40000000;
+
+	private static final int EWKB_SRID = 0x20000000;
+
 	public static Geometry read(byte[] wkb, ICRS crs) throws ParseException {
-		// org.locationtech.jts.io.WKBReader() is not thread safe
-		org.locationtech.jts.geom.Geometry jtsGeom = new org.locationtech.jts.io.WKBReader().read(wkb);
-		return createFromJTS(jtsGeom, crs);
+		return read(ByteBuffer.wrap(wkb), crs);
+	}
+
+	/**
+	 * Reads a geometry starting at the current position of the given buffer. Afterwards,
+	 * the position of the buffer is located after the geometry.
+	 * @param wkb buffer that contains the WKB, must not be <code>null</code>
+	 * @param crs crs of the geometry, may be <code>null</code>
+	 * @return geometry, <code>null</code> if the WKB encodes an empty geometry
+	 * @throws ParseException if the WKB is invalid or contains an unsupported geometry type
+	 */
+	public static Geometry read(ByteBuffer wkb, ICRS crs) throws ParseException {
+		ByteBuffer buffer = wkb.duplicate();
+		try {
+			Geometry geom = readGeometry(buffer, crs);
+			wkb.position(buffer.position());
+			return geom;
+		}
+		catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new ParseException("Unexpected end of WKB.");
+		}
 	}
 
 	public static Geometry read(InputStream is, ICRS crs) throws IOException, ParseException {
-		// org.locationtech.jts.io.WKBReader() is not thread safe
-		org.locationtech.jts.geom.Geometry jtsGeom = new org.locationtech.jts.io.WKBReader()
-			.read(new InputStreamInStream(is));
-		return createFromJTS(jtsGeom, crs);
+		return read(is.readAllBytes(), crs);
+	}
+
+	private static Geometry readGeometry(ByteBuffer buffer, ICRS crs) throws ParseException {
+		byte byteOrder = buffer.get();
+		if (byteOrder == 0) {
+			buffer.order(ByteOrder.BIG_ENDIAN);
+		}
+		else if (byteOrder == 1) {
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		else {
+			throw new ParseException("Invalid WKB byte order marker: " + byteOrder);
+		}
+
+		int typeInt = buffer.getInt();
+		int type = typeInt & 0xffff;
+		boolean hasZ = (typeInt & EWKB_Z) != 0;
+		boolean hasM = (typeInt & EWKB_M) != 0;
+		int isoDimension = type / 1000;
+		type = type % 1000;
+		if (isoDimension == 1 || isoDimension == 3) {
+			hasZ = true;
+		}
+		if (isoDimension == 2 || isoDimension == 3) {
+			hasM = true;
+		}
+		if ((typeInt & EWKB_SRID) != 0) {
+			buffer.getInt();
+		}
+		int dim = hasZ ? 3 : 2;
+		int skip = hasM ? 1 : 0;
+
+		switch (type) {
+			case WKB_POINT:
+				return readPoint(buffer, crs, dim, skip);
+			case WKB_LINESTRING: {
+				PackedPoints points = readPoints(buffer, crs, dim, skip);
+				return points.size() == 0 ? null : new DefaultLineString(null, crs, DEFAULT_PRECISION_MODEL, points);
+			}
+			case WKB_POLYGON:
+				return readPolygon(buffer, crs, dim, skip);
+			case WKB_MULTIPOINT: {
+				List<Point> members = readMembers(buffer, crs, Point.class);
+				return members.isEmpty() ? null : new DefaultMultiPoint(null, crs, DEFAULT_PRECISION_MODEL, members);
+			}
+			case WKB_MULTILINESTRING: {
+				List<LineString> members = readMembers(buffer, crs, LineString.class);
+				return members.isEmpty() ? null
+						: new DefaultMultiLineString(null, crs, DEFAULT_PRECISION_MODEL, members);
+			}
+			case WKB_MULTIPOLYGON: {
+				List<Polygon> members = readMembers(buffer, crs, Polygon.class);
+				return members.isEmpty() ? null : new DefaultMultiPolygon(null, crs, DEFAULT_PRECISION_MODEL, members);
+			}
+			case WKB_GEOMETRYCOLLECTION: {
+				List<Geometry> members = readMembers(buffer, crs, Geometry.class);
+				return members.isEmpty() ? null : new DefaultMultiGeometry(null, crs, DEFAULT_PRECISION_MODEL, members);
+			}
+			default:
+				throw new ParseException("Unsupported WKB geometry type: " + typeInt);
+		}
+	}
+
+	private static Point readPoint(ByteBuffer buffer, ICRS crs, int dim, int skip) {
+		double[] coords = new double[dim];
+		for (int i = 0; i < dim; i++) {
+			coords[i] = buffer.getDouble();
+		}
+		skip(buffer, skip);
+		if (Double.isNaN(coords[0]) && Double.isNaN(coords[1])) {
+			// empty point
+			return null;
+		}
+		if (dim == 3 && Double.isNaN(coords[2])) {
+			coords = new double[] { coords[0], coords[1] };
+		}
+		return new DefaultPoint(null, crs, DEFAULT_PRECISION_MODEL, coords);
+	}
+
+	private static PackedPoints readPoints(ByteBuffer buffer, ICRS crs, int dim, int skip) throws ParseException {
+		int numPoints = readCount(buffer, (dim + skip) * 8);
+		double[] coords = new double[numPoints * dim];
+		int i = 0;
+		for (int p = 0; p < numPoints; p++) {
+			for (int d = 0; d < dim; d++) {
+				coords[i++] = buffer.getDouble();
+			}
+			skip(buffer, skip);
+		}
+		return new PackedPoints(crs, coords, dim);
+	}
+
+	private static Polygon readPolygon(ByteBuffer buffer, ICRS crs, int dim, int skip) throws ParseException {
+		int numRings = readCount(buffer, 4);
+		if (numRings == 0) {
+			return null;
+		}
+		PackedPoints exteriorPoints = readPoints(buffer, crs, dim, skip);
+		Ring exterior = new DefaultLinearRing(null, crs, DEFAULT_PRECISION_MODEL, exteriorPoints);
+		List<Ring> interiors = new ArrayList<Ring>(numRings - 1);
+		for (int i = 1; i < numRings; i++) {
+			PackedPoints interiorPoints = readPoints(buffer, crs, dim, skip);
+			interiors.add(new DefaultLinearRing(null, crs, DEFAULT_PRECISION_MODEL, interiorPoints));
+		}
+		if (exteriorPoints.size() == 0) {
+			return null;
+		}
+		return new DefaultPolygon(null, crs, DEFAULT_PRECISION_MODEL, exterior, interiors);
+	}
+
+	private static <T extends Geometry> List<T> readMembers(ByteBuffer buffer, ICRS crs, Class<T> memberType)
+			throws ParseException {
+		// smallest member is an empty geometry: byte order + type + count
+		int numMembers = readCount(buffer, 9);
+		List<T> members = new ArrayList<T>(numMembers);
+		for (int i = 0; i < numMembers; i++) {
+			Geometry member = readGeometry(buffer, crs);
+			if (member != null && !memberType.isInstance(member)) {
+				throw new ParseException("Invalid WKB: " + memberType.getSimpleName() + " expected, but found "
+						+ member.getClass().getSimpleName() + ".");
+			}
+			members.add(memberType.cast(member));
+		}
+		return members;
+	}
+
+	private static int readCount(ByteBuffer buffer, int minBytesPerElement) throws ParseException {
+		int count = buffer.getInt();
+		if (count < 0 || count > buffer.remaining() / minBytesPerElement) {
+			throw new ParseException("Invalid WKB: element count " + count + " exceeds the remaining bytes.");
+		}
+		return count;
+	}
+
+	private static void skip(ByteBuffer buffer, int ordinates) {
+		if (ordinates > 0) {
+			buffer.position(buffer.position() + ordinates * 8);
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -34,29 +34,87 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import static org.deegree.geometry.utils.GeometryUtils.createFromJTS;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Surface;
 import org.deegree.geometry.refs.GeometryReference;
 import org.deegree.geometry.standard.AbstractDefaultGeometry;
-import org.deegree.geometry.standard.primitive.DefaultPoint;
-import org.locationtech.jts.io.OutputStreamOutStream;
 import org.locationtech.jts.io.ParseException;
 
-import java.io.IOException;
-import java.io.OutputStream;
-
 /**
  * Writes {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * Points, line strings, linear rings, polygons and their multi variants are encoded
+ * directly from their {@link Points}, without building JTS geometries. Other geometries
+ * (e.g. curves with non-linear segments) are linearized by JTS first. A
+ * {@link WKBWriter} instance keeps its (growable) buffer between calls of
+ * {@link #encode(Geometry)}, so it can be reused for encoding many geometries. Instances
+ * are not thread safe.
+ * </p>
  *
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries
- * (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  *
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  */
 public class WKBWriter {
 
-	// TODO remove the need for this object
-	private static AbstractDefaultGeometry defaultGeom = new DefaultPoint(null, null, null, new double[] { 0.0, 0.0 });
+	private static final int WKB_POINT = 1;
+
+	private static final int WKB_LINESTRING = 2;
+
+	private static final int WKB_POLYGON = 3;
+
+	private static final int WKB_MULTIPOINT = 4;
+
+	private static final int WKB_MULTILINESTRING = 5;
+
+	private static final int WKB_MULTIPOLYGON = 6;
+
+	private static final int WKB_GEOMETRYCOLLECTION = 7;
+
+	private static final int EWKB_Z = 0x80000000;
+
+	private static final int EWKB_SRID = 0x20000000;
+
+	// buffers that grew larger than this are not kept by the shared writers
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	private static final ThreadLocal<WKBWriter> WRITERS = ThreadLocal.withInitial(WKBWriter::new);
+
+	private final ByteOrder byteOrder;
+
+	private ByteBuffer buffer;
+
+	/**
+	 * Creates a new {@link WKBWriter} that encodes big endian (XDR) WKB.
+	 */
+	public WKBWriter() {
+		this(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Creates a new {@link WKBWriter}.
+	 * @param byteOrder byte order of the encoded WKB, must not be <code>null</code>
+	 */
+	public WKBWriter(ByteOrder byteOrder) {
+		this.byteOrder = byteOrder;
+		this.buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(byteOrder);
+	}
 
 	/**
 	 * Exports the passed geom to WKB.
@@ -71,20 +129,285 @@ public class WKBWriter {
 		if (isEmptyMultiGeometry(geom)) {
 			return null;
 		}
-		// org.locationtech.jts.io.WKBWriter is not thread safe
-		int dim = geom.getCoordinateDimension();
-		return new org.locationtech.jts.io.WKBWriter(dim).write(((AbstractDefaultGeometry) geom).getJTSGeometry());
+		WKBWriter writer = WRITERS.get();
+		try {
+			writer.encode(geom);
+			return writer.toByteArray();
+		}
+		finally {
+			writer.trim();
+		}
+	}
+
+	/**
+	 * Exports the passed geom to EWKB with an SRID tag (as understood by PostGIS).
+	 * @param geom never <code>null</code>
+	 * @param srid spatial reference identifier to tag the geometry with
+	 * @return the EWKB as byte array, may be <code>null</code> if the passed geom is an
+	 * empty multi geometry
+	 */
+	public static byte[] write(Geometry geom, int srid) {
+		if (geom instanceof GeometryReference) {
+			geom = ((GeometryReference<Geometry>) geom).getReferencedObject();
+		}
+		if (isEmptyMultiGeometry(geom)) {
+			return null;
+		}
+		WKBWriter writer = WRITERS.get();
+		try {
+			writer.encode(geom, srid);
+			return writer.toByteArray();
+		}
+		finally {
+			writer.trim();
+		}
 	}
 
 	public static void write(Geometry geom, OutputStream os) throws IOException, ParseException {
-		// org.locationtech.jts.io.WKBWriter is not thread safe
-		// TODO: test for dimentionality here aswell?
-		new org.locationtech.jts.io.WKBWriter().write(((AbstractDefaultGeometry) geom).getJTSGeometry(),
-				new OutputStreamOutStream(os));
+		WKBWriter writer = WRITERS.get();
+		try {
+			writer.encode(geom);
+			writer.writeTo(os);
+		}
+		finally {
+			writer.trim();
+		}
+	}
+
+	/**
+	 * Encodes the given geometry as (OGC) WKB into the buffer of this writer, replacing
+	 * the previous content.
+	 * @param geom geometry to encode, must not be <code>null</code>
+	 * @return number of encoded bytes
+	 */
+	public int encode(Geometry geom) {
+		return encode(geom, false, 0);
+	}
+
+	/**
+	 * Encodes the given geometry as EWKB with an SRID tag into the buffer of this writer,
+	 * replacing the previous content.
+	 * @param geom geometry to encode, must not be <code>null</code>
+	 * @param srid spatial reference identifier to tag the geometry with
+	 * @return number of encoded bytes
+	 */
+	public int encode(Geometry geom, int srid) {
+		return encode(geom, true, srid);
+	}
+
+	/**
+	 * Returns the buffer of this writer. Only the first {@link #size()} bytes are valid
+	 * and the array is reused by subsequent calls of <code>encode</code>.
+	 * @return buffer, never <code>null</code>
+	 */
+	public byte[] getBuffer() {
+		return buffer.array();
+	}
+
+	/**
+	 * @return number of bytes encoded by the last call of <code>encode</code>
+	 */
+	public int size() {
+		return buffer.position();
+	}
+
+	/**
+	 * @return a copy of the bytes encoded by the last call of <code>encode</code>, never
+	 * <code>null</code>
+	 */
+	public byte[] toByteArray() {
+		byte[] wkb = new byte[buffer.position()];
+		System.arraycopy(buffer.array(), 0, wkb, 0, wkb.length);
+		return wkb;
+	}
+
+	/**
+	 * Writes the bytes encoded by the last call of <code>encode</code> to the given
+	 * stream.
+	 * @param os stream to write to, must not be <code>null</code>
+	 * @throws IOException if writing to the stream fails
+	 */
+	public void writeTo(OutputStream os) throws IOException {
+		os.write(buffer.array(), 0, buffer.position());
+	}
+
+	private int encode(Geometry geom, boolean writeSrid, int srid) {
+		buffer.clear();
+		Geometry encodable = getEncodable(geom);
+		if (encodable == null) {
+			// JTS representation is empty
+			writeHeader(WKB_GEOMETRYCOLLECTION, false, writeSrid, srid);
+			ensureCapacity(4);
+			buffer.putInt(0);
+			return buffer.position();
+		}
+		boolean hasZ = encodable.getCoordinateDimension() == 3;
+		writeGeometry(encodable, hasZ, writeSrid, srid);
+		return buffer.position();
+	}
+
+	private void trim() {
+		if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+			buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(byteOrder);
+		}
+	}
+
+	private static Geometry getEncodable(Geometry geom) {
+		Geometry resolved = geom;
+		if (geom instanceof GeometryReference<?>) {
+			resolved = ((GeometryReference<?>) geom).getReferencedObject();
+		}
+		if (isDirectlyEncodable(resolved)) {
+			return resolved;
+		}
+		// linearize (e.g. arcs) via JTS
+		return createFromJTS(((AbstractDefaultGeometry) resolved).getJTSGeometry(), resolved.getCoordinateSystem());
+	}
+
+	private static boolean isDirectlyEncodable(Geometry geom) {
+		if (geom instanceof Point) {
+			return true;
+		}
+		if (geom instanceof Curve) {
+			return isLinear((Curve) geom);
+		}
+		if (geom instanceof Polygon) {
+			Polygon polygon = (Polygon) geom;
+			if (polygon.getSurfaceType() != Surface.SurfaceType.Polygon || polygon.getExteriorRing() == null
+					|| !isLinear(polygon.getExteriorRing())) {
+				return false;
+			}
+			if (polygon.getInteriorRings() != null) {
+				for (Ring ring : polygon.getInteriorRings()) {
+					if (!isLinear(ring)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		if (geom instanceof MultiGeometry<?>) {
+			for (Geometry member : (MultiGeometry<?>) geom) {
+				if (!isDirectlyEncodable(member)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean isLinear(Curve curve) {
+		switch (curve.getCurveType()) {
+			case LineString:
+			case LinearRing:
+				return true;
+			case Ring:
+				return ((Ring) curve).getRingType() == Ring.RingType.LinearRing;
+			default:
+				return false;
+		}
+	}
+
+	private void writeGeometry(Geometry geom, boolean hasZ, boolean writeSrid, int srid) {
+		if (geom instanceof Point) {
+			writeHeader(WKB_POINT, hasZ, writeSrid, srid);
+			writePoint((Point) geom, hasZ);
+		}
+		else if (geom instanceof Curve) {
+			writeHeader(WKB_LINESTRING, hasZ, writeSrid, srid);
+			writePoints(((Curve) geom).getControlPoints(), hasZ);
+		}
+		else if (geom instanceof Polygon) {
+			Polygon polygon = (Polygon) geom;
+			List<Ring> interiors = polygon.getInteriorRings();
+			int numInteriors = interiors != null ? interiors.size() : 0;
+			writeHeader(WKB_POLYGON, hasZ, writeSrid, srid);
+			ensureCapacity(4);
+			buffer.putInt(1 + numInteriors);
+			writePoints(polygon.getExteriorRing().getControlPoints(), hasZ);
+			for (int i = 0; i < numInteriors; i++) {
+				writePoints(interiors.get(i).getControlPoints(), hasZ);
+			}
+		}
+		else {
+			MultiGeometry<?> multi = (MultiGeometry<?>) geom;
+			writeHeader(getMultiType(multi), hasZ, writeSrid, srid);
+			ensureCapacity(4);
+			buffer.putInt(multi.size());
+			for (Geometry member : multi) {
+				writeGeometry(member, hasZ, false, 0);
+			}
+		}
 	}
 
 	private static boolean isEmptyMultiGeometry(Geometry geom) {
 		return Geometry.GeometryType.MULTI_GEOMETRY.equals(geom.getGeometryType()) && ((MultiGeometry) geom).isEmpty();
 	}
 
-}
\ No newline at end of file
+	private static int getMultiType(MultiGeometry<?> multi) {
+		switch (multi.getMultiGeometryType()) {
+			case MULTI_POINT:
+				return WKB_MULTIPOINT;
+			case MULTI_CURVE:
+			case MULTI_LINE_STRING:
+				return WKB_MULTILINESTRING;
+			case MULTI_SURFACE:
+			case MULTI_POLYGON:
+				return WKB_MULTIPOLYGON;
+			default:
+				return WKB_GEOMETRYCOLLECTION;
+		}
+	}
+
+	private void writeHeader(int type, boolean hasZ, boolean writeSrid, int srid) {
+		ensureCapacity(9);
+		buffer.put(byteOrder == ByteOrder.BIG_ENDIAN ? (byte) 0 : (byte) 1);
+		int typeInt = type;
+		if (hasZ) {
+			typeInt |= EWKB_Z;
+		}
+		if (writeSrid) {
+			typeInt |= EWKB_SRID;
+		}
+		buffer.putInt(typeInt);
+		if (writeSrid) {
+			buffer.putInt(srid);
+		}
+	}
+
+	private void writePoint(Point point, boolean hasZ) {
+		ensureCapacity(24);
+		buffer.putDouble(point.get0());
+		buffer.putDouble(point.get1());
+		if (hasZ) {
+			buffer.putDouble(point.get2());
+		}
+	}
+
+	private void writePoints(Points points, boolean hasZ) {
+		int size = points.size();
+		int dim = hasZ ? 3 : 2;
+		ensureCapacity(4 + size * dim * 8);
+		buffer.putInt(size);
+		boolean pointsHaveZ = points.getDimension() > 2;
+		for (int i = 0; i < size; i++) {
+			buffer.putDouble(points.getX(i));
+			buffer.putDouble(points.getY(i));
+			if (hasZ) {
+				buffer.putDouble(pointsHaveZ ? points.getOrdinate(i, 2) : Double.NaN);
+			}
+		}
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (buffer.remaining() < bytes) {
+			int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+			ByteBuffer newBuffer = ByteBuffer.allocate(capacity).order(byteOrder);
+			buffer.flip();
+			newBuffer.put(buffer);
+			buffer = newBuffer;
+		}
+	}
+
+}
@@ -160,37 +160,40 @@ public class PackedPoints implements Points {
 
 	@Override
 	public Coordinate getCoordinate(int index) {
-		Point point = get(index);
-		return new Coordinate(point.get0(), point.get1(), point.get2());
+		return getCoordinateCopy(index);
 	}
 
 	@Override
 	public void getCoordinate(int index, Coordinate coord) {
-		Point point = get(index);
-		coord.x = point.get0();
-		coord.y = point.get1();
-		coord.z = point.get2();
+		int idx = index * dimension;
+		coord.x = coordinates[idx];
+		coord.y = coordinates[idx + 1];
+		coord.z = dimension > 2 ? coordinates[idx + 2] : Double.NaN;
 	}
 
 	@Override
 	public Coordinate getCoordinateCopy(int index) {
-		Point point = get(index);
-		return new Coordinate(point.get0(), point.get1(), point.get2());
+		int idx = index * dimension;
+		return new Coordinate(coordinates[idx], coordinates[idx + 1],
+				dimension > 2 ? coordinates[idx + 2] : Double.NaN);
 	}
 
 	@Override
 	public double getOrdinate(int index, int ordinateIndex) {
-		return get(index).get(ordinateIndex);
+		if (ordinateIndex >= dimension) {
+			return Double.NaN;
+		}
+		return coordinates[index * dimension + ordinateIndex];
 	}
 
 	@Override
 	public double getX(int index) {
-		return get(index).get0();
+		return coordinates[index * dimension];
 	}
 
 	@Override
 	public double getY(int index) {
-		return get(index).get1();
+		return coordinates[index * dimension + 1];
 	}
 
 	@Override
@@ -202,19 +205,19 @@ public class PackedPoints implements Points {
 	public Coordinate[] toCoordinateArray() {
 		Coordinate[] coords = new Coordinate[coordinates.length / dimension];
 		for (int i = 0; i < coords.length; i++) {
-			coords[i] = new Coordinate(coordinates[i * 2], coordinates[i * 2 + 1]);
+			coords[i] = getCoordinateCopy(i);
 		}
 		return coords;
 	}
 
 	@Override
 	public Object clone() {
-		throw new UnsupportedOperationException();
+		return copy();
 	}
 
 	@Override
 	public CoordinateSequence copy() {
-		throw new UnsupportedOperationException();
+		return new PackedPoints(crs, coordinates.clone(), dimension);
 	}
 
 }
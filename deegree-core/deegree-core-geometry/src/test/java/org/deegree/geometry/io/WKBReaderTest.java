@@ -0,0 +1,176 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.io;
+
+import static org.deegree.geometry.utils.GeometryUtils.createFromJTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Test;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for {@link WKBReader}.
+ */
+public class WKBReaderTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WKBReaderTest.class);
+
+	private static final String[] WKT = { "POINT (1 2)", "POINT Z (1 2 3)", "LINESTRING (0 0, 1 1, 2 0)",
+			"LINESTRING Z (0 0 1, 1 1 2, 2 0 3)", "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2))",
+			"MULTIPOINT ((0 0), (1 1))", "MULTILINESTRING ((0 0, 1 1), (2 2, 3 3))",
+			"MULTIPOLYGON (((0 0, 10 0, 10 10, 0 0)), ((20 20, 30 20, 30 30, 20 20)))",
+			"GEOMETRYCOLLECTION (POINT (1 2), LINESTRING (0 0, 1 1))" };
+
+	@Test
+	public void testReadSameAsJTS() throws ParseException {
+		for (String wkt : WKT) {
+			org.locationtech.jts.geom.Geometry jtsGeom = new org.locationtech.jts.io.WKTReader().read(wkt);
+			int dim = wkt.contains(" Z ") ? 3 : 2;
+			for (int byteOrder : new int[] { ByteOrderValues.BIG_ENDIAN, ByteOrderValues.LITTLE_ENDIAN }) {
+				byte[] wkb = new WKBWriter(dim, byteOrder).write(jtsGeom);
+				Geometry expected = createFromJTS(new org.locationtech.jts.io.WKBReader().read(wkb), null);
+				assertSameGeometry(wkt, expected, WKBReader.read(wkb, null));
+			}
+		}
+	}
+
+	@Test
+	public void testReadEWKB() throws ParseException {
+		org.locationtech.jts.geom.Geometry jtsGeom = new org.locationtech.jts.io.WKTReader()
+			.read("LINESTRING Z (0 0 1, 1 1 2, 2 0 3)");
+		jtsGeom.setSRID(4326);
+		byte[] ewkb = new WKBWriter(3, ByteOrderValues.LITTLE_ENDIAN, true).write(jtsGeom);
+		LineString line = (LineString) WKBReader.read(ewkb, null);
+		assertTrue(line.getControlPoints() instanceof PackedPoints);
+		assertEquals(3, line.getControlPoints().getDimension());
+		assertSameGeometry("EWKB", createFromJTS(new org.locationtech.jts.io.WKBReader().read(ewkb), null), line);
+	}
+
+	@Test
+	public void testReadIsoZ() throws ParseException {
+		ByteBuffer wkb = ByteBuffer.allocate(1 + 4 + 3 * 8);
+		wkb.put((byte) 0).putInt(1001).putDouble(1).putDouble(2).putDouble(3);
+		Point point = (Point) WKBReader.read(wkb.array(), null);
+		assertEquals(3, point.getCoordinateDimension());
+		assertEquals(3.0, point.get2(), 0.0);
+	}
+
+	@Test
+	public void testReadEmpty() throws ParseException {
+		byte[] wkb = new WKBWriter().write(new org.locationtech.jts.io.WKTReader().read("MULTIPOLYGON EMPTY"));
+		assertNull(WKBReader.read(wkb, null));
+	}
+
+	@Test(expected = ParseException.class)
+	public void testReadTruncated() throws ParseException {
+		byte[] wkb = new WKBWriter().write(new org.locationtech.jts.io.WKTReader().read("LINESTRING (0 0, 1 1)"));
+		WKBReader.read(Arrays.copyOf(wkb, wkb.length - 4), null);
+	}
+
+	/**
+	 * Compares the decoding time against the previous JTS based decoding. Enable with
+	 * <code>-Dbenchmark=true</code>.
+	 */
+	@Test
+	public void benchmarkRead() throws ParseException {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+		benchmark("points", "POINT (1 2)", 200000);
+		benchmark("lines", createLineString(100), 20000);
+		benchmark("multipolygons", createMultiPolygon(50, 1000), 50);
+	}
+
+	private void benchmark(String name, String wkt, int rounds) throws ParseException {
+		byte[] wkb = new WKBWriter().write(new org.locationtech.jts.io.WKTReader().read(wkt));
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			createFromJTS(new org.locationtech.jts.io.WKBReader().read(wkb), null);
+		}
+		long jtsTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			WKBReader.read(wkb, null);
+		}
+		long directTime = System.nanoTime() - start;
+		LOG.info("Decoding " + rounds + " " + name + " (" + wkb.length + " bytes each): JTS " + jtsTime / 1000000
+				+ " ms, direct " + directTime / 1000000 + " ms");
+	}
+
+	private static void assertSameGeometry(String msg, Geometry expected, Geometry actual) {
+		org.locationtech.jts.geom.Geometry expectedJts = ((AbstractDefaultGeometry) expected).getJTSGeometry();
+		org.locationtech.jts.geom.Geometry actualJts = ((AbstractDefaultGeometry) actual).getJTSGeometry();
+		assertTrue(msg, expectedJts.equalsExact(actualJts));
+		assertEquals(msg, expected.getCoordinateDimension(), actual.getCoordinateDimension());
+	}
+
+	private static String createLineString(int numPoints) {
+		StringBuilder sb = new StringBuilder("LINESTRING (");
+		for (int i = 0; i < numPoints; i++) {
+			sb.append(i > 0 ? ", " : "").append(i).append(' ').append(i % 7);
+		}
+		return sb.append(')').toString();
+	}
+
+	private static String createMultiPolygon(int numPolygons, int numPoints) {
+		StringBuilder sb = new StringBuilder("MULTIPOLYGON (");
+		for (int p = 0; p < numPolygons; p++) {
+			sb.append(p > 0 ? ", " : "").append("((");
+			for (int i = 0; i <= numPoints; i++) {
+				double angle = 2 * Math.PI * (i % numPoints) / numPoints;
+				sb.append(i > 0 ? ", " : "")
+					.append(p * 100 + 40 * Math.cos(angle))
+					.append(' ')
+					.append(40 * Math.sin(angle));
+			}
+			sb.append("))");
+		}
+		return sb.append(')').toString();
+	}
+
+}
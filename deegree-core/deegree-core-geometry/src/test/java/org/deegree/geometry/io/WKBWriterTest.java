@@ -0,0 +1,121 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.multi.MultiPoint;
+import org.deegree.geometry.primitive.Point;
+import org.junit.Test;
+import org.locationtech.jts.io.ParseException;
+
+/**
+ * Tests for {@link WKBWriter}.
+ */
+public class WKBWriterTest {
+
+	private static final String[] WKT = { "POINT (1 2)", "POINT Z (1 2 3)", "LINESTRING (0 0, 1 1, 2 0)",
+			"LINESTRING Z (0 0 1, 1 1 2, 2 0 3)", "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2))",
+			"MULTIPOINT ((0 0), (1 1))", "MULTILINESTRING ((0 0, 1 1), (2 2, 3 3))",
+			"MULTIPOLYGON (((0 0, 10 0, 10 10, 0 0)), ((20 20, 30 20, 30 30, 20 20)))",
+			"GEOMETRYCOLLECTION (POINT (1 2), LINESTRING (0 0, 1 1))" };
+
+	@Test
+	public void testWriteReadableByJTS() throws ParseException {
+		for (String wkt : WKT) {
+			org.locationtech.jts.geom.Geometry expected = new org.locationtech.jts.io.WKTReader().read(wkt);
+			for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+				WKBWriter writer = new WKBWriter(byteOrder);
+				writer.encode(read(wkt));
+				org.locationtech.jts.geom.Geometry actual = new org.locationtech.jts.io.WKBReader()
+					.read(writer.toByteArray());
+				assertTrue(wkt, expected.equalsExact(actual));
+				assertEquals(wkt, expected.getCoordinate().getZ(), actual.getCoordinate().getZ(), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testWriteEWKB() throws ParseException {
+		byte[] ewkb = WKBWriter.write(read("LINESTRING Z (0 0 1, 1 1 2, 2 0 3)"), 25832);
+		ByteBuffer buffer = ByteBuffer.wrap(ewkb);
+		assertEquals(0, buffer.get());
+		assertEquals(0xA0000002, buffer.getInt());
+		assertEquals(25832, buffer.getInt());
+		assertEquals(25832, new org.locationtech.jts.io.WKBReader().read(ewkb).getSRID());
+	}
+
+	@Test
+	public void testReuseBuffer() throws ParseException {
+		WKBWriter writer = new WKBWriter();
+		Geometry large = read(createLineString(1000));
+		int largeSize = writer.encode(large);
+		assertEquals(1 + 4 + 4 + 1000 * 16, largeSize);
+		int smallSize = writer.encode(read("POINT (1 2)"));
+		assertEquals(1 + 4 + 16, smallSize);
+		assertEquals(smallSize, writer.toByteArray().length);
+		Point point = (Point) WKBReader.read(writer.toByteArray(), null);
+		assertEquals(2.0, point.get1(), 0.0);
+	}
+
+	@Test
+	public void testWriteEmptyMultiGeometry() {
+		MultiPoint empty = new GeometryFactory().createMultiPoint(null, null, Collections.<Point> emptyList());
+		assertNull(WKBWriter.write(empty));
+	}
+
+	private static Geometry read(String wkt) throws ParseException {
+		org.locationtech.jts.geom.Geometry jtsGeom = new org.locationtech.jts.io.WKTReader().read(wkt);
+		return WKBReader.read(new org.locationtech.jts.io.WKBWriter(wkt.contains(" Z ") ? 3 : 2).write(jtsGeom),
+				null);
+	}
+
+	private static String createLineString(int numPoints) {
+		StringBuilder sb = new StringBuilder("LINESTRING (");
+		for (int i = 0; i < numPoints; i++) {
+			sb.append(i > 0 ? ", " : "").append(i).append(' ').append(i % 7);
+		}
+		return sb.append(')').toString();
+	}
+
+}
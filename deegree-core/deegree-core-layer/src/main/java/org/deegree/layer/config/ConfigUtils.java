@@ -220,6 +220,7 @@ public final class ConfigUtils {
 		int rad = -1;
 		boolean opaque = false;
 		Integer decimalPlaces = null;
+		double tolerance = -1;
 		try {
 			alias = Antialias.valueOf(cfg.getAntiAliasing());
 		}
@@ -258,12 +259,16 @@ public final class ConfigUtils {
 		if (cfg.isOpaque() != null) {
 			opaque = cfg.isOpaque();
 		}
+		if (cfg.getGeneralizationTolerance() != null) {
+			tolerance = Math.max(0, cfg.getGeneralizationTolerance());
+		}
 		return new MapOptions.Builder().quality(quali)
 			.interpolation(interpol)
 			.antialias(alias)
 			.maxFeatures(maxFeats)
 			.featureInfoRadius(rad)
 			.featureInfoDecimalPlaces(decimalPlaces)
+			.generalizationTolerance(tolerance)
 			.build();
 	}
 
@@ -42,16 +42,13 @@ package org.deegree.layer.persistence;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.util.LinkedList;
-
-import org.deegree.commons.utils.Triple;
 import org.deegree.feature.Feature;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.filter.XPathEvaluator;
-import org.deegree.geometry.Geometry;
 import org.deegree.rendering.r2d.LabelRenderer;
 import org.deegree.rendering.r2d.Renderer;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.style.se.unevaluated.CompiledStyle;
 import org.deegree.style.se.unevaluated.Style;
 import org.deegree.style.styling.Styling;
 import org.deegree.style.styling.TextStyling;
@@ -85,23 +82,22 @@ public class FeatureStreamRenderer {
 		// TextRenderer textRenderer = context.getTextRenderer();
 		LabelRenderer labelRenderer = context.getLabelRenderer();
 		// ArrayList<Label> labelList = new ArrayList<Label>();
+		CompiledStyle compiled = style.compile();
 
 		for (Feature f : features) {
 			if (Thread.interrupted()) {
 				throw new InterruptedException();
 			}
 			try {
-				LinkedList<Triple<Styling, LinkedList<Geometry>, String>> evalds = style.evaluate(f,
-						(XPathEvaluator<Feature>) evaluator);
-				for (Triple<Styling, LinkedList<Geometry>, String> evald : evalds) {
-					if (evald.first instanceof TextStyling) {
-						// textRenderer.render( (TextStyling) evald.first, evald.third,
-						// evald.second );
-						// labelList.addAll(
-						labelRenderer.createLabel((TextStyling) evald.first, evald.third, evald.second);
+				int evalds = compiled.evaluate(f, (XPathEvaluator<Feature>) evaluator);
+				for (int i = 0; i < evalds; ++i) {
+					Styling styling = compiled.getStyling(i);
+					if (styling instanceof TextStyling) {
+						labelRenderer.createLabel((TextStyling) styling, compiled.getText(i),
+								compiled.getGeometries(i));
 					}
 					else {
-						renderer.render(evald.first, evald.second);
+						renderer.render(styling, compiled.getGeometries(i));
 					}
 				}
 			}
@@ -55,7 +55,7 @@ public class InlineFeatureLayerData implements LayerData {
 		FeatureInputStream features = null;
 		try {
 			features = new MemoryFeatureInputStream(col);
-			features = new ThreadedFeatureInputStream(features, 100);
+			features = new ThreadedFeatureInputStream(features, ThreadedFeatureInputStream.DEFAULT_QUEUE_SIZE);
 
 			FeatureStreamRenderer renderer = new FeatureStreamRenderer(context, maxFeatures, evaluator);
 
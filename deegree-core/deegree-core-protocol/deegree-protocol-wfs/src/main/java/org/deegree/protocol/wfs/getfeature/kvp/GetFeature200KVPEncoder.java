@@ -179,6 +179,11 @@ public class GetFeature200KVPEncoder {
 			if (startIndex != null) {
 				kvp.put("STARTINDEX", startIndex.toString());
 			}
+
+			String startAfter = getFeature.getPresentationParams().getStartAfter();
+			if (startAfter != null) {
+				kvp.put("STARTAFTER", startAfter);
+			}
 		}
 	}
 
@@ -54,6 +54,8 @@ public class StandardPresentationParams {
 
 	private final String outputFormat;
 
+	private final String startAfter;
+
 	/**
 	 * Creates a new {@link StandardPresentationParams} instance.
 	 * @param startIndex index within the result set from which the server shall begin
@@ -66,10 +68,28 @@ public class StandardPresentationParams {
 	 */
 	public StandardPresentationParams(BigInteger startIndex, BigInteger count, ResultType resultType,
 			String outputFormat) {
+		this(startIndex, count, resultType, outputFormat, null);
+	}
+
+	/**
+	 * Creates a new {@link StandardPresentationParams} instance.
+	 * @param startIndex index within the result set from which the server shall begin
+	 * returning results (conting starts at 0), can be <code>null</code> (unspecified)
+	 * @param count limit for the number of returned results (non-negative integer), can
+	 * be <code>null</code> (unspecified)
+	 * @param resultType requested query mode (result or hits), can be <code>null</code>
+	 * (unspecified)
+	 * @param outputFormat requested output format, can be <code>null</code> (unspecified)
+	 * @param startAfter id of the last feature of the previous page (deegree specific,
+	 * keyset paging), can be <code>null</code> (unspecified)
+	 */
+	public StandardPresentationParams(BigInteger startIndex, BigInteger count, ResultType resultType,
+			String outputFormat, String startAfter) {
 		this.startIndex = startIndex;
 		this.count = count;
 		this.resultType = resultType;
 		this.outputFormat = outputFormat;
+		this.startAfter = startAfter;
 	}
 
 	/**
@@ -108,4 +128,15 @@ public class StandardPresentationParams {
 		return outputFormat;
 	}
 
+	/**
+	 * Returns the id of the last feature of the previous page (deegree specific). If
+	 * present, the server may continue the result set directly after this feature
+	 * instead of skipping {@link #getStartIndex()} results.
+	 * @return id of the last feature of the previous page, or <code>null</code> if
+	 * unspecified
+	 */
+	public String getStartAfter() {
+		return startAfter;
+	}
+
 }
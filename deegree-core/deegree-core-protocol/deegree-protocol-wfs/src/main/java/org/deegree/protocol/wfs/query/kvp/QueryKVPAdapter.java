@@ -142,7 +142,10 @@ public class QueryKVPAdapter extends AbstractWFSRequestKVPAdapter {
 			resultType = ResultType.RESULTS;
 		}
 
-		return new StandardPresentationParams(startIndex, count, resultType, outputFormat);
+		// optional: STARTAFTER (deegree specific, keyset paging)
+		String startAfter = kvpUC.get("STARTAFTER");
+
+		return new StandardPresentationParams(startIndex, count, resultType, outputFormat, startAfter);
 	}
 
 	protected static ResolveParams parseStandardResolveParameters110(Map<String, String> kvpUC) {
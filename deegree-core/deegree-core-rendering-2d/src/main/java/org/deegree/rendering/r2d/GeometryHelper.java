@@ -76,6 +76,8 @@ class GeometryHelper {
 
 	private AffineTransform worldToScreen;
 
+	private double tolerance;
+
 	GeometryHelper(Envelope bbox, int width, AffineTransform worldToScreen) {
 		this.worldToScreen = worldToScreen;
 		try {
@@ -90,14 +92,25 @@ class GeometryHelper {
 		}
 	}
 
-	Double fromCurve(Curve curve, boolean close) {
-		Double line = new Double();
+	/**
+	 * @param tolerance the grid cell size in pixels used to generalize curves in screen
+	 * space, a value <= 0 disables generalization
+	 */
+	void setGeneralizationTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
 
+	Double fromCurve(Curve curve, boolean close) {
 		// TODO use error criterion
 		ICRS crs = curve.getCoordinateSystem();
 		curve = linearizer.linearize(curve, new NumPointsCriterion(100));
 		curve.setCoordinateSystem(crs);
 		Points points = curve.getControlPoints();
+		if (tolerance > 0) {
+			return generalize(points, close);
+		}
+
+		Double line = new Double();
 		Iterator<Point> iter = points.iterator();
 		Point p = iter.next();
 		double x = p.get0(), y = p.get1();
@@ -122,6 +135,70 @@ class GeometryHelper {
 		return line;
 	}
 
+	/**
+	 * Transforms the points to screen coordinates, snaps them to a grid of the tolerance
+	 * size and drops repeated and collinear vertices. As every vertex is snapped
+	 * independently of its neighbours, boundaries shared by adjacent surfaces stay
+	 * shared, so no gaps appear between fills.
+	 */
+	private Double generalize(Points points, boolean close) {
+		int size = points.size();
+		double[] coords = new double[size * 2];
+		int i = 0;
+		for (Point p : points) {
+			coords[i++] = p.get0();
+			coords[i++] = p.get1();
+		}
+		worldToScreen.transform(coords, 0, coords, 0, size);
+
+		// snap in place, dropping vertices that fall into the same cell as their
+		// predecessor, and vertices lying on the line between their neighbours
+		int n = 0;
+		for (i = 0; i < size; ++i) {
+			double x = Math.rint(coords[2 * i] / tolerance) * tolerance;
+			double y = Math.rint(coords[2 * i + 1] / tolerance) * tolerance;
+			if (n > 0 && x == coords[2 * n - 2] && y == coords[2 * n - 1]) {
+				continue;
+			}
+			if (n > 1 && isCollinear(coords[2 * n - 4], coords[2 * n - 3], coords[2 * n - 2], coords[2 * n - 1], x,
+					y)) {
+				--n;
+			}
+			coords[2 * n] = x;
+			coords[2 * n + 1] = y;
+			++n;
+		}
+
+		Double line = new Double(Double.WIND_NON_ZERO, n + 1);
+		if (n == 0) {
+			return line;
+		}
+		line.moveTo(coords[0], coords[1]);
+		if (n == 1) {
+			// keep sub pixel geometries visible for strokes
+			line.lineTo(coords[0], coords[1]);
+			return line;
+		}
+		boolean closed = close && coords[0] == coords[2 * n - 2] && coords[1] == coords[2 * n - 1];
+		int last = closed ? n - 1 : n;
+		for (i = 1; i < last; ++i) {
+			line.lineTo(coords[2 * i], coords[2 * i + 1]);
+		}
+		if (closed) {
+			line.closePath();
+		}
+		return line;
+	}
+
+	private static boolean isCollinear(double x0, double y0, double x1, double y1, double x2, double y2) {
+		// only drop the middle vertex if it lies between its neighbours, else spikes
+		// would be cut off
+		if ((x1 - x0) * (x2 - x1) < 0 || (y1 - y0) * (y2 - y1) < 0) {
+			return false;
+		}
+		return (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0) == 0;
+	}
+
 	<T extends Geometry> T transform(T g) {
 		if (g == null) {
 			LOG.warn("Trying to transform null geometry.");
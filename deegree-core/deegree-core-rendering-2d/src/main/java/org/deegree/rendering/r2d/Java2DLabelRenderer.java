@@ -49,7 +49,6 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.BasicStroke;
 import java.awt.Font;
-import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
@@ -169,15 +168,7 @@ public class Java2DLabelRenderer implements LabelRenderer {
 	@Override
 	public Label createLabel(TextStyling styling, Font font, String text, Point p) {
 
-		TextLayout layout;
-		synchronized (FontRenderContext.class) {
-			// apparently getting the font render context is not threadsafe (despite
-			// having different graphics here)
-			// so do this globally synchronized to fix:
-			// http://tracker.deegree.org/deegree-core/ticket/200
-			FontRenderContext frc = renderer.graphics.getFontRenderContext();
-			layout = new TextLayout(text, font, frc);
-		}
+		TextLayout layout = TextLayoutCache.getLayout(text, font, renderer.graphics.getFontRenderContext());
 
 		Point2D.Double origin = (Point2D.Double) renderer.worldToScreen
 			.transform(new Point2D.Double(p.get0(), p.get1()), null);
@@ -133,6 +133,18 @@ public class Java2DRenderer implements Renderer {
 		rendererContext = new RendererContext(pixelSize, res, graphics, this, bbox, width, worldToScreen);
 	}
 
+	/**
+	 * Enables generalization of curves and surfaces in screen space. Vertices are snapped
+	 * to a grid with the given cell size in pixels, consecutive vertices falling into the
+	 * same cell are dropped.
+	 * @param tolerance the grid cell size in pixels, a value <= 0 disables generalization
+	 */
+	public void setGeneralizationTolerance(double tolerance) {
+		if (rendererContext.geomHelper != null) {
+			rendererContext.geomHelper.setGeneralizationTolerance(tolerance);
+		}
+	}
+
 	@Override
 	public void render(final PointStyling styling, final Geometry geom) {
 		if (geom == null) {
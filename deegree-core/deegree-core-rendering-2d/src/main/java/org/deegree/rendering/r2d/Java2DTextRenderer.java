@@ -48,7 +48,6 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.awt.BasicStroke;
 import java.awt.Font;
 import java.awt.Stroke;
-import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D.Double;
@@ -182,15 +181,7 @@ public class Java2DTextRenderer implements TextRenderer {
 		renderer.graphics.setFont(font);
 		AffineTransform transform = renderer.graphics.getTransform();
 		renderer.graphics.rotate(toRadians(styling.rotation), x, y);
-		TextLayout layout;
-		synchronized (FontRenderContext.class) {
-			// apparently getting the font render context is not threadsafe (despite
-			// having different graphics here)
-			// so do this globally synchronized to fix:
-			// http://tracker.deegree.org/deegree-core/ticket/200
-			FontRenderContext frc = renderer.graphics.getFontRenderContext();
-			layout = new TextLayout(text, font, frc);
-		}
+		TextLayout layout = TextLayoutCache.getLayout(text, font, renderer.graphics.getFontRenderContext());
 		double width = layout.getBounds().getWidth();
 		double height = layout.getBounds().getHeight();
 		double px = x - styling.anchorPointX * width;
@@ -0,0 +1,658 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.deegree.commons.utils.TunableParameter.get;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.slf4j.Logger;
+
+/**
+ * Writes PNG images without going through ImageIO. Indexed images (as created by the
+ * color quantizer for <code>image/png; mode=8bit</code>) are written as palette images,
+ * all other images as 8 bit RGB or RGBA.
+ * <p>
+ * The deflater is reused per thread, and compression level and row filter can be
+ * configured. Large images can be compressed in independent stripes on the common fork
+ * join pool; each stripe is flushed to a byte boundary, so the concatenated stripes form
+ * one valid zlib stream.
+ * </p>
+ * The defaults can be changed using the tunables
+ * <code>deegree.rendering.png.compression-level</code>,
+ * <code>deegree.rendering.png.filter</code> and
+ * <code>deegree.rendering.png.stripes</code>, or per format using the bean properties
+ * when configured as custom GetMap format.
+ */
+public class PngImageSerializer implements ImageSerializer {
+
+	private static final Logger LOG = getLogger(PngImageSerializer.class);
+
+	/**
+	 * The PNG row filters. ADAPTIVE selects the best filter per row.
+	 */
+	public enum Filter {
+
+		/***/
+		NONE,
+		/***/
+		SUB,
+		/***/
+		UP,
+		/***/
+		AVERAGE,
+		/***/
+		PAETH,
+		/***/
+		ADAPTIVE
+
+	}
+
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+	private static final int MIN_ROWS_PER_STRIPE = 64;
+
+	private static final int IDAT_SIZE = 1 << 16;
+
+	private static final PngImageSerializer DEFAULT_INSTANCE = get("deegree.rendering.png.imageio", false) ? null
+			: new PngImageSerializer();
+
+	private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal
+		.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+	private int compressionLevel = get("deegree.rendering.png.compression-level", 4);
+
+	private Filter filter = parseFilter(get("deegree.rendering.png.filter", (String) null));
+
+	private int stripes = get("deegree.rendering.png.stripes", 1);
+
+	/**
+	 * @return the serializer to use for PNG images if no other serializer is configured,
+	 * <code>null</code> if ImageIO should be used
+	 */
+	public static PngImageSerializer getDefaultInstance() {
+		return DEFAULT_INSTANCE;
+	}
+
+	private static Filter parseFilter(String filter) {
+		if (filter == null) {
+			return null;
+		}
+		try {
+			return Filter.valueOf(filter.toUpperCase());
+		}
+		catch (IllegalArgumentException e) {
+			LOG.warn("'{}' is not a valid PNG filter, using the default.", filter);
+			return null;
+		}
+	}
+
+	/**
+	 * @param compressionLevel the deflate level, 0 (none) to 9 (best), default is 4
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = Math.max(0, Math.min(9, compressionLevel));
+	}
+
+	/**
+	 * @param filter one of the {@link Filter} names. If not set, NONE is used for
+	 * palette images and ADAPTIVE for all others
+	 */
+	public void setFilter(String filter) {
+		this.filter = parseFilter(filter);
+	}
+
+	/**
+	 * @param stripes the maximum number of stripes to compress in parallel, default is 1
+	 */
+	public void setStripes(int stripes) {
+		this.stripes = Math.max(1, stripes);
+	}
+
+	@Override
+	public void serialize(RenderingInfo rinfo, BufferedImage img, OutputStream out) throws IOException {
+		RowSource source = createRowSource(img);
+		int width = img.getWidth();
+		int height = img.getHeight();
+		Filter filter = this.filter;
+		if (filter == null) {
+			filter = source.palette != null ? Filter.NONE : Filter.ADAPTIVE;
+		}
+
+		out.write(SIGNATURE);
+		byte[] ihdr = new byte[13];
+		writeInt(ihdr, 0, width);
+		writeInt(ihdr, 4, height);
+		ihdr[8] = 8;
+		ihdr[9] = (byte) source.colorType;
+		writeChunk(out, "IHDR", ihdr, 0, ihdr.length);
+		if (source.palette != null) {
+			writePalette(out, source.palette);
+		}
+
+		int numStripes = Math.max(1, Math.min(stripes, height / MIN_ROWS_PER_STRIPE));
+		if (numStripes == 1) {
+			writeImageData(out, source, filter, height);
+		}
+		else {
+			writeImageDataParallel(out, source, filter, height, numStripes);
+		}
+		writeChunk(out, "IEND", new byte[0], 0, 0);
+		out.flush();
+	}
+
+	private void writeImageData(OutputStream out, RowSource source, Filter filter, int height) throws IOException {
+		IdatOutputStream idat = new IdatOutputStream(out);
+		idat.writeZlibHeader();
+		Stripe stripe = new Stripe(source, filter, 0, height, true);
+		stripe.compress(idat);
+		idat.writeAdler(stripe.adler);
+		idat.close();
+	}
+
+	private void writeImageDataParallel(OutputStream out, RowSource source, Filter filter, int height,
+			int numStripes) throws IOException {
+		int rowsPerStripe = (height + numStripes - 1) / numStripes;
+		List<Future<Stripe>> futures = new ArrayList<Future<Stripe>>(numStripes);
+		for (int y = 0; y < height; y += rowsPerStripe) {
+			final Stripe stripe = new Stripe(source, filter, y, Math.min(height, y + rowsPerStripe),
+					y + rowsPerStripe >= height);
+			futures.add(ForkJoinPool.commonPool().submit(() -> {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				stripe.compress(bos);
+				stripe.compressed = bos;
+				return stripe;
+			}));
+		}
+		IdatOutputStream idat = new IdatOutputStream(out);
+		idat.writeZlibHeader();
+		long adler = 1;
+		try {
+			for (Future<Stripe> f : futures) {
+				Stripe stripe = f.get();
+				stripe.compressed.writeTo(idat);
+				adler = combineAdler(adler, stripe.adler, stripe.length);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while encoding PNG image.", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause.getMessage(), cause);
+		}
+		finally {
+			for (Future<Stripe> f : futures) {
+				f.cancel(true);
+			}
+		}
+		idat.writeAdler(adler);
+		idat.close();
+	}
+
+	/**
+	 * Combines the adler32 checksums of two consecutive blocks, see adler32_combine in
+	 * zlib.
+	 */
+	static long combineAdler(long adler1, long adler2, long len2) {
+		final long base = 65521;
+		long rem = len2 % base;
+		long sum1 = adler1 & 0xffff;
+		long sum2 = (rem * sum1) % base;
+		sum1 += (adler2 & 0xffff) + base - 1;
+		sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + base - rem;
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum2 >= (base << 1)) {
+			sum2 -= (base << 1);
+		}
+		if (sum2 >= base) {
+			sum2 -= base;
+		}
+		return sum1 | (sum2 << 16);
+	}
+
+	private static void writePalette(OutputStream out, IndexColorModel icm) throws IOException {
+		int size = icm.getMapSize();
+		byte[] plte = new byte[size * 3];
+		byte[] trns = new byte[size];
+		int numTrns = 0;
+		for (int i = 0; i < size; ++i) {
+			plte[3 * i] = (byte) icm.getRed(i);
+			plte[3 * i + 1] = (byte) icm.getGreen(i);
+			plte[3 * i + 2] = (byte) icm.getBlue(i);
+			trns[i] = (byte) icm.getAlpha(i);
+			if (icm.getAlpha(i) != 255) {
+				numTrns = i + 1;
+			}
+		}
+		writeChunk(out, "PLTE", plte, 0, plte.length);
+		if (numTrns > 0) {
+			writeChunk(out, "tRNS", trns, 0, numTrns);
+		}
+	}
+
+	private static void writeChunk(OutputStream out, String type, byte[] data, int off, int len) throws IOException {
+		byte[] header = new byte[8];
+		writeInt(header, 0, len);
+		for (int i = 0; i < 4; ++i) {
+			header[4 + i] = (byte) type.charAt(i);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(header, 4, 4);
+		crc.update(data, off, len);
+		out.write(header);
+		out.write(data, off, len);
+		byte[] trailer = new byte[4];
+		writeInt(trailer, 0, (int) crc.getValue());
+		out.write(trailer);
+	}
+
+	private static void writeInt(byte[] buf, int off, int val) {
+		buf[off] = (byte) (val >>> 24);
+		buf[off + 1] = (byte) (val >>> 16);
+		buf[off + 2] = (byte) (val >>> 8);
+		buf[off + 3] = (byte) val;
+	}
+
+	private static RowSource createRowSource(BufferedImage img) {
+		WritableRaster raster = img.getRaster();
+		// sub images and child rasters share the data buffer of their parent, so rows are
+		// addressed through the scanline stride and the translation of the sample model
+		int tx = raster.getSampleModelTranslateX();
+		int ty = raster.getSampleModelTranslateY();
+		if (img.getType() == BufferedImage.TYPE_BYTE_INDEXED && img.getColorModel() instanceof IndexColorModel
+				&& raster.getSampleModel() instanceof ComponentSampleModel
+				&& raster.getDataBuffer() instanceof DataBufferByte) {
+			ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+			if (sm.getNumBands() == 1 && sm.getPixelStride() == 1) {
+				int stride = sm.getScanlineStride();
+				int base = raster.getDataBuffer().getOffset() + sm.getBandOffsets()[0] - ty * stride - tx;
+				return new RowSource(img, 3, 1, (IndexColorModel) img.getColorModel(),
+						((DataBufferByte) raster.getDataBuffer()).getData(), null, base, stride);
+			}
+		}
+		if ((img.getType() == BufferedImage.TYPE_INT_RGB || img.getType() == BufferedImage.TYPE_INT_ARGB)
+				&& raster.getDataBuffer() instanceof DataBufferInt
+				&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+			int base = raster.getDataBuffer().getOffset() - ty * stride - tx;
+			int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+			if (img.getType() == BufferedImage.TYPE_INT_RGB) {
+				return new RowSource(img, 2, 3, null, null, pixels, base, stride);
+			}
+			return new RowSource(img, 6, 4, null, null, pixels, base, stride);
+		}
+		boolean alpha = img.getColorModel().hasAlpha();
+		return new RowSource(img, alpha ? 6 : 2, alpha ? 4 : 3, null, null, null, 0, 0);
+	}
+
+	/**
+	 * Converts the rows of an image to PNG samples.
+	 */
+	private static class RowSource {
+
+		final BufferedImage img;
+
+		final int colorType;
+
+		final int bpp;
+
+		final IndexColorModel palette;
+
+		final int width;
+
+		// the palette indexes or packed pixels if they can be read directly, else null
+		final byte[] indexes;
+
+		final int[] pixels;
+
+		// position of the first sample of the first row and distance between rows
+		final int base;
+
+		final int stride;
+
+		RowSource(BufferedImage img, int colorType, int bpp, IndexColorModel palette, byte[] indexes, int[] pixels,
+				int base, int stride) {
+			this.img = img;
+			this.colorType = colorType;
+			this.bpp = bpp;
+			this.palette = palette;
+			this.width = img.getWidth();
+			this.indexes = indexes;
+			this.pixels = pixels;
+			this.base = base;
+			this.stride = stride;
+		}
+
+		/**
+		 * @param y the row
+		 * @param row the target buffer, length is width * bpp
+		 * @param argb a buffer for conversions, length is width
+		 */
+		void read(int y, byte[] row, int[] argb) {
+			if (indexes != null) {
+				System.arraycopy(indexes, base + y * stride, row, 0, width);
+				return;
+			}
+			int[] pixels;
+			int off;
+			if (this.pixels != null) {
+				pixels = this.pixels;
+				off = base + y * stride;
+			}
+			else {
+				pixels = img.getRGB(0, y, width, 1, argb, 0, width);
+				off = 0;
+			}
+			if (bpp == 4) {
+				for (int x = 0, i = 0; x < width; ++x) {
+					int p = pixels[off + x];
+					row[i++] = (byte) (p >>> 16);
+					row[i++] = (byte) (p >>> 8);
+					row[i++] = (byte) p;
+					row[i++] = (byte) (p >>> 24);
+				}
+			}
+			else {
+				for (int x = 0, i = 0; x < width; ++x) {
+					int p = pixels[off + x];
+					row[i++] = (byte) (p >>> 16);
+					row[i++] = (byte) (p >>> 8);
+					row[i++] = (byte) p;
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * A range of rows that is filtered and compressed as one unit.
+	 */
+	private class Stripe {
+
+		private final RowSource source;
+
+		private final Filter filter;
+
+		private final int startRow;
+
+		private final int endRow;
+
+		private final boolean last;
+
+		long adler;
+
+		long length;
+
+		ByteArrayOutputStream compressed;
+
+		Stripe(RowSource source, Filter filter, int startRow, int endRow, boolean last) {
+			this.source = source;
+			this.filter = filter;
+			this.startRow = startRow;
+			this.endRow = endRow;
+			this.last = last;
+		}
+
+		void compress(OutputStream out) throws IOException {
+			int rowLength = source.width * source.bpp;
+			byte[] prev = new byte[rowLength];
+			byte[] cur = new byte[rowLength];
+			byte[] filtered = new byte[rowLength + 1];
+			byte[] best = new byte[rowLength + 1];
+			int[] argb = new int[source.width];
+			byte[] buf = new byte[IDAT_SIZE];
+			Adler32 checksum = new Adler32();
+
+			if (startRow > 0) {
+				source.read(startRow - 1, prev, argb);
+			}
+
+			Deflater deflater = DEFLATER.get();
+			deflater.reset();
+			deflater.setLevel(compressionLevel);
+			deflater.setStrategy(source.palette != null ? Deflater.DEFAULT_STRATEGY : Deflater.FILTERED);
+
+			for (int y = startRow; y < endRow; ++y) {
+				source.read(y, cur, argb);
+				byte[] row = filterRow(cur, prev, source.bpp, filtered, best);
+				checksum.update(row, 0, row.length);
+				length += row.length;
+				deflater.setInput(row, 0, row.length);
+				while (!deflater.needsInput()) {
+					int n = deflater.deflate(buf, 0, buf.length, Deflater.NO_FLUSH);
+					out.write(buf, 0, n);
+				}
+				byte[] tmp = prev;
+				prev = cur;
+				cur = tmp;
+			}
+
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int n = deflater.deflate(buf);
+					out.write(buf, 0, n);
+				}
+			}
+			else {
+				// flush to a byte boundary without marking the final block
+				int n;
+				do {
+					n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+					out.write(buf, 0, n);
+				}
+				while (n == buf.length);
+			}
+			deflater.reset();
+			adler = checksum.getValue();
+		}
+
+		private byte[] filterRow(byte[] cur, byte[] prev, int bpp, byte[] filtered, byte[] best) {
+			switch (filter) {
+				case NONE:
+					applyFilter(0, cur, prev, bpp, filtered);
+					return filtered;
+				case SUB:
+					applyFilter(1, cur, prev, bpp, filtered);
+					return filtered;
+				case UP:
+					applyFilter(2, cur, prev, bpp, filtered);
+					return filtered;
+				case AVERAGE:
+					applyFilter(3, cur, prev, bpp, filtered);
+					return filtered;
+				case PAETH:
+					applyFilter(4, cur, prev, bpp, filtered);
+					return filtered;
+				default:
+					// heuristic from the PNG specification: minimum sum of absolute
+					// differences
+					long bestSum = Long.MAX_VALUE;
+					byte[] result = best;
+					for (int type = 0; type < 5; ++type) {
+						long sum = applyFilter(type, cur, prev, bpp, filtered);
+						if (sum < bestSum) {
+							bestSum = sum;
+							byte[] tmp = result;
+							result = filtered;
+							filtered = tmp;
+						}
+					}
+					return result;
+			}
+		}
+
+	}
+
+	/**
+	 * @return the sum of the absolute values of the filtered bytes
+	 */
+	private static long applyFilter(int type, byte[] cur, byte[] prev, int bpp, byte[] out) {
+		out[0] = (byte) type;
+		long sum = 0;
+		int len = cur.length;
+		for (int i = 0; i < len; ++i) {
+			int x = cur[i] & 0xff;
+			int a = i >= bpp ? cur[i - bpp] & 0xff : 0;
+			int b = prev[i] & 0xff;
+			int v;
+			switch (type) {
+				case 1:
+					v = x - a;
+					break;
+				case 2:
+					v = x - b;
+					break;
+				case 3:
+					v = x - ((a + b) >>> 1);
+					break;
+				case 4:
+					int c = i >= bpp ? prev[i - bpp] & 0xff : 0;
+					v = x - paeth(a, b, c);
+					break;
+				default:
+					v = x;
+			}
+			byte f = (byte) v;
+			out[i + 1] = f;
+			sum += Math.abs(f);
+		}
+		return sum;
+	}
+
+	private static int paeth(int a, int b, int c) {
+		int p = a + b - c;
+		int pa = Math.abs(p - a);
+		int pb = Math.abs(p - b);
+		int pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc) {
+			return a;
+		}
+		return pb <= pc ? b : c;
+	}
+
+	/**
+	 * Splits the compressed data into IDAT chunks.
+	 */
+	private static class IdatOutputStream extends OutputStream {
+
+		private final OutputStream out;
+
+		private final byte[] buf = new byte[IDAT_SIZE];
+
+		private int len;
+
+		IdatOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		void writeZlibHeader() throws IOException {
+			write(0x78);
+			write(0x9c);
+		}
+
+		void writeAdler(long adler) throws IOException {
+			write((int) (adler >>> 24) & 0xff);
+			write((int) (adler >>> 16) & 0xff);
+			write((int) (adler >>> 8) & 0xff);
+			write((int) adler & 0xff);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (len == buf.length) {
+				flushChunk();
+			}
+			buf[len++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int n) throws IOException {
+			while (n > 0) {
+				if (len == buf.length) {
+					flushChunk();
+				}
+				int cnt = Math.min(n, buf.length - len);
+				System.arraycopy(b, off, buf, len, cnt);
+				len += cnt;
+				off += cnt;
+				n -= cnt;
+			}
+		}
+
+		private void flushChunk() throws IOException {
+			if (len > 0) {
+				writeChunk(out, "IDAT", buf, 0, len);
+				len = 0;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			flushChunk();
+		}
+
+	}
+
+}
@@ -0,0 +1,147 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.deegree.commons.utils.TunableParameter.get;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the {@link TextLayout}s of labels. Label texts tend to repeat a lot (street
+ * names, place names), so laying out the text once saves a lot of font metrics
+ * computations.
+ * <p>
+ * {@link TextLayout} is not documented to be thread-safe, so every thread keeps its own
+ * cache. The caches hold at most <code>deegree.cache.textlayout</code> layouts each and
+ * evict the least recently used layout when they are full.
+ * </p>
+ */
+class TextLayoutCache {
+
+	private static final int CACHE_SIZE = get("deegree.cache.textlayout", 512);
+
+	private static final ThreadLocal<LruCache> CACHE = new ThreadLocal<LruCache>() {
+		@Override
+		protected LruCache initialValue() {
+			return new LruCache(CACHE_SIZE);
+		}
+	};
+
+	private TextLayoutCache() {
+		// static methods only
+	}
+
+	/**
+	 * @param text the text to lay out, must not be <code>null</code> or empty
+	 * @param font the font, must not be <code>null</code>
+	 * @param frc the font render context of the target graphics, must not be
+	 * <code>null</code>
+	 * @return the text layout, never <code>null</code>
+	 */
+	static TextLayout getLayout(String text, Font font, FontRenderContext frc) {
+		if (CACHE_SIZE <= 0) {
+			return new TextLayout(text, font, frc);
+		}
+		LruCache cache = CACHE.get();
+		Key key = new Key(text, font, frc);
+		TextLayout layout = cache.get(key);
+		if (layout == null) {
+			layout = new TextLayout(text, font, frc);
+			cache.put(key, layout);
+		}
+		return layout;
+	}
+
+	/**
+	 * Map that evicts the least recently accessed entry once it holds more than the
+	 * given number of entries.
+	 */
+	static final class LruCache extends LinkedHashMap<Object, TextLayout> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+
+		LruCache(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, TextLayout> eldest) {
+			return size() > maxSize;
+		}
+
+	}
+
+	private static final class Key {
+
+		private final String text;
+
+		private final Font font;
+
+		private final FontRenderContext frc;
+
+		private final int hash;
+
+		Key(String text, Font font, FontRenderContext frc) {
+			this.text = text;
+			this.font = font;
+			this.frc = frc;
+			this.hash = Objects.hash(text, font, frc);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) obj;
+			return text.equals(that.text) && font.equals(that.font) && frc.equals(that.frc);
+		}
+
+	}
+
+}
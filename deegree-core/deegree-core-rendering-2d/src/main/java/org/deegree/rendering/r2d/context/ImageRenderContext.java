@@ -56,6 +56,7 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.deegree.rendering.r2d.PngImageSerializer;
 import org.deegree.style.utils.ColorQuantizer;
 import org.deegree.style.utils.ImageUtils;
 
@@ -94,6 +95,27 @@ public class ImageRenderContext extends Java2DRenderContext {
 		return new ImageRenderContext(info, image, image.createGraphics(), outputStream);
 	}
 
+	/**
+	 * Creates a context that renders into an image which is not written anywhere on
+	 * {@link #close()}. Use {@link #getImage()} to access the rendered image, eg. to
+	 * composite it into another context.
+	 * @param info the rendering info, never <code>null</code>
+	 * @return a new off-screen render context, never <code>null</code>
+	 */
+	public static ImageRenderContext createOffscreenInstance(RenderingInfo info) {
+		BufferedImage image = ImageUtils.prepareImage(info.getFormat(), info.getWidth(), info.getHeight(),
+				info.getTransparent(), info.getBgColor());
+
+		return new ImageRenderContext(info, image, image.createGraphics(), null);
+	}
+
+	/**
+	 * @return the image this context renders into, never <code>null</code>
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
 	@Override
 	public boolean close() throws IOException {
 		try {
@@ -113,6 +135,9 @@ public class ImageRenderContext extends Java2DRenderContext {
 				if (info.getSerializer() != null) {
 					info.getSerializer().serialize(info, image, outputStream);
 				}
+				else if (format.equals("png") && PngImageSerializer.getDefaultInstance() != null) {
+					PngImageSerializer.getDefaultInstance().serialize(info, image, outputStream);
+				}
 				else {
 					return write(image, format, outputStream);
 				}
@@ -129,6 +154,7 @@ public class ImageRenderContext extends Java2DRenderContext {
 		applyQuality(options);
 		applyInterpolation(options);
 		applyAntialias(options);
+		renderer.setGeneralizationTolerance(options.getGeneralizationTolerance());
 	}
 
 	private void applyAntialias(MapOptions options) {
@@ -31,6 +31,15 @@ public class LazyImageRenderContext implements RenderContext {
 		this.outputStream = outputStream;
 	}
 
+	/**
+	 * Creates the target image from the rendering info (size, format, background) if it
+	 * does not exist yet. Images painted afterwards are composited onto it instead of
+	 * becoming the target image themselves.
+	 */
+	public void createTargetImage() {
+		getRenderContext();
+	}
+
 	private RenderContext getRenderContext() {
 		if (renderContext == null) {
 			LOG.debug("Constructing ImageRenderContext with empty image");
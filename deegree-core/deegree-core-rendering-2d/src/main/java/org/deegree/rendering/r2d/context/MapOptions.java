@@ -54,8 +54,10 @@ public class MapOptions {
 
 	private Integer featureInfoDecimalPlaces;
 
+	private double generalizationTolerance;
+
 	private MapOptions(Quality quality, Interpolation interpol, Antialias antialias, int maxFeatures,
-			int featureInfoRadius, boolean opaque, Integer featureInfoDecimalPlaces) {
+			int featureInfoRadius, boolean opaque, Integer featureInfoDecimalPlaces, double generalizationTolerance) {
 		this.quality = quality;
 		this.interpol = interpol;
 		this.antialias = antialias;
@@ -63,6 +65,7 @@ public class MapOptions {
 		this.featureInfoRadius = featureInfoRadius;
 		this.opaque = opaque;
 		this.featureInfoDecimalPlaces = featureInfoDecimalPlaces;
+		this.generalizationTolerance = generalizationTolerance;
 	}
 
 	/**
@@ -169,6 +172,22 @@ public class MapOptions {
 		this.featureInfoDecimalPlaces = featureInfoDecimalPlaces;
 	}
 
+	/**
+	 * @return the generalization tolerance in pixels, a value < 0 means default, 0 means
+	 * disabled and > 0 for the tolerance
+	 */
+	public double getGeneralizationTolerance() {
+		return generalizationTolerance;
+	}
+
+	/**
+	 * @param generalizationTolerance the generalization tolerance in pixels, a value < 0
+	 * means default, 0 means disabled and > 0 for the tolerance
+	 */
+	public void setGeneralizationTolerance(double generalizationTolerance) {
+		this.generalizationTolerance = generalizationTolerance;
+	}
+
 	/**
 	 * <code>Quality</code>
 	 *
@@ -303,6 +322,8 @@ public class MapOptions {
 
 		private Integer featureInfoDecimalPlaces;
 
+		private double generalizationTolerance = -1;
+
 		/**
 		 * @param quality the quality to set
 		 */
@@ -362,9 +383,18 @@ public class MapOptions {
 			return this;
 		}
 
+		/**
+		 * @param generalizationTolerance the generalization tolerance in pixels, a value
+		 * < 0 means default, 0 means disabled and > 0 for the tolerance
+		 */
+		public Builder generalizationTolerance(double generalizationTolerance) {
+			this.generalizationTolerance = generalizationTolerance;
+			return this;
+		}
+
 		public MapOptions build() {
 			return new MapOptions(quality, interpolation, antialias, maxFeatures, featureInfoRadius, opaque,
-					featureInfoDecimalPlaces);
+					featureInfoDecimalPlaces, generalizationTolerance);
 		}
 
 	}
@@ -54,6 +54,19 @@ public class MapOptionsHelper {
 		insertInterpolation(layer, options, layerDefaults, globalDefaults);
 		insertMaxFeatures(layer, options, layerDefaults, globalDefaults);
 		insertRadius(layer, options, layerDefaults, globalDefaults);
+		insertGeneralizationTolerance(layer, options, layerDefaults, globalDefaults);
+	}
+
+	private static void insertGeneralizationTolerance(String layer, MapOptionsMaps options, MapOptions layerDefaults,
+			MapOptions globalDefaults) {
+		if (options.getGeneralizationTolerance(layer) < 0) {
+			if (layerDefaults != null) {
+				options.setGeneralizationTolerance(layer, layerDefaults.getGeneralizationTolerance());
+			}
+			if (options.getGeneralizationTolerance(layer) < 0) {
+				options.setGeneralizationTolerance(layer, globalDefaults.getGeneralizationTolerance());
+			}
+		}
 	}
 
 	private static void insertRadius(String layer, MapOptionsMaps options, MapOptions layerDefaults,
@@ -88,6 +88,11 @@ public class MapOptionsMaps {
 		return opts == null ? -1 : opts.getFeatureInfoRadius();
 	}
 
+	public double getGeneralizationTolerance(String layer) {
+		MapOptions opts = options.get(layer);
+		return opts == null ? -1 : opts.getGeneralizationTolerance();
+	}
+
 	public Quality getQuality(String layer) {
 		MapOptions opts = options.get(layer);
 		return opts == null ? null : opts.getQuality();
@@ -121,6 +126,15 @@ public class MapOptionsMaps {
 		}
 	}
 
+	public void setGeneralizationTolerance(String layer, double tolerance) {
+		if (options.get(layer) == null) {
+			options.put(layer, new MapOptions.Builder().generalizationTolerance(tolerance).build());
+		}
+		else {
+			options.get(layer).setGeneralizationTolerance(tolerance);
+		}
+	}
+
 	public void setQuality(String layer, Quality q) {
 		if (options.get(layer) == null) {
 			options.put(layer, new MapOptions.Builder().quality(q).build());
@@ -154,6 +168,7 @@ public class MapOptionsMaps {
 			.antialias(getAntialias(layer))
 			.maxFeatures(getMaxFeatures(layer))
 			.featureInfoRadius(getFeatureInfoRadius(layer))
+			.generalizationTolerance(getGeneralizationTolerance(layer))
 			.build();
 	}
 
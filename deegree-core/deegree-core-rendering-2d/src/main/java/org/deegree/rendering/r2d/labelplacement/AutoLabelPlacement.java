@@ -38,14 +38,17 @@ import static org.slf4j.LoggerFactory.getLogger;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.deegree.rendering.r2d.Label;
 import org.deegree.rendering.r2d.Renderer;
-import org.deegree.rendering.r2d.RendererContext;
 import org.deegree.rendering.r2d.Java2DRenderer;
 import org.deegree.style.utils.UomCalculator;
 
+import org.locationtech.jts.index.strtree.STRtree;
+
 /**
  * <code>Automatic Label Placement, based on org.deegree.graphics.optimizers.LabelOptimizer from deegree2 </code>
  *
@@ -55,6 +58,10 @@ import org.deegree.style.utils.UomCalculator;
  * The labeling and optimization approach uses ideas from papers by Ingo Petzold on
  * automated label placement.
  * <p>
+ * The labels that may overlap at all are determined once using a spatial index, so
+ * evaluating a changed position only needs to look at the neighbours of a label. The
+ * number of overlaps is tracked per label, which allows to concentrate on the labels
+ * that actually have conflicts.
  *
  * @author <a href="mailto:schmitz@lat-lon.de">Andreas Schmitz</a>
  * @author Florian Bingel
@@ -64,10 +71,37 @@ public class AutoLabelPlacement {
 
 	private static final Logger LOG = getLogger(AutoLabelPlacement.class);
 
+	/**
+	 * Default maximum time spent on optimizing the label positions, in milliseconds.
+	 */
+	public static final long DEFAULT_TIME_BUDGET = 1000;
+
+	private static final int INTERSECTION_PENALTY = 40;
+
 	private ArrayList<PointLabelPositionOptions> labelPositionsList;
 
-	// collision matrix of PointLabelPositionOptions that may overlap
-	private boolean[][] collisionMatrix;
+	// indices of the PointLabelPositionOptions that may overlap, per label
+	private int[][] neighbours;
+
+	// number of labels the selected position of a label overlaps with
+	private int[] conflicts;
+
+	// indices of the labels with conflicts, and the index of each label in that array
+	private int[] conflicted;
+
+	private int[] conflictedIndex;
+
+	private int numConflicted;
+
+	private final Random rand;
+
+	// moves accepted since the best placement was found, as pairs of label index and
+	// former position
+	private int[] undoLog = new int[64];
+
+	private int undoLogSize;
+
+	private final long deadline;
 
 	float placementQuality = 0.0f;
 
@@ -79,6 +113,23 @@ public class AutoLabelPlacement {
 	 * @param labelList List of Labels to optimize
 	 */
 	public AutoLabelPlacement(List<Label> labelList, Renderer renderer) throws Exception {
+		this(labelList, renderer, DEFAULT_TIME_BUDGET);
+	}
+
+	/**
+	 * Finds optimized {@link Label} positions for all Labels in the List. Labels should
+	 * have {@link TextStyling}.auto set to true
+	 * @param labelList List of Labels to optimize
+	 * @param timeBudget maximum time to spend on optimizing, in milliseconds. If it is
+	 * exceeded, the best placement found so far is used
+	 */
+	public AutoLabelPlacement(List<Label> labelList, Renderer renderer, long timeBudget) throws Exception {
+		this(labelList, renderer, timeBudget, new Random());
+	}
+
+	AutoLabelPlacement(List<Label> labelList, Renderer renderer, long timeBudget, Random rand) throws Exception {
+		this.rand = rand;
+		deadline = System.currentTimeMillis() + timeBudget;
 
 		UomCalculator uomCalculator = ((Java2DRenderer) renderer).rendererContext.uomCalculator;
 
@@ -91,7 +142,7 @@ public class AutoLabelPlacement {
 		LOG.debug("Added {} Labels of {} to auto placement", labelPositionsList.size(), labelList.size());
 
 		if (labelPositionsList.size() > 1) {
-			buildCollisionMatrix();
+			findNeighbours();
 
 			// do the magic
 			try {
@@ -115,19 +166,25 @@ public class AutoLabelPlacement {
 
 		objectiveFunction();
 		float currentQuality = placementQuality + intersectionQuality;
+		float bestQuality = currentQuality;
 
 		double temperature = 1.0;
 		int counter = 0;
 		int successCounter = 0;
-		// int failCounter = 0;
-		java.util.Random rand = new java.util.Random();
 
 		int n = labelPositionsList.size();
+		int maxIterations = Math.max(2500, 10 * n);
 
 		LOG.debug("Starting Annealing with value: {}, trying to reach: {}", currentQuality, (n + 0.8 * 40));
 		long now = System.currentTimeMillis();
 
-		while (counter <= 2500 && currentQuality > (n + 0.8 * 40)) {
+		while (counter <= maxIterations && currentQuality > (n + 0.8 * 40)) {
+
+			if ((counter & 0xff) == 0
+					&& (System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted())) {
+				LOG.debug("Time budget for label placement exceeded, stopping.");
+				break;
+			}
 
 			counter++;
 			if (successCounter == 5) {
@@ -135,16 +192,19 @@ public class AutoLabelPlacement {
 				temperature *= 0.9;
 			}
 
-			// choose one Label from the list randomly
-			int choiceIndex = rand.nextInt(n);
-			// int choiceIndex = (int) ( Math.random() * ( n - 1 ) + 0.5 );
+			// choose one Label randomly, preferably one that overlaps with others
+			int choiceIndex;
+			if (numConflicted > 0 && rand.nextInt(10) < 8) {
+				choiceIndex = conflicted[rand.nextInt(numConflicted)];
+			}
+			else {
+				choiceIndex = rand.nextInt(n);
+			}
 			PointLabelPositionOptions choice = labelPositionsList.get(choiceIndex);
 
 			int oldPos = choice.getSelectedIndex();
-			int oldIntersectionQuality = intersectionQuality;
-			float oldPlacementQuality = placementQuality;
 
-			updateChoiceAndQuality(choice, choiceIndex);
+			move(choiceIndex, rand.nextInt(PointLabelPositionOptions.qualities.length));
 
 			float quality = placementQuality + intersectionQuality;
 
@@ -153,24 +213,32 @@ public class AutoLabelPlacement {
 				// yes -> keep it
 				currentQuality = quality;
 				successCounter++;
-				// failCounter = 0;
+				logMove(choiceIndex, oldPos);
 			}
 			else {
 				// no -> only keep it with a certain probability
-				if (Math.random() < temperature) {
+				if (rand.nextDouble() < temperature) {
 					currentQuality = quality;
-					// failCounter = 0;
+					logMove(choiceIndex, oldPos);
 				}
 				else {
 					// change it back to the old placement
-					choice.select(oldPos);
-					intersectionQuality = oldIntersectionQuality;
-					placementQuality = oldPlacementQuality;
-					// failCounter++;
+					move(choiceIndex, oldPos);
 				}
 			}
+			if (currentQuality < bestQuality) {
+				bestQuality = currentQuality;
+				undoLogSize = 0;
+			}
 		}
 
+		// return to the best placement, a worse one may have been accepted since
+		while (undoLogSize > 0) {
+			undoLogSize -= 2;
+			move(undoLog[undoLogSize], undoLog[undoLogSize + 1]);
+		}
+		currentQuality = placementQuality + intersectionQuality;
+
 		long duration = System.currentTimeMillis() - now;
 
 		LOG.debug("Final value: {}, needed {} iterations", currentQuality, counter);
@@ -178,79 +246,103 @@ public class AutoLabelPlacement {
 				(int) ((double) duration / (double) counter * 1000));
 	}
 
+	private void logMove(int index, int oldPos) {
+		if (undoLogSize == undoLog.length) {
+			undoLog = Arrays.copyOf(undoLog, undoLogSize * 2);
+		}
+		undoLog[undoLogSize++] = index;
+		undoLog[undoLogSize++] = oldPos;
+	}
+
 	/**
-	 * Builds the collision matrix for all <code>PointLabelPositionOptions</code>.
+	 * Determines the neighbours of all <code>PointLabelPositionOptions</code>, ie. the
+	 * labels whose possible positions may overlap.
 	 */
-	private void buildCollisionMatrix() {
+	private void findNeighbours() {
 
 		long now = System.currentTimeMillis();
-		collisionMatrix = new boolean[labelPositionsList.size()][labelPositionsList.size()];
+		int n = labelPositionsList.size();
 
-		for (int i = 0; i < labelPositionsList.size(); i++) {
-			PointLabelPositionOptions choice1 = labelPositionsList.get(i);
+		STRtree index = new STRtree();
+		for (int i = 0; i < n; i++) {
+			index.insert(labelPositionsList.get(i).getTotalEnvelope(), i);
+		}
+		index.build();
 
-			for (int j = i + 1; j < labelPositionsList.size(); j++) {
-				PointLabelPositionOptions choice2 = labelPositionsList.get(j);
-				collisionMatrix[i][j] = choice1.intersectsAny(choice2);
+		neighbours = new int[n][];
+		int[] buf = new int[16];
+		for (int i = 0; i < n; i++) {
+			PointLabelPositionOptions choice1 = labelPositionsList.get(i);
+			int cnt = 0;
+			for (Object o : index.query(choice1.getTotalEnvelope())) {
+				int j = (Integer) o;
+				if (j != i && choice1.intersectsAny(labelPositionsList.get(j))) {
+					if (cnt == buf.length) {
+						buf = Arrays.copyOf(buf, cnt * 2);
+					}
+					buf[cnt++] = j;
+				}
 			}
-
+			neighbours[i] = Arrays.copyOf(buf, cnt);
 		}
 
-		LOG.debug("Building of collision matrix took: {} millis.", (System.currentTimeMillis() - now));
+		conflicts = new int[n];
+		conflicted = new int[n];
+		conflictedIndex = new int[n];
+		Arrays.fill(conflictedIndex, -1);
+
+		LOG.debug("Finding label neighbours took: {} millis.", (System.currentTimeMillis() - now));
 	}
 
 	/**
-	 * Updates the quality value for the currently selected combination of {@link Label}s
-	 * and lets the label select a new random position
-	 * @param changedLabel the label which is chosen to be changed
-	 * @param choice the index of the choice in the labelPositionsList
+	 * Selects a new position for a label and updates the quality values and conflict
+	 * counts.
+	 * @param index the index of the label in the labelPositionsList
+	 * @param position the new position
 	 */
-	private void updateChoiceAndQuality(PointLabelPositionOptions changedLabel, int choice) {
+	private void move(int index, int position) {
+		PointLabelPositionOptions label = labelPositionsList.get(index);
 
-		int changedLabelIntersectionQuality = 0;
+		updateConflicts(index, -1);
+		placementQuality -= label.getQuality();
 
-		// calculate, how much the (to bee) changedLabel does contribute to the
-		// intersectionQuality
-		for (int i = 0; i < choice; i++) {
-			PointLabelPositionOptions choice1 = labelPositionsList.get(i);
-			if (collisionMatrix[i][choice] && (changedLabel.intersectsSelection(choice1))) {
-				changedLabelIntersectionQuality += 40;
-			}
-		}
+		label.select(position);
 
-		for (int i = choice + 1; i < labelPositionsList.size(); i++) {
-			PointLabelPositionOptions choice1 = labelPositionsList.get(i);
-			if (collisionMatrix[choice][i] && (changedLabel.intersectsSelection(choice1))) {
-				changedLabelIntersectionQuality += 40;
-			}
-		}
-
-		// subtract the qualities of the label which is going to be changed
-		intersectionQuality -= changedLabelIntersectionQuality;
-		placementQuality -= changedLabel.getQuality();
-
-		// select a new position randomly
-		changedLabel.selectLabelPositionRandomly();
+		placementQuality += label.getQuality();
+		updateConflicts(index, 1);
+	}
 
-		// calculate, how much the changedLabel does contribute to the intersectionQuality
-		changedLabelIntersectionQuality = 0;
-		for (int i = 0; i < choice; i++) {
-			PointLabelPositionOptions choice1 = labelPositionsList.get(i);
-			if (collisionMatrix[i][choice] && (changedLabel.intersectsSelection(choice1))) {
-				changedLabelIntersectionQuality += 40;
+	/**
+	 * Adds or removes the overlaps of the selected position of a label with its
+	 * neighbours.
+	 * @param index the index of the label in the labelPositionsList
+	 * @param delta 1 to add the overlaps, -1 to remove them
+	 */
+	private void updateConflicts(int index, int delta) {
+		PointLabelPositionOptions label = labelPositionsList.get(index);
+		for (int j : neighbours[index]) {
+			if (label.intersectsSelection(labelPositionsList.get(j))) {
+				conflicts[index] += delta;
+				conflicts[j] += delta;
+				intersectionQuality += delta * INTERSECTION_PENALTY;
+				updateConflicted(j);
 			}
 		}
+		updateConflicted(index);
+	}
 
-		for (int i = choice + 1; i < labelPositionsList.size(); i++) {
-			PointLabelPositionOptions choice1 = labelPositionsList.get(i);
-			if (collisionMatrix[choice][i] && (changedLabel.intersectsSelection(choice1))) {
-				changedLabelIntersectionQuality += 40;
-			}
+	private void updateConflicted(int index) {
+		int pos = conflictedIndex[index];
+		if (conflicts[index] > 0 && pos < 0) {
+			conflicted[numConflicted] = index;
+			conflictedIndex[index] = numConflicted++;
+		}
+		else if (conflicts[index] == 0 && pos >= 0) {
+			int last = conflicted[--numConflicted];
+			conflicted[pos] = last;
+			conflictedIndex[last] = pos;
+			conflictedIndex[index] = -1;
 		}
-
-		// add the new qualities
-		intersectionQuality += changedLabelIntersectionQuality;
-		placementQuality += changedLabel.getQuality();
 	}
 
 	/**
@@ -265,18 +357,19 @@ public class AutoLabelPlacement {
 
 		for (int i = 0; i < labelPositionsList.size(); i++) {
 			PointLabelPositionOptions choice1 = labelPositionsList.get(i);
-			// placementQuality += choice1.getQuality() + 1.0f;
 			placementQuality += choice1.getQuality();
 
-			for (int j = i + 1; j < labelPositionsList.size(); j++) {
-				if (collisionMatrix[i][j]) {
-					PointLabelPositionOptions choice2 = labelPositionsList.get(j);
-					if (choice1.intersectsSelection(choice2)) {
-						intersectionQuality += 40;
-					}
+			for (int j : neighbours[i]) {
+				if (j > i && choice1.intersectsSelection(labelPositionsList.get(j))) {
+					conflicts[i]++;
+					conflicts[j]++;
+					intersectionQuality += INTERSECTION_PENALTY;
 				}
 			}
 		}
+		for (int i = 0; i < labelPositionsList.size(); i++) {
+			updateConflicted(i);
+		}
 	}
 
 }
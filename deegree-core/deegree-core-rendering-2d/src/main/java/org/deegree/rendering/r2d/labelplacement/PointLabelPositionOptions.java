@@ -45,6 +45,7 @@ import org.deegree.style.utils.UomCalculator;
 import org.slf4j.Logger;
 
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Polygon;
 
 /**
@@ -134,6 +135,13 @@ public class PointLabelPositionOptions {
 		return selMaxY;
 	}
 
+	/**
+	 * Returns the bounding box of all possible positions, including rotation.
+	 */
+	Envelope getTotalEnvelope() {
+		return totalPolygon.getEnvelopeInternal();
+	}
+
 	/**
 	 * Returns the quality of the current position.
 	 */
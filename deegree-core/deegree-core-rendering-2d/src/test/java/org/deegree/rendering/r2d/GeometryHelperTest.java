@@ -0,0 +1,119 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.geometry.primitive.Curve;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.locationtech.jts.io.ParseException;
+
+/**
+ * Test cases for the screen space generalization of {@link GeometryHelper}.
+ */
+public class GeometryHelperTest {
+
+	private GeometryHelper helper;
+
+	@Before
+	public void setup() {
+		helper = new GeometryHelper(new GeometryFactory().createEnvelope(0, 0, 100, 100, null), 100,
+				new AffineTransform());
+	}
+
+	@Test
+	public void fromCurveWithoutGeneralization() throws ParseException {
+		Path2D.Double path = helper.fromCurve(readCurve("LINESTRING (0 0, 0.1 0.1, 0.2 0.2, 5 0, 10 0)"), false);
+		assertEquals(5, countVertices(path));
+	}
+
+	@Test
+	public void fromCurveDropsRepeatedAndCollinearVertices() throws ParseException {
+		helper.setGeneralizationTolerance(1);
+		Path2D.Double path = helper.fromCurve(readCurve("LINESTRING (0 0, 0.1 0.1, 0.2 0.2, 5 0, 10 0)"), false);
+		assertEquals(2, countVertices(path));
+	}
+
+	@Test
+	public void fromCurveKeepsSpikes() throws ParseException {
+		helper.setGeneralizationTolerance(1);
+		Path2D.Double path = helper.fromCurve(readCurve("LINESTRING (0 0, 10 0, 5 0)"), false);
+		assertEquals(3, countVertices(path));
+	}
+
+	@Test
+	public void fromCurveKeepsRingsClosed() throws ParseException {
+		helper.setGeneralizationTolerance(1);
+		Path2D.Double path = helper.fromCurve(readCurve("LINESTRING (0 0, 10 0, 10.2 0.1, 10 10, 0 10, 0 0)"),
+				true);
+		PathIterator iter = path.getPathIterator(null);
+		int segType = -1;
+		int vertices = 0;
+		double[] coords = new double[6];
+		while (!iter.isDone()) {
+			segType = iter.currentSegment(coords);
+			if (segType != PathIterator.SEG_CLOSE) {
+				++vertices;
+			}
+			iter.next();
+		}
+		assertEquals(PathIterator.SEG_CLOSE, segType);
+		assertEquals(4, vertices);
+	}
+
+	private static Curve readCurve(String wkt) throws ParseException {
+		return (Curve) new WKTReader(null).read(wkt);
+	}
+
+	private static int countVertices(Path2D path) {
+		int cnt = 0;
+		double[] coords = new double[6];
+		for (PathIterator iter = path.getPathIterator(null); !iter.isDone(); iter.next()) {
+			if (iter.currentSegment(coords) != PathIterator.SEG_CLOSE) {
+				++cnt;
+			}
+		}
+		return cnt;
+	}
+
+}
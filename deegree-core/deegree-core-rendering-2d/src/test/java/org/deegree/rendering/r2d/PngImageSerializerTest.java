@@ -0,0 +1,142 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.style.utils.ColorQuantizer;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link PngImageSerializer}. The images are read back using ImageIO.
+ */
+public class PngImageSerializerTest {
+
+	@Test
+	public void testArgbImage() throws IOException {
+		BufferedImage img = createImage(TYPE_INT_ARGB, 300, 200);
+		assertSamePixels(img, roundTrip(new PngImageSerializer(), img));
+	}
+
+	@Test
+	public void testRgbImage() throws IOException {
+		BufferedImage img = createImage(TYPE_INT_RGB, 300, 200);
+		assertSamePixels(img, roundTrip(new PngImageSerializer(), img));
+	}
+
+	@Test
+	public void testIndexedImage() throws IOException {
+		BufferedImage img = ColorQuantizer.quantizeImage(createImage(TYPE_INT_ARGB, 300, 200), 256, false, false);
+		assertSamePixels(img, roundTrip(new PngImageSerializer(), img));
+	}
+
+	@Test
+	public void testArgbSubImage() throws IOException {
+		BufferedImage img = createImage(TYPE_INT_ARGB, 300, 200).getSubimage(17, 23, 150, 100);
+		assertSamePixels(img, roundTrip(new PngImageSerializer(), img));
+	}
+
+	@Test
+	public void testRgbSubImage() throws IOException {
+		BufferedImage img = createImage(TYPE_INT_RGB, 300, 200).getSubimage(0, 50, 299, 150);
+		assertSamePixels(img, roundTrip(new PngImageSerializer(), img));
+	}
+
+	@Test
+	public void testIndexedSubImage() throws IOException {
+		BufferedImage img = ColorQuantizer.quantizeImage(createImage(TYPE_INT_ARGB, 300, 200), 256, false, false)
+			.getSubimage(31, 7, 200, 150);
+		assertSamePixels(img, roundTrip(new PngImageSerializer(), img));
+	}
+
+	@Test
+	public void testAllFilters() throws IOException {
+		BufferedImage img = createImage(TYPE_INT_ARGB, 100, 100);
+		for (PngImageSerializer.Filter filter : PngImageSerializer.Filter.values()) {
+			PngImageSerializer serializer = new PngImageSerializer();
+			serializer.setFilter(filter.name());
+			assertSamePixels(img, roundTrip(serializer, img));
+		}
+	}
+
+	@Test
+	public void testParallelStripes() throws IOException {
+		BufferedImage img = createImage(TYPE_INT_ARGB, 512, 1000);
+		PngImageSerializer serializer = new PngImageSerializer();
+		serializer.setStripes(4);
+		assertSamePixels(img, roundTrip(serializer, img));
+	}
+
+	private static BufferedImage createImage(int type, int width, int height) {
+		BufferedImage img = new BufferedImage(width, height, type);
+		Graphics2D g = img.createGraphics();
+		Random rnd = new Random(42);
+		for (int i = 0; i < 200; ++i) {
+			g.setColor(new Color(rnd.nextInt(256), rnd.nextInt(256), rnd.nextInt(256), rnd.nextInt(256)));
+			g.fillOval(rnd.nextInt(width), rnd.nextInt(height), rnd.nextInt(100), rnd.nextInt(100));
+		}
+		g.dispose();
+		return img;
+	}
+
+	private static BufferedImage roundTrip(PngImageSerializer serializer, BufferedImage img) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		serializer.serialize(null, img, bos);
+		return ImageIO.read(new ByteArrayInputStream(bos.toByteArray()));
+	}
+
+	private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); ++y) {
+			for (int x = 0; x < expected.getWidth(); ++x) {
+				assertEquals("Pixel at " + x + "/" + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.rendering.r2d.TextLayoutCache.LruCache;
+import org.deegree.style.styling.TextStyling;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link TextLayoutCache}. The multithreaded label creation benchmark is
+ * only run if the system property <code>benchmark</code> is set to true.
+ */
+public class TextLayoutCacheTest {
+
+	private static final Font font = new Font("SansSerif", Font.PLAIN, 10);
+
+	private final FontRenderContext frc = new FontRenderContext(new AffineTransform(), true, false);
+
+	@Test
+	public void testLayoutIsReused() {
+		TextLayout layout = TextLayoutCache.getLayout("Bonn", font, frc);
+		assertSame(layout, TextLayoutCache.getLayout("Bonn", font, frc));
+		assertSame(layout,
+				TextLayoutCache.getLayout("Bonn", font, new FontRenderContext(new AffineTransform(), true, false)));
+	}
+
+	@Test
+	public void testLayoutDependsOnRenderContext() {
+		FontRenderContext scaled = new FontRenderContext(AffineTransform.getScaleInstance(2, 2), true, false);
+		assertNotSame(TextLayoutCache.getLayout("Bonn", font, frc), TextLayoutCache.getLayout("Bonn", font, scaled));
+	}
+
+	@Test
+	public void testLayoutIsNotSharedBetweenThreads() throws Exception {
+		TextLayout layout = TextLayoutCache.getLayout("Bonn", font, frc);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			TextLayout other = executor.submit(() -> TextLayoutCache.getLayout("Bonn", font, frc)).get();
+			assertNotSame(layout, other);
+			assertSame(other, executor.submit(() -> TextLayoutCache.getLayout("Bonn", font, frc)).get());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		LruCache cache = new LruCache(2);
+		TextLayout a = new TextLayout("a", font, frc);
+		cache.put("a", a);
+		cache.put("b", new TextLayout("b", font, frc));
+		assertSame(a, cache.get("a"));
+		cache.put("c", new TextLayout("c", font, frc));
+
+		assertEquals(2, cache.size());
+		assertTrue(cache.containsKey("a"));
+		assertFalse(cache.containsKey("b"));
+		assertTrue(cache.containsKey("c"));
+	}
+
+	@Test
+	public void benchmarkConcurrentLabelCreation() throws Exception {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		long singleThreaded = 0;
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			long labelsPerSecond = runBenchmark(threads, 200000);
+			if (threads == 1) {
+				singleThreaded = labelsPerSecond;
+			}
+			System.out.println(threads + " threads: " + labelsPerSecond + " labels per second, speed-up "
+					+ String.format("%.2f", (double) labelsPerSecond / singleThreaded));
+		}
+	}
+
+	private long runBenchmark(int threads, final int labelsPerThread) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int i = 0; i < threads; ++i) {
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						createLabels(labelsPerThread);
+						return null;
+					}
+				});
+			}
+			long t = System.nanoTime();
+			for (Future<Object> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+			t = System.nanoTime() - t;
+			long total = (long) threads * labelsPerThread;
+			return total * 1000000000L / t;
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void createLabels(int num) {
+		GeometryFactory fac = new GeometryFactory();
+		BufferedImage img = new BufferedImage(256, 256, TYPE_INT_ARGB);
+		Graphics2D g = img.createGraphics();
+		Java2DRenderer renderer = new Java2DRenderer(g, 256, 256, fac.createEnvelope(0, 0, 256, 256, null));
+		Java2DLabelRenderer labelRenderer = new Java2DLabelRenderer(renderer, new Java2DTextRenderer(renderer));
+		TextStyling styling = new TextStyling();
+		Point p = fac.createPoint(null, 128, 128, null);
+		for (int i = 0; i < num; ++i) {
+			// a realistic mix of repeated and unique texts
+			labelRenderer.createLabel(styling, font, "Street " + (i % 2000), p);
+		}
+		g.dispose();
+	}
+
+}
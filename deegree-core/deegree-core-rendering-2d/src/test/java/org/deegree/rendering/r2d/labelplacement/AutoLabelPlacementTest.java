@@ -0,0 +1,143 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.labelplacement;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.rendering.r2d.Java2DLabelRenderer;
+import org.deegree.rendering.r2d.Java2DRenderer;
+import org.deegree.rendering.r2d.Java2DTextRenderer;
+import org.deegree.rendering.r2d.Label;
+import org.deegree.style.styling.TextStyling;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link AutoLabelPlacement}. The benchmark is only run if the system
+ * property <code>benchmark</code> is set to true.
+ */
+public class AutoLabelPlacementTest {
+
+	private static final GeometryFactory fac = new GeometryFactory();
+
+	private static final Font font = new Font("SansSerif", Font.PLAIN, 10);
+
+	@Test
+	public void testOverlappingLabelsAreSeparated() throws Exception {
+		BufferedImage img = new BufferedImage(100, 100, TYPE_INT_ARGB);
+		Graphics2D g = img.createGraphics();
+		Java2DRenderer renderer = new Java2DRenderer(g, 100, 100, fac.createEnvelope(0, 0, 100, 100, null));
+		Java2DLabelRenderer labelRenderer = new Java2DLabelRenderer(renderer, new Java2DTextRenderer(renderer));
+		TextStyling styling = new TextStyling();
+		styling.auto = true;
+
+		List<Label> labels = new ArrayList<Label>();
+		labels.add(labelRenderer.createLabel(styling, font, "first", fac.createPoint(null, 50, 50, null)));
+		labels.add(labelRenderer.createLabel(styling, font, "second", fac.createPoint(null, 50, 50, null)));
+
+		new AutoLabelPlacement(labels, renderer, AutoLabelPlacement.DEFAULT_TIME_BUDGET, new Random(42));
+		g.dispose();
+
+		assertFalse(getDrawBounds(labels.get(0)).intersects(getDrawBounds(labels.get(1))));
+	}
+
+	@Test
+	public void benchmarkPlacement() throws Exception {
+		assumeTrue(Boolean.getBoolean("benchmark"));
+		for (int n : new int[] { 1000, 10000, 100000 }) {
+			runBenchmark(n);
+		}
+	}
+
+	private void runBenchmark(int n) throws Exception {
+		// keep the label density constant, about one label per 50x50 pixels
+		int size = (int) Math.sqrt(n) * 50;
+		BufferedImage img = new BufferedImage(1, 1, TYPE_INT_ARGB);
+		Graphics2D g = img.createGraphics();
+		Java2DRenderer renderer = new Java2DRenderer(g, size, size, fac.createEnvelope(0, 0, size, size, null));
+		Java2DLabelRenderer labelRenderer = new Java2DLabelRenderer(renderer, new Java2DTextRenderer(renderer));
+		TextStyling styling = new TextStyling();
+		styling.auto = true;
+
+		Random rnd = new Random(42);
+		List<Label> labels = new ArrayList<Label>(n);
+		for (int i = 0; i < n; ++i) {
+			labels.add(labelRenderer.createLabel(styling, font, "Label " + i,
+					fac.createPoint(null, rnd.nextDouble() * size, rnd.nextDouble() * size, null)));
+		}
+
+		long t = System.currentTimeMillis();
+		new AutoLabelPlacement(labels, renderer, Long.MAX_VALUE / 2, new Random(42));
+		t = System.currentTimeMillis() - t;
+		g.dispose();
+
+		System.out.println("Placed " + n + " labels in " + t + " ms, " + countOverlaps(labels) + " overlaps left.");
+	}
+
+	private static int countOverlaps(List<Label> labels) {
+		List<Rectangle2D> boxes = new ArrayList<Rectangle2D>(labels.size());
+		for (Label l : labels) {
+			boxes.add(getDrawBounds(l));
+		}
+		boxes.sort((a, b) -> Double.compare(a.getMinX(), b.getMinX()));
+		int cnt = 0;
+		for (int i = 0; i < boxes.size(); ++i) {
+			Rectangle2D a = boxes.get(i);
+			for (int j = i + 1; j < boxes.size() && boxes.get(j).getMinX() < a.getMaxX(); ++j) {
+				if (a.intersects(boxes.get(j))) {
+					++cnt;
+				}
+			}
+		}
+		return cnt;
+	}
+
+	private static Rectangle2D getDrawBounds(Label l) {
+		Rectangle2D bounds = l.getLayout().getBounds();
+		return new Rectangle2D.Double(l.getDrawPosition().x, l.getDrawPosition().y - bounds.getHeight(),
+				bounds.getWidth(), bounds.getHeight());
+	}
+
+}
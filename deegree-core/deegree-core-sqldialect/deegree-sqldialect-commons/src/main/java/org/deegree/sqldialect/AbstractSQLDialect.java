@@ -34,9 +34,13 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.sqldialect;
 
+import org.deegree.commons.jdbc.SQLIdentifier;
 import org.deegree.commons.jdbc.TableName;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
 import org.slf4j.Logger;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -81,4 +85,25 @@ public abstract class AbstractSQLDialect implements SQLDialect {
 		return sql.toString();
 	}
 
+	@Override
+	public long estimateRowCount(Connection conn, TableName table) throws SQLException {
+		return -1;
+	}
+
+	@Override
+	public long estimateRowCount(Connection conn, String sql, List<SQLArgument> arguments) throws SQLException {
+		return -1;
+	}
+
+	@Override
+	public boolean isCopyCapable() {
+		return false;
+	}
+
+	@Override
+	public void copyRows(Connection conn, TableName table, List<SQLIdentifier> columns, List<Object[]> rows)
+			throws SQLException {
+		throw new UnsupportedOperationException("Bulk loading is not supported by " + getClass().getSimpleName());
+	}
+
 }
@@ -53,6 +53,7 @@ import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.PropertyNameMapper;
 import org.deegree.sqldialect.filter.UnmappableException;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
 
 /**
  * Implementations provide the vendor-specific behavior for a spatial DBMS so it can be
@@ -227,4 +228,47 @@ public interface SQLDialect {
 
 	String getOffsetAndFetchClause(int maxFeatures, int startIndex);
 
+	/**
+	 * Returns the number of rows in the given table as estimated by the database
+	 * statistics, without counting them.
+	 * @param conn JDBC connection, must not be <code>null</code>
+	 * @param table table, must not be <code>null</code>
+	 * @return estimated number of rows, or -1 if no estimate is available
+	 * @throws SQLException
+	 */
+	long estimateRowCount(Connection conn, TableName table) throws SQLException;
+
+	/**
+	 * Returns the number of rows returned by the given <code>SELECT</code> statement as
+	 * estimated by the query planner, without executing the statement.
+	 * @param conn JDBC connection, must not be <code>null</code>
+	 * @param sql <code>SELECT</code> statement, must not be <code>null</code>
+	 * @param arguments arguments of the statement, must not be <code>null</code>
+	 * @return estimated number of rows, or -1 if no estimate is available
+	 * @throws SQLException
+	 */
+	long estimateRowCount(Connection conn, String sql, List<SQLArgument> arguments) throws SQLException;
+
+	/**
+	 * Returns whether the DBMS offers a bulk loading mechanism (such as the PostgreSQL
+	 * <code>COPY</code> command) that can be used by {@link #copyRows}.
+	 * @return <code>true</code>, if {@link #copyRows} is supported, <code>false</code>
+	 * otherwise
+	 */
+	boolean isCopyCapable();
+
+	/**
+	 * Inserts rows into a table using the bulk loading mechanism of the DBMS.
+	 * @param conn JDBC connection, must not be <code>null</code>
+	 * @param table target table, must not be <code>null</code>
+	 * @param columns target columns, must not be <code>null</code>
+	 * @param rows values of the rows in the order of the columns, a <code>null</code>
+	 * value is inserted as <code>NULL</code>, must not be <code>null</code>
+	 * @throws SQLException
+	 * @throws UnsupportedOperationException if {@link #isCopyCapable()} returns
+	 * <code>false</code>
+	 */
+	void copyRows(Connection conn, TableName table, List<SQLIdentifier> columns, List<Object[]> rows)
+			throws SQLException;
+
 }
@@ -34,12 +34,18 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.sqldialect.postgis;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import net.postgis.jdbc.PGboxbase;
@@ -64,6 +70,8 @@ import org.deegree.sqldialect.SortCriterion;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.PropertyNameMapper;
 import org.deegree.sqldialect.filter.UnmappableException;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
+import org.postgresql.PGConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -97,6 +105,9 @@ public class PostGISDialect extends AbstractSQLDialect implements SQLDialect {
 	private static final boolean PROPERTY_CONSIDER_ALL_GEOM_COLUMNS = TunableParameter
 		.get("deegree.sqldialect.consider-all-geometry-columns", false);
 
+	// row estimate of the top-level node in the output of EXPLAIN (FORMAT JSON)
+	private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
+
 	private final String undefinedSrid;
 
 	private final boolean useLegacyPredicates;
@@ -332,4 +343,159 @@ public class PostGISDialect extends AbstractSQLDialect implements SQLDialect {
 		return sql.toString();
 	}
 
+	@Override
+	public long estimateRowCount(Connection conn, TableName table) throws SQLException {
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = conn.prepareStatement("SELECT reltuples::bigint FROM pg_class WHERE oid = ?::regclass");
+			stmt.setString(1, table.toString());
+			rs = stmt.executeQuery();
+			if (rs.next()) {
+				// reltuples is -1 (or 0 before PostgreSQL 14) if the table has never been analyzed
+				long estimate = rs.getLong(1);
+				return estimate > 0 ? estimate : -1;
+			}
+			return -1;
+		}
+		finally {
+			JDBCUtils.close(rs, stmt, null, LOG);
+		}
+	}
+
+	@Override
+	public long estimateRowCount(Connection conn, String sql, List<SQLArgument> arguments) throws SQLException {
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = conn.prepareStatement("EXPLAIN (FORMAT JSON) " + sql);
+			int i = 1;
+			for (SQLArgument argument : arguments) {
+				argument.setArgument(stmt, i++);
+			}
+			rs = stmt.executeQuery();
+			StringBuilder plan = new StringBuilder();
+			while (rs.next()) {
+				plan.append(rs.getString(1));
+			}
+			Matcher m = PLAN_ROWS.matcher(plan);
+			if (m.find()) {
+				return Long.parseLong(m.group(1));
+			}
+			LOG.debug("No row estimate found in query plan: {}", plan);
+			return -1;
+		}
+		finally {
+			JDBCUtils.close(rs, stmt, null, LOG);
+		}
+	}
+
+	@Override
+	public boolean isCopyCapable() {
+		return true;
+	}
+
+	@Override
+	public void copyRows(Connection conn, TableName table, List<SQLIdentifier> columns, List<Object[]> rows)
+			throws SQLException {
+		String cols = columns.stream().map(SQLIdentifier::toString).collect(Collectors.joining(","));
+		if (!conn.isWrapperFor(PGConnection.class)) {
+			LOG.debug("Connection does not provide the PostgreSQL COPY API, using a batch insert.");
+			insertRows(conn, table, cols, columns.size(), rows);
+			return;
+		}
+		String sql = "COPY " + table + " (" + cols + ") FROM STDIN";
+		LOG.debug("Copying {} rows: {}", rows.size(), sql);
+		StringBuilder data = new StringBuilder();
+		for (Object[] row : rows) {
+			appendCopyRow(data, row);
+		}
+		try {
+			conn.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(data.toString()));
+		}
+		catch (IOException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+	}
+
+	private void insertRows(Connection conn, TableName table, String cols, int numColumns, List<Object[]> rows)
+			throws SQLException {
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (").append(cols);
+		sql.append(") VALUES (");
+		for (int i = 0; i < numColumns; i++) {
+			sql.append(i > 0 ? ",?" : "?");
+		}
+		sql.append(")");
+		PreparedStatement stmt = null;
+		try {
+			stmt = conn.prepareStatement(sql.toString());
+			for (Object[] row : rows) {
+				for (int i = 0; i < row.length; i++) {
+					stmt.setObject(i + 1, row[i]);
+				}
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+		finally {
+			JDBCUtils.close(stmt);
+		}
+	}
+
+	/**
+	 * Appends a row in the text format of the PostgreSQL <code>COPY</code> command.
+	 * @param data buffer to append to, must not be <code>null</code>
+	 * @param row values of the row, must not be <code>null</code>
+	 */
+	static void appendCopyRow(StringBuilder data, Object[] row) {
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0) {
+				data.append('\t');
+			}
+			Object value = row[i];
+			if (value == null) {
+				data.append("\\N");
+			}
+			else if (value instanceof Boolean) {
+				data.append((Boolean) value ? 't' : 'f');
+			}
+			else if (value instanceof byte[]) {
+				// bytea hex format, the backslash itself needs to be escaped
+				data.append("\\\\x");
+				for (byte b : (byte[]) value) {
+					data.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+				}
+			}
+			else if (value instanceof BigDecimal) {
+				data.append(((BigDecimal) value).toPlainString());
+			}
+			else {
+				appendEscaped(data, value.toString());
+			}
+		}
+		data.append('\n');
+	}
+
+	private static void appendEscaped(StringBuilder data, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '\\':
+					data.append("\\\\");
+					break;
+				case '\t':
+					data.append("\\t");
+					break;
+				case '\n':
+					data.append("\\n");
+					break;
+				case '\r':
+					data.append("\\r");
+					break;
+				default:
+					data.append(c);
+			}
+		}
+	}
+
 }
@@ -64,6 +64,9 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
 
 	private final String srid;
 
+	// numeric srid (for tagging EWKB), null if the srid is not numeric
+	private final Integer ewkbSrid;
+
 	/**
 	 * Creates a new {@link PostGISGeometryConverter} instance.
 	 * @param column (unqualified) column that stores the geometry, must not be
@@ -78,6 +81,19 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
 		this.crs = crs;
 		this.srid = srid;
 		this.useLegacyPredicates = useLegacyPredicates;
+		this.ewkbSrid = parseSrid(srid);
+	}
+
+	private static Integer parseSrid(String srid) {
+		if (srid == null) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(srid.trim());
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
 	}
 
 	@Override
@@ -105,6 +121,10 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
 
 	@Override
 	public String getSetSnippet(Geometry particle) {
+		if (ewkbSrid != null) {
+			// srid is encoded in the EWKB
+			return useLegacyPredicates ? "GeomFromEWKB(?)" : "ST_GeomFromEWKB(?)";
+		}
 		StringBuilder sb = new StringBuilder();
 		if (useLegacyPredicates) {
 			sb.append("SetSRID(GeomFromWKB(?),");
@@ -123,7 +143,12 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
 		if (particle != null) {
 			try {
 				Geometry compatible = getCompatibleGeometry(particle);
-				wkb = WKBWriter.write(compatible);
+				if (ewkbSrid != null) {
+					wkb = WKBWriter.write(compatible, ewkbSrid);
+				}
+				else {
+					wkb = WKBWriter.write(compatible);
+				}
 			}
 			catch (Throwable t) {
 				throw new IllegalArgumentException(t.getMessage(), t);
@@ -0,0 +1,218 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.utils.DoublePair;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.geometry.Geometry;
+import org.deegree.style.styling.Styling;
+import org.deegree.style.styling.TextStyling;
+import org.slf4j.Logger;
+
+/**
+ * A {@link Style} prepared for evaluating a stream of features. In contrast to
+ * {@link Style#evaluate(Feature, XPathEvaluator)}, the results are written into
+ * reusable buffers, so evaluating a feature does not create any result lists or tuples.
+ * Symbolizers without expressions are not copied at all.
+ * <p>
+ * Instances are not thread safe, and the results of {@link #evaluate(Feature, XPathEvaluator)}
+ * are only valid until the next call. Use one instance per rendering pass.
+ * </p>
+ *
+ * @see Style#compile()
+ */
+public class CompiledStyle {
+
+	private static final Logger LOG = getLogger(CompiledStyle.class);
+
+	private final Style style;
+
+	private final Continuation<LinkedList<Symbolizer<?>>>[] rules;
+
+	private final Map<Symbolizer<?>, Continuation<StringBuffer>> labels;
+
+	private final boolean useDefault;
+
+	private final QName featureType;
+
+	private final LinkedList<Symbolizer<?>> symbolizers = new LinkedList<Symbolizer<?>>();
+
+	private final StringBuffer sb = new StringBuffer();
+
+	private Styling[] stylings = new Styling[4];
+
+	private ArrayList<Geometry>[] geometries = newGeometryBuffer(4);
+
+	private String[] texts = new String[4];
+
+	@SuppressWarnings("unchecked")
+	CompiledStyle(Style style) {
+		this.style = style;
+		List<Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair>> list = style.getRules();
+		rules = new Continuation[list.size()];
+		int i = 0;
+		for (Pair<Continuation<LinkedList<Symbolizer<?>>>, DoublePair> rule : list) {
+			rules[i++] = rule.first;
+		}
+		labels = new IdentityHashMap<Symbolizer<?>, Continuation<StringBuffer>>(style.getLabels());
+		useDefault = style.isUseDefault();
+		featureType = style.getFeatureType();
+	}
+
+	/**
+	 * Evaluates the style for the given feature. Access the results using
+	 * {@link #getStyling(int)}, {@link #getGeometries(int)} and {@link #getText(int)}.
+	 * @param f the feature to evaluate, must not be <code>null</code>
+	 * @param evaluator the evaluator to use for feature properties
+	 * @return the number of evaluated stylings
+	 */
+	public int evaluate(Feature f, XPathEvaluator<Feature> evaluator) {
+		if (useDefault) {
+			return evaluateDefault(f);
+		}
+
+		if (featureType != null && !f.getType().getName().equals(featureType)) {
+			LOG.debug("Not using style because feature type constraint does not match.");
+			return 0;
+		}
+
+		symbolizers.clear();
+		for (Continuation<LinkedList<Symbolizer<?>>> rule : rules) {
+			rule.evaluate(symbolizers, f, evaluator);
+		}
+
+		int cnt = 0;
+		String text = null;
+		for (Symbolizer<?> s : symbolizers) {
+			ensureCapacity(cnt + 1);
+			ArrayList<Geometry> geoms = geometries[cnt];
+			geoms.clear();
+			stylings[cnt] = (Styling) s.evaluate(f, evaluator, geoms);
+			Continuation<StringBuffer> label = labels.get(s);
+			if (label != null) {
+				sb.setLength(0);
+				label.evaluate(sb, f, evaluator);
+				text = sb.toString();
+			}
+			texts[cnt++] = text;
+		}
+		return cnt;
+	}
+
+	private int evaluateDefault(Feature f) {
+		List<Property> props = f.getGeometryProperties();
+		if (props == null) {
+			return 0;
+		}
+		int cnt = 0;
+		for (Property p : props) {
+			Geometry geom = (Geometry) p.getValue();
+			Styling styling = style.getDefaultStyling(geom);
+			if (styling == null) {
+				continue;
+			}
+			ensureCapacity(cnt + 1);
+			ArrayList<Geometry> geoms = geometries[cnt];
+			geoms.clear();
+			geoms.add(geom);
+			stylings[cnt] = styling;
+			texts[cnt++] = null;
+		}
+		return cnt;
+	}
+
+	private void ensureCapacity(int size) {
+		if (size <= stylings.length) {
+			return;
+		}
+		int len = stylings.length * 2;
+		stylings = Arrays.copyOf(stylings, len);
+		texts = Arrays.copyOf(texts, len);
+		ArrayList<Geometry>[] buf = newGeometryBuffer(len);
+		System.arraycopy(geometries, 0, buf, 0, geometries.length);
+		geometries = buf;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ArrayList<Geometry>[] newGeometryBuffer(int size) {
+		ArrayList<Geometry>[] buf = new ArrayList[size];
+		for (int i = 0; i < size; ++i) {
+			buf[i] = new ArrayList<Geometry>();
+		}
+		return buf;
+	}
+
+	/**
+	 * @param i index of the result, smaller than the last result of
+	 * {@link #evaluate(Feature, XPathEvaluator)}
+	 * @return the styling, may be a {@link TextStyling}
+	 */
+	public Styling getStyling(int i) {
+		return stylings[i];
+	}
+
+	/**
+	 * @param i index of the result, smaller than the last result of
+	 * {@link #evaluate(Feature, XPathEvaluator)}
+	 * @return the geometries to render with the styling, reused for the next feature
+	 */
+	public List<Geometry> getGeometries(int i) {
+		return geometries[i];
+	}
+
+	/**
+	 * @param i index of the result, smaller than the last result of
+	 * {@link #evaluate(Feature, XPathEvaluator)}
+	 * @return the label text, may be <code>null</code>
+	 */
+	public String getText(int i) {
+		return texts[i];
+	}
+
+}
@@ -235,21 +235,9 @@ public class Style implements Copyable<Style> {
 					LinkedList<Geometry> geometries = new LinkedList<Geometry>();
 					Geometry geom = (Geometry) p.getValue();
 					geometries.add(geom);
-					if (geom instanceof Point || geom instanceof MultiPoint) {
-						list.add(
-								new Triple<Styling, LinkedList<Geometry>, String>(defaultPointStyle, geometries, null));
-					}
-					else if (geom instanceof Curve || geom instanceof MultiCurve<?>
-							|| geom instanceof MultiLineString) {
-						list.add(new Triple<Styling, LinkedList<Geometry>, String>(defaultLineStyle, geometries, null));
-					}
-					else if (geom instanceof Surface || geom instanceof MultiSurface<?> || geom instanceof MultiPolygon
-							|| geom instanceof Envelope) {
-						list.add(new Triple<Styling, LinkedList<Geometry>, String>(defaultPolygonStyle, geometries,
-								null));
-					}
-					else {
-						LOG.error("Geometries of type '{}' are not supported/known. Please report!", geom.getClass());
+					Styling styling = getDefaultStyling(geom);
+					if (styling != null) {
+						list.add(new Triple<Styling, LinkedList<Geometry>, String>(styling, geometries, null));
 					}
 				}
 			}
@@ -284,6 +272,44 @@ public class Style implements Copyable<Style> {
 		return (LinkedList) res;
 	}
 
+	/**
+	 * @param geom
+	 * @return the default styling for the type of the geometry, null if the type is not
+	 * supported
+	 */
+	Styling getDefaultStyling(Geometry geom) {
+		if (geom instanceof Point || geom instanceof MultiPoint) {
+			return defaultPointStyle;
+		}
+		if (geom instanceof Curve || geom instanceof MultiCurve<?> || geom instanceof MultiLineString) {
+			return defaultLineStyle;
+		}
+		if (geom instanceof Surface || geom instanceof MultiSurface<?> || geom instanceof MultiPolygon
+				|| geom instanceof Envelope) {
+			return defaultPolygonStyle;
+		}
+		LOG.error("Geometries of type '{}' are not supported/known. Please report!", geom.getClass());
+		return null;
+	}
+
+	/**
+	 * Prepares this style for evaluating a large number of features, eg. when rendering
+	 * a layer. Use {@link #filter(double)} first to drop the rules that do not apply to
+	 * the current scale.
+	 * @return a new compiled style, never <code>null</code>
+	 */
+	public CompiledStyle compile() {
+		return new CompiledStyle(this);
+	}
+
+	boolean isUseDefault() {
+		return useDefault;
+	}
+
+	HashMap<Symbolizer<TextStyling>, Continuation<StringBuffer>> getLabels() {
+		return labels;
+	}
+
 	/**
 	 * @return the live list of rules
 	 */
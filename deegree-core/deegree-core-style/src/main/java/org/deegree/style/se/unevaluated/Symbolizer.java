@@ -37,6 +37,7 @@ package org.deegree.style.se.unevaluated;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -173,6 +174,41 @@ public class Symbolizer<T extends Styling<T>> {
 	 */
 	public Pair<T, LinkedList<Geometry>> evaluate(Feature f, XPathEvaluator<Feature> evaluator) {
 		LinkedList<Geometry> geoms = new LinkedList<Geometry>();
+		if (f == null) {
+			collectGeometries(f, evaluator, geoms);
+			return new Pair<T, LinkedList<Geometry>>(evaluated == null ? base.copy() : evaluated.copy(), geoms);
+		}
+		return new Pair<T, LinkedList<Geometry>>(evaluate(f, evaluator, geoms), geoms);
+	}
+
+	/**
+	 * Evaluates the styling for a feature and adds its geometries to the given
+	 * collection. If the symbolizer does not depend on feature properties, the shared
+	 * styling object is returned, else a new, evaluated copy.
+	 * @param f the feature, must not be <code>null</code>
+	 * @param evaluator
+	 * @param geoms the collection to add the geometries to, must not be
+	 * <code>null</code>
+	 * @return the styling, never <code>null</code>
+	 */
+	public T evaluate(Feature f, XPathEvaluator<Feature> evaluator, Collection<Geometry> geoms) {
+		collectGeometries(f, evaluator, geoms);
+
+		if (evaluated != null) {
+			return evaluated;
+		}
+
+		T evald = base.copy();
+		if (next == null) {
+			LOG.warn("Something wrong with SE/SLD parsing. No continuation found, and no evaluated style.");
+			return evald;
+		}
+
+		next.evaluate(evald, f, evaluator);
+		return evald;
+	}
+
+	private void collectGeometries(Feature f, XPathEvaluator<Feature> evaluator, Collection<Geometry> geoms) {
 		if (geometry != null && evaluator != null) {
 			try {
 				TypedObjectNode[] os = geometry.evaluate(f, evaluator);
@@ -226,37 +262,6 @@ public class Symbolizer<T extends Styling<T>> {
 				LOG.warn("Style was applied to a feature without a geometry.");
 			}
 		}
-
-		if (f == null) {
-			return new Pair<T, LinkedList<Geometry>>(evaluated == null ? base.copy() : evaluated.copy(), geoms);
-		}
-
-		// String id = f.getId();
-		// if ( id != null && cache.containsKey( id ) ) {
-		// return new Pair<T, LinkedList<Geometry>>( cache.get( id ), geoms );
-		// }
-
-		if (evaluated != null) {
-			Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>(evaluated, geoms);
-			// if ( id != null ) {
-			// cache.put( id, pair.first );
-			// }
-			return pair;
-		}
-
-		T evald = base.copy();
-		Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>(evald, geoms);
-		if (next == null) {
-			LOG.warn("Something wrong with SE/SLD parsing. No continuation found, and no evaluated style.");
-			return pair;
-		}
-
-		next.evaluate(evald, f, evaluator);
-		// if ( id != null ) {
-		// cache.put( id, pair.first );
-		// }
-
-		return pair;
 	}
 
 	/**
@@ -58,6 +58,8 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
 import java.awt.image.IndexColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 
 /*
  * Modifications by Juerg Lehni:
@@ -268,6 +270,10 @@ public class ColorQuantizer {
 
 	public static final int MAX_RGB = 255;
 
+	private static final int LOOKUP_CACHE_BITS = 12;
+
+	private static final int LOOKUP_CACHE_SIZE = 1 << LOOKUP_CACHE_BITS;
+
 	static class ClosestColor {
 
 		int distance;
@@ -467,26 +473,20 @@ public class ColorQuantizer {
 
 			// Classify the first 256 colors to a tree depth of MAX_TREE_DEPTH.
 			int levelThreshold = MAX_TREE_DEPTH;
-			// create a BufferedImage of only 1 pixel height for fetching the rows
-			// of the image in the correct format (ARGB)
-			// This speeds up things by more than factor 2, compared to the standard
-			// BufferedImage.getRGB solution
-			BufferedImage row = new BufferedImage(width, 1, BufferedImage.TYPE_INT_ARGB);
-			Graphics2D g2d = row.createGraphics();
-			int pixels[] = ((DataBufferInt) row.getRaster().getDataBuffer()).getData();
-			// make sure alpha values do not add up for each row:
-			g2d.setComposite(AlphaComposite.Src);
+			RowReader reader = new RowReader(image);
+			int pixels[] = reader.getPixels();
 			// calculate scanline by scanline in order to safe memory.
 			// It also seems to run faster like that
 			for (y = 0; y < height; y++) {
-				g2d.drawImage(image, null, 0, -y);
+				int off = reader.readRow(y);
+				int end = off + width;
 				// now pixels contains the rgb values of the row y!
 				if (this.numNodes > MAX_NODES) {
 					// Prune one level if the color tree is too large.
 					this.root.pruneLevel();
 					this.depth--;
 				}
-				for (x = 0; x < width;) {
+				for (x = off; x < end;) {
 					pixel = pixels[x];
 					red = (pixel >> 16) & 0xff;
 					green = (pixel >> 8) & 0xff;
@@ -497,7 +497,7 @@ public class ColorQuantizer {
 
 					// skip same pixels, but count them
 					px = x;
-					for (++x; x < width; x++)
+					for (++x; x < end; x++)
 						if (pixels[x] != pixel)
 							break;
 					count = x - px;
@@ -607,15 +607,13 @@ public class ColorQuantizer {
 				// convert to indexed color
 				byte[] dst = ((DataBufferByte) dest.getRaster().getDataBuffer()).getData();
 
-				// create a BufferedImage of only 1 pixel height for fetching
-				// the rows of the image in the correct format (ARGB)
-				// This speeds up things by more than factor 2, compared to the
-				// standard BufferedImage.getRGB solution
-				BufferedImage row = new BufferedImage(width, 1, BufferedImage.TYPE_INT_ARGB);
-				Graphics2D g2d = row.createGraphics();
-				int pixels[] = ((DataBufferInt) row.getRaster().getDataBuffer()).getData();
-				// make sure alpha values do not add up for each row:
-				g2d.setComposite(AlphaComposite.Src);
+				RowReader reader = new RowReader(image);
+				int pixels[] = reader.getPixels();
+				// map images contain few distinct colors, so remember the last
+				// lookups instead of walking the tree for every pixel
+				int[] cacheKeys = new int[LOOKUP_CACHE_SIZE];
+				byte[] cacheValues = new byte[LOOKUP_CACHE_SIZE];
+				boolean[] cacheUsed = new boolean[LOOKUP_CACHE_SIZE];
 				// calculate scanline by scanline in order to safe memory.
 				// It also seems to run faster like that
 				Node node;
@@ -623,11 +621,13 @@ public class ColorQuantizer {
 				int pixel, red, green, blue, alpha;
 				int pos = 0;
 				for (y = 0; y < height; y++) {
-					g2d.drawImage(image, null, 0, -y);
+					int off = reader.readRow(y);
+					int end = off + width;
 					// now pixels contains the rgb values of the row y!
 					// filter this row now:
-					for (x = 0; x < width;) {
+					for (x = off; x < end;) {
 						pixel = pixels[x];
+						int slot = (pixel * 0x9E3779B1) >>> (32 - LOOKUP_CACHE_BITS);
 						red = (pixel >> 16) & 0xff;
 						green = (pixel >> 8) & 0xff;
 						blue = (pixel >> 0) & 0xff;
@@ -637,7 +637,10 @@ public class ColorQuantizer {
 							alpha = alpha < 128 ? 0 : 0xff;
 
 						byte col;
-						if (alpha == 0 && this.addTransparency) {
+						if (cacheUsed[slot] && cacheKeys[slot] == pixel) {
+							col = cacheValues[slot];
+						}
+						else if (alpha == 0 && this.addTransparency) {
 							col = 0; // transparency color is at position 0 of color map
 						}
 						else {
@@ -657,12 +660,15 @@ public class ColorQuantizer {
 							node.parent.findClosestColor(red, green, blue, alpha, closest);
 							col = (byte) closest.colorIndex;
 						}
+						cacheKeys[slot] = pixel;
+						cacheValues[slot] = col;
+						cacheUsed[slot] = true;
 
 						// first color
 						dst[pos++] = col;
 
 						// next colors the same?
-						for (++x; x < width; x++) {
+						for (++x; x < end; x++) {
 							if (pixels[x] != pixel)
 								break;
 							dst[pos++] = col;
@@ -675,6 +681,74 @@ public class ColorQuantizer {
 
 	}
 
+	/**
+	 * Provides the rows of an image as ARGB pixels. Images of type TYPE_INT_ARGB are
+	 * read directly from their data buffer, all others are converted row by row.
+	 */
+	static class RowReader {
+
+		private final BufferedImage image;
+
+		private final int width;
+
+		private final boolean direct;
+
+		private final int[] pixels;
+
+		private Graphics2D g2d;
+
+		RowReader(BufferedImage image) {
+			this.image = image;
+			this.width = image.getWidth();
+			this.direct = isDirectlyReadable(image);
+			if (direct) {
+				pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			}
+			else {
+				// create a BufferedImage of only 1 pixel height for fetching the rows
+				// of the image in the correct format (ARGB)
+				// This speeds up things by more than factor 2, compared to the
+				// standard BufferedImage.getRGB solution
+				BufferedImage row = new BufferedImage(width, 1, BufferedImage.TYPE_INT_ARGB);
+				g2d = row.createGraphics();
+				pixels = ((DataBufferInt) row.getRaster().getDataBuffer()).getData();
+				// make sure alpha values do not add up for each row:
+				g2d.setComposite(AlphaComposite.Src);
+			}
+		}
+
+		private static boolean isDirectlyReadable(BufferedImage image) {
+			if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+				return false;
+			}
+			WritableRaster raster = image.getRaster();
+			if (!(raster.getDataBuffer() instanceof DataBufferInt)
+					|| !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+				return false;
+			}
+			SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+			return sm.getScanlineStride() == image.getWidth() && raster.getSampleModelTranslateX() == 0
+					&& raster.getSampleModelTranslateY() == 0 && raster.getDataBuffer().getOffset() == 0;
+		}
+
+		int[] getPixels() {
+			return pixels;
+		}
+
+		/**
+		 * @param y the row to read
+		 * @return the offset of the row in the pixel array
+		 */
+		int readRow(int y) {
+			if (direct) {
+				return y * width;
+			}
+			g2d.drawImage(image, null, 0, -y);
+			return 0;
+		}
+
+	}
+
 	public static BufferedImage quantizeImage(BufferedImage image, int maxColors, boolean dither,
 			boolean alphaToBitmask) {
 		Cube cube = new Cube(maxColors);
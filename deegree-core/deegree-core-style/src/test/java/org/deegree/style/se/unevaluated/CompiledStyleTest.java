@@ -0,0 +1,233 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.Triple;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.style.se.parser.SymbologyParser;
+import org.deegree.style.styling.LineStyling;
+import org.deegree.style.styling.PolygonStyling;
+import org.deegree.style.styling.Styling;
+import org.deegree.style.styling.TextStyling;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link CompiledStyle} evaluates features like
+ * {@link Style#evaluate(Feature, XPathEvaluator)}.
+ */
+public class CompiledStyleTest {
+
+	private static final String NS = "http://www.deegree.org/app";
+
+	private final SimplePropertyType name = new SimplePropertyType(new QName(NS, "name"), 0, 1, STRING, null, null);
+
+	private final SimplePropertyType type = new SimplePropertyType(new QName(NS, "type"), 0, 1, STRING, null, null);
+
+	private final SimplePropertyType width = new SimplePropertyType(new QName(NS, "width"), 0, 1, STRING, null, null);
+
+	private final GeometryPropertyType geometry = new GeometryPropertyType(new QName(NS, "geometry"), 0, 1, null,
+			null, GEOMETRY, DIM_2, BOTH);
+
+	private final FeatureType road = new GenericFeatureType(new QName(NS, "Road"),
+			Arrays.<PropertyType> asList(name, type, width, geometry), false);
+
+	private final FeatureType river = new GenericFeatureType(new QName(NS, "River"),
+			Arrays.<PropertyType> asList(name, type, width, geometry), false);
+
+	private final GeometryFactory geomFac = new GeometryFactory();
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private final XPathEvaluator<Feature> evaluator = (XPathEvaluator) new TypedObjectNodeXPathEvaluator();
+
+	private Style style;
+
+	@Before
+	public void setUp() throws Exception {
+		URL url = CompiledStyleTest.class.getResource("roads.xml");
+		XMLStreamReader in = XMLInputFactory.newInstance().createXMLStreamReader(url.toString(), url.openStream());
+		style = SymbologyParser.INSTANCE.parse(in);
+	}
+
+	@Test
+	public void testDefaultStyle() throws Exception {
+		Style defaultStyle = new Style();
+		CompiledStyle compiled = defaultStyle.compile();
+
+		Feature feature = createFeature(road, "Main Street", "main", "5",
+				geomFac.createPolygon(null, null, geomFac.createLinearRing(null, null,
+						new PackedPoints(null, new double[] { 0, 0, 10, 0, 10, 10, 0, 0 }, 2)),
+						Collections.<Ring> emptyList()));
+		assertSameResults(defaultStyle, compiled, feature, 1);
+		assertThat(compiled.getStyling(0) instanceof PolygonStyling, is(true));
+
+		assertSameResults(defaultStyle, compiled, createFeature(road, "Main Street", "main", "5", null), 0);
+	}
+
+	@Test
+	public void testFeatureTypeMismatch() throws Exception {
+		CompiledStyle compiled = style.compile();
+
+		assertSameResults(style, compiled, createFeature(river, "Rhine", "main", "5", createLine(0)), 0);
+	}
+
+	@Test
+	public void testRuleFiltersAndElseRule() throws Exception {
+		CompiledStyle compiled = style.compile();
+
+		assertSameResults(style, compiled, createFeature(road, "Main Street", "main", "5", createLine(0)), 5);
+		assertThat(compiled.getStyling(0) instanceof TextStyling, is(true));
+		assertThat(((LineStyling) compiled.getStyling(1)).stroke.width, is(5.0));
+
+		// only the else rule applies
+		assertSameResults(style, compiled, createFeature(road, "Side Street", "side", "2", createLine(1)), 1);
+		assertThat(((LineStyling) compiled.getStyling(0)).stroke.width, is(2.0));
+	}
+
+	@Test
+	public void testLabelIsCarriedOverToFollowingSymbolizers() throws Exception {
+		CompiledStyle compiled = style.compile();
+
+		assertSameResults(style, compiled, createFeature(road, "Main Street", "main", "5", createLine(0)), 5);
+		for (int i = 0; i < 5; i++) {
+			assertThat(compiled.getText(i), is("Main Street"));
+		}
+
+		// but not to the next feature
+		assertSameResults(style, compiled, createFeature(road, "Side Street", "side", "2", createLine(1)), 1);
+		assertThat(compiled.getText(0), is((String) null));
+	}
+
+	@Test
+	public void testBuffersAreReusedForConsecutiveFeatures() throws Exception {
+		CompiledStyle compiled = style.compile();
+
+		// more than the initial capacity of four results
+		Geometry first = createLine(0);
+		assertSameResults(style, compiled, createFeature(road, "Main Street", "main", "5", first), 5);
+		List<Geometry> geoms = compiled.getGeometries(0);
+		assertThat(compiled.getGeometries(4), is(Collections.singletonList(first)));
+
+		Geometry second = createLine(1);
+		assertSameResults(style, compiled, createFeature(road, "Side Street", "side", "2", second), 1);
+		assertThat(compiled.getGeometries(0), sameInstance(geoms));
+		assertThat(compiled.getGeometries(0), is(Collections.singletonList(second)));
+
+		Geometry third = createLine(2);
+		assertSameResults(style, compiled, createFeature(road, "High Street", "main", "8", third), 5);
+		assertThat(((LineStyling) compiled.getStyling(1)).stroke.width, is(8.0));
+		for (int i = 0; i < 5; i++) {
+			assertThat(compiled.getGeometries(i), is(Collections.singletonList(third)));
+		}
+	}
+
+	private void assertSameResults(Style style, CompiledStyle compiled, Feature feature, int expectedSize) {
+		LinkedList<Triple<Styling, LinkedList<Geometry>, String>> expected = style.evaluate(feature, evaluator);
+		int size = compiled.evaluate(feature, evaluator);
+
+		assertThat(expected.size(), is(expectedSize));
+		assertThat(size, is(expectedSize));
+		for (int i = 0; i < size; i++) {
+			Triple<Styling, LinkedList<Geometry>, String> result = expected.get(i);
+			assertThat(describe(compiled.getStyling(i)), is(describe(result.first)));
+			assertThat(compiled.getGeometries(i), is((List<Geometry>) result.second));
+			assertThat(compiled.getText(i), is(result.third));
+		}
+	}
+
+	private static String describe(Styling styling) {
+		if (styling instanceof LineStyling) {
+			LineStyling line = (LineStyling) styling;
+			return "line " + line.stroke.color + " " + line.stroke.width;
+		}
+		if (styling instanceof PolygonStyling) {
+			PolygonStyling polygon = (PolygonStyling) styling;
+			return "polygon " + polygon.fill.color + " " + polygon.stroke.color;
+		}
+		return styling.getClass().getSimpleName();
+	}
+
+	private Feature createFeature(FeatureType ft, String nameValue, String typeValue, String widthValue,
+			Geometry geom) {
+		List<Property> props = new ArrayList<Property>();
+		props.add(new GenericProperty(name, new PrimitiveValue(nameValue, new PrimitiveType(STRING))));
+		props.add(new GenericProperty(type, new PrimitiveValue(typeValue, new PrimitiveType(STRING))));
+		props.add(new GenericProperty(width, new PrimitiveValue(widthValue, new PrimitiveType(STRING))));
+		if (geom != null) {
+			props.add(new GenericProperty(geometry, geom));
+		}
+		return ft.newFeature(null, props, null);
+	}
+
+	private Geometry createLine(int offset) {
+		return geomFac.createLineString(null, null,
+				new PackedPoints(null, new double[] { offset, 0, offset, 10 }, 2));
+	}
+
+}
@@ -78,26 +78,44 @@ public class BBoxTracker {
 			catch (Exception e) {
 				LOG.warn("Unable to determine bbox of feature with id {}: {}", f.getId(), e.getMessage());
 			}
-			if (bbox != null) {
-				try {
-					if (bbox.getCoordinateSystem() == null) {
-						bbox.setCoordinateSystem(storageSrs);
-					}
-					if (bbox.getCoordinateSystem() != null && !bbox.getCoordinateSystem().equals(storageSrs)) {
-						GeometryTransformer transformer = new GeometryTransformer(storageSrs);
-						bbox = transformer.transform(bbox);
-					}
-					Envelope oldBBox = increaseBBoxes.get(f.getName());
-					if (oldBBox != null) {
-						bbox = oldBBox.merge(bbox);
-					}
-					increaseBBoxes.put(f.getName(), bbox);
+			increase(f.getName(), bbox, storageSrs);
+		}
+	}
+
+	/**
+	 * An update event for the specified feature type that sets a new geometry. The
+	 * envelope of the feature type is increased to include the geometry, it is not
+	 * shrunk if the update replaces a geometry at the border.
+	 * @param ft feature type to be updated, must not be <code>null</code>
+	 * @param bbox envelope of the new geometry, may be <code>null</code>
+	 * @param storageSrs srs of stored envelope, must not be <code>null</code>
+	 */
+	public void update(QName ft, Envelope bbox, ICRS storageSrs) {
+		if (!recalcFts.contains(ft)) {
+			increase(ft, bbox, storageSrs);
+		}
+	}
+
+	private void increase(QName ft, Envelope bbox, ICRS storageSrs) {
+		if (bbox != null) {
+			try {
+				if (bbox.getCoordinateSystem() == null) {
+					bbox.setCoordinateSystem(storageSrs);
+				}
+				if (bbox.getCoordinateSystem() != null && !bbox.getCoordinateSystem().equals(storageSrs)) {
+					GeometryTransformer transformer = new GeometryTransformer(storageSrs);
+					bbox = transformer.transform(bbox);
 				}
-				catch (Throwable t) {
-					LOG.error("Tracking bbox increase failed. Falling back to full recalculation. Error: {}",
-							t.getMessage());
-					recalcFts.add(f.getName());
+				Envelope oldBBox = increaseBBoxes.get(ft);
+				if (oldBBox != null) {
+					bbox = oldBBox.merge(bbox);
 				}
+				increaseBBoxes.put(ft, bbox);
+			}
+			catch (Throwable t) {
+				LOG.error("Tracking bbox increase failed. Falling back to full recalculation. Error: {}",
+						t.getMessage());
+				recalcFts.add(ft);
 			}
 		}
 	}
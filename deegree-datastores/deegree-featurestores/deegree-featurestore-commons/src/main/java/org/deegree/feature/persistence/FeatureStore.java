@@ -183,6 +183,10 @@ public interface FeatureStore extends Resource {
 
 	/**
 	 * Returns the number of features that are matched by the given query.
+	 * <p>
+	 * If the query carries the hint {@link Query.QueryHint#HINT_INEXACT_HITS}, the store
+	 * may return an estimate, or -1 if the number is not known (yet).
+	 * </p>
 	 * @param query query to be performed, must not be <code>null</code>
 	 * @return number of matching featuress
 	 * @throws FeatureStoreException if the query could not be performed
@@ -0,0 +1,70 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.geometry.Envelope;
+
+/**
+ * Gets notified about committed changes of {@link FeatureStore}s, eg. to invalidate
+ * cached renderings of the modified area. Listeners are registered using
+ * {@link FeatureStores#addChangeListener(FeatureStoreChangeListener)}.
+ */
+public interface FeatureStoreChangeListener {
+
+	/**
+	 * Called after a transaction on the given store has been committed successfully.
+	 * @param store the modified feature store, never <code>null</code>
+	 * @param ftName name of the modified feature type, may be <code>null</code> (unknown
+	 * feature types)
+	 * @param envelope envelope of the modified features, may be <code>null</code>
+	 * (unknown extent, everything has to be considered as modified)
+	 */
+	void featuresChanged(FeatureStore store, QName ftName, Envelope envelope);
+
+	/**
+	 * Called after the store determined a new envelope of a feature type in the
+	 * background, e.g. one that was not available when it was requested.
+	 * @param store the feature store, never <code>null</code>
+	 * @param ftName name of the feature type, never <code>null</code>
+	 * @param envelope the new envelope of the feature type, may be <code>null</code> (no
+	 * geometries or no instances)
+	 */
+	default void envelopeChanged(FeatureStore store, QName ftName, Envelope envelope) {
+		// nothing to do by default
+	}
+
+}
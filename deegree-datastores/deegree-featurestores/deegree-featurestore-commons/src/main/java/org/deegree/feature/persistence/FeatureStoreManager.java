@@ -84,6 +84,28 @@ public class FeatureStoreManager extends DefaultResourceManager<FeatureStore> {
 		super.startup(workspace);
 	}
 
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		// write envelope changes that are still waiting for the delayed persisting
+		if (bboxCache != null) {
+			persist(bboxCache);
+		}
+		for (BBoxPropertiesCache customBBoxCache : customBboxCaches.values()) {
+			persist(customBBoxCache);
+		}
+	}
+
+	private void persist(BBoxPropertiesCache cache) {
+		try {
+			cache.persist();
+		}
+		catch (IOException e) {
+			LOG.warn("Unable to persist envelope cache: {}", e.getMessage());
+			LOG.trace(e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * Returns the bbox_cache.properties file (which is created if not existing). As there
 	 * may be feature store specific bbox_cache_FEATURESTOE_ID.properties file the method
@@ -101,7 +123,7 @@ public class FeatureStoreManager extends DefaultResourceManager<FeatureStore> {
 	 * @return
 	 */
 	public BBoxCache getBBoxCache(String featureStoreId) {
-		if (customBboxCaches.containsValue(featureStoreId)) {
+		if (customBboxCaches.containsKey(featureStoreId)) {
 			return customBboxCaches.get(featureStoreId);
 		}
 		BBoxPropertiesCache customBBoxCache = getCustomBBoxCache(featureStoreId);
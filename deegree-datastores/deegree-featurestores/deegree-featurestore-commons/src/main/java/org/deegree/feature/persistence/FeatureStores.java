@@ -39,8 +39,15 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.xml.namespace.QName;
+
 import org.deegree.feature.types.FeatureType;
 import org.deegree.geometry.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author stranger
@@ -48,6 +55,10 @@ import org.deegree.geometry.Envelope;
  */
 public class FeatureStores {
 
+	private static final Logger LOG = LoggerFactory.getLogger(FeatureStores.class);
+
+	private static final List<FeatureStoreChangeListener> changeListeners = new CopyOnWriteArrayList<FeatureStoreChangeListener>();
+
 	/**
 	 * Ignores all errors, tries to aggregate all envelopes of all feature types.
 	 * @param fs
@@ -81,4 +92,58 @@ public class FeatureStores {
 		return env;
 	}
 
+	/**
+	 * Registers a listener that is notified about committed changes of all feature
+	 * stores.
+	 * @param listener listener to add, must not be <code>null</code>
+	 */
+	public static void addChangeListener(FeatureStoreChangeListener listener) {
+		changeListeners.add(listener);
+	}
+
+	/**
+	 * @param listener listener to remove, must not be <code>null</code>
+	 */
+	public static void removeChangeListener(FeatureStoreChangeListener listener) {
+		changeListeners.remove(listener);
+	}
+
+	/**
+	 * Notifies all registered listeners about a committed change. Exceptions thrown by
+	 * listeners are logged and do not affect the transaction.
+	 * @param store the modified feature store, must not be <code>null</code>
+	 * @param ftName name of the modified feature type, may be <code>null</code>
+	 * @param envelope envelope of the modified features, may be <code>null</code>
+	 */
+	public static void fireFeaturesChanged(FeatureStore store, QName ftName, Envelope envelope) {
+		for (FeatureStoreChangeListener listener : changeListeners) {
+			try {
+				listener.featuresChanged(store, ftName, envelope);
+			}
+			catch (Exception e) {
+				LOG.warn("Feature store change listener failed: {}", e.getMessage());
+				LOG.trace("Stack trace:", e);
+			}
+		}
+	}
+
+	/**
+	 * Notifies all registered listeners about an envelope that has been determined in
+	 * the background. Exceptions thrown by listeners are logged.
+	 * @param store the feature store, must not be <code>null</code>
+	 * @param ftName name of the feature type, must not be <code>null</code>
+	 * @param envelope new envelope of the feature type, may be <code>null</code>
+	 */
+	public static void fireEnvelopeChanged(FeatureStore store, QName ftName, Envelope envelope) {
+		for (FeatureStoreChangeListener listener : changeListeners) {
+			try {
+				listener.envelopeChanged(store, ftName, envelope);
+			}
+			catch (Exception e) {
+				LOG.warn("Feature store change listener failed: {}", e.getMessage());
+				LOG.trace("Stack trace:", e);
+			}
+		}
+	}
+
 }
@@ -46,12 +46,17 @@ import java.util.Enumeration;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.namespace.QName;
 
 import org.apache.commons.io.IOUtils;
 import org.deegree.commons.tom.ReferenceResolvingException;
 import org.deegree.commons.utils.StringUtils;
+import org.deegree.commons.utils.TunableParameter;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.cs.refs.coordinatesystem.CRSRef;
 import org.deegree.geometry.Envelope;
@@ -61,6 +66,11 @@ import org.slf4j.Logger;
 
 /**
  * {@link BBoxCache} based on a Java properties file.
+ * <p>
+ * Changes are written to the file in the background, after a short delay that collects
+ * subsequent changes into a single write. {@link #persist()} writes pending changes
+ * immediately.
+ * </p>
  *
  * @see BBoxCache
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
@@ -69,10 +79,16 @@ public class BBoxPropertiesCache implements BBoxCache {
 
 	private static final Logger LOG = getLogger(BBoxPropertiesCache.class);
 
+	private static final long PERSIST_DELAY = TunableParameter.get("deegree.bboxcache.persist-delay", 2000);
+
+	private static ScheduledExecutorService persister;
+
 	private final File propsFile;
 
 	private final Map<String, Envelope> ftNameToEnvelope = synchronizedMap(new TreeMap<String, Envelope>());
 
+	private ScheduledFuture<?> pendingPersist;
+
 	/**
 	 * Creates a new {@link BBoxPropertiesCache} instance.
 	 * @param propsFile properties file, must not be <code>null</code>
@@ -125,22 +141,38 @@ public class BBoxPropertiesCache implements BBoxCache {
 	@Override
 	public void set(QName ftName, Envelope bbox) {
 		ftNameToEnvelope.put(ftName.toString(), bbox);
+		schedulePersist();
+	}
 
-		// TODO really do this every time?
-		try {
-			persist();
+	@Override
+	public synchronized void persist() throws IOException {
+		if (pendingPersist != null) {
+			pendingPersist.cancel(false);
+			pendingPersist = null;
 		}
-		catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		write();
+	}
+
+	private synchronized void schedulePersist() {
+		if (PERSIST_DELAY <= 0) {
+			write();
+		}
+		else if (pendingPersist == null) {
+			pendingPersist = getPersister().schedule(this::persistScheduled, PERSIST_DELAY, TimeUnit.MILLISECONDS);
 		}
 	}
 
-	@Override
-	public synchronized void persist() throws IOException {
+	private synchronized void persistScheduled() {
+		pendingPersist = null;
+		write();
+	}
+
+	private synchronized void write() {
 		Properties props = new Properties();
-		for (String ftName : ftNameToEnvelope.keySet()) {
-			props.put(ftName, encodePropValue(ftNameToEnvelope.get(ftName)));
+		synchronized (ftNameToEnvelope) {
+			for (String ftName : ftNameToEnvelope.keySet()) {
+				props.put(ftName, encodePropValue(ftNameToEnvelope.get(ftName)));
+			}
 		}
 
 		FileOutputStream out = null;
@@ -156,6 +188,17 @@ public class BBoxPropertiesCache implements BBoxCache {
 		}
 	}
 
+	private static synchronized ScheduledExecutorService getPersister() {
+		if (persister == null) {
+			persister = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "bboxcache-persister");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return persister;
+	}
+
 	private Envelope decodePropValue(String s) {
 		if (s == null || s.isEmpty()) {
 			return null;
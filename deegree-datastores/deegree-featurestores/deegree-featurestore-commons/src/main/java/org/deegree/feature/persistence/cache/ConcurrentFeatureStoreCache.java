@@ -0,0 +1,421 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.deegree.commons.tom.ElementNode;
+import org.deegree.commons.tom.Reference;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Surface;
+
+/**
+ * {@link FeatureStoreCache} for concurrent access that limits the number of cached
+ * objects, their approximate memory consumption and optionally their time to live.
+ * <p>
+ * The cache is split into segments that are locked independently, each of them evicts
+ * its least recently used objects when one of the limits is exceeded. The memory
+ * consumption of an object is estimated from its properties and geometries when it is
+ * added. Hit, miss and eviction counts are recorded and can be read at any time, feature
+ * stores publish them as MBean (see {@link ConcurrentFeatureStoreCacheMBean}).
+ * </p>
+ *
+ * @see FeatureStore
+ */
+public class ConcurrentFeatureStoreCache implements FeatureStoreCache, ConcurrentFeatureStoreCacheMBean {
+
+	/**
+	 * Type under which the caches of feature stores are published as MBeans.
+	 */
+	public static final String MBEAN_TYPE = "FeatureStoreCache";
+
+	/**
+	 * Default limit of the approximate memory consumption: 64 MB.
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+	private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private static final int MAX_SEGMENTS = 16;
+
+	private static final int MIN_SEGMENT_ENTRIES = 64;
+
+	private static final int MAX_NESTING_DEPTH = 16;
+
+	private static final long OBJECT_WEIGHT = 64;
+
+	private static final long PROPERTY_WEIGHT = 32;
+
+	private static final long NON_LINEAR_GEOMETRY_WEIGHT = 1024;
+
+	private final Segment[] segments;
+
+	private final long timeToLive;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a new {@link ConcurrentFeatureStoreCache} instance that allows to store a
+	 * default number of entries using at most {@link #DEFAULT_MAX_WEIGHT} bytes.
+	 */
+	public ConcurrentFeatureStoreCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT, 0);
+	}
+
+	/**
+	 * Creates a new {@link ConcurrentFeatureStoreCache} instance.
+	 * @param maxEntries maximum number of cached objects, must be positive
+	 * @param maxWeight maximum approximate memory consumption of all cached objects (in
+	 * bytes), 0 for no limit
+	 * @param timeToLive time after which a cached object expires (in milliseconds), 0 for
+	 * no expiration
+	 */
+	public ConcurrentFeatureStoreCache(int maxEntries, long maxWeight, long timeToLive) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("Maximum number of cache entries must be positive.");
+		}
+		int numSegments = 1;
+		while (numSegments < MAX_SEGMENTS && numSegments * 2 * MIN_SEGMENT_ENTRIES <= maxEntries) {
+			numSegments *= 2;
+		}
+		segments = new Segment[numSegments];
+		int segmentEntries = (maxEntries + numSegments - 1) / numSegments;
+		long segmentWeight = maxWeight > 0 ? Math.max(1, maxWeight / numSegments) : 0;
+		for (int i = 0; i < numSegments; i++) {
+			segments[i] = new Segment(segmentEntries, segmentWeight);
+		}
+		this.timeToLive = MILLISECONDS.toNanos(timeToLive);
+	}
+
+	@Override
+	public GMLObject get(String id) {
+		Segment segment = getSegment(id);
+		GMLObject obj = null;
+		synchronized (segment) {
+			CacheEntry entry = segment.map.get(id);
+			if (entry != null) {
+				if (entry.expires != 0 && System.nanoTime() - entry.expires > 0) {
+					segment.remove(id);
+					evictions.increment();
+				}
+				else {
+					obj = entry.obj;
+				}
+			}
+		}
+		if (obj != null) {
+			hits.increment();
+		}
+		else {
+			misses.increment();
+		}
+		return obj;
+	}
+
+	@Override
+	public void add(GMLObject obj) {
+		long weight = estimateWeight(obj, 0);
+		long expires = 0;
+		if (timeToLive > 0) {
+			// 0 is reserved for "never expires"
+			expires = (System.nanoTime() + timeToLive) | 1;
+		}
+		CacheEntry entry = new CacheEntry(obj, weight, expires);
+		Segment segment = getSegment(obj.getId());
+		int evicted;
+		synchronized (segment) {
+			evicted = segment.put(obj.getId(), entry);
+		}
+		if (evicted > 0) {
+			evictions.add(evicted);
+		}
+	}
+
+	@Override
+	public void remove(String id) {
+		Segment segment = getSegment(id);
+		synchronized (segment) {
+			segment.remove(id);
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.map.clear();
+				segment.weight = 0;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of successful lookups.
+	 * @return number of cache hits
+	 */
+	@Override
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a (valid) object.
+	 * @return number of cache misses
+	 */
+	@Override
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of objects that have been removed because a limit was exceeded
+	 * or their time to live passed. Explicitly removed objects are not counted.
+	 * @return number of evictions
+	 */
+	@Override
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the ratio of hits to all lookups.
+	 * @return hit rate between 0 and 1, 0 if no lookup has been performed yet
+	 */
+	@Override
+	public double getHitRate() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * Returns the number of currently cached objects (including expired ones that have
+	 * not been looked up since).
+	 * @return number of cached objects
+	 */
+	@Override
+	public int getSize() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.map.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the approximate memory consumption of the currently cached objects.
+	 * @return estimated weight in bytes
+	 */
+	@Override
+	public long getWeight() {
+		long weight = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				weight += segment.weight;
+			}
+		}
+		return weight;
+	}
+
+	@Override
+	public String toString() {
+		return "entries=" + getSize() + ", weight=" + getWeight() + ", hits=" + getHitCount() + ", misses="
+				+ getMissCount() + ", evictions=" + getEvictionCount();
+	}
+
+	private Segment getSegment(String id) {
+		int h = id.hashCode();
+		h ^= h >>> 16;
+		return segments[h & (segments.length - 1)];
+	}
+
+	/**
+	 * Estimates the memory consumption of the given node. Referenced objects are not
+	 * followed, geometries are weighted by their number of ordinates.
+	 */
+	static long estimateWeight(TypedObjectNode node, int depth) {
+		if (node == null) {
+			return 0;
+		}
+		if (node instanceof Reference<?>) {
+			return OBJECT_WEIGHT;
+		}
+		if (node instanceof PrimitiveValue) {
+			String text = ((PrimitiveValue) node).getAsText();
+			return PROPERTY_WEIGHT + (text != null ? 2L * text.length() : 0);
+		}
+		if (node instanceof Geometry) {
+			return estimateWeight((Geometry) node);
+		}
+		if (depth > MAX_NESTING_DEPTH) {
+			return OBJECT_WEIGHT;
+		}
+		long weight = OBJECT_WEIGHT;
+		if (node instanceof GMLObject) {
+			for (Property prop : ((GMLObject) node).getProperties()) {
+				weight += PROPERTY_WEIGHT + estimateWeight(prop.getValue(), depth + 1);
+			}
+		}
+		else if (node instanceof ElementNode) {
+			ElementNode element = (ElementNode) node;
+			if (element.getAttributes() != null) {
+				for (PrimitiveValue attr : element.getAttributes().values()) {
+					weight += estimateWeight(attr, depth + 1);
+				}
+			}
+			if (element.getChildren() != null) {
+				for (TypedObjectNode child : element.getChildren()) {
+					weight += estimateWeight(child, depth + 1);
+				}
+			}
+		}
+		return weight;
+	}
+
+	private static long estimateWeight(Geometry geom) {
+		try {
+			if (geom instanceof Point) {
+				return OBJECT_WEIGHT;
+			}
+			if (geom instanceof Curve) {
+				return OBJECT_WEIGHT + estimateWeight(((Curve) geom).getControlPoints());
+			}
+			if (geom instanceof Surface) {
+				Surface surface = (Surface) geom;
+				long weight = OBJECT_WEIGHT + estimateWeight(surface.getExteriorRingCoordinates());
+				for (Points interior : surface.getInteriorRingsCoordinates()) {
+					weight += estimateWeight(interior);
+				}
+				return weight;
+			}
+			if (geom instanceof MultiGeometry<?>) {
+				long weight = OBJECT_WEIGHT;
+				for (Geometry member : (MultiGeometry<?>) geom) {
+					weight += estimateWeight(member);
+				}
+				return weight;
+			}
+		}
+		catch (IllegalArgumentException e) {
+			// non-linear curve segments or surface patches
+		}
+		return NON_LINEAR_GEOMETRY_WEIGHT;
+	}
+
+	private static long estimateWeight(Points points) {
+		return OBJECT_WEIGHT + 8L * points.size() * Math.max(2, points.getDimension());
+	}
+
+	private static class CacheEntry {
+
+		private final GMLObject obj;
+
+		private final long weight;
+
+		private final long expires;
+
+		private CacheEntry(GMLObject obj, long weight, long expires) {
+			this.obj = obj;
+			this.weight = weight;
+			this.expires = expires;
+		}
+
+	}
+
+	/**
+	 * Part of the cache guarded by its own monitor, entries are kept in access order.
+	 */
+	private static class Segment {
+
+		private final LinkedHashMap<String, CacheEntry> map = new LinkedHashMap<String, CacheEntry>(16, 0.75f,
+				true);
+
+		private final int maxEntries;
+
+		private final long maxWeight;
+
+		private long weight;
+
+		private Segment(int maxEntries, long maxWeight) {
+			this.maxEntries = maxEntries;
+			this.maxWeight = maxWeight;
+		}
+
+		private int put(String id, CacheEntry entry) {
+			CacheEntry old = map.put(id, entry);
+			if (old != null) {
+				weight -= old.weight;
+			}
+			weight += entry.weight;
+			int evicted = 0;
+			Iterator<Map.Entry<String, CacheEntry>> iter = map.entrySet().iterator();
+			while (iter.hasNext() && (map.size() > maxEntries || (maxWeight > 0 && weight > maxWeight))) {
+				weight -= iter.next().getValue().weight;
+				iter.remove();
+				evicted++;
+			}
+			return evicted;
+		}
+
+		private void remove(String id) {
+			CacheEntry old = map.remove(id);
+			if (old != null) {
+				weight -= old.weight;
+			}
+		}
+
+	}
+
+}
@@ -76,7 +76,12 @@ public class Query {
 		/** If present, the store can use a different LOD for the scale. */
 		HINT_SCALE,
 		/** If present, the store can simplify geometries according to the resolution. */
-		HINT_RESOLUTION
+		HINT_RESOLUTION,
+		/**
+		 * If present, the store may return an estimate or -1 (unknown) instead of the
+		 * exact number of hits.
+		 */
+		HINT_INEXACT_HITS
 
 	}
 
@@ -96,6 +101,8 @@ public class Query {
 
 	private int startIndex = 0;
 
+	private String startAfter;
+
 	private final List<ProjectionClause> projections;
 
 	/**
@@ -207,10 +214,42 @@ public class Query {
 		return this.strict;
 	}
 
+	/**
+	 * Sets the id of the last feature of the previous page. {@link FeatureStore}
+	 * implementations that support keyset paging may use it to continue the result set
+	 * directly after this feature instead of skipping {@link #getStartIndex()} features.
+	 * @param startAfter id of the last feature of the previous page, may be
+	 * <code>null</code>
+	 */
+	public void setStartAfter(String startAfter) {
+		this.startAfter = startAfter;
+	}
+
+	/**
+	 * @return the id of the last feature of the previous page, may be <code>null</code>
+	 */
+	public String getStartAfter() {
+		return startAfter;
+	}
+
 	public Object getHint(QueryHint code) {
 		return hints.get(code);
 	}
 
+	/**
+	 * Sets the value of a hint for the {@link FeatureStore}.
+	 * @param code hint, must not be <code>null</code>
+	 * @param value value of the hint, <code>null</code> removes the hint
+	 */
+	public void setHint(QueryHint code, Object value) {
+		if (value == null) {
+			hints.remove(code);
+		}
+		else {
+			hints.put(code, value);
+		}
+	}
+
 	/**
 	 * Tries to extract a {@link BBOX} constraint from the query {@link Filter} that can
 	 * be used as a pre-filtering step to narrow the result set.
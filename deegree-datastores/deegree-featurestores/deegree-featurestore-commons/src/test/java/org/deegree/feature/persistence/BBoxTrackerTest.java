@@ -0,0 +1,111 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BBoxTracker}.
+ */
+public class BBoxTrackerTest {
+
+	private static final QName FT = new QName("http://www.deegree.org/app", "Road");
+
+	private static final ICRS CRS = CRSManager.getCRSRef("EPSG:4326");
+
+	private final GeometryFactory fac = new GeometryFactory();
+
+	@Test
+	public void testUpdateIncreasesEnvelope() {
+		BBoxTracker tracker = new BBoxTracker();
+		tracker.update(FT, fac.createEnvelope(0, 0, 1, 1, CRS), CRS);
+		tracker.update(FT, fac.createEnvelope(2, -1, 3, 0.5, CRS), CRS);
+
+		Envelope env = tracker.getIncreaseBBoxes().get(FT);
+		assertThat(env.getMin().get0(), is(0.0));
+		assertThat(env.getMin().get1(), is(-1.0));
+		assertThat(env.getMax().get0(), is(3.0));
+		assertThat(env.getMax().get1(), is(1.0));
+		assertThat(tracker.getRecalcFeatureTypes().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testUpdateAssignsStorageCrs() {
+		BBoxTracker tracker = new BBoxTracker();
+		tracker.update(FT, fac.createEnvelope(0, 0, 1, 1, null), CRS);
+
+		assertThat(tracker.getIncreaseBBoxes().get(FT).getCoordinateSystem(), sameInstance(CRS));
+	}
+
+	@Test
+	public void testUpdateWithoutEnvelope() {
+		BBoxTracker tracker = new BBoxTracker();
+		tracker.update(FT, null, CRS);
+
+		assertThat(tracker.getIncreaseBBoxes().isEmpty(), is(true));
+		assertThat(tracker.getRecalcFeatureTypes().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testUpdateAfterRecalculationIsIgnored() {
+		BBoxTracker tracker = new BBoxTracker();
+		tracker.update(FT);
+		tracker.update(FT, fac.createEnvelope(0, 0, 1, 1, CRS), CRS);
+
+		assertThat(tracker.getIncreaseBBoxes().get(FT), nullValue());
+		assertThat(tracker.getRecalcFeatureTypes().contains(FT), is(true));
+	}
+
+	@Test
+	public void testDeleteRequiresRecalculation() {
+		BBoxTracker tracker = new BBoxTracker();
+		tracker.update(FT, fac.createEnvelope(0, 0, 1, 1, CRS), CRS);
+		tracker.delete(FT);
+
+		assertThat(tracker.getRecalcFeatureTypes().contains(FT), is(true));
+	}
+
+}
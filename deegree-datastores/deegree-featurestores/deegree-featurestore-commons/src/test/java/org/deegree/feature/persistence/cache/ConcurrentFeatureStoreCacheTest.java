@@ -0,0 +1,232 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentFeatureStoreCache}.
+ */
+public class ConcurrentFeatureStoreCacheTest {
+
+	/** Estimated weight of an object without properties. */
+	private static final long WEIGHT = 64;
+
+	@Test
+	public void testEvictionByWeight() {
+		ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache(100, 3 * WEIGHT, 0);
+		GMLObject a = createObject("a");
+		cache.add(a);
+		cache.add(createObject("b"));
+		cache.add(createObject("c"));
+		assertThat(cache.getWeight(), is(3 * WEIGHT));
+
+		// "a" becomes the most recently used object, so "b" is evicted
+		assertThat(cache.get("a"), sameInstance(a));
+		cache.add(createObject("d"));
+
+		assertThat(cache.getSize(), is(3));
+		assertThat(cache.getWeight(), is(3 * WEIGHT));
+		assertThat(cache.getEvictionCount(), is(1L));
+		assertThat(cache.get("b"), nullValue());
+		assertThat(cache.get("a"), sameInstance(a));
+	}
+
+	@Test
+	public void testEvictionByEntries() {
+		ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache(2, 0, 0);
+		cache.add(createObject("a"));
+		cache.add(createObject("b"));
+		cache.add(createObject("c"));
+
+		assertThat(cache.getSize(), is(2));
+		assertThat(cache.getEvictionCount(), is(1L));
+		assertThat(cache.get("a"), nullValue());
+	}
+
+	@Test
+	public void testReplaceKeepsWeight() {
+		ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache(100, 0, 0);
+		cache.add(createObject("a"));
+		GMLObject replacement = createObject("a");
+		cache.add(replacement);
+
+		assertThat(cache.getSize(), is(1));
+		assertThat(cache.getWeight(), is(WEIGHT));
+		assertThat(cache.get("a"), sameInstance(replacement));
+	}
+
+	@Test
+	public void testRemoveAndClear() {
+		ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache(100, 0, 0);
+		cache.add(createObject("a"));
+		cache.add(createObject("b"));
+		cache.remove("a");
+
+		assertThat(cache.getSize(), is(1));
+		assertThat(cache.getWeight(), is(WEIGHT));
+		assertThat(cache.getEvictionCount(), is(0L));
+
+		cache.clear();
+		assertThat(cache.getSize(), is(0));
+		assertThat(cache.getWeight(), is(0L));
+	}
+
+	@Test
+	public void testTimeToLive()
+			throws InterruptedException {
+		ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache(100, 0, 1);
+		cache.add(createObject("a"));
+		Thread.sleep(10);
+
+		assertThat(cache.get("a"), nullValue());
+		assertThat(cache.getSize(), is(0));
+		assertThat(cache.getEvictionCount(), is(1L));
+	}
+
+	@Test
+	public void testHitAndMissCounts() {
+		ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache();
+		assertThat(cache.getHitRate(), is(0.0));
+		cache.add(createObject("a"));
+		cache.get("a");
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+
+		assertThat(cache.getHitCount(), is(3L));
+		assertThat(cache.getMissCount(), is(1L));
+		assertThat(cache.getHitRate(), is(0.75));
+	}
+
+	@Test
+	public void testDefaultLimitsMemory() {
+		ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache();
+		char[] chars = new char[512 * 1024];
+		Arrays.fill(chars, 'x');
+		Property prop = mock(Property.class);
+		when(prop.getValue()).thenReturn(new PrimitiveValue(new String(chars)));
+		for (int i = 0; i < 200; i++) {
+			GMLObject obj = createObject("o" + i);
+			when(obj.getProperties()).thenReturn(Collections.singletonList(prop));
+			cache.add(obj);
+		}
+
+		assertThat(cache.getWeight() <= ConcurrentFeatureStoreCache.DEFAULT_MAX_WEIGHT, is(true));
+		assertThat(cache.getEvictionCount() > 0, is(true));
+	}
+
+	@Test
+	public void testConcurrentGetAndAdd()
+			throws Exception {
+		final int threads = 8;
+		final int idsPerThread = 500;
+		final ConcurrentFeatureStoreCache cache = new ConcurrentFeatureStoreCache(threads * idsPerThread, 0, 0);
+		final GMLObject[][] objects = new GMLObject[threads][idsPerThread];
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < idsPerThread; i++) {
+				objects[t][i] = createObject(t + "_" + i);
+			}
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < threads; t++) {
+				final GMLObject[] own = objects[t];
+				final GMLObject[] other = objects[(t + 1) % threads];
+				results.add(executor.submit(() -> {
+					start.await();
+					int failures = 0;
+					for (int i = 0; i < idsPerThread; i++) {
+						cache.add(own[i]);
+						if (cache.get(own[i].getId()) != own[i]) {
+							failures++;
+						}
+						GMLObject found = cache.get(other[i].getId());
+						if (found != null && found != other[i]) {
+							failures++;
+						}
+					}
+					return failures;
+				}));
+			}
+			start.countDown();
+			for (Future<Integer> result : results) {
+				assertThat(result.get(), is(0));
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		int total = threads * idsPerThread;
+		assertThat(cache.getSize(), is(total));
+		assertThat(cache.getWeight(), is(total * WEIGHT));
+		assertThat(cache.getEvictionCount(), is(0L));
+		assertThat(cache.getHitCount() + cache.getMissCount(), is(2L * total));
+		for (GMLObject[] perThread : objects) {
+			for (GMLObject obj : perThread) {
+				assertThat(cache.get(obj.getId()), sameInstance(obj));
+			}
+		}
+	}
+
+	private static GMLObject createObject(String id) {
+		GMLObject obj = mock(GMLObject.class);
+		when(obj.getId()).thenReturn(id);
+		return obj;
+	}
+
+}
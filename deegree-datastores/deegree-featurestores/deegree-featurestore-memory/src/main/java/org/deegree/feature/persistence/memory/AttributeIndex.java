@@ -0,0 +1,190 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+
+/**
+ * Secondary index on the values of a simple property of the stored features.
+ * <p>
+ * Keys are the numeric values (as <code>double</code>) for numeric properties and the
+ * string values for string properties. Lookups return candidates only, i.e. a superset
+ * of the matching features, which still have to be checked by evaluating the filter.
+ * Features with values that cannot be used as keys (e.g. nil values) are always
+ * candidates.
+ * </p>
+ *
+ * @see AttributeIndexPlanner
+ */
+abstract class AttributeIndex {
+
+	/** Kind of an {@link AttributeIndex}. */
+	enum Type {
+
+		/** Hash index, supports lookups of equal values. */
+		HASH,
+		/** Sorted index, supports lookups of equal values, ranges, prefixes and sorting. */
+		SORTED
+
+	}
+
+	private final QName propName;
+
+	private final boolean numeric;
+
+	private final List<Feature> unindexed = new ArrayList<>();
+
+	AttributeIndex(QName propName, boolean numeric) {
+		this.propName = propName;
+		this.numeric = numeric;
+	}
+
+	/**
+	 * Creates a new {@link AttributeIndex} for the given features.
+	 * @param type kind of index, must not be <code>null</code>
+	 * @param propName name of the indexed property, must not be <code>null</code>
+	 * @param numeric <code>true</code> if the property has a numeric type,
+	 * <code>false</code> if it has a string type
+	 * @param singleValued <code>true</code> if the property occurs at most once
+	 * @param features features to be indexed, must not be <code>null</code>
+	 * @return index, never <code>null</code>
+	 */
+	static AttributeIndex build(Type type, QName propName, boolean numeric, boolean singleValued,
+			Iterable<Feature> features) {
+		AttributeIndex index = type == Type.HASH ? new HashAttributeIndex(propName, numeric)
+				: new SortedAttributeIndex(propName, numeric, singleValued);
+		for (Feature feature : features) {
+			boolean usable = true;
+			for (Property prop : feature.getProperties(propName)) {
+				Object key = index.getKey(prop.getValue());
+				if (key != null) {
+					index.add(key, feature);
+				}
+				else {
+					usable = false;
+				}
+			}
+			if (!usable) {
+				index.unindexed.add(feature);
+			}
+		}
+		index.finish();
+		return index;
+	}
+
+	/**
+	 * Returns the name of the indexed property.
+	 * @return name of the indexed property, never <code>null</code>
+	 */
+	QName getPropertyName() {
+		return propName;
+	}
+
+	boolean isNumeric() {
+		return numeric;
+	}
+
+	/**
+	 * Returns the features that must always be considered as candidates.
+	 * @return features with values that are not indexed, never <code>null</code>
+	 */
+	List<Feature> getUnindexed() {
+		return unindexed;
+	}
+
+	/**
+	 * Returns the key for the given property value.
+	 * @param value property value, can be <code>null</code>
+	 * @return key (<code>Double</code> or <code>String</code>), or <code>null</code> if the
+	 * value cannot be used as key
+	 */
+	Object getKey(TypedObjectNode value) {
+		if (!(value instanceof PrimitiveValue)) {
+			return null;
+		}
+		Object o = ((PrimitiveValue) value).getValue();
+		if (numeric) {
+			return o instanceof Number ? ((Number) o).doubleValue() : null;
+		}
+		if (o instanceof String && o.equals(value.toString())) {
+			return o;
+		}
+		return null;
+	}
+
+	abstract void add(Object key, Feature feature);
+
+	void finish() {
+		// nothing to do by default
+	}
+
+	/**
+	 * Returns the indexed features with a value equal to the given key.
+	 * @param key key, must not be <code>null</code>
+	 * @return candidates (may contain duplicates), never <code>null</code>
+	 */
+	abstract Collection<Feature> getEqual(Object key);
+
+	/**
+	 * Returns the indexed features with a value between the given keys (inclusive).
+	 * @param lower lower key, <code>null</code> for no lower bound
+	 * @param upper upper key, <code>null</code> for no upper bound
+	 * @return candidates (may contain duplicates), or <code>null</code> if the index does
+	 * not support range lookups
+	 */
+	Collection<Feature> getRange(Object lower, Object upper) {
+		return null;
+	}
+
+	/**
+	 * Returns the indexed features with a string value starting with the given prefix.
+	 * @param prefix prefix, must not be <code>null</code>
+	 * @return candidates (may contain duplicates), or <code>null</code> if the index does
+	 * not support prefix lookups
+	 */
+	Collection<Feature> getPrefix(String prefix) {
+		return null;
+	}
+
+}
@@ -0,0 +1,264 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Operator;
+import org.deegree.filter.comparison.BinaryComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsBetween;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.logical.Or;
+
+/**
+ * Determines candidate features for a filter {@link Operator} from the
+ * {@link AttributeIndex}es of a feature type.
+ * <p>
+ * Supported are <code>PropertyIsEqualTo</code>, <code>PropertyIsLessThan</code>,
+ * <code>PropertyIsLessThanOrEqualTo</code>, <code>PropertyIsGreaterThan</code>,
+ * <code>PropertyIsGreaterThanOrEqualTo</code>, <code>PropertyIsBetween</code> and
+ * <code>PropertyIsLike</code> (with a fixed prefix) operators that compare an indexed
+ * property with literals. The candidates of the arguments of <code>And</code> operators
+ * are intersected, the candidates of the arguments of <code>Or</code> operators are
+ * united (if every argument can use an index). The candidates are a superset of the
+ * matching features, so the filter has to be evaluated on them afterwards.
+ * </p>
+ *
+ * @see AttributeIndex
+ */
+class AttributeIndexPlanner {
+
+	private final Map<QName, AttributeIndex> propToIndex;
+
+	/**
+	 * Creates a new {@link AttributeIndexPlanner} instance.
+	 * @param propToIndex indexes of the feature type, must not be <code>null</code>
+	 */
+	AttributeIndexPlanner(Map<QName, AttributeIndex> propToIndex) {
+		this.propToIndex = propToIndex;
+	}
+
+	/**
+	 * Returns the candidate features for the given operator.
+	 * @param operator filter operator, must not be <code>null</code>
+	 * @return candidates, or <code>null</code> if no index can be used
+	 */
+	Set<Feature> getCandidates(Operator operator) {
+		if (operator instanceof And) {
+			return intersect(((And) operator).getParams());
+		}
+		if (operator instanceof Or) {
+			return unite(((Or) operator).getParams());
+		}
+		if (operator instanceof PropertyIsBetween) {
+			PropertyIsBetween between = (PropertyIsBetween) operator;
+			AttributeIndex index = getIndex(between.getExpression());
+			if (index == null) {
+				return null;
+			}
+			Object lower = getKey(index, between.getLowerBoundary());
+			Object upper = getKey(index, between.getUpperBoundary());
+			return lower != null && upper != null ? toCandidates(index, index.getRange(lower, upper)) : null;
+		}
+		if (operator instanceof PropertyIsLike) {
+			PropertyIsLike like = (PropertyIsLike) operator;
+			AttributeIndex index = getIndex(like.getExpression());
+			String prefix = getPrefix(like);
+			if (index == null || prefix == null || !Boolean.TRUE.equals(like.isMatchCase())) {
+				return null;
+			}
+			return toCandidates(index, index.getPrefix(prefix));
+		}
+		if (operator instanceof BinaryComparisonOperator) {
+			return getCandidates((BinaryComparisonOperator) operator);
+		}
+		return null;
+	}
+
+	private Set<Feature> getCandidates(BinaryComparisonOperator operator) {
+		AttributeIndex index = getIndex(operator.getParameter1());
+		if (index == null) {
+			return null;
+		}
+		Object key = getKey(index, operator.getParameter2());
+		if (key == null) {
+			return null;
+		}
+		switch (operator.getSubType()) {
+			case PROPERTY_IS_EQUAL_TO:
+				if (!index.isNumeric() && !Boolean.TRUE.equals(operator.isMatchCase())) {
+					return null;
+				}
+				return toCandidates(index, index.getEqual(key));
+			case PROPERTY_IS_LESS_THAN:
+			case PROPERTY_IS_LESS_THAN_OR_EQUAL_TO:
+				return toCandidates(index, index.getRange(null, key));
+			case PROPERTY_IS_GREATER_THAN:
+			case PROPERTY_IS_GREATER_THAN_OR_EQUAL_TO:
+				return toCandidates(index, index.getRange(key, null));
+			default:
+				return null;
+		}
+	}
+
+	private Set<Feature> intersect(Operator[] operators) {
+		List<Set<Feature>> candidates = new ArrayList<>();
+		Set<Feature> smallest = null;
+		for (Operator operator : operators) {
+			Set<Feature> c = getCandidates(operator);
+			if (c != null) {
+				candidates.add(c);
+				if (smallest == null || c.size() < smallest.size()) {
+					smallest = c;
+				}
+			}
+		}
+		if (smallest == null) {
+			return null;
+		}
+		Iterator<Feature> iter = smallest.iterator();
+		while (iter.hasNext()) {
+			Feature feature = iter.next();
+			for (Set<Feature> c : candidates) {
+				if (c != smallest && !c.contains(feature)) {
+					iter.remove();
+					break;
+				}
+			}
+		}
+		return smallest;
+	}
+
+	private Set<Feature> unite(Operator[] operators) {
+		Set<Feature> united = new LinkedHashSet<>();
+		for (Operator operator : operators) {
+			Set<Feature> c = getCandidates(operator);
+			if (c == null) {
+				return null;
+			}
+			united.addAll(c);
+		}
+		return united;
+	}
+
+	private AttributeIndex getIndex(Expression expr) {
+		if (expr instanceof ValueReference) {
+			QName propName = ((ValueReference) expr).getAsQName();
+			if (propName != null) {
+				return propToIndex.get(propName);
+			}
+		}
+		return null;
+	}
+
+	private Object getKey(AttributeIndex index, Expression expr) {
+		if (!(expr instanceof Literal<?>)) {
+			return null;
+		}
+		TypedObjectNode value = ((Literal<?>) expr).getValue();
+		if (!(value instanceof PrimitiveValue)) {
+			return null;
+		}
+		Object o = ((PrimitiveValue) value).getValue();
+		if (index.isNumeric()) {
+			try {
+				return new BigDecimal(o.toString()).doubleValue();
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return o instanceof String ? o : null;
+	}
+
+	private String getPrefix(PropertyIsLike like) {
+		if (!(like.getPattern() instanceof Literal<?>) || like.getWildCard().length() != 1
+				|| like.getSingleChar().length() != 1 || like.getEscapeChar().length() != 1) {
+			return null;
+		}
+		String pattern = ((Literal<?>) like.getPattern()).getValue().toString();
+		char wildCard = like.getWildCard().charAt(0);
+		char singleChar = like.getSingleChar().charAt(0);
+		char escapeChar = like.getEscapeChar().charAt(0);
+		// same prefix determination as PropertyIsLike#matches()
+		StringBuilder sb = new StringBuilder();
+		boolean escapeMode = false;
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (escapeMode) {
+				if (c != escapeChar) {
+					sb.append(c);
+				}
+				escapeMode = false;
+			}
+			else if (c == escapeChar) {
+				escapeMode = true;
+			}
+			else if (c == wildCard || c == singleChar) {
+				break;
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		return sb.length() > 0 ? sb.toString() : null;
+	}
+
+	private Set<Feature> toCandidates(AttributeIndex index, Collection<Feature> features) {
+		if (features == null) {
+			return null;
+		}
+		Set<Feature> candidates = new LinkedHashSet<>(features);
+		candidates.addAll(index.getUnindexed());
+		return candidates;
+	}
+
+}
@@ -0,0 +1,170 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.types.FeatureType;
+
+/**
+ * Changes of a {@link MemoryFeatureStoreTransaction} to a {@link StoredFeatures}
+ * snapshot.
+ * <p>
+ * The snapshot itself is never modified, the changes are applied on commit (see
+ * {@link StoredFeatures#apply(FeatureChanges)}). Lookups reflect the snapshot plus the
+ * changes, so the transaction sees its own modifications.
+ * </p>
+ *
+ * @see StoredFeatures
+ */
+class FeatureChanges {
+
+	private final StoredFeatures snapshot;
+
+	private final Set<Feature> added = new LinkedHashSet<>();
+
+	private final Map<String, GMLObject> addedIdToObject = new HashMap<>();
+
+	private final Set<Feature> removed = new HashSet<>();
+
+	private final Set<String> removedIds = new HashSet<>();
+
+	/**
+	 * Creates a new {@link FeatureChanges} instance.
+	 * @param snapshot snapshot the changes are based on, must not be <code>null</code>
+	 */
+	FeatureChanges(StoredFeatures snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Returns the snapshot the changes are based on.
+	 * @return snapshot, never <code>null</code>
+	 */
+	StoredFeatures getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Returns the features of the given type, including the changes.
+	 * @param ft feature type, must not be <code>null</code>
+	 * @return features of the given type, never <code>null</code>
+	 */
+	FeatureCollection getFeatures(FeatureType ft) {
+		FeatureCollection fc = snapshot.getFeatures(ft);
+		if (added.isEmpty() && removed.isEmpty()) {
+			return fc;
+		}
+		List<Feature> members = new ArrayList<>(fc.size());
+		for (Feature feature : fc) {
+			if (!removed.contains(feature)) {
+				members.add(feature);
+			}
+		}
+		for (Feature feature : added) {
+			if (feature.getType().getName().equals(ft.getName())) {
+				members.add(feature);
+			}
+		}
+		return new GenericFeatureCollection(null, members);
+	}
+
+	GMLObject getObjectById(String id) {
+		GMLObject object = addedIdToObject.get(id);
+		if (object == null && !removedIds.contains(id)) {
+			object = snapshot.getObjectById(id);
+		}
+		return object;
+	}
+
+	/**
+	 * Adds the given {@link Feature} instance.
+	 * @param feature feature to be added, must not be <code>null</code> and must have an
+	 * id (as well as every geometry)
+	 */
+	void addFeature(Feature feature) {
+		added.add(feature);
+		addedIdToObject.putAll(StoredFeatures.getObjects(feature));
+	}
+
+	/**
+	 * Removes the given {@link Feature} instance.
+	 * @param feature feature to be removed, must not be <code>null</code>
+	 */
+	void removeFeature(Feature feature) {
+		Map<String, GMLObject> objects = StoredFeatures.getObjects(feature);
+		if (added.remove(feature)) {
+			for (Map.Entry<String, GMLObject> object : objects.entrySet()) {
+				addedIdToObject.remove(object.getKey(), object.getValue());
+			}
+		}
+		else {
+			removed.add(feature);
+			removedIds.addAll(objects.keySet());
+		}
+	}
+
+	/**
+	 * Returns the features added by this change set.
+	 * @return added features, never <code>null</code>
+	 */
+	Collection<Feature> getAdded() {
+		return added;
+	}
+
+	/**
+	 * Returns the features of the snapshot removed by this change set.
+	 * @return removed features, never <code>null</code>
+	 */
+	Set<Feature> getRemoved() {
+		return removed;
+	}
+
+	boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty();
+	}
+
+}
@@ -0,0 +1,77 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.feature.Feature;
+
+/**
+ * {@link AttributeIndex} that maps each value to the features with this value.
+ */
+class HashAttributeIndex extends AttributeIndex {
+
+	private final Map<Object, List<Feature>> keyToFeatures = new HashMap<>();
+
+	HashAttributeIndex(QName propName, boolean numeric) {
+		super(propName, numeric);
+	}
+
+	@Override
+	void add(Object key, Feature feature) {
+		List<Feature> features = keyToFeatures.get(key);
+		if (features == null) {
+			features = new ArrayList<>(1);
+			keyToFeatures.put(key, features);
+		}
+		if (features.isEmpty() || features.get(features.size() - 1) != feature) {
+			features.add(feature);
+		}
+	}
+
+	@Override
+	Collection<Feature> getEqual(Object key) {
+		List<Feature> features = keyToFeatures.get(key);
+		return features != null ? features : Collections.<Feature> emptyList();
+	}
+
+}
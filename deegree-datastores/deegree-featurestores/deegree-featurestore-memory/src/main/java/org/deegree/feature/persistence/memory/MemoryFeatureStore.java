@@ -34,8 +34,10 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.memory;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import javax.xml.namespace.QName;
@@ -44,7 +46,6 @@ import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.db.ConnectionProvider;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.i18n.Messages;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -63,6 +64,11 @@ import org.deegree.workspace.ResourceMetadata;
 
 /**
  * {@link FeatureStore} implementation that keeps the feature instances in memory.
+ * <p>
+ * Queries are performed on the current {@link StoredFeatures} snapshot and never block.
+ * Transactions are serialized, they record their changes and replace the snapshot on
+ * commit.
+ * </p>
  *
  * @see FeatureStore
  * @see StoredFeatures
@@ -80,7 +86,7 @@ public class MemoryFeatureStore implements FeatureStore {
 
 	private DefaultLockManager lockManager;
 
-	private StoredFeatures storedFeatures;
+	private volatile StoredFeatures storedFeatures;
 
 	private MemoryFeatureStoreMetadata metadata;
 
@@ -96,10 +102,27 @@ public class MemoryFeatureStore implements FeatureStore {
 	 */
 	MemoryFeatureStore(AppSchema schema, ICRS storageCRS, MemoryFeatureStoreMetadata metadata,
 			ConnectionProvider lockConnection) throws FeatureStoreException {
+		this(schema, storageCRS, metadata, lockConnection,
+				Collections.<QName, Map<QName, AttributeIndex.Type>> emptyMap());
+	}
+
+	/**
+	 * Creates a new {@link MemoryFeatureStore} instance for the given {@link AppSchema}.
+	 * @param schema application schema, must not be <code>null</code>
+	 * @param storageCRS crs used for stored geometries, may be <code>null</code> (no
+	 * transformation on inserts)
+	 * @param metadata
+	 * @param ftToIndexedProps properties to build {@link AttributeIndex}es for (per
+	 * feature type), must not be <code>null</code>
+	 * @throws FeatureStoreException
+	 */
+	MemoryFeatureStore(AppSchema schema, ICRS storageCRS, MemoryFeatureStoreMetadata metadata,
+			ConnectionProvider lockConnection, Map<QName, Map<QName, AttributeIndex.Type>> ftToIndexedProps)
+			throws FeatureStoreException {
 		this.schema = schema;
 		this.storageCRS = storageCRS;
 		this.metadata = metadata;
-		this.storedFeatures = new StoredFeatures(schema, storageCRS, null);
+		this.storedFeatures = new StoredFeatures(schema, storageCRS, ftToIndexedProps);
 		// TODO
 		lockManager = new DefaultLockManager(this, lockConnection);
 	}
@@ -131,6 +154,7 @@ public class MemoryFeatureStore implements FeatureStore {
 
 	@Override
 	public FeatureInputStream query(final Query[] queries) throws FeatureStoreException, FilterEvaluationException {
+		final StoredFeatures snapshot = storedFeatures;
 		Iterator<FeatureInputStream> rsIter = new Iterator<FeatureInputStream>() {
 			int i = 0;
 
@@ -146,7 +170,7 @@ public class MemoryFeatureStore implements FeatureStore {
 				}
 				FeatureInputStream rs;
 				try {
-					rs = query(queries[i++]);
+					rs = snapshot.query(queries[i++]);
 				}
 				catch (Exception e) {
 					e.printStackTrace();
@@ -171,9 +195,10 @@ public class MemoryFeatureStore implements FeatureStore {
 
 	@Override
 	public int[] queryHits(Query[] queries) throws FeatureStoreException, FilterEvaluationException {
+		StoredFeatures snapshot = storedFeatures;
 		int[] hits = new int[queries.length];
 		for (int i = 0; i < queries.length; i++) {
-			hits[i] = queryHits(queries[i]);
+			hits[i] = snapshot.query(queries[i]).toCollection().size();
 		}
 		return hits;
 	}
@@ -209,8 +234,8 @@ public class MemoryFeatureStore implements FeatureStore {
 			}
 		}
 
-		StoredFeatures workingCopy = new StoredFeatures(schema, storageCRS, storedFeatures);
-		this.activeTransaction = new MemoryFeatureStoreTransaction(this, workingCopy, lockManager);
+		FeatureChanges changes = new FeatureChanges(storedFeatures);
+		this.activeTransaction = new MemoryFeatureStoreTransaction(this, changes, lockManager);
 		this.transactionHolder = Thread.currentThread();
 		return this.activeTransaction;
 	}
@@ -223,10 +248,12 @@ public class MemoryFeatureStore implements FeatureStore {
 	 * called before.
 	 * </p>
 	 * @param ta the transaction to be released, must not be <code>null</code>
-	 * @param newFeatures
+	 * @param newFeatures snapshot that contains the committed changes, can be
+	 * <code>null</code> (rollback)
 	 * @throws FeatureStoreException
 	 */
-	void releaseTransaction(MemoryFeatureStoreTransaction ta, StoredFeatures newFeatures) throws FeatureStoreException {
+	synchronized void releaseTransaction(MemoryFeatureStoreTransaction ta, StoredFeatures newFeatures)
+			throws FeatureStoreException {
 		if (ta.getStore() != this) {
 			String msg = Messages.getMessage("TA_NOT_OWNER");
 			throw new FeatureStoreException(msg);
@@ -240,7 +267,7 @@ public class MemoryFeatureStore implements FeatureStore {
 		}
 		this.activeTransaction = null;
 		this.transactionHolder = null;
-		// notifyAll();
+		notifyAll();
 	}
 
 	@Override
@@ -258,10 +285,7 @@ public class MemoryFeatureStore implements FeatureStore {
 		Envelope ftEnv = null;
 		FeatureType ft = schema.getFeatureType(ftName);
 		if (ft != null) {
-			FeatureCollection fc = storedFeatures.getFeatures(ft);
-			if (fc != null) {
-				ftEnv = fc.getEnvelope();
-			}
+			ftEnv = storedFeatures.getEnvelope(ft.getName());
 		}
 		return ftEnv;
 	}
@@ -40,13 +40,24 @@
 
 package org.deegree.feature.persistence.memory;
 
+import static org.deegree.commons.tom.primitive.BaseType.DECIMAL;
+import static org.deegree.commons.tom.primitive.BaseType.DOUBLE;
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
 import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
 
 import java.io.File;
 import java.net.URL;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
@@ -63,6 +74,8 @@ import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.GMLF
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.GMLSchema;
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.NamespaceHint;
 import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.GMLVersion;
@@ -82,6 +95,8 @@ public class MemoryFeatureStoreBuilder implements ResourceBuilder<FeatureStore>
 
 	private static final Logger LOG = LoggerFactory.getLogger(MemoryFeatureStoreBuilder.class);
 
+	private static final Set<BaseType> INDEXABLE_TYPES = EnumSet.of(STRING, DECIMAL, DOUBLE, INTEGER);
+
 	private MemoryFeatureStoreMetadata metadata;
 
 	private MemoryFeatureStoreConfig config;
@@ -135,9 +150,10 @@ public class MemoryFeatureStoreBuilder implements ResourceBuilder<FeatureStore>
 			throw new ResourceInitException(msg, e);
 		}
 
+		Map<QName, Map<QName, AttributeIndex.Type>> ftToIndexedProps = getIndexedProperties(schema);
 		try {
 			ConnectionProvider lockProvider = workspace.getResource(ConnectionProviderProvider.class, "LOCK_DB");
-			fs = new MemoryFeatureStore(schema, storageCRS, metadata, lockProvider);
+			fs = new MemoryFeatureStore(schema, storageCRS, metadata, lockProvider, ftToIndexedProps);
 		}
 		catch (FeatureStoreException ex) {
 			throw new ResourceInitException(ex.getLocalizedMessage(), ex);
@@ -169,6 +185,31 @@ public class MemoryFeatureStoreBuilder implements ResourceBuilder<FeatureStore>
 		return fs;
 	}
 
+	private Map<QName, Map<QName, AttributeIndex.Type>> getIndexedProperties(AppSchema schema) {
+		Map<QName, Map<QName, AttributeIndex.Type>> ftToIndexedProps = new HashMap<>();
+		for (MemoryFeatureStoreConfig.AttributeIndex index : config.getAttributeIndex()) {
+			FeatureType ft = schema.getFeatureType(index.getFeatureType());
+			if (ft == null || ft.isAbstract()) {
+				throw new ResourceInitException("Cannot create attribute index: feature type '"
+						+ index.getFeatureType() + "' is not served by this feature store.");
+			}
+			PropertyType pt = ft.getPropertyDeclaration(index.getProperty());
+			if (!(pt instanceof SimplePropertyType) || !INDEXABLE_TYPES
+				.contains(((SimplePropertyType) pt).getPrimitiveType().getBaseType())) {
+				throw new ResourceInitException("Cannot create attribute index: property '" + index.getProperty()
+						+ "' of feature type '" + ft.getName() + "' is not a simple string or numeric property.");
+			}
+			Map<QName, AttributeIndex.Type> indexedProps = ftToIndexedProps.get(ft.getName());
+			if (indexedProps == null) {
+				indexedProps = new HashMap<>();
+				ftToIndexedProps.put(ft.getName(), indexedProps);
+			}
+			indexedProps.put(pt.getName(),
+					"hash".equals(index.getType()) ? AttributeIndex.Type.HASH : AttributeIndex.Type.SORTED);
+		}
+		return ftToIndexedProps;
+	}
+
 	private static Map<String, String> getHintMap(List<NamespaceHint> hints) {
 		Map<String, String> prefixToNs = new HashMap<String, String>();
 		for (NamespaceHint namespaceHint : hints) {
@@ -59,6 +59,7 @@ import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.FeatureStores;
 import org.deegree.feature.persistence.lock.Lock;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.transaction.FeatureUpdater;
@@ -86,7 +87,7 @@ import org.slf4j.LoggerFactory;
  * {@link FeatureStoreTransaction} implementation used by the {@link MemoryFeatureStore}.
  *
  * @see MemoryFeatureStore
- * @see StoredFeatures
+ * @see FeatureChanges
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  */
 class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
@@ -99,31 +100,27 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
 	private final MemoryFeatureStore fs;
 
-	private final StoredFeatures sf;
+	private final FeatureChanges changes;
 
 	private final LockManager lockManager;
 
 	/**
 	 * Creates a new {@link MemoryFeatureStoreTransaction} instance.
 	 * @param fs invoking feature store instance, must not be <code>null</code>
-	 * @param sf copy of features to work on, must not be <code>null</code>
+	 * @param changes changes to the committed features, must not be <code>null</code>
 	 * @param lockManager lock manager, must not be <code>null</code>
 	 */
-	MemoryFeatureStoreTransaction(MemoryFeatureStore fs, StoredFeatures sf, LockManager lockManager) {
+	MemoryFeatureStoreTransaction(MemoryFeatureStore fs, FeatureChanges changes, LockManager lockManager) {
 		this.fs = fs;
-		this.sf = sf;
+		this.changes = changes;
 		this.lockManager = lockManager;
 	}
 
 	@Override
 	public void commit() throws FeatureStoreException {
-		try {
-			sf.rebuildIndexes();
-		}
-		catch (UnknownCRSException e) {
-			throw new FeatureStoreException(e.getMessage());
-		}
-		fs.releaseTransaction(this, sf);
+		StoredFeatures committed = changes.getSnapshot().apply(changes);
+		fs.releaseTransaction(this, committed);
+		FeatureStores.fireFeaturesChanged(fs, null, null);
 	}
 
 	@Override
@@ -140,7 +137,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 			throw new FeatureStoreException(getMessage("TA_OPERATION_FT_NOT_SERVED", ftName));
 		}
 
-		FeatureCollection fc = sf.getFeatures(ft);
+		FeatureCollection fc = changes.getFeatures(ft);
 		int deleted = 0;
 		if (fc != null) {
 			try {
@@ -161,7 +158,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
 				deleted = delete.size();
 				for (Feature feature : delete) {
-					sf.removeFeature(feature);
+					changes.removeFeature(feature);
 					if (lock != null) {
 						lock.release(feature.getId());
 					}
@@ -193,11 +190,11 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
 		int deleted = 0;
 		for (ResourceId id : filter.getSelectedIds()) {
-			GMLObject obj = sf.getObjectById(id.getRid());
+			GMLObject obj = changes.getObjectById(id.getRid());
 			if (obj != null) {
 				if (obj instanceof Feature) {
 					Feature f = (Feature) obj;
-					sf.removeFeature(f);
+					changes.removeFeature(f);
 					deleted++;
 				}
 			}
@@ -237,7 +234,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
 		begin = System.currentTimeMillis();
 		for (Feature feature : features) {
-			sf.addFeature(feature);
+			changes.addFeature(feature);
 		}
 		elapsed = System.currentTimeMillis() - begin;
 		LOG.debug("Adding of features took {} [ms]", elapsed);
@@ -301,7 +298,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 			@Override
 			public boolean visitGeometry(Geometry geom) {
 				String id = getGeometryId(geom, mode);
-				if (sf.getObjectById(id) != null) {
+				if (changes.getObjectById(id) != null) {
 					String msg = "Cannot insert geometry '" + id
 							+ "'. This geometry already exists in the feature store.";
 					throw new IllegalArgumentException(msg);
@@ -314,7 +311,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 			@Override
 			public boolean visitFeature(Feature feature) {
 				String id = getFeatureId(feature, mode);
-				if (sf.getObjectById(id) != null) {
+				if (changes.getObjectById(id) != null) {
 					String msg = "Cannot insert feature '" + id
 							+ "'. This feature already exists in the feature store.";
 					throw new IllegalArgumentException(msg);
@@ -386,7 +383,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 				break;
 			}
 			case REPLACE_DUPLICATE: {
-				if (fid == null || sf.getObjectById(fid) != null) {
+				if (fid == null || changes.getObjectById(fid) != null) {
 					fid = "FEATURE_" + generateNewId();
 				}
 			}
@@ -408,7 +405,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 				break;
 			}
 			case REPLACE_DUPLICATE: {
-				if (gid == null || sf.getObjectById(gid) != null) {
+				if (gid == null || changes.getObjectById(gid) != null) {
 					gid = "FEATURE_" + generateNewId();
 				}
 			}
@@ -522,7 +519,7 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 			throw new FeatureStoreException(getMessage("TA_OPERATION_FT_NOT_SERVED", ftName));
 		}
 
-		FeatureCollection fc = sf.getFeatures(ft);
+		FeatureCollection fc = changes.getFeatures(ft);
 		List<String> updatedFids = new ArrayList<String>();
 		if (fc != null) {
 			try {
@@ -543,7 +540,12 @@ class MemoryFeatureStoreTransaction implements FeatureStoreTransaction {
 
 				for (Feature feature : update) {
 					updatedFids.add(feature.getId());
-					new FeatureUpdater().update(feature, replacementProps);
+					// committed features are shared with concurrent readers, so a copy is updated
+					Feature updated = feature.getType()
+						.newFeature(feature.getId(), feature.getProperties(), feature.getExtraProperties());
+					new FeatureUpdater().update(updated, replacementProps);
+					changes.removeFeature(feature);
+					changes.addFeature(updated);
 					if (lock != null) {
 						lock.release(feature.getId());
 					}
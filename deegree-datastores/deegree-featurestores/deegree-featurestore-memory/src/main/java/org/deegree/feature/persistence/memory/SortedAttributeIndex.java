@@ -0,0 +1,257 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+
+/**
+ * {@link AttributeIndex} that keeps the values in a sorted primitive array (numeric
+ * values) or string array, with the features in a parallel array.
+ */
+class SortedAttributeIndex extends AttributeIndex {
+
+	private final boolean singleValued;
+
+	private List<Object> addedKeys = new ArrayList<>();
+
+	private List<Feature> addedFeatures = new ArrayList<>();
+
+	private double[] numbers;
+
+	private String[] strings;
+
+	private Feature[] features;
+
+	SortedAttributeIndex(QName propName, boolean numeric, boolean singleValued) {
+		super(propName, numeric);
+		this.singleValued = singleValued;
+	}
+
+	@Override
+	void add(Object key, Feature feature) {
+		addedKeys.add(key);
+		addedFeatures.add(feature);
+	}
+
+	@Override
+	void finish() {
+		final List<Object> keys = addedKeys;
+		Integer[] order = new Integer[keys.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return compareKeys(keys.get(i1), keys.get(i2));
+			}
+		});
+		features = new Feature[order.length];
+		if (isNumeric()) {
+			numbers = new double[order.length];
+		}
+		else {
+			strings = new String[order.length];
+		}
+		for (int i = 0; i < order.length; i++) {
+			features[i] = addedFeatures.get(order[i]);
+			if (numbers != null) {
+				numbers[i] = (Double) keys.get(order[i]);
+			}
+			else {
+				strings[i] = (String) keys.get(order[i]);
+			}
+		}
+		addedKeys = null;
+		addedFeatures = null;
+	}
+
+	/**
+	 * Returns the number of indexed values.
+	 * @return number of indexed values
+	 */
+	int size() {
+		return features.length;
+	}
+
+	boolean isSingleValued() {
+		return singleValued;
+	}
+
+	@Override
+	Collection<Feature> getEqual(Object key) {
+		return getRange(key, key);
+	}
+
+	@Override
+	Collection<Feature> getRange(Object lower, Object upper) {
+		int from = lower != null ? lowerBound(lower) : 0;
+		int to = upper != null ? upperBound(upper) : features.length;
+		if (from >= to) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(features).subList(from, to);
+	}
+
+	@Override
+	Collection<Feature> getPrefix(String prefix) {
+		if (isNumeric()) {
+			return null;
+		}
+		int from = lowerBound(prefix);
+		int to = from;
+		while (to < strings.length && strings[to].startsWith(prefix)) {
+			to++;
+		}
+		return Arrays.asList(features).subList(from, to);
+	}
+
+	/**
+	 * Sorts the given features by the value of the indexed property.
+	 * <p>
+	 * Indexed features are taken in index order, features that are not part of the
+	 * index (e.g. added after the index has been built) are sorted and merged. Features
+	 * without a usable value are appended.
+	 * </p>
+	 * @param members features to be sorted, must not be <code>null</code>
+	 * @param ascending <code>true</code> for ascending order
+	 * @return sorted features, never <code>null</code>
+	 */
+	List<Feature> sort(Collection<Feature> members, boolean ascending) {
+		Set<Feature> remaining = new HashSet<>(members);
+		List<Pair<Object, Feature>> indexed = new ArrayList<>(members.size());
+		for (int i = 0; i < features.length && !remaining.isEmpty(); i++) {
+			if (remaining.remove(features[i])) {
+				indexed.add(new Pair<Object, Feature>(numbers != null ? numbers[i] : strings[i], features[i]));
+			}
+		}
+		List<Pair<Object, Feature>> others = new ArrayList<>();
+		List<Feature> unkeyed = new ArrayList<>();
+		for (Feature feature : members) {
+			if (remaining.contains(feature)) {
+				List<Property> props = feature.getProperties(getPropertyName());
+				Object key = props.isEmpty() ? null : getKey(props.get(0).getValue());
+				if (key != null) {
+					others.add(new Pair<Object, Feature>(key, feature));
+				}
+				else {
+					unkeyed.add(feature);
+				}
+			}
+		}
+		Collections.sort(others, new Comparator<Pair<Object, Feature>>() {
+			@Override
+			public int compare(Pair<Object, Feature> p1, Pair<Object, Feature> p2) {
+				return compareKeys(p1.first, p2.first);
+			}
+		});
+
+		List<Feature> sorted = new ArrayList<>(members.size());
+		int i = 0;
+		int j = 0;
+		while (i < indexed.size() || j < others.size()) {
+			if (j == others.size()
+					|| (i < indexed.size() && compareKeys(indexed.get(i).first, others.get(j).first) <= 0)) {
+				sorted.add(indexed.get(i++).second);
+			}
+			else {
+				sorted.add(others.get(j++).second);
+			}
+		}
+		if (!ascending) {
+			Collections.reverse(sorted);
+		}
+		sorted.addAll(unkeyed);
+		return sorted;
+	}
+
+	private int lowerBound(Object key) {
+		int low = 0;
+		int high = features.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareAt(mid, key) < 0) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int upperBound(Object key) {
+		int low = 0;
+		int high = features.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareAt(mid, key) <= 0) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int compareAt(int i, Object key) {
+		if (numbers != null) {
+			return Double.compare(numbers[i], (Double) key);
+		}
+		return strings[i].compareTo((String) key);
+	}
+
+	private static int compareKeys(Object key1, Object key2) {
+		if (key1 instanceof Double) {
+			return Double.compare((Double) key1, (Double) key2);
+		}
+		return ((String) key1).compareTo((String) key2);
+	}
+
+}
@@ -34,7 +34,11 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.memory;
 
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -43,12 +47,13 @@ import java.util.Set;
 
 import javax.xml.namespace.QName;
 
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.index.RTree;
 import org.deegree.commons.tom.Reference;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.TunableParameter;
 import org.deegree.cs.coordinatesystems.ICRS;
-import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.Features;
@@ -59,9 +64,11 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.ResourceId;
 import org.deegree.filter.sort.SortProperty;
 import org.deegree.geometry.Envelope;
@@ -73,56 +80,137 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Encapsulates stored feature instances plus index structures for id and spatial queries.
+ * Encapsulates stored feature instances plus index structures for id, spatial and
+ * attribute queries.
+ * <p>
+ * Instances are immutable snapshots that can be read concurrently without locking. A
+ * snapshot consists of a compacted part (feature collections, id lookup table and packed
+ * spatial indexes built in bulk) and the changes committed since the last compaction
+ * (added features with a small spatial index per feature type and the removed features).
+ * Committing {@link FeatureChanges} creates a new snapshot that shares the compacted part
+ * with its predecessor, so the cost of a commit depends on the number of changes only.
+ * If more than <code>deegree.memoryfeaturestore.max-changes</code> changes have been
+ * accumulated, the snapshot is compacted again.
+ * </p>
+ * <p>
+ * {@link AttributeIndex}es are only built for the compacted part. Added features are
+ * always candidates for attribute queries, removed features are dropped from the
+ * candidates.
+ * </p>
  *
+ * @see FeatureChanges
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  */
 class StoredFeatures {
 
 	private static final Logger LOG = LoggerFactory.getLogger(StoredFeatures.class);
 
+	private static final int MAX_CHANGES = TunableParameter.get("deegree.memoryfeaturestore.max-changes", 10000);
+
 	private final AppSchema schema;
 
 	private final ICRS storageCRS;
 
 	private final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
 
-	private final Map<QName, FeatureCollection> ftToFeatures = new HashMap<>();
+	private final Map<QName, Map<QName, AttributeIndex.Type>> ftToIndexedProps;
+
+	// compacted part, never modified after construction
+
+	private final Map<QName, FeatureCollection> ftToFeatures;
+
+	private final Map<String, GMLObject> idToObject;
+
+	// packed rtrees, the values are positions in the arrays of ftToIndexedFeatures
+
+	private final Map<QName, PackedRTree> ftToIndex;
+
+	private final Map<QName, Feature[]> ftToIndexedFeatures;
 
-	private final Map<String, GMLObject> idToObject = new HashMap<>();
+	private final Map<QName, Map<QName, AttributeIndex>> ftToAttributeIndexes;
 
-	private final Map<QName, RTree<Feature>> ftToIndex = new HashMap<>();
+	// changes since the last compaction, never modified after construction
+
+	private final Map<QName, List<Feature>> ftToAdded;
+
+	private final Map<QName, RTree<Feature>> ftToAddedIndex;
+
+	private final Map<String, GMLObject> addedIdToObject;
+
+	private final Set<Feature> removed;
+
+	private final Set<String> removedIds;
+
+	private final Map<QName, Envelope> ftToEnvelope;
 
 	/**
-	 * Creates a new {@link StoredFeatures} instance.
+	 * Creates a new empty {@link StoredFeatures} instance.
 	 * @param schema application schema, must not be <code>null</code>
 	 * @param storageCRS target CRS for stored geometries, can be <code>null</code> (no
 	 * CRS normalization)
-	 * @param former stored features to copy from, can be <code>null</code> (new instance
-	 * will be empty)
-	 * @throws FeatureStoreException
+	 * @param ftToIndexedProps properties to build {@link AttributeIndex}es for (per
+	 * feature type), must not be <code>null</code>
+	 */
+	StoredFeatures(AppSchema schema, ICRS storageCRS, Map<QName, Map<QName, AttributeIndex.Type>> ftToIndexedProps) {
+		this(schema, storageCRS, ftToIndexedProps, Collections.<QName, List<Feature>> emptyMap());
+	}
+
+	/**
+	 * Creates a new compacted {@link StoredFeatures} instance.
+	 * @param schema application schema, must not be <code>null</code>
+	 * @param storageCRS target CRS for stored geometries, can be <code>null</code> (no
+	 * CRS normalization)
+	 * @param ftToIndexedProps properties to build {@link AttributeIndex}es for (per
+	 * feature type), must not be <code>null</code>
+	 * @param ftToMembers features to be stored, must not be <code>null</code>
 	 */
-	StoredFeatures(AppSchema schema, ICRS storageCRS, StoredFeatures former) throws FeatureStoreException {
+	private StoredFeatures(AppSchema schema, ICRS storageCRS,
+			Map<QName, Map<QName, AttributeIndex.Type>> ftToIndexedProps, Map<QName, List<Feature>> ftToMembers) {
 		this.schema = schema;
 		this.storageCRS = storageCRS;
-		initFtToFeaturesMap(schema, former);
-		try {
-			rebuildIndexes();
+		this.ftToIndexedProps = ftToIndexedProps;
+		this.ftToFeatures = new HashMap<>();
+		this.idToObject = new HashMap<>();
+		this.ftToIndex = new HashMap<>();
+		this.ftToIndexedFeatures = new HashMap<>();
+		this.ftToAttributeIndexes = new HashMap<>();
+		this.ftToAdded = Collections.emptyMap();
+		this.ftToAddedIndex = Collections.emptyMap();
+		this.addedIdToObject = Collections.emptyMap();
+		this.removed = Collections.emptySet();
+		this.removedIds = Collections.emptySet();
+		this.ftToEnvelope = new HashMap<>();
+		for (FeatureType ft : schema.getFeatureTypes(null, true, false)) {
+			ftToFeatures.put(ft.getName(), new GenericFeatureCollection());
 		}
-		catch (UnknownCRSException e) {
-			throw new FeatureStoreException(e.getMessage(), e);
+		for (Map.Entry<QName, List<Feature>> members : ftToMembers.entrySet()) {
+			FeatureCollection fc = ftToFeatures.get(members.getKey());
+			if (fc == null) {
+				fc = new GenericFeatureCollection();
+				ftToFeatures.put(members.getKey(), fc);
+			}
+			fc.addAll(members.getValue());
 		}
+		rebuildIndexes();
 	}
 
-	private void initFtToFeaturesMap(AppSchema schema, StoredFeatures former) {
-		for (FeatureType ft : schema.getFeatureTypes(null, true, false)) {
-			FeatureCollection fc = new GenericFeatureCollection();
-			if (former != null) {
-				FeatureCollection oldFc = former.ftToFeatures.get(ft.getName());
-				fc.addAll(oldFc);
-			}
-			ftToFeatures.put(ft.getName(), fc);
-		}
+	private StoredFeatures(StoredFeatures former, Map<QName, List<Feature>> ftToAdded,
+			Map<QName, RTree<Feature>> ftToAddedIndex, Map<String, GMLObject> addedIdToObject, Set<Feature> removed,
+			Set<String> removedIds, Map<QName, Envelope> ftToEnvelope) {
+		this.schema = former.schema;
+		this.storageCRS = former.storageCRS;
+		this.ftToIndexedProps = former.ftToIndexedProps;
+		this.ftToFeatures = former.ftToFeatures;
+		this.idToObject = former.idToObject;
+		this.ftToIndex = former.ftToIndex;
+		this.ftToIndexedFeatures = former.ftToIndexedFeatures;
+		this.ftToAttributeIndexes = former.ftToAttributeIndexes;
+		this.ftToAdded = ftToAdded;
+		this.ftToAddedIndex = ftToAddedIndex;
+		this.addedIdToObject = addedIdToObject;
+		this.removed = removed;
+		this.removedIds = removedIds;
+		this.ftToEnvelope = ftToEnvelope;
 	}
 
 	/**
@@ -131,7 +219,24 @@ class StoredFeatures {
 	 * @return stored features of the given type, never <code>null</code>
 	 */
 	FeatureCollection getFeatures(FeatureType ft) {
-		return ftToFeatures.get(ft.getName());
+		QName ftName = ft.getName();
+		FeatureCollection fc = ftToFeatures.get(ftName);
+		List<Feature> added = ftToAdded.get(ftName);
+		if (removed.isEmpty() && added == null && fc != null) {
+			return fc;
+		}
+		List<Feature> members = new ArrayList<>();
+		if (fc != null) {
+			for (Feature feature : fc) {
+				if (!removed.contains(feature)) {
+					members.add(feature);
+				}
+			}
+		}
+		if (added != null) {
+			members.addAll(added);
+		}
+		return new GenericFeatureCollection(null, members);
 	}
 
 	/**
@@ -149,19 +254,18 @@ class StoredFeatures {
 		}
 
 		FeatureCollection fc = null;
+		FeatureType ft = null;
 		if (query.getTypeNames().length == 1) {
 			QName ftName = query.getTypeNames()[0].getFeatureTypeName();
-			FeatureType ft = schema.getFeatureType(ftName);
+			ft = schema.getFeatureType(ftName);
 			if (ft == null) {
 				String msg = "Feature type '" + ftName + "' is not served by this feature store.";
 				throw new FeatureStoreException(msg);
 			}
 
-			// determine / filter features
-			fc = ftToFeatures.get(ft.getName());
-
 			// perform index filtering
-			Envelope ftEnv = fc.getEnvelope();
+			Collection<Feature> candidates = null;
+			Envelope ftEnv = ftToEnvelope.get(ft.getName());
 			if (query.getPrefilterBBoxEnvelope() != null && ftEnv != null && storageCRS != null) {
 				Envelope prefilterBox = query.getPrefilterBBoxEnvelope();
 				if (prefilterBox.getCoordinateSystem() != null
@@ -174,12 +278,30 @@ class StoredFeatures {
 						throw new FeatureStoreException(e.getMessage(), e);
 					}
 				}
+				candidates = queryIndexes(ft.getName(), toFloats(prefilterBox));
+			}
 
-				float[] floats = toFloats(prefilterBox);
-				RTree<Feature> index = ftToIndex.get(ft.getName());
-				fc = new GenericFeatureCollection(null, index.query(floats));
+			// perform attribute index filtering
+			if (query.getFilter() instanceof OperatorFilter) {
+				Set<Feature> attributeCandidates = queryAttributeIndexes(ft.getName(),
+						(OperatorFilter) query.getFilter());
+				if (attributeCandidates != null && candidates != null) {
+					List<Feature> intersection = new ArrayList<>();
+					for (Feature feature : candidates) {
+						if (attributeCandidates.contains(feature)) {
+							intersection.add(feature);
+						}
+					}
+					candidates = intersection;
+				}
+				else if (attributeCandidates != null) {
+					candidates = attributeCandidates;
+				}
 			}
 
+			// determine / filter features
+			fc = candidates != null ? new GenericFeatureCollection(null, candidates) : getFeatures(ft);
+
 			if (query.getFilter() != null) {
 				fc = fc.getMembers(query.getFilter(), evaluator);
 			}
@@ -192,7 +314,7 @@ class StoredFeatures {
 			}
 			Set<Feature> features = new HashSet<Feature>();
 			for (ResourceId id : ((IdFilter) query.getFilter()).getSelectedIds()) {
-				GMLObject object = idToObject.get(id.getRid());
+				GMLObject object = getObjectById(id.getRid());
 				if (object != null && object instanceof Feature) {
 					features.add((Feature) object);
 				}
@@ -203,67 +325,183 @@ class StoredFeatures {
 		// sort features
 		SortProperty[] sortCrit = query.getSortProperties();
 		if (sortCrit.length > 0) {
-			fc = Features.sortFc(fc, sortCrit);
+			SortedAttributeIndex index = ft != null ? getSortIndex(ft.getName(), sortCrit) : null;
+			if (index != null && fc.size() * 16L >= index.size()) {
+				fc = new GenericFeatureCollection(null, index.sort(fc, sortCrit[0].getSortOrder()));
+			}
+			else {
+				fc = Features.sortFc(fc, sortCrit);
+			}
 		}
 
 		return new MemoryFeatureInputStream(fc);
 	}
 
+	private Set<Feature> queryAttributeIndexes(QName ftName, OperatorFilter filter) {
+		Map<QName, AttributeIndex> indexes = ftToAttributeIndexes.get(ftName);
+		if (indexes == null) {
+			return null;
+		}
+		Set<Feature> candidates = new AttributeIndexPlanner(indexes).getCandidates(filter.getOperator());
+		if (candidates != null) {
+			if (!removed.isEmpty()) {
+				candidates.removeAll(removed);
+			}
+			List<Feature> added = ftToAdded.get(ftName);
+			if (added != null) {
+				candidates.addAll(added);
+			}
+		}
+		return candidates;
+	}
+
+	private SortedAttributeIndex getSortIndex(QName ftName, SortProperty[] sortCrit) {
+		Map<QName, AttributeIndex> indexes = ftToAttributeIndexes.get(ftName);
+		QName propName = sortCrit[0].getSortProperty().getAsQName();
+		if (indexes == null || sortCrit.length > 1 || propName == null) {
+			return null;
+		}
+		AttributeIndex index = indexes.get(propName);
+		if (index instanceof SortedAttributeIndex && ((SortedAttributeIndex) index).isSingleValued()) {
+			return (SortedAttributeIndex) index;
+		}
+		return null;
+	}
+
+	private List<Feature> queryIndexes(QName ftName, float[] box) {
+		List<Feature> members = new ArrayList<>();
+		PackedRTree index = ftToIndex.get(ftName);
+		if (index != null) {
+			Feature[] indexed = ftToIndexedFeatures.get(ftName);
+			for (long pos : index.query(box)) {
+				Feature feature = indexed[(int) pos];
+				if (!removed.contains(feature)) {
+					members.add(feature);
+				}
+			}
+		}
+		RTree<Feature> addedIndex = ftToAddedIndex.get(ftName);
+		if (addedIndex != null) {
+			members.addAll(addedIndex.query(box));
+		}
+		return members;
+	}
+
 	GMLObject getObjectById(String id) {
-		return idToObject.get(id);
+		GMLObject object = addedIdToObject.get(id);
+		if (object == null && !removedIds.contains(id)) {
+			object = idToObject.get(id);
+		}
+		return object;
 	}
 
 	/**
 	 * Returns the {@link Envelope} for the stored features of the specified type.
+	 * <p>
+	 * Removing features does not shrink the envelope before the next compaction.
+	 * </p>
 	 * @param ftName feature type name, must not be <code>null</code>
 	 * @return envelope, can be <code>null</code>
 	 */
 	Envelope getEnvelope(QName ftName) {
-		return ftToFeatures.get(schema.getFeatureType(ftName)).getEnvelope();
+		return ftToEnvelope.get(ftName);
 	}
 
 	/**
-	 * Adds the given {@link Feature} instance and updates the index structures.
-	 * @param feature feature to be added, must not be <code>null</code> and must have an
-	 * id (as well as every geometry)
+	 * Returns a new snapshot that contains the given changes.
+	 * @param changes changes to be applied, must not be <code>null</code> and must be
+	 * based on this snapshot
+	 * @return new snapshot, never <code>null</code>
 	 */
-	void addFeature(Feature feature) {
-		FeatureType ft = feature.getType();
-		FeatureCollection fc = ftToFeatures.get(ft.getName());
-		if (fc == null) {
-			fc = new GenericFeatureCollection();
-			ftToFeatures.put(ft.getName(), fc);
+	StoredFeatures apply(FeatureChanges changes) {
+		if (changes.isEmpty()) {
+			return this;
 		}
-		fc.add(feature);
-		idToObject.put(feature.getId(), feature);
-		if (feature.getEnvelope() != null) {
-			RTree<Feature> rTree = ftToIndex.get(ft.getName());
-			float[] insertBox = toFloats(feature.getEnvelope());
-			if (rTree == null) {
-				rTree = new RTree<>(insertBox, 16);
+		long begin = System.currentTimeMillis();
+		Map<QName, List<Feature>> ftToAdded = new HashMap<>(this.ftToAdded);
+		Map<String, GMLObject> addedIdToObject = new HashMap<>(this.addedIdToObject);
+		Set<Feature> removed = new HashSet<>(this.removed);
+		Set<String> removedIds = new HashSet<>(this.removedIds);
+		Map<QName, Envelope> ftToEnvelope = new HashMap<>(this.ftToEnvelope);
+		Set<QName> changedFts = new HashSet<>();
+
+		for (Feature feature : changes.getRemoved()) {
+			QName ftName = feature.getType().getName();
+			List<Feature> added = ftToAdded.get(ftName);
+			if (added != null && added.contains(feature)) {
+				added = new ArrayList<>(added);
+				added.remove(feature);
+				ftToAdded.put(ftName, added);
+				changedFts.add(ftName);
+				for (Map.Entry<String, GMLObject> object : getObjects(feature).entrySet()) {
+					addedIdToObject.remove(object.getKey(), object.getValue());
+				}
+			}
+			else {
+				removed.add(feature);
+				removedIds.addAll(getObjects(feature).keySet());
 			}
-			rTree.insert(insertBox, feature);
 		}
-	}
+		for (Feature feature : changes.getAdded()) {
+			QName ftName = feature.getType().getName();
+			if (changedFts.add(ftName)) {
+				List<Feature> added = ftToAdded.get(ftName);
+				ftToAdded.put(ftName, added != null ? new ArrayList<>(added) : new ArrayList<Feature>());
+			}
+			ftToAdded.get(ftName).add(feature);
+			addedIdToObject.putAll(getObjects(feature));
+			ftToEnvelope.put(ftName, merge(ftToEnvelope.get(ftName), feature.getEnvelope()));
+		}
 
-	/**
-	 * Removes the given {@link Feature} instance and updates the index structures.
-	 * @param feature feature to be removed, must not be <code>null</code>
-	 */
-	void removeFeature(Feature feature) {
-		idToObject.remove(feature.getId());
-		FeatureType ft = feature.getType();
-		RTree<Feature> rTree = ftToIndex.get(ft.getName());
-		if (rTree != null) {
-			rTree.remove(feature);
+		int numChanges = removed.size();
+		for (List<Feature> added : ftToAdded.values()) {
+			numChanges += added.size();
 		}
-		FeatureCollection fc = ftToFeatures.get(ft.getName());
-		if (fc != null) {
-			fc.remove(feature);
+		StoredFeatures snapshot;
+		if (numChanges > MAX_CHANGES) {
+			Map<QName, List<Feature>> ftToMembers = new HashMap<>();
+			for (Map.Entry<QName, FeatureCollection> fc : ftToFeatures.entrySet()) {
+				List<Feature> members = new ArrayList<>(fc.getValue().size());
+				for (Feature feature : fc.getValue()) {
+					if (!removed.contains(feature)) {
+						members.add(feature);
+					}
+				}
+				ftToMembers.put(fc.getKey(), members);
+			}
+			for (Map.Entry<QName, List<Feature>> added : ftToAdded.entrySet()) {
+				List<Feature> members = ftToMembers.get(added.getKey());
+				if (members == null) {
+					ftToMembers.put(added.getKey(), added.getValue());
+				}
+				else {
+					members.addAll(added.getValue());
+				}
+			}
+			LOG.debug("Compacting {} changes of stored features", numChanges);
+			snapshot = new StoredFeatures(schema, storageCRS, ftToIndexedProps, ftToMembers);
+		}
+		else {
+			Map<QName, RTree<Feature>> ftToAddedIndex = new HashMap<>(this.ftToAddedIndex);
+			for (QName ftName : changedFts) {
+				List<Feature> added = ftToAdded.get(ftName);
+				if (added.isEmpty()) {
+					ftToAdded.remove(ftName);
+					ftToAddedIndex.remove(ftName);
+				}
+				else {
+					ftToAddedIndex.put(ftName, buildIndex(added));
+				}
+			}
+			snapshot = new StoredFeatures(this, ftToAdded, ftToAddedIndex, addedIdToObject, removed, removedIds,
+					ftToEnvelope);
 		}
+		long elapsed = System.currentTimeMillis() - begin;
+		LOG.debug("Applying changes to stored features took {} [ms]", elapsed);
+		return snapshot;
 	}
 
-	void rebuildIndexes() throws UnknownCRSException {
+	private void rebuildIndexes() {
 
 		long begin = System.currentTimeMillis();
 		rebuildFeatureCollectionEnvelopes();
@@ -279,37 +517,85 @@ class StoredFeatures {
 		rebuildIdToObjectMap();
 		elapsed = System.currentTimeMillis() - begin;
 		LOG.debug("Building id lookup table took {} [ms]", elapsed);
+
+		begin = System.currentTimeMillis();
+		rebuildAttributeIndexes();
+		elapsed = System.currentTimeMillis() - begin;
+		LOG.debug("Building attribute indexes took {} [ms]", elapsed);
 	}
 
 	private void rebuildFeatureCollectionEnvelopes() {
-		for (FeatureCollection fc : ftToFeatures.values()) {
-			fc.setEnvelope(fc.calcEnvelope());
+		for (Map.Entry<QName, FeatureCollection> fc : ftToFeatures.entrySet()) {
+			Envelope env = fc.getValue().calcEnvelope();
+			fc.getValue().setEnvelope(env);
+			if (env != null) {
+				ftToEnvelope.put(fc.getKey(), env);
+			}
 		}
 	}
 
 	private void rebuildRtrees() {
-		ftToIndex.clear();
 		for (QName ftName : ftToFeatures.keySet()) {
 			FeatureCollection fc = ftToFeatures.get(ftName);
 			Envelope env = fc.getEnvelope();
 			if (env != null) {
-				RTree<Feature> index = new RTree<>(toFloats(env), 16);
-				List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>(fc.size());
-				for (Feature f : fc) {
-					Envelope fEnv = f.getEnvelope();
+				Feature[] indexed = fc.toArray(new Feature[fc.size()]);
+				List<Pair<float[], Long>> bboxes = new ArrayList<>(indexed.length);
+				for (int i = 0; i < indexed.length; ++i) {
+					Envelope fEnv = indexed[i].getEnvelope();
 					if (fEnv != null) {
-						float[] floats = toFloats(fEnv);
-						fBboxes.add(new Pair<float[], Feature>(floats, f));
+						bboxes.add(new Pair<>(toFloats(fEnv), (long) i));
 					}
 				}
-				index.insertBulk(fBboxes);
+				PackedRTree index = new PackedRTree(16);
+				index.insertBulk(bboxes);
 				ftToIndex.put(ftName, index);
+				ftToIndexedFeatures.put(ftName, indexed);
+			}
+		}
+	}
+
+	private void rebuildAttributeIndexes() {
+		for (Map.Entry<QName, Map<QName, AttributeIndex.Type>> indexedProps : ftToIndexedProps.entrySet()) {
+			FeatureType ft = schema.getFeatureType(indexedProps.getKey());
+			FeatureCollection fc = ftToFeatures.get(indexedProps.getKey());
+			Map<QName, AttributeIndex> indexes = new HashMap<>();
+			for (Map.Entry<QName, AttributeIndex.Type> indexedProp : indexedProps.getValue().entrySet()) {
+				SimplePropertyType pt = (SimplePropertyType) ft.getPropertyDeclaration(indexedProp.getKey());
+				boolean numeric = pt.getPrimitiveType().getBaseType() != STRING;
+				indexes.put(indexedProp.getKey(), AttributeIndex.build(indexedProp.getValue(), indexedProp.getKey(),
+						numeric, pt.getMaxOccurs() == 1, fc));
+			}
+			ftToAttributeIndexes.put(ft.getName(), indexes);
+		}
+	}
+
+	private RTree<Feature> buildIndex(List<Feature> features) {
+		Envelope env = null;
+		for (Feature f : features) {
+			env = merge(env, f.getEnvelope());
+		}
+		if (env == null) {
+			return null;
+		}
+		RTree<Feature> index = new RTree<>(toFloats(env), 16);
+		index.insertBulk(getBboxes(features));
+		return index;
+	}
+
+	private List<Pair<float[], Feature>> getBboxes(Iterable<Feature> features) {
+		List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>();
+		for (Feature f : features) {
+			Envelope fEnv = f.getEnvelope();
+			if (fEnv != null) {
+				float[] floats = toFloats(fEnv);
+				fBboxes.add(new Pair<float[], Feature>(floats, f));
 			}
 		}
+		return fBboxes;
 	}
 
 	private void rebuildIdToObjectMap() {
-		idToObject.clear();
 		GMLObjectVisitor visitor = new GMLObjectVisitor() {
 			@Override
 			public boolean visitGeometry(Geometry geom) {
@@ -344,6 +630,50 @@ class StoredFeatures {
 		}
 	}
 
+	/**
+	 * Returns the given {@link Feature} and its geometries, but not the nested features
+	 * (which are stored separately).
+	 * @param feature feature, must not be <code>null</code>
+	 * @return objects with ids, never <code>null</code>
+	 */
+	static Map<String, GMLObject> getObjects(final Feature feature) {
+		final Map<String, GMLObject> idToObject = new HashMap<>();
+		GMLObjectVisitor visitor = new GMLObjectVisitor() {
+			@Override
+			public boolean visitGeometry(Geometry geom) {
+				if (geom.getId() != null) {
+					idToObject.put(geom.getId(), geom);
+				}
+				return true;
+			}
+
+			@Override
+			public boolean visitFeature(Feature f) {
+				return f == feature;
+			}
+
+			@Override
+			public boolean visitObject(GMLObject o) {
+				return true;
+			}
+
+			@Override
+			public boolean visitReference(Reference<?> ref) {
+				return false;
+			}
+		};
+		new GMLObjectWalker(visitor).traverse(feature);
+		idToObject.put(feature.getId(), feature);
+		return idToObject;
+	}
+
+	private static Envelope merge(Envelope env, Envelope other) {
+		if (env == null) {
+			return other;
+		}
+		return other != null ? env.merge(other) : env;
+	}
+
 	private float[] toFloats(Envelope env) {
 		return new float[] { (float) env.getMin().get0(), (float) env.getMin().get1(), (float) env.getMax().get0(),
 				(float) env.getMax().get1() };
@@ -43,6 +43,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
@@ -52,6 +55,7 @@ import javax.xml.stream.XMLStreamWriter;
 
 import org.deegree.commons.config.ResourceInitException;
 import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.xml.XMLParsingException;
 import org.deegree.cs.exceptions.TransformationException;
 import org.deegree.cs.exceptions.UnknownCRSException;
@@ -66,6 +70,13 @@ import org.deegree.feature.types.AppSchema;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.comparison.PropertyIsLessThan;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.sort.SortProperty;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.primitive.Ring;
 import org.deegree.gml.GMLInputFactory;
@@ -90,8 +101,12 @@ public class MemoryFeatureStoreTest {
 
 	private static final String BASE_DIR = "../../../gml/feature/testdata/features/";
 
+	private static final QName PHILOSOPHER = QName.valueOf("{http://www.deegree.org/app}Philosopher");
+
 	private MemoryFeatureStore store;
 
+	private AppSchema schema;
+
 	private DefaultWorkspace workspace;
 
 	@Before
@@ -105,11 +120,16 @@ public class MemoryFeatureStoreTest {
 			.getResource("/org/deegree/gml/feature/testdata/schema/Philosopher.xsd")
 			.toString();
 		GMLAppSchemaReader adapter = new GMLAppSchemaReader(GML_31, null, schemaURL);
-		AppSchema schema = adapter.extractAppSchema();
+		schema = adapter.extractAppSchema();
+		store = createStore(Collections.<QName, Map<QName, AttributeIndex.Type>> emptyMap());
+	}
 
+	private MemoryFeatureStore createStore(Map<QName, Map<QName, AttributeIndex.Type>> ftToIndexedProps)
+			throws XMLStreamException, UnknownCRSException, IOException, FeatureStoreException,
+			ReferenceResolvingException {
 		URL docURL = getClass().getResource(BASE_DIR + "Philosopher_FeatureCollection.xml");
 		ConnectionProvider prov = workspace.getResource(ConnectionProviderProvider.class, "LOCK_DB");
-		store = new MemoryFeatureStore(schema, null, null, prov);
+		MemoryFeatureStore store = new MemoryFeatureStore(schema, null, null, prov, ftToIndexedProps);
 
 		GMLStreamReader gmlStream = GMLInputFactory.createGMLStreamReader(GML_31, docURL);
 		gmlStream.setApplicationSchema(schema);
@@ -119,6 +139,7 @@ public class MemoryFeatureStoreTest {
 		FeatureStoreTransaction ta = store.acquireTransaction();
 		ta.performInsert(fc, USE_EXISTING).size();
 		ta.commit();
+		return store;
 	}
 
 	@After
@@ -176,6 +197,55 @@ public class MemoryFeatureStoreTest {
 		Assert.assertEquals(2, fc.size());
 	}
 
+	@Test
+	public void testTransactionIsolation() throws FilterEvaluationException, FeatureStoreException {
+		TypeName[] typeNames = new TypeName[] {
+				new TypeName(QName.valueOf("{http://www.deegree.org/app}Philosopher"), null) };
+		Query query = new Query(typeNames, null, null, null, null);
+
+		FeatureStoreTransaction ta = store.acquireTransaction();
+		Assert.assertEquals(1, ta.performDelete(new IdFilter("PHILOSOPHER_1"), null));
+		Assert.assertEquals(7, store.query(query).toCollection().size());
+		Assert.assertNotNull(store.getObjectById("PHILOSOPHER_1"));
+		ta.rollback();
+		Assert.assertEquals(7, store.query(query).toCollection().size());
+
+		ta = store.acquireTransaction();
+		ta.performDelete(new IdFilter("PHILOSOPHER_1"), null);
+		ta.commit();
+		Assert.assertEquals(6, store.query(query).toCollection().size());
+		Assert.assertNull(store.getObjectById("PHILOSOPHER_1"));
+		Assert.assertNotNull(store.getObjectById("PHILOSOPHER_2"));
+	}
+
+	@Test
+	public void testQueryWithAttributeIndexes() throws Exception {
+		QName id = QName.valueOf("{http://www.deegree.org/app}id");
+		QName name = QName.valueOf("{http://www.deegree.org/app}name");
+		Map<QName, AttributeIndex.Type> indexedProps = new HashMap<QName, AttributeIndex.Type>();
+		indexedProps.put(id, AttributeIndex.Type.SORTED);
+		indexedProps.put(name, AttributeIndex.Type.HASH);
+		MemoryFeatureStore indexedStore = createStore(Collections.singletonMap(PHILOSOPHER, indexedProps));
+		TypeName[] typeNames = new TypeName[] { new TypeName(PHILOSOPHER, null) };
+
+		Filter filter = new OperatorFilter(
+				new PropertyIsLessThan(new ValueReference(id), new Literal<PrimitiveValue>("4"), true, null));
+		FeatureCollection fc = indexedStore.query(new Query(typeNames, filter, null, null, null)).toCollection();
+		Assert.assertEquals(3, fc.size());
+
+		filter = new OperatorFilter(new And(
+				new PropertyIsEqualTo(new ValueReference(name), new Literal<PrimitiveValue>("Voltaire"), true, null),
+				new PropertyIsLessThan(new ValueReference(id), new Literal<PrimitiveValue>("5"), true, null)));
+		fc = indexedStore.query(new Query(typeNames, filter, null, null, null)).toCollection();
+		Assert.assertEquals(1, fc.size());
+		Assert.assertEquals("PHILOSOPHER_4", fc.iterator().next().getId());
+
+		SortProperty[] sortBy = new SortProperty[] { new SortProperty(new ValueReference(id), false) };
+		fc = indexedStore.query(new Query(typeNames, null, null, null, sortBy)).toCollection();
+		Assert.assertEquals(7, fc.size());
+		Assert.assertEquals("PHILOSOPHER_7", fc.iterator().next().getId());
+	}
+
 	@Test
 	public void testGetObjectByIdFeature() {
 		Object o = store.getObjectById("PHILOSOPHER_7");
@@ -34,8 +34,11 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.shape;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -56,6 +59,7 @@ import org.deegree.filter.sort.SortProperty;
 import org.deegree.sqldialect.filter.UnmappableException;
 import org.deegree.sqldialect.filter.expression.SQLArgument;
 import org.deegree.sqldialect.filter.expression.SQLExpression;
+import org.slf4j.Logger;
 
 /**
  * This class converts the dbf file into a H2 database, to enable proper filtering.
@@ -64,17 +68,32 @@ import org.deegree.sqldialect.filter.expression.SQLExpression;
  */
 public class DBFIndex {
 
+	private static final Logger LOG = getLogger(DBFIndex.class);
+
 	private ConnectionProvider connProvider;
 
+	private final File database;
+
+	private final boolean temporary;
+
 	/**
 	 * @param dbf
-	 * @param file
+	 * @param database h2 database (without the <code>.mv.db</code> extension), re-created
+	 * unless it belongs to the given versions of the shape and dbf file
+	 * @param shpLastModified modification time of the shape file
+	 * @param dbfLastModified modification time of the dbf file
 	 * @param envelopes
+	 * @param mappings
+	 * @param temporary whether the database is deleted by {@link #destroy()}
 	 * @throws IOException
 	 */
-	public DBFIndex(DBFReader dbf, File file, Pair<ArrayList<Pair<float[], Long>>, Boolean> envelopes,
-			List<Mapping> mappings) throws IOException {
-		connProvider = new DbfIndexImporter(dbf, file, envelopes, mappings).createIndex();
+	public DBFIndex(DBFReader dbf, File database, long shpLastModified, long dbfLastModified,
+			Pair<ArrayList<Pair<float[], Long>>, Boolean> envelopes, List<Mapping> mappings, boolean temporary)
+			throws IOException {
+		this.database = database;
+		this.temporary = temporary;
+		connProvider = new DbfIndexImporter(dbf, database, shpLastModified, dbfLastModified, envelopes, mappings)
+			.createIndex();
 	}
 
 	/**
@@ -170,6 +189,16 @@ public class DBFIndex {
 
 	public void destroy() {
 		connProvider.destroy();
+		if (temporary) {
+			try {
+				Files.deleteIfExists(new File(database + ".mv.db").toPath());
+				Files.deleteIfExists(new File(database + ".trace.db").toPath());
+			}
+			catch (IOException e) {
+				LOG.warn("H2 db index {} could not be deleted: {}", database, e.getLocalizedMessage());
+				LOG.trace("Stack trace:", e);
+			}
+		}
 	}
 
 }
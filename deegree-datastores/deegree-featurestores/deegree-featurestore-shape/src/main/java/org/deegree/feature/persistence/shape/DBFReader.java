@@ -47,9 +47,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -100,8 +98,7 @@ public class DBFReader {
 
 	private FileChannel channel;
 
-	// buffer is not thread-safe (needs to be duplicated for every thread)
-	private final ByteBuffer sharedBuffer;
+	private final MappedFile mappedFile;
 
 	/**
 	 * Already reads/parses the header.
@@ -118,9 +115,9 @@ public class DBFReader {
 		this.encoding = encoding;
 		this.file = in;
 		channel = file.getChannel();
-		sharedBuffer = channel.map(MapMode.READ_ONLY, 0, file.length());
-		ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		mappedFile = new MappedFile(channel);
+		// the header length is stored as an unsigned short
+		ByteBuffer buffer = mappedFile.getBuffer(0, 0xffff);
 
 		int version = getUnsigned(buffer);
 		if (version < 3 || version > 5) {
@@ -321,14 +318,8 @@ public class DBFReader {
 	 */
 	public HashMap<SimplePropertyType, Property> getEntry(int num) throws IOException {
 
-		ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
 		HashMap<SimplePropertyType, Property> map = new HashMap<SimplePropertyType, Property>();
-		int pos = headerLength + num * recordLength;
-		if (pos != buffer.position()) {
-			buffer.position(pos);
-			pos = headerLength + (num + 1) * recordLength;
-		}
+		ByteBuffer buffer = mappedFile.getBuffer(headerLength + (long) num * recordLength, recordLength);
 		if (getUnsigned(buffer) == 42) {
 			LOG.warn("The record with number {} is marked as deleted.", num);
 		}
@@ -418,6 +409,14 @@ public class DBFReader {
 		return map;
 	}
 
+	/**
+	 * Hints that the records are read sequentially, starting with the given one.
+	 * @param num zero based
+	 */
+	void readAhead(int num) {
+		mappedFile.readAhead(headerLength + (long) num * recordLength);
+	}
+
 	private int getUnsigned(ByteBuffer buffer) {
 		return buffer.get() & 0xff;
 	}
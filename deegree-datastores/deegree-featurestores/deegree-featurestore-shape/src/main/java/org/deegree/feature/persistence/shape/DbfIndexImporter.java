@@ -48,6 +48,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -86,16 +87,30 @@ class DbfIndexImporter {
 
 	private List<Mapping> mappings;
 
-	private File file;
+	private File database;
+
+	private long shpLastModified, dbfLastModified;
 
 	private Map<String, Mapping> fieldMap;
 
 	private LegacyConnectionProvider connProvider;
 
-	DbfIndexImporter(DBFReader dbf, File file, Pair<ArrayList<Pair<float[], Long>>, Boolean> envelopes,
-			List<Mapping> mappings) {
+	/**
+	 * @param dbf
+	 * @param database h2 database (without the <code>.mv.db</code> extension), an
+	 * existing database is only used if it has been created for the given versions of the
+	 * shape and dbf file
+	 * @param shpLastModified modification time of the shape file
+	 * @param dbfLastModified modification time of the dbf file
+	 * @param envelopes
+	 * @param mappings
+	 */
+	DbfIndexImporter(DBFReader dbf, File database, long shpLastModified, long dbfLastModified,
+			Pair<ArrayList<Pair<float[], Long>>, Boolean> envelopes, List<Mapping> mappings) {
 		this.dbf = dbf;
-		this.file = file.getAbsoluteFile();
+		this.database = database.getAbsoluteFile();
+		this.shpLastModified = shpLastModified;
+		this.dbfLastModified = dbfLastModified;
 		this.envelopes = envelopes;
 		this.mappings = mappings;
 	}
@@ -266,12 +281,23 @@ class DbfIndexImporter {
 
 			createIndexes(conn);
 
+			stmt = conn.prepareStatement("create table dbf_info (shp_last_modified bigint,dbf_last_modified bigint)");
+			stmt.executeUpdate();
+			stmt.close();
+
 			conn.setAutoCommit(false);
 			Iterator<Pair<float[], Long>> iter = envelopes.first.iterator();
 			for (int i = 0; i < dbf.size(); ++i) {
+				dbf.readAhead(i);
 				insertRow(conn, iter, i);
 			}
 
+			// written last, an incomplete import is not used
+			stmt = conn.prepareStatement("insert into dbf_info (shp_last_modified,dbf_last_modified) values (?,?)");
+			stmt.setLong(1, shpLastModified);
+			stmt.setLong(2, dbfLastModified);
+			stmt.executeUpdate();
+
 			conn.commit();
 
 		}
@@ -284,9 +310,48 @@ class DbfIndexImporter {
 		}
 	}
 
-	ConnectionProvider createIndex() throws IOException {
-		LOG.debug("Creating h2 db index...");
+	/**
+	 * Returns whether the existing database has been created for the current versions of
+	 * the shape and dbf file.
+	 */
+	private boolean isUpToDate() {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = connProvider.getConnection();
+			stmt = conn.prepareStatement("select shp_last_modified,dbf_last_modified from dbf_info");
+			rs = stmt.executeQuery();
+			return rs.next() && rs.getLong(1) == shpLastModified && rs.getLong(2) == dbfLastModified;
+		}
+		catch (SQLException e) {
+			// created by a former version of the importer
+			LOG.trace("Stack trace:", e);
+			return false;
+		}
+		finally {
+			JDBCUtils.close(rs, stmt, conn, LOG);
+		}
+	}
 
+	private void dropAll() throws IOException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try {
+			conn = connProvider.getConnection();
+			stmt = conn.prepareStatement("drop all objects");
+			stmt.executeUpdate();
+		}
+		catch (SQLException e) {
+			throw new IOException("Outdated h2 db index could not be dropped: " + e.getMessage(), e);
+		}
+		finally {
+			JDBCUtils.close(stmt);
+			JDBCUtils.close(conn);
+		}
+	}
+
+	ConnectionProvider createIndex() throws IOException {
 		StringBuilder create = new StringBuilder();
 
 		createTable(create);
@@ -294,15 +359,17 @@ class DbfIndexImporter {
 
 		appendFields(create);
 
-		File dbfile = new File(file.toString().substring(0, file.toString().lastIndexOf('.')));
-
-		connProvider = new LegacyConnectionProvider("jdbc:h2:" + dbfile, "SA", "", false, null);
+		connProvider = new LegacyConnectionProvider("jdbc:h2:" + database, "SA", "", false, null);
 
-		if (new File(dbfile.toString() + ".mv.db").exists()) {
-			// TODO proper check for database consistency
-			return connProvider;
+		if (new File(database.toString() + ".mv.db").exists()) {
+			if (isUpToDate()) {
+				return connProvider;
+			}
+			LOG.debug("Existing h2 db index {} is outdated.", database);
+			dropAll();
 		}
 
+		LOG.debug("Creating h2 db index...");
 		importDbf(create);
 
 		LOG.debug("Done creating h2 db index.");
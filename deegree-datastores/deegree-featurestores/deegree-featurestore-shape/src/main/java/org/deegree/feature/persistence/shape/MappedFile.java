@@ -0,0 +1,196 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.deegree.commons.utils.TunableParameter;
+
+/**
+ * Read-only memory mapping of a file of arbitrary size.
+ * <p>
+ * The file is mapped in segments of <code>deegree.shape.mapping.segment-size</code>
+ * bytes (at most 2 GB minus the overlap). Every segment also maps the first megabyte of
+ * its successor, so primitive values and most records can be read from a single segment.
+ * Records crossing the end of that overlap are copied into a heap buffer.
+ * </p>
+ * <p>
+ * All read methods are position based and do not modify shared state, so instances can be
+ * used by concurrent threads. If <code>deegree.shape.mapping.read-ahead</code> is enabled,
+ * {@link #readAhead(long)} loads a segment into physical memory the first time a
+ * sequential scan enters it.
+ * </p>
+ */
+final class MappedFile {
+
+	private static final long SEGMENT_SIZE = TunableParameter.get("deegree.shape.mapping.segment-size", 1L << 28);
+
+	private static final boolean READ_AHEAD = TunableParameter.get("deegree.shape.mapping.read-ahead", false);
+
+	private static final int OVERLAP = 1 << 20;
+
+	private final long size;
+
+	private final long segmentSize;
+
+	// segments are in big endian order, little endian values are reversed
+	private final MappedByteBuffer[] segments;
+
+	private final boolean[] loaded;
+
+	/**
+	 * Maps the whole content of the given channel.
+	 * @param channel to map, must not be <code>null</code>
+	 * @throws IOException
+	 */
+	MappedFile(FileChannel channel) throws IOException {
+		this(channel, getSegmentSize(SEGMENT_SIZE), OVERLAP);
+	}
+
+	/**
+	 * Maps the whole content of the given channel using the given segment size.
+	 * @param channel to map, must not be <code>null</code>
+	 * @param segmentSize size of the segments in bytes, must be positive
+	 * @param overlap number of bytes of the successor mapped by each segment, must be at
+	 * least 8 (size of the largest primitive value) and not exceed the segment size
+	 * @throws IOException
+	 */
+	MappedFile(FileChannel channel, long segmentSize, int overlap) throws IOException {
+		this.size = channel.size();
+		this.segmentSize = segmentSize;
+		int numSegments = (int) Math.max(1, (size + segmentSize - 1) / segmentSize);
+		segments = new MappedByteBuffer[numSegments];
+		loaded = new boolean[numSegments];
+		for (int i = 0; i < numSegments; ++i) {
+			long start = i * segmentSize;
+			long length = Math.min(size - start, segmentSize + overlap);
+			segments[i] = channel.map(READ_ONLY, start, length);
+		}
+	}
+
+	/**
+	 * @return the size of the file in bytes
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Returns a view of (or a copy of) the given range of the file. The returned buffer
+	 * is positioned at zero and in little endian byte order.
+	 * @param pos file position of the first byte
+	 * @param length number of bytes, is reduced if the range exceeds the end of the file
+	 * @return buffer containing the range, never <code>null</code>
+	 */
+	ByteBuffer getBuffer(long pos, int length) {
+		length = (int) Math.max(0, Math.min(length, size - pos));
+		MappedByteBuffer segment = segments[segment(pos)];
+		int offset = (int) (pos % segmentSize);
+		if (offset + length <= segment.limit()) {
+			return segment.slice(offset, length).order(LITTLE_ENDIAN);
+		}
+		// copied from the mappings, they stay valid after the channel has been closed
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			long current = pos + buffer.position();
+			segment = segments[segment(current)];
+			offset = (int) (current % segmentSize);
+			buffer.put(segment.slice(offset, Math.min(buffer.remaining(), segment.limit() - offset)));
+		}
+		buffer.flip();
+		return buffer.order(LITTLE_ENDIAN);
+	}
+
+	/**
+	 * @param pos file position
+	 * @param order byte order of the value
+	 * @return the int value at the given position
+	 */
+	int getInt(long pos, ByteOrder order) {
+		int value = segments[segment(pos)].getInt((int) (pos % segmentSize));
+		return order == BIG_ENDIAN ? value : Integer.reverseBytes(value);
+	}
+
+	/**
+	 * @param pos file position
+	 * @param order byte order of the value
+	 * @return the double value at the given position
+	 */
+	double getDouble(long pos, ByteOrder order) {
+		long value = segments[segment(pos)].getLong((int) (pos % segmentSize));
+		return Double.longBitsToDouble(order == BIG_ENDIAN ? value : Long.reverseBytes(value));
+	}
+
+	/**
+	 * Hints that the file is read sequentially from the given position on. Does nothing
+	 * unless read-ahead is enabled.
+	 * @param pos file position
+	 */
+	void readAhead(long pos) {
+		if (!READ_AHEAD || pos >= size) {
+			return;
+		}
+		int segment = segment(pos);
+		if (!loaded[segment]) {
+			// races only lead to loading a segment twice
+			loaded[segment] = true;
+			segments[segment].load();
+		}
+	}
+
+	/**
+	 * Returns the segment size to use for the configured value. The segment size is at
+	 * least the overlap, and a segment including the overlap must not exceed the maximum
+	 * size of a mapping (2 GB).
+	 * @param configured configured segment size in bytes
+	 * @return segment size in bytes
+	 */
+	static long getSegmentSize(long configured) {
+		return Math.min(Math.max(configured, OVERLAP), Integer.MAX_VALUE - OVERLAP);
+	}
+
+	private int segment(long pos) {
+		return (int) Math.min(segments.length - 1, pos / segmentSize);
+	}
+
+}
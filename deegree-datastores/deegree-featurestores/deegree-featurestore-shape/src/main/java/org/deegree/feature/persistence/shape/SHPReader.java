@@ -49,7 +49,6 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -215,8 +214,7 @@ public class SHPReader {
 
 	private FileChannel channel;
 
-	// buffer is not thread-safe (needs to be duplicated for every thread)
-	private final ByteBuffer sharedBuffer;
+	private final MappedFile mappedFile;
 
 	/**
 	 * @param inFile
@@ -229,8 +227,8 @@ public class SHPReader {
 			throws IOException {
 		file = inFile;
 		channel = file.getChannel();
-		sharedBuffer = channel.map(MapMode.READ_ONLY, 0, file.length());
-		ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+		mappedFile = new MappedFile(channel);
+		ByteBuffer buffer = mappedFile.getBuffer(0, 100);
 		buffer.order(ByteOrder.BIG_ENDIAN);
 		this.crs = crs;
 		this.rtree = rtree;
@@ -355,14 +353,11 @@ public class SHPReader {
 
 		LOG.debug("Querying shp with bbox {}", bbox);
 
-		ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
 		List<Long> pointers = (List<Long>) rtree.query(createEnvelope(bbox));
 		List<Pair<Integer, Long>> recNums = new ArrayList<Pair<Integer, Long>>(pointers.size());
 		Collections.sort(pointers);
 		for (Long ptr : pointers) {
-			buffer.position((int) (ptr - 8));
-			int num = getBEInt(buffer);
+			int num = mappedFile.getInt(ptr - 8, BIG_ENDIAN);
 			if (num == 0 && !recordNumStartsWith0 && rtree != null) {
 				LOG.error(
 						"PLEASE NOTE THIS: Detected that the shape file starts counting record numbers at 0 and not at 1 as specified!");
@@ -394,17 +389,13 @@ public class SHPReader {
 	public LinkedList<Pair<Integer, Geometry>> query(Envelope bbox, boolean withGeometry, boolean exact) {
 
 		LOG.debug("Querying shp with bbox {}", bbox);
-		ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
 
 		LinkedList<Pair<Integer, Geometry>> list = new LinkedList<Pair<Integer, Geometry>>();
 
 		List<Long> pointers = (List<Long>) rtree.query(createEnvelope(bbox));
 		Collections.sort(pointers);
 		for (Long ptr : pointers) {
-			buffer.position((int) (ptr - 8));
-
-			int num = getBEInt(buffer);
+			int num = mappedFile.getInt(ptr - 8, BIG_ENDIAN);
 			if (num == 0 && !recordNumStartsWith0) {
 				LOG.error(
 						"PLEASE NOTE THIS: Detected that the shape file starts counting record numbers at 0 and not at 1 as specified!");
@@ -421,7 +412,8 @@ public class SHPReader {
 				continue;
 			}
 
-			int length = getBEInt(buffer) * 2; // bah, 16 bit length units here as well!
+			int length = mappedFile.getInt(ptr - 4, BIG_ENDIAN) * 2; // bah, 16 bit length units here as well!
+			ByteBuffer buffer = mappedFile.getBuffer(ptr, length);
 
 			int type = buffer.getInt();
 			switch (type) {
@@ -510,47 +502,48 @@ public class SHPReader {
 	 * @return a list of all envelopes (minx, miny, maxx, maxy)
 	 */
 	public Pair<ArrayList<Pair<float[], Long>>, Boolean> readEnvelopes() {
-		ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
 		ArrayList<Pair<float[], Long>> list = new ArrayList<Pair<float[], Long>>();
 		boolean startsFromZero = false;
 
-		buffer.position(100);
+		long size = mappedFile.size();
+		long recPos = 100;
 
-		while (buffer.position() + 1 < buffer.capacity()) {
-			int recNum = getBEInt(buffer);
+		while (recPos + 1 < size) {
+			mappedFile.readAhead(recPos);
+			int recNum = mappedFile.getInt(recPos, BIG_ENDIAN);
 			if (!startsFromZero) {
 				startsFromZero = recNum == 0;
 			}
-			int length = getBEInt(buffer) * 2; // bah, 16 bit length units here as well!
-			long pos = buffer.position();
-			int type = buffer.getInt();
+			// bah, 16 bit length units here as well!
+			int length = mappedFile.getInt(recPos + 4, BIG_ENDIAN) * 2;
+			long pos = recPos + 8;
+			int type = mappedFile.getInt(pos, LITTLE_ENDIAN);
 			switch (type) {
 				case NULL:
 					list.add(new Pair<float[], Long>(null, pos));
 					break;
 				case POINT: {
-					double x = buffer.getDouble();
-					double y = buffer.getDouble();
+					double x = mappedFile.getDouble(pos + 4, LITTLE_ENDIAN);
+					double y = mappedFile.getDouble(pos + 12, LITTLE_ENDIAN);
 					Pair<float[], Long> p = new Pair<float[], Long>(
 							new float[] { (float) x, (float) y, (float) x, (float) y }, pos);
 					list.add(p);
 					break;
 				}
 				default: {
-					Pair<float[], Long> p = new Pair<float[], Long>(new float[] { (float) buffer.getDouble(),
-							(float) buffer.getDouble(), (float) buffer.getDouble(), (float) buffer.getDouble() }, pos);
-					list.add(p);
+					float[] env = new float[4];
+					for (int i = 0; i < 4; ++i) {
+						env[i] = (float) mappedFile.getDouble(pos + 4 + i * 8, LITTLE_ENDIAN);
+					}
+					list.add(new Pair<float[], Long>(env, pos));
 					break;
 				}
 			}
 
-			try {
-				buffer.position((int) (pos + length));
-			}
-			catch (IllegalArgumentException e) {
+			recPos = pos + length;
+			if (length < 0 || recPos > size) {
 				// ignore it, this seems to happen with some broken shape files
-				return new Pair<ArrayList<Pair<float[], Long>>, Boolean>(list, startsFromZero);
+				break;
 			}
 		}
 
@@ -565,12 +558,9 @@ public class SHPReader {
 	public Geometry readGeometry(long ptr) {
 
 		LOG.trace("Retrieving geometry at position {}", ptr);
-		ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-		buffer.position((int) (ptr - 4));
 
-		int length = getBEInt(buffer) * 2; // bah, 16 bit length units here as well!
+		int length = mappedFile.getInt(ptr - 4, BIG_ENDIAN) * 2; // bah, 16 bit length units here as well!
+		ByteBuffer buffer = mappedFile.getBuffer(ptr, length);
 		int type = buffer.getInt();
 
 		Geometry g = null;
@@ -34,11 +34,13 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.shape;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.deegree.commons.utils.CollectionUtils.unzipPair;
 import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2_OR_3;
 import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
 import static org.deegree.filter.Filters.splitOffBBoxConstraint;
-import static org.deegree.geometry.utils.GeometryUtils.createEnvelope;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.BufferedReader;
@@ -47,6 +49,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -57,16 +60,21 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.namespace.QName;
 
 import org.apache.commons.io.IOUtils;
-import org.deegree.commons.index.RTree;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.gml.property.PropertyType;
 import org.deegree.commons.utils.CloseableIterator;
+import org.deegree.commons.utils.MBeanUtils;
 import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.TunableParameter;
 import org.deegree.cs.configuration.wkt.WKTParser;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.UnknownCRSException;
@@ -79,7 +87,8 @@ import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
-import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
+import org.deegree.feature.persistence.cache.ConcurrentFeatureStoreCache;
+import org.deegree.feature.persistence.cache.ConcurrentFeatureStoreCacheMBean;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
@@ -119,11 +128,23 @@ public class ShapeFeatureStore implements FeatureStore {
 
 	private static final Logger LOG = getLogger(ShapeFeatureStore.class);
 
-	private SHPReader shp;
+	private static final long CHECK_INTERVAL = TunableParameter.get("deegree.shapefeaturestore.check-interval",
+			1000L);
 
-	private DBFReader dbf;
+	// replaced versions are closed when their last query is closed, queries that are
+	// never closed must not keep them open forever
+	private static final long MAX_CLOSE_DELAY = TunableParameter.get("deegree.shapefeaturestore.max-close-delay",
+			3600000L);
 
-	private long shpLastModified, dbfLastModified;
+	private static ScheduledExecutorService reloader;
+
+	private volatile ShapeFiles files;
+
+	private final AtomicBoolean reloading = new AtomicBoolean();
+
+	private volatile long lastCheck;
+
+	private volatile boolean destroyed;
 
 	private File shpFile, dbfFile;
 
@@ -137,14 +158,8 @@ public class ShapeFeatureStore implements FeatureStore {
 
 	private GeometryTransformer transformer;
 
-	private FeatureType ft;
-
-	private AppSchema schema;
-
 	private final FeatureStoreCache cache;
 
-	private DBFIndex dbfIndex;
-
 	private QName ftName;
 
 	private boolean generateAlphanumericIndexes;
@@ -206,7 +221,7 @@ public class ShapeFeatureStore implements FeatureStore {
 			this.cache = cache;
 		}
 		else {
-			this.cache = new SimpleFeatureStoreCache();
+			this.cache = new ConcurrentFeatureStoreCache();
 		}
 	}
 
@@ -245,15 +260,15 @@ public class ShapeFeatureStore implements FeatureStore {
 
 	private SHPReader getSHP(boolean forceIndexRebuild) throws IOException {
 
-		shp = null;
+		SHPReader shp = null;
 
 		File rtfile = new File(shpName + ".rti");
 		RandomAccessFile raf = new RandomAccessFile(shpFile, "r");
 
 		if (rtfile.exists() && !(rtfile.lastModified() < shpFile.lastModified()) && !forceIndexRebuild) {
 			try {
-				LOG.debug("Loading RTree from disk.");
-				RTree<Long> rtree = RTree.loadFromDisk(shpName + ".rti");
+				LOG.debug("Mapping rtree index from disk.");
+				PackedRTree rtree = PackedRTree.load(rtfile);
 				shp = new SHPReader(raf, storageCrs, rtree, rtree.getExtraFlag());
 			}
 			catch (IOException e) {
@@ -269,63 +284,148 @@ public class ShapeFeatureStore implements FeatureStore {
 
 		LOG.debug("Building rtree index in memory for '{}'", new File(shpName).getName());
 
-		Pair<RTree<Long>, Boolean> p = createIndex(shp);
+		PackedRTree rtree = createIndex(shp);
 		LOG.debug("done building index.");
-		shp = new SHPReader(raf, storageCrs, p.first, p.second);
-		p.first.writeTreeToDisk(shpName + ".rti");
+		shp = new SHPReader(raf, storageCrs, rtree, rtree.getExtraFlag());
+		try {
+			// the former index file may still be mapped, so it is replaced instead of
+			// overwritten
+			File tmpFile = new File(shpName + ".rti.tmp");
+			rtree.write(tmpFile);
+			Files.move(tmpFile.toPath(), rtfile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			LOG.warn("Rtree index could not be written to '{}': {}", rtfile, e.getLocalizedMessage());
+			LOG.trace("Stack trace:", e);
+		}
 		return shp;
 	}
 
 	/**
 	 * @param shapeReader
 	 */
-	private static Pair<RTree<Long>, Boolean> createIndex(SHPReader shapeReader) {
-		Envelope env = shapeReader.getEnvelope();
-		// use 128 values per rect.
-		RTree<Long> result = new RTree<Long>(createEnvelope(env), -1);
-		// to work around Java's non-existent variant type
+	private static PackedRTree createIndex(SHPReader shapeReader) {
+		// use 16 values per node, the tree is packed and sorted along a hilbert curve
+		PackedRTree result = new PackedRTree(16);
 		LOG.debug("Read envelopes from shape file...");
 		Pair<ArrayList<Pair<float[], Long>>, Boolean> p = shapeReader.readEnvelopes();
 		LOG.debug("done reading envelopes.");
 		result.insertBulk(p.first);
-		return new Pair<RTree<Long>, Boolean>(result, p.second);
+		result.setExtraFlag(p.second);
+		return result;
+	}
+
+	/**
+	 * Opens the shape and dbf file and sets up the indexes.
+	 * @param forceIndexRebuild whether to rebuild the rtree index even if it is up to date
+	 * @param reopen whether the files are re-opened while the former version is still in
+	 * use, the alphanumeric index is created in a new database then
+	 * @return the opened files, never <code>null</code>
+	 * @throws IOException if the .shp could not be loaded
+	 */
+	private ShapeFiles open(boolean forceIndexRebuild, boolean reopen) throws IOException {
+		long shpLastModified = shpFile.lastModified();
+		long dbfLastModified = dbfFile.lastModified();
+		SHPReader shp = getSHP(forceIndexRebuild);
+
+		DBFReader dbf = null;
+		DBFIndex dbfIndex = null;
+		FeatureType ft;
+		try {
+			dbf = new DBFReader(new RandomAccessFile(dbfFile, "r"), encoding, ftName, shp.getGeometryType(), mappings);
+
+			if (generateAlphanumericIndexes) {
+				// the database of the former version may still be queried, so a new version
+				// gets its own database, which is deleted when it is replaced
+				File database = reopen ? new File(shpName + "-" + System.currentTimeMillis()) : new File(shpName);
+				dbfIndex = new DBFIndex(dbf, database, shpLastModified, dbfLastModified, shp.readEnvelopes(), mappings,
+						reopen);
+			}
+
+			ft = dbf.getFeatureType();
+		}
+		catch (IOException e) {
+			LOG.warn("A dbf file was not loaded (no attributes will be available): {}.dbf", shpName);
+			GeometryPropertyType geomProp = new GeometryPropertyType(
+					new QName(ftName.getNamespaceURI(), "geometry", ftName.getPrefix()), 0, 1, null, null,
+					shp.getGeometryType(), DIM_2_OR_3, BOTH);
+			ft = new GenericFeatureType(ftName, Collections.<PropertyType>singletonList(geomProp), false);
+		}
+		AppSchema schema = new GenericAppSchema(new FeatureType[] { ft }, null, null, null, null, null);
+		return new ShapeFiles(shp, dbf, dbfIndex, ft, schema, shpLastModified, dbfLastModified);
 	}
 
+	/**
+	 * Checks whether the shape or dbf file have been modified, at most once every
+	 * <code>deegree.shapefeaturestore.check-interval</code> milliseconds. Modified files
+	 * are re-opened in the background, queries use the former version until the new one
+	 * is ready.
+	 */
 	private void checkForUpdate() {
+		ShapeFiles current = files;
+		long now = System.currentTimeMillis();
+		if (current == null || now - lastCheck < CHECK_INTERVAL) {
+			return;
+		}
+		lastCheck = now;
+		if (current.shpLastModified == shpFile.lastModified() && current.dbfLastModified == dbfFile.lastModified()) {
+			return;
+		}
+		if (reloading.compareAndSet(false, true)) {
+			getReloader().execute(() -> reload(current));
+		}
+	}
+
+	private void reload(ShapeFiles former) {
 		try {
-			synchronized (shpFile) {
-				if (shpLastModified != shpFile.lastModified()) {
-					shp.close();
-					LOG.debug("Re-opening the shape file {}", shpName);
-					shp = getSHP(true);
-					shpLastModified = shpFile.lastModified();
-					cache.clear();
-				}
+			if (destroyed) {
+				return;
 			}
-			synchronized (dbfFile) {
-				if (dbf != null && dbfLastModified != dbfFile.lastModified()) {
-					dbf.close();
-					LOG.debug("Re-opening the dbf file {}", shpName);
-					dbf = new DBFReader(new RandomAccessFile(dbfFile, "r"), encoding, ftName, shp.getGeometryType(),
-							mappings);
-					if (generateAlphanumericIndexes) {
-						// set up index
-						dbfIndex = new DBFIndex(dbf, dbfFile, shp.readEnvelopes(), mappings);
-					}
-					ft = dbf.getFeatureType();
-					schema = new GenericAppSchema(new FeatureType[] { ft }, null, null, null, null, null);
-					dbfLastModified = dbfFile.lastModified();
-					cache.clear();
+			LOG.debug("Re-opening the shape file {}", shpName);
+			ShapeFiles reopened = open(former.shpLastModified != shpFile.lastModified(), true);
+			synchronized (this) {
+				if (destroyed) {
+					reopened.close();
+					return;
 				}
+				files = reopened;
 			}
+			cache.clear();
+			former.retire();
+			getReloader().schedule(former::close, MAX_CLOSE_DELAY, MILLISECONDS);
+			LOG.debug("Done re-opening the shape file {}", shpName);
 		}
-		catch (IOException e) {
-			available = false;
-			LOG.debug("Shape file {} is unavailable at the moment: {}", shpName, e.getLocalizedMessage());
-			LOG.trace("Stack trace was {}", e);
+		catch (Exception e) {
+			// the former version stays in use, re-opening is retried with the next check
+			LOG.debug("Shape file {} could not be re-opened at the moment: {}", shpName, e.getLocalizedMessage());
+			LOG.trace("Stack trace:", e);
+		}
+		finally {
+			reloading.set(false);
 		}
 	}
 
+	/**
+	 * Re-opens the shape and dbf file immediately, without checking for modifications.
+	 */
+	void reload() {
+		ShapeFiles current = files;
+		if (current != null && reloading.compareAndSet(false, true)) {
+			reload(current);
+		}
+	}
+
+	private static synchronized ScheduledExecutorService getReloader() {
+		if (reloader == null) {
+			reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "shapefeaturestore-reload");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return reloader;
+	}
+
 	/**
 	 * @param bbox
 	 * @return the bbox in the native srs
@@ -368,46 +468,61 @@ public class ShapeFeatureStore implements FeatureStore {
 			return new MemoryFeatureInputStream(new GenericFeatureCollection());
 		}
 
-		if (query.getTypeNames().length > 0) {
-			QName featureType = query.getTypeNames()[0].getFeatureTypeName();
-			if (featureType != null && !featureType.equals(ft.getName())) {
-				// or null?
-				return new MemoryFeatureInputStream(new GenericFeatureCollection());
-			}
-		}
-
 		checkForUpdate();
 
 		if (!available) {
 			return null;
 		}
 
-		Filter filter = query.getFilter();
-		Pair<Filter, Envelope> filterPair = splitOffBBoxConstraint(filter);
+		// the files are released when the returned stream is closed or exhausted
+		ShapeFiles current = acquireFiles();
+		if (current == null) {
+			return null;
+		}
+		FeatureIterator features = null;
+		Pair<Filter, SortProperty[]> p;
+		try {
+			if (query.getTypeNames().length > 0) {
+				QName featureType = query.getTypeNames()[0].getFeatureTypeName();
+				if (featureType != null && !featureType.equals(current.ft.getName())) {
+					// or null?
+					return new MemoryFeatureInputStream(new GenericFeatureCollection());
+				}
+			}
 
-		List<Pair<Integer, Long>> recNumsAndPos = new LinkedList<Pair<Integer, Long>>();
-		Envelope bbox = getTransformedEnvelope(query.getPrefilterBBoxEnvelope());
+			Filter filter = query.getFilter();
+			Pair<Filter, Envelope> filterPair = splitOffBBoxConstraint(filter);
 
-		if (bbox == null) {
-			getEnvelope(null);
-		}
+			List<Pair<Integer, Long>> recNumsAndPos = new LinkedList<Pair<Integer, Long>>();
+			Envelope bbox = getTransformedEnvelope(query.getPrefilterBBoxEnvelope());
 
-		boolean queryIndex = filterPair.first == null || !generateAlphanumericIndexes;
-		Pair<Filter, SortProperty[]> p = queryIndex ? null
-				: dbfIndex.query(recNumsAndPos, filterPair.first, query.getSortProperties());
-		HashSet<Integer> recNums = new HashSet<Integer>(unzipPair(recNumsAndPos).first);
-		if (idFilterNums != null) {
-			recNums.addAll(idFilterNums);
-		}
-		recNumsAndPos = shp.query(bbox, filter == null || p == null ? null : recNums);
-		LOG.debug("{} records matching after BBOX filtering", recNumsAndPos.size());
+			if (bbox == null) {
+				getEnvelope(null);
+			}
+
+			boolean queryIndex = filterPair.first == null || !generateAlphanumericIndexes;
+			p = queryIndex ? null : current.dbfIndex.query(recNumsAndPos, filterPair.first, query.getSortProperties());
+			HashSet<Integer> recNums = new HashSet<Integer>(unzipPair(recNumsAndPos).first);
+			if (idFilterNums != null) {
+				recNums.addAll(idFilterNums);
+			}
+			recNumsAndPos = current.shp.query(bbox, filter == null || p == null ? null : recNums);
+			LOG.debug("{} records matching after BBOX filtering", recNumsAndPos.size());
+
+			// don't forget about filters if dbf index could not be queried
+			if (p == null) {
+				p = new Pair<Filter, SortProperty[]>(filterPair.first, query.getSortProperties());
+			}
 
-		// don't forget about filters if dbf index could not be queried
-		if (p == null) {
-			p = new Pair<Filter, SortProperty[]>(filterPair.first, query.getSortProperties());
+			features = new FeatureIterator(current, recNumsAndPos.iterator());
+		}
+		finally {
+			if (features == null) {
+				current.release();
+			}
 		}
 
-		FeatureInputStream rs = new IteratorFeatureInputStream(new FeatureIterator(recNumsAndPos.iterator()));
+		FeatureInputStream rs = new IteratorFeatureInputStream(features);
 
 		if (p.first != null) {
 			LOG.debug("Applying in-memory filtering.");
@@ -422,6 +537,20 @@ public class ShapeFeatureStore implements FeatureStore {
 		return rs;
 	}
 
+	/**
+	 * Returns the current version of the files, which must be released after use.
+	 * @return the acquired files, <code>null</code> if the store has been destroyed
+	 */
+	private ShapeFiles acquireFiles() {
+		while (true) {
+			ShapeFiles current = files;
+			// fails only if the version has been replaced and closed in the meantime
+			if (current == null || current.acquire()) {
+				return current;
+			}
+		}
+	}
+
 	@Override
 	public FeatureInputStream query(final Query[] queries) throws FeatureStoreException, FilterEvaluationException {
 		Iterator<FeatureInputStream> rsIter = new Iterator<FeatureInputStream>() {
@@ -455,19 +584,23 @@ public class ShapeFeatureStore implements FeatureStore {
 		return new CombinedFeatureInputStream(rsIter);
 	}
 
-	private Feature retrieveFeature(Pair<Integer, Long> recNumAndPos) throws FeatureStoreException {
+	private Feature retrieveFeature(ShapeFiles current, Pair<Integer, Long> recNumAndPos)
+			throws FeatureStoreException {
 
 		String fid = buildFID(recNumAndPos.first);
-		Feature feature = (Feature) cache.get(fid);
+		// queries that started before the files have been re-opened must neither use nor
+		// fill the cache of the new version
+		boolean currentVersion = current == files;
+		Feature feature = currentVersion ? (Feature) cache.get(fid) : null;
 
 		if (feature == null) {
 			LOG.trace("Cache miss for feature {}", fid);
 
 			// add simple properties
 			HashMap<SimplePropertyType, Property> entry;
-			if (dbf != null) {
+			if (current.dbf != null) {
 				try {
-					entry = dbf.getEntry(recNumAndPos.first);
+					entry = current.dbf.getEntry(recNumAndPos.first);
 				}
 				catch (IOException e) {
 					LOG.trace("Stack trace", e);
@@ -478,6 +611,7 @@ public class ShapeFeatureStore implements FeatureStore {
 				entry = new HashMap<SimplePropertyType, Property>();
 			}
 			LinkedList<Property> props = new LinkedList<Property>();
+			FeatureType ft = current.ft;
 			for (PropertyType t : ft.getPropertyDeclarations()) {
 				if (entry.containsKey(t)) {
 					props.add(entry.get(t));
@@ -485,11 +619,17 @@ public class ShapeFeatureStore implements FeatureStore {
 			}
 
 			// add geometry property
-			Geometry g = shp.readGeometry(recNumAndPos.second);
+			Geometry g = current.shp.readGeometry(recNumAndPos.second);
 			props.add(new GenericProperty(ft.getDefaultGeometryPropertyDeclaration(), g));
 			feature = ft.newFeature(fid, props, null);
 
-			cache.add(feature);
+			if (currentVersion) {
+				cache.add(feature);
+				if (current != files) {
+					// re-opened in the meantime, the cache may have been cleared before
+					cache.remove(fid);
+				}
+			}
 		}
 		else {
 			LOG.trace("Cache hit for feature {}", fid);
@@ -524,10 +664,11 @@ public class ShapeFeatureStore implements FeatureStore {
 	@Override
 	public Envelope calcEnvelope(QName ftName) {
 		checkForUpdate();
-		if (shp == null) {
+		ShapeFiles current = files;
+		if (current == null) {
 			return null;
 		}
-		return shp.getEnvelope();
+		return current.shp.getEnvelope();
 	}
 
 	@Override
@@ -543,24 +684,17 @@ public class ShapeFeatureStore implements FeatureStore {
 	@Override
 	public void destroy() {
 		cache.clear();
-		try {
-			if (shp != null) {
-				shp.close();
-			}
+		if (cache instanceof ConcurrentFeatureStoreCache && metadata != null) {
+			MBeanUtils.unregister(ConcurrentFeatureStoreCache.MBEAN_TYPE, metadata.getIdentifier().getId());
 		}
-		catch (IOException e) {
-			LOG.debug("SHP could not be closed:", e);
-		}
-		if (dbf != null) {
-			try {
-				dbf.close();
-			}
-			catch (IOException e) {
-				LOG.debug("DBF could not be closed:", e);
-			}
+		ShapeFiles current;
+		synchronized (this) {
+			destroyed = true;
+			current = files;
+			files = null;
 		}
-		if (dbfIndex != null) {
-			dbfIndex.destroy();
+		if (current != null) {
+			current.close();
 		}
 	}
 
@@ -590,12 +724,13 @@ public class ShapeFeatureStore implements FeatureStore {
 
 	@Override
 	public AppSchema getSchema() {
-		return schema;
+		ShapeFiles current = files;
+		return current == null ? null : current.schema;
 	}
 
 	@Override
 	public boolean isMapped(QName ftName) {
-		return schema.getFeatureType(ftName) != null;
+		return getSchema().getFeatureType(ftName) != null;
 	}
 
 	@Override
@@ -614,15 +749,23 @@ public class ShapeFeatureStore implements FeatureStore {
 
 	private class FeatureIterator implements CloseableIterator<Feature> {
 
+		private final ShapeFiles current;
+
 		private final Iterator<Pair<Integer, Long>> recIter;
 
-		FeatureIterator(Iterator<Pair<Integer, Long>> recIter) {
+		private boolean released;
+
+		FeatureIterator(ShapeFiles current, Iterator<Pair<Integer, Long>> recIter) {
+			this.current = current;
 			this.recIter = recIter;
 		}
 
 		@Override
 		public void close() {
-			// nothing to do
+			if (!released) {
+				released = true;
+				current.release();
+			}
 		}
 
 		@Override
@@ -640,7 +783,12 @@ public class ShapeFeatureStore implements FeatureStore {
 
 		@Override
 		public boolean hasNext() {
-			return recIter.hasNext();
+			boolean hasNext = recIter.hasNext();
+			if (!hasNext) {
+				// streams that are read completely may not be closed explicitly
+				close();
+			}
+			return hasNext;
 		}
 
 		@SuppressWarnings("synthetic-access")
@@ -648,7 +796,7 @@ public class ShapeFeatureStore implements FeatureStore {
 		public Feature next() {
 			Feature f = null;
 			try {
-				f = retrieveFeature(recIter.next());
+				f = retrieveFeature(current, recIter.next());
 			}
 			catch (FeatureStoreException e) {
 				throw new RuntimeException(e.getMessage(), e);
@@ -676,6 +824,11 @@ public class ShapeFeatureStore implements FeatureStore {
 
 		LOG.debug("Loading shape file '{}'", shpName);
 
+		if (cache instanceof ConcurrentFeatureStoreCache && metadata != null) {
+			MBeanUtils.register(ConcurrentFeatureStoreCache.MBEAN_TYPE, metadata.getIdentifier().getId(),
+					(ConcurrentFeatureStoreCache) cache, ConcurrentFeatureStoreCacheMBean.class);
+		}
+
 		if (storageCrs == null) {
 			File prj = new File(shpName + ".PRJ");
 			if (!prj.exists()) {
@@ -724,42 +877,115 @@ public class ShapeFeatureStore implements FeatureStore {
 		if (!shpFile.exists()) {
 			shpFile = new File(shpName + ".shp");
 		}
-		shpLastModified = shpFile.lastModified();
 		dbfFile = new File(shpName + ".DBF");
 		if (!dbfFile.exists()) {
 			dbfFile = new File(shpName + ".dbf");
 		}
-		dbfLastModified = dbfFile.lastModified();
 
 		try {
-			shp = getSHP(false);
+			files = open(false, false);
 		}
 		catch (IOException e) {
 			String msg = "The shape datastore for '" + shpName
 					+ "' could not be initialized, because the .shp could not be loaded.";
 			throw new ResourceInitException(msg);
 		}
+		lastCheck = System.currentTimeMillis();
+	}
 
-		String namespace = ftName.getNamespaceURI();
+	/**
+	 * Readers and indexes of one version of the shape and dbf file. Replaced as a whole
+	 * when the files are modified, the replaced version is closed when the last query
+	 * using it has been closed.
+	 */
+	private static class ShapeFiles {
 
-		try {
-			dbf = new DBFReader(new RandomAccessFile(dbfFile, "r"), encoding, ftName, shp.getGeometryType(), mappings);
+		final SHPReader shp;
 
-			if (generateAlphanumericIndexes) {
-				// set up index
-				dbfIndex = new DBFIndex(dbf, dbfFile, shp.readEnvelopes(), mappings);
+		// null if the dbf could not be loaded
+		final DBFReader dbf;
+
+		final DBFIndex dbfIndex;
+
+		final FeatureType ft;
+
+		final AppSchema schema;
+
+		final long shpLastModified, dbfLastModified;
+
+		// number of queries that use the files
+		private int users;
+
+		private boolean retired;
+
+		private boolean closed;
+
+		ShapeFiles(SHPReader shp, DBFReader dbf, DBFIndex dbfIndex, FeatureType ft, AppSchema schema,
+				long shpLastModified, long dbfLastModified) {
+			this.shp = shp;
+			this.dbf = dbf;
+			this.dbfIndex = dbfIndex;
+			this.ft = ft;
+			this.schema = schema;
+			this.shpLastModified = shpLastModified;
+			this.dbfLastModified = dbfLastModified;
+		}
+
+		/**
+		 * Registers a query that uses the files.
+		 * @return <code>false</code>, if the files have been closed already
+		 */
+		synchronized boolean acquire() {
+			if (closed) {
+				return false;
 			}
+			users++;
+			return true;
+		}
 
-			ft = dbf.getFeatureType();
+		synchronized void release() {
+			if (--users == 0 && retired) {
+				close();
+			}
 		}
-		catch (IOException e) {
-			LOG.warn("A dbf file was not loaded (no attributes will be available): {}.dbf", shpName);
-			GeometryPropertyType geomProp = new GeometryPropertyType(
-					new QName(namespace, "geometry", ftName.getPrefix()), 0, 1, null, null, shp.getGeometryType(),
-					DIM_2_OR_3, BOTH);
-			ft = new GenericFeatureType(ftName, Collections.<PropertyType>singletonList(geomProp), false);
+
+		/**
+		 * Marks the files as replaced, they are closed as soon as they are not used anymore.
+		 */
+		synchronized void retire() {
+			retired = true;
+			if (users == 0) {
+				close();
+			}
+		}
+
+		synchronized void close() {
+			if (closed) {
+				return;
+			}
+			if (users > 0) {
+				LOG.warn("Closing shape and dbf readers that are still used by {} queries.", users);
+			}
+			closed = true;
+			try {
+				shp.close();
+			}
+			catch (IOException e) {
+				LOG.debug("SHP could not be closed:", e);
+			}
+			if (dbf != null) {
+				try {
+					dbf.close();
+				}
+				catch (IOException e) {
+					LOG.debug("DBF could not be closed:", e);
+				}
+			}
+			if (dbfIndex != null) {
+				dbfIndex.destroy();
+			}
 		}
-		schema = new GenericAppSchema(new FeatureType[] { ft }, null, null, null, null, null);
+
 	}
 
 }
\ No newline at end of file
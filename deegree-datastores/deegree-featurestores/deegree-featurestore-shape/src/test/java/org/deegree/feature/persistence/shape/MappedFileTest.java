@@ -0,0 +1,150 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link MappedFile}, using small segments to cover the segment boundaries.
+ */
+public class MappedFileTest {
+
+	// segments start at 0, 64, 128 and 192 and map 8 bytes of their successor
+	private static final int SEGMENT_SIZE = 64;
+
+	private static final int OVERLAP = 8;
+
+	private static final int FILE_SIZE = 256;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testSize() throws Exception {
+		assertThat(map(sequence()).size(), is((long) FILE_SIZE));
+	}
+
+	@Test
+	public void testGetBufferWithinSegment() throws Exception {
+		ByteBuffer buffer = map(sequence()).getBuffer(10, 20);
+		assertTrue(buffer.isDirect());
+		assertSequence(buffer, 10, 20);
+	}
+
+	@Test
+	public void testGetBufferWithinOverlap() throws Exception {
+		ByteBuffer buffer = map(sequence()).getBuffer(60, 12);
+		assertTrue(buffer.isDirect());
+		assertSequence(buffer, 60, 12);
+	}
+
+	@Test
+	public void testGetBufferCrossingSegments() throws Exception {
+		// crosses the overlap of the first and the whole second segment
+		ByteBuffer buffer = map(sequence()).getBuffer(60, 100);
+		assertThat(buffer.isDirect(), is(false));
+		assertThat(buffer.order(), is(LITTLE_ENDIAN));
+		assertSequence(buffer, 60, 100);
+	}
+
+	@Test
+	public void testGetBufferAtEndOfFile() throws Exception {
+		MappedFile file = map(sequence());
+		assertSequence(file.getBuffer(250, 20), 250, 6);
+		assertThat(file.getBuffer(FILE_SIZE, 4).remaining(), is(0));
+	}
+
+	@Test
+	public void testGetIntAndDoubleAtSegmentEnds() throws Exception {
+		ByteBuffer content = ByteBuffer.wrap(sequence());
+		content.order(BIG_ENDIAN).putInt(62, 0x12345678);
+		content.order(LITTLE_ENDIAN).putDouble(124, 1.5);
+		content.order(LITTLE_ENDIAN).putInt(190, -42);
+		content.order(BIG_ENDIAN).putDouble(248, -0.25);
+		MappedFile file = map(content.array());
+
+		assertThat(file.getInt(62, BIG_ENDIAN), is(0x12345678));
+		assertThat(file.getDouble(124, LITTLE_ENDIAN), is(1.5));
+		assertThat(file.getInt(190, LITTLE_ENDIAN), is(-42));
+		assertThat(file.getDouble(248, BIG_ENDIAN), is(-0.25));
+	}
+
+	@Test
+	public void testSegmentSizeIsLimited() {
+		assertThat(MappedFile.getSegmentSize(1L << 28), is(1L << 28));
+		assertThat(MappedFile.getSegmentSize(1), is(1L << 20));
+		assertThat(MappedFile.getSegmentSize(Long.MAX_VALUE) + (1L << 20), is((long) Integer.MAX_VALUE));
+		assertThat(MappedFile.getSegmentSize(Integer.MAX_VALUE) + (1L << 20), is((long) Integer.MAX_VALUE));
+	}
+
+	private MappedFile map(byte[] content) throws Exception {
+		File file = tempFolder.newFile();
+		Files.write(file.toPath(), content);
+		try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+			return new MappedFile(channel, SEGMENT_SIZE, OVERLAP);
+		}
+	}
+
+	private static byte[] sequence() {
+		byte[] content = new byte[FILE_SIZE];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		return content;
+	}
+
+	private static void assertSequence(ByteBuffer buffer, int start, int length) {
+		assertThat(buffer.position(), is(0));
+		assertThat(buffer.remaining(), is(length));
+		for (int i = 0; i < length; i++) {
+			assertThat(buffer.get(i), is((byte) (start + i)));
+		}
+	}
+
+}
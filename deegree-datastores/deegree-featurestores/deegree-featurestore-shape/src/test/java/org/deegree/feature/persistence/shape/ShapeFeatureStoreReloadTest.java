@@ -0,0 +1,274 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.shape;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.filter.Filter;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests re-opening of modified shape and dbf files by {@link ShapeFeatureStore}.
+ */
+public class ShapeFeatureStoreReloadTest {
+
+	private static final String NS = "http://www.deegree.org/app";
+
+	private static final QName FT_NAME = new QName(NS, "places");
+
+	private static final QName NAME = new QName(NS, "NAME");
+
+	private static final int NAME_LENGTH = 10;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private String shpName;
+
+	private ShapeFeatureStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		shpName = new File(tempFolder.getRoot(), "places").getPath();
+		writeShp(3);
+		writeDbf("A", "B", "C");
+		store = createStore();
+	}
+
+	@After
+	public void tearDown() {
+		if (store != null) {
+			store.destroy();
+		}
+	}
+
+	@Test
+	public void testAlphanumericIndexIsRecreatedOnReload() throws Exception {
+		assertThat(queryNames(equalTo("B")), is(asList("B")));
+
+		writeDbf("B", "B", "X");
+		store.reload();
+
+		assertThat(queryNames(equalTo("B")), is(asList("B", "B")));
+		assertThat(queryNames(equalTo("C")), is(emptyList()));
+		assertThat(queryNames(null), is(asList("B", "B", "X")));
+	}
+
+	@Test
+	public void testReloadedIndexIsDeletedOnDestroy() throws Exception {
+		writeDbf("X", "Y", "Z");
+		store.reload();
+		assertThat(countReloadedIndexes(), is(1));
+
+		store.destroy();
+		store = null;
+		assertThat(countReloadedIndexes(), is(0));
+	}
+
+	@Test
+	public void testOutdatedIndexIsRecreatedOnInit() throws Exception {
+		store.destroy();
+		writeDbf("X", "B", "Z");
+		store = createStore();
+
+		assertThat(queryNames(equalTo("B")), is(asList("B")));
+		assertThat(queryNames(equalTo("X")), is(asList("X")));
+		assertThat(queryNames(equalTo("A")), is(emptyList()));
+	}
+
+	@Test
+	public void testQueriesStartedBeforeReloadDoNotFillCache() throws Exception {
+		Iterator<Feature> former = store.query(new Query(FT_NAME, null, -1, -1, -1)).iterator();
+		assertThat(getName(former.next()), is("A"));
+
+		writeDbf("X", "Y", "Z");
+		store.reload();
+
+		// the running query still reads the former version
+		assertThat(getName(former.next()), is("B"));
+		assertThat(getName(former.next()), is("C"));
+		assertThat(queryNames(null), is(asList("X", "Y", "Z")));
+	}
+
+	@Test
+	public void testUnusedFormerIndexIsDeletedOnReload() throws Exception {
+		writeDbf("X", "Y", "Z");
+		store.reload();
+		// the databases are named by the time of re-opening
+		Thread.sleep(10);
+		writeDbf("Q", "R", "S");
+		store.reload();
+
+		assertThat(countReloadedIndexes(), is(1));
+	}
+
+	@Test
+	public void testFormerIndexIsDeletedWhenLastQueryIsClosed() throws Exception {
+		writeDbf("X", "Y", "Z");
+		store.reload();
+		FeatureInputStream former = store.query(new Query(FT_NAME, null, -1, -1, -1));
+		Iterator<Feature> iter = former.iterator();
+		assertThat(getName(iter.next()), is("X"));
+
+		Thread.sleep(10);
+		writeDbf("Q", "R", "S");
+		store.reload();
+
+		// the running query still reads the former version
+		assertThat(countReloadedIndexes(), is(2));
+		assertThat(getName(iter.next()), is("Y"));
+		former.close();
+		assertThat(countReloadedIndexes(), is(1));
+		assertThat(queryNames(null), is(asList("Q", "R", "S")));
+	}
+
+	private ShapeFeatureStore createStore() {
+		ShapeFeatureStore store = new ShapeFeatureStore(shpName, CRSManager.getCRSRef("CRS:84"), UTF_8, null, null,
+				null, true, null, null, null);
+		store.init();
+		return store;
+	}
+
+	private List<String> queryNames(Filter filter) throws Exception {
+		List<String> names = new ArrayList<String>();
+		FeatureInputStream features = store.query(new Query(FT_NAME, filter, -1, -1, -1));
+		try {
+			for (Feature feature : features) {
+				names.add(getName(feature));
+			}
+		}
+		finally {
+			features.close();
+		}
+		return names;
+	}
+
+	private static String getName(Feature feature) {
+		return ((PrimitiveValue) feature.getProperties(NAME).get(0).getValue()).getAsText();
+	}
+
+	private static Filter equalTo(String name) {
+		return new OperatorFilter(
+				new PropertyIsEqualTo(new ValueReference(NAME), new Literal<PrimitiveValue>(name), true, null));
+	}
+
+	private int countReloadedIndexes() {
+		File[] files = tempFolder.getRoot().listFiles((dir, name) -> name.matches("places-\\d+\\.mv\\.db"));
+		return files.length;
+	}
+
+	private void writeShp(int numPoints) throws Exception {
+		int recordLength = 28;
+		ByteBuffer buffer = ByteBuffer.allocate(100 + numPoints * recordLength);
+		buffer.order(BIG_ENDIAN).putInt(0, 9994).putInt(24, buffer.capacity() / 2);
+		buffer.order(LITTLE_ENDIAN).putInt(28, 1000).putInt(32, 1);
+		buffer.putDouble(36, 0).putDouble(44, 0).putDouble(52, numPoints - 1).putDouble(60, numPoints - 1);
+		for (int i = 0; i < numPoints; i++) {
+			int pos = 100 + i * recordLength;
+			buffer.order(BIG_ENDIAN).putInt(pos, i + 1).putInt(pos + 4, 10);
+			buffer.order(LITTLE_ENDIAN).putInt(pos + 8, 1).putDouble(pos + 12, i).putDouble(pos + 20, i);
+		}
+		replace(new File(shpName + ".shp"), buffer.array());
+	}
+
+	private void writeDbf(String... names) throws Exception {
+		int headerLength = 32 + 32 + 1;
+		int recordLength = 1 + NAME_LENGTH;
+		ByteBuffer buffer = ByteBuffer.allocate(headerLength + names.length * recordLength + 1).order(LITTLE_ENDIAN);
+		buffer.put(0, (byte) 3);
+		buffer.putInt(4, names.length).putShort(8, (short) headerLength).putShort(10, (short) recordLength);
+		buffer.position(32);
+		buffer.put("NAME".getBytes(US_ASCII));
+		buffer.position(32 + 11);
+		buffer.put((byte) 'C');
+		buffer.position(32 + 16);
+		buffer.put((byte) NAME_LENGTH);
+		buffer.position(headerLength - 1);
+		buffer.put((byte) 13);
+		for (String name : names) {
+			buffer.put((byte) ' ');
+			byte[] value = new byte[NAME_LENGTH];
+			Arrays.fill(value, (byte) ' ');
+			System.arraycopy(name.getBytes(US_ASCII), 0, value, 0, name.length());
+			buffer.put(value);
+		}
+		buffer.put((byte) 0x1A);
+		File dbf = new File(shpName + ".dbf");
+		long lastModified = dbf.lastModified();
+		replace(dbf, buffer.array());
+		// the modification time identifies the version of the file
+		dbf.setLastModified(Math.max(System.currentTimeMillis(), lastModified + 2000));
+	}
+
+	private static void replace(File file, byte[] content) throws Exception {
+		// like a copy tool, running queries keep reading the former file
+		File tmp = new File(file.getPath() + ".tmp");
+		Files.write(tmp.toPath(), content);
+		Files.move(tmp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+	}
+
+}
@@ -0,0 +1,193 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.io.WKTWriter;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
+import org.slf4j.Logger;
+
+/**
+ * Determines the number of hits of COUNT statements in the background
+ * ({@link HitsStrategy#ASYNC}).
+ * <p>
+ * The first request for a statement starts the count and returns -1 (unknown), later
+ * requests return the result until it expires or the counter is cleared. A limited
+ * number of results is kept, least recently used ones are discarded first.
+ * </p>
+ */
+class AsyncHitsCounter {
+
+	private static final Logger LOG = getLogger(AsyncHitsCounter.class);
+
+	/**
+	 * Executes a COUNT statement.
+	 */
+	interface Counter {
+
+		/**
+		 * @param sql COUNT statement, never <code>null</code>
+		 * @param args arguments of the statement, never <code>null</code>
+		 * @return number of hits
+		 * @throws Exception
+		 */
+		int count(String sql, List<SQLArgument> args) throws Exception;
+
+	}
+
+	private final Counter counter;
+
+	private final Executor executor;
+
+	private final long timeToLive;
+
+	// guarded by itself
+	private final Map<String, Entry> entries;
+
+	/**
+	 * Creates a new {@link AsyncHitsCounter} instance.
+	 * @param counter used to execute the statements, must not be <code>null</code>
+	 * @param executor used to run the statements in the background, must not be
+	 * <code>null</code>
+	 * @param timeToLive time after which a result expires (in milliseconds)
+	 * @param maxEntries maximum number of kept results
+	 */
+	AsyncHitsCounter(Counter counter, Executor executor, long timeToLive, int maxEntries) {
+		this.counter = counter;
+		this.executor = executor;
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the result of the given COUNT statement if it has been determined by a
+	 * previous call and is not expired. Otherwise, the statement is executed in the
+	 * background (unless this is already in progress) and -1 (unknown) is returned.
+	 * @param sql COUNT statement, must not be <code>null</code>
+	 * @param args arguments of the statement, must not be <code>null</code>
+	 * @return number of hits, -1 if unknown
+	 */
+	int getHits(String sql, List<SQLArgument> args) {
+		String key = getKey(sql, args);
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry != null && entry.isExpired(timeToLive)) {
+				entries.remove(key);
+				entry = null;
+			}
+			if (entry == null) {
+				Entry newEntry = new Entry();
+				entries.put(key, newEntry);
+				LOG.debug("Counting hits in the background: {}", sql);
+				executor.execute(() -> count(key, newEntry, sql, args));
+				return -1;
+			}
+		}
+		LOG.debug("Hits determined in the background: {}", entry.hits);
+		return entry.hits;
+	}
+
+	/**
+	 * Discards all results, as a transaction may have changed them. Counts that are in
+	 * progress are discarded as well.
+	 */
+	void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	private void count(String key, Entry entry, String sql, List<SQLArgument> args) {
+		try {
+			entry.setHits(counter.count(sql, args));
+		}
+		catch (Throwable t) {
+			LOG.warn("Unable to count hits in the background: {}", t.getMessage());
+			LOG.trace("Stack trace:", t);
+			synchronized (entries) {
+				entries.remove(key, entry);
+			}
+		}
+	}
+
+	static String getKey(String sql, List<SQLArgument> args) {
+		StringBuilder key = new StringBuilder(sql);
+		for (SQLArgument arg : args) {
+			key.append('|');
+			TypedObjectNode value = arg.getValue();
+			if (value instanceof Geometry) {
+				// toString() of geometries is truncated
+				key.append(WKTWriter.write((Geometry) value));
+				key.append(((Geometry) value).getCoordinateSystem());
+			}
+			else {
+				key.append(value);
+			}
+		}
+		return key.toString();
+	}
+
+	private static class Entry {
+
+		private volatile int hits = -1;
+
+		private volatile long determined;
+
+		void setHits(int hits) {
+			this.hits = hits;
+			this.determined = System.currentTimeMillis();
+		}
+
+		boolean isExpired(long timeToLive) {
+			return hits >= 0 && System.currentTimeMillis() - determined > timeToLive;
+		}
+
+	}
+
+}
@@ -0,0 +1,254 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.FeatureStores;
+import org.deegree.feature.persistence.cache.BBoxCache;
+import org.deegree.geometry.Envelope;
+import org.slf4j.Logger;
+
+/**
+ * Keeps the {@link BBoxCache} of a {@link SQLFeatureStore} up to date.
+ * <p>
+ * Envelopes are grown by committed transactions and recalculated in the background
+ * after deletes, subsequent recalculation requests for the same feature type are
+ * covered by a single calculation. Missing envelopes are either calculated on the
+ * calling thread or, in asynchronous mode, in the background. Envelopes that are
+ * calculated in the background are announced to the
+ * {@link FeatureStoreChangeListener}s.
+ * </p>
+ */
+class BBoxCacheUpdater {
+
+	private static final Logger LOG = getLogger(BBoxCacheUpdater.class);
+
+	/**
+	 * Determines the current envelope of a feature type.
+	 */
+	interface EnvelopeQuery {
+
+		/**
+		 * @param ftName name of the feature type, never <code>null</code>
+		 * @return the envelope (using the storage CRS), may be <code>null</code> (no
+		 * geometries or no instances)
+		 * @throws FeatureStoreException
+		 */
+		Envelope query(QName ftName) throws FeatureStoreException;
+
+	}
+
+	private final FeatureStore store;
+
+	private final BBoxCache bboxCache;
+
+	private final EnvelopeQuery query;
+
+	private final ScheduledExecutorService executor;
+
+	private final long recalcDelay;
+
+	private final boolean async;
+
+	// feature types with a scheduled, but not yet started envelope calculation
+	private final Set<QName> pending = ConcurrentHashMap.newKeySet();
+
+	// number of envelope changes per feature type by transactions, guarded by this
+	private final Map<QName, Long> modifications = new HashMap<QName, Long>();
+
+	private volatile boolean destroyed;
+
+	/**
+	 * Creates a new {@link BBoxCacheUpdater} instance.
+	 * @param store feature store whose envelopes are maintained, must not be
+	 * <code>null</code>
+	 * @param bboxCache cache to update, must not be <code>null</code>
+	 * @param query used to calculate envelopes, must not be <code>null</code>
+	 * @param executor used for background calculations, must not be <code>null</code>
+	 * @param recalcDelay delay of recalculations after deletes (in milliseconds), a
+	 * negative value disables them
+	 * @param async true, if missing envelopes are calculated in the background
+	 */
+	BBoxCacheUpdater(FeatureStore store, BBoxCache bboxCache, EnvelopeQuery query, ScheduledExecutorService executor,
+			long recalcDelay, boolean async) {
+		this.store = store;
+		this.bboxCache = bboxCache;
+		this.query = query;
+		this.executor = executor;
+		this.recalcDelay = recalcDelay;
+		this.async = async;
+	}
+
+	/**
+	 * Returns the envelope of the specified feature type. If it is not cached yet, it is
+	 * calculated on the calling thread, or in asynchronous mode, scheduled for
+	 * calculation in the background.
+	 * @param ftName name of the feature type, must not be <code>null</code>
+	 * @return the envelope, may be <code>null</code> (no geometries or no instances, or
+	 * not calculated yet in asynchronous mode)
+	 * @throws FeatureStoreException
+	 */
+	Envelope getEnvelope(QName ftName) throws FeatureStoreException {
+		if (!bboxCache.contains(ftName)) {
+			if (!async) {
+				return calcEnvelope(ftName);
+			}
+			scheduleCalculation(ftName, 0);
+			return null;
+		}
+		return bboxCache.get(ftName);
+	}
+
+	/**
+	 * Calculates the envelope of the specified feature type on the calling thread and
+	 * caches it.
+	 * @param ftName name of the feature type, must not be <code>null</code>
+	 * @return the envelope, may be <code>null</code> (no geometries or no instances)
+	 * @throws FeatureStoreException
+	 */
+	Envelope calcEnvelope(QName ftName) throws FeatureStoreException {
+		Envelope env = query.query(ftName);
+		bboxCache.set(ftName, env);
+		return env;
+	}
+
+	/**
+	 * Schedules the calculation of all envelopes that are not cached yet (asynchronous
+	 * mode only).
+	 * @param ftNames names of the feature types, must not be <code>null</code>
+	 */
+	void prefetch(Iterable<QName> ftNames) {
+		if (async) {
+			for (QName ftName : ftNames) {
+				if (!bboxCache.contains(ftName)) {
+					scheduleCalculation(ftName, 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Increases the cached envelope of the specified feature type after a committed
+	 * transaction inserted or updated geometries.
+	 * @param ftName name of the feature type, must not be <code>null</code>
+	 * @param bbox envelope of the new geometries (using the storage CRS), must not be
+	 * <code>null</code>
+	 */
+	synchronized void increase(QName ftName, Envelope bbox) {
+		modifications.merge(ftName, 1L, Long::sum);
+		if (bboxCache.contains(ftName)) {
+			Envelope oldBBox = bboxCache.get(ftName);
+			bboxCache.set(ftName, oldBBox != null ? oldBBox.merge(bbox) : bbox);
+		}
+	}
+
+	/**
+	 * Schedules a recalculation of the cached envelope of the specified feature type
+	 * after a committed transaction deleted features or changed them in a way that may
+	 * shrink the envelope.
+	 * @param ftName name of the feature type, must not be <code>null</code>
+	 */
+	void recalculate(QName ftName) {
+		synchronized (this) {
+			modifications.merge(ftName, 1L, Long::sum);
+		}
+		if (recalcDelay >= 0 && bboxCache.contains(ftName)) {
+			scheduleCalculation(ftName, recalcDelay);
+		}
+	}
+
+	/**
+	 * Stops scheduling calculations, running ones are discarded.
+	 */
+	void destroy() {
+		destroyed = true;
+		pending.clear();
+	}
+
+	private void scheduleCalculation(QName ftName, long delay) {
+		if (!destroyed && pending.add(ftName)) {
+			LOG.debug("Scheduling calculation of envelope for feature type '{}' in {} [ms].", ftName, delay);
+			executor.schedule(() -> calcInBackground(ftName), delay, MILLISECONDS);
+		}
+	}
+
+	private void calcInBackground(QName ftName) {
+		pending.remove(ftName);
+		if (destroyed) {
+			return;
+		}
+		long modificationCount = getModifications(ftName);
+		try {
+			Envelope env = query.query(ftName);
+			boolean current;
+			synchronized (this) {
+				// discard the result if a transaction changed the envelope in the meantime
+				current = !destroyed && modificationCount == getModifications(ftName);
+				if (current) {
+					bboxCache.set(ftName, env);
+				}
+			}
+			if (current) {
+				FeatureStores.fireEnvelopeChanged(store, ftName, env);
+			}
+			else if (!destroyed) {
+				LOG.debug("Envelope for feature type '{}' changed during calculation, rescheduling.", ftName);
+				scheduleCalculation(ftName, Math.max(0, recalcDelay));
+			}
+		}
+		catch (Throwable t) {
+			LOG.warn("Unable to calculate envelope for feature type '{}': {}", ftName, t.getMessage());
+			LOG.trace("Stack trace:", t);
+		}
+	}
+
+	private synchronized long getModifications(QName ftName) {
+		return modifications.getOrDefault(ftName, 0L);
+	}
+
+}
@@ -0,0 +1,198 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.utils.kvp.InvalidParameterValueException;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.slf4j.Logger;
+
+/**
+ * Iterator over the {@link FeatureInputStream}s of several {@link Query}s that performs
+ * the queries concurrently on separate connections.
+ * <p>
+ * At most <code>maxConcurrent</code> queries (including the one whose results are
+ * currently consumed) are started ahead of the consumer, the results are returned in
+ * query order. Each started query holds a connection until its {@link FeatureInputStream}
+ * has been closed.
+ * </p>
+ *
+ * @see SQLFeatureStore#query(Query[])
+ */
+class ConcurrentQueryIterator implements Iterator<FeatureInputStream> {
+
+	private static final Logger LOG = getLogger(ConcurrentQueryIterator.class);
+
+	private static ExecutorService executor;
+
+	private final Query[] queries;
+
+	private final int maxConcurrent;
+
+	private final QueryRunner runner;
+
+	private final Deque<Future<FeatureInputStream>> running = new ArrayDeque<Future<FeatureInputStream>>();
+
+	private int submitted;
+
+	private int returned;
+
+	/**
+	 * Performs a single query.
+	 */
+	interface QueryRunner {
+
+		FeatureInputStream query(Query query) throws Exception;
+
+	}
+
+	/**
+	 * Creates a new {@link ConcurrentQueryIterator} instance.
+	 * @param queries queries to be performed, must not be <code>null</code>
+	 * @param maxConcurrent maximum number of queries (connections) to be performed
+	 * concurrently, must be greater than zero
+	 * @param runner performs a single query, must not be <code>null</code>
+	 */
+	ConcurrentQueryIterator(Query[] queries, int maxConcurrent, QueryRunner runner) {
+		this.queries = queries;
+		this.maxConcurrent = maxConcurrent;
+		this.runner = runner;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return returned < queries.length;
+	}
+
+	@Override
+	public FeatureInputStream next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		submit();
+		Future<FeatureInputStream> result = running.poll();
+		returned++;
+		try {
+			return result.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			abort();
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		catch (ExecutionException e) {
+			abort();
+			Throwable cause = e.getCause();
+			if (cause instanceof InvalidParameterValueException) {
+				throw (InvalidParameterValueException) cause;
+			}
+			LOG.debug(cause.getMessage(), cause);
+			throw new RuntimeException(cause.getMessage(), cause);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void submit() {
+		while (running.size() < maxConcurrent && submitted < queries.length) {
+			final Query query = queries[submitted++];
+			running.add(getExecutor().submit(() -> runner.query(query)));
+		}
+	}
+
+	/**
+	 * Skips the remaining queries and releases the connections of the queries that have
+	 * already been started.
+	 */
+	private void abort() {
+		submitted = queries.length;
+		returned = queries.length;
+		for (Future<FeatureInputStream> result : running) {
+			if (!result.cancel(false)) {
+				getExecutor().execute(() -> close(result));
+			}
+		}
+		running.clear();
+	}
+
+	private static void close(Future<FeatureInputStream> result) {
+		try {
+			result.get().close();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			LOG.trace("Stack trace:", e);
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newCachedThreadPool(new QueryThreadFactory());
+		}
+		return executor;
+	}
+
+	private static class QueryThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "sqlfeaturestore-query-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+
+	}
+
+}
@@ -66,6 +66,8 @@ public class FeatureTypeMapping {
 
 	private final List<SortCriterion> defaultSortCriteria;
 
+	private final HitsStrategy hitsStrategy;
+
 	private final Map<QName, Mapping> propToMapping;
 
 	private final List<Mapping> particles = new ArrayList<Mapping>();
@@ -83,10 +85,29 @@ public class FeatureTypeMapping {
 	 */
 	public FeatureTypeMapping(QName ftName, TableName table, FIDMapping fidMapping, List<Mapping> particleMappings,
 			List<SortCriterion> defaultSortCriteria) {
+		this(ftName, table, fidMapping, particleMappings, defaultSortCriteria, HitsStrategy.EXACT);
+	}
+
+	/**
+	 * Creates a new {@link FeatureTypeMapping} instance.
+	 * @param ftName name of the mapped feature type, must not be <code>null</code>
+	 * @param table name of the database table that the feature type is mapped to, must
+	 * not be <code>null</code>
+	 * @param fidMapping mapping for the feature id, must not be <code>null</code>
+	 * @param particleMappings particle mappings for the feature type, must not be
+	 * <code>null</code>
+	 * @param defaultSortCriteria default sort criterion for the feature type, must not be
+	 * <code>null</code>
+	 * @param hitsStrategy strategy for determining the number of hits, must not be
+	 * <code>null</code>
+	 */
+	public FeatureTypeMapping(QName ftName, TableName table, FIDMapping fidMapping, List<Mapping> particleMappings,
+			List<SortCriterion> defaultSortCriteria, HitsStrategy hitsStrategy) {
 		this.ftName = ftName;
 		this.table = table;
 		this.fidMapping = fidMapping;
 		this.defaultSortCriteria = defaultSortCriteria;
+		this.hitsStrategy = hitsStrategy;
 		this.propToMapping = new HashMap<QName, Mapping>();
 		// TODO cope with non-QName XPaths as well
 		for (Mapping mapping : particleMappings) {
@@ -151,6 +172,14 @@ public class FeatureTypeMapping {
 		return defaultSortCriteria;
 	}
 
+	/**
+	 * Returns the strategy for determining the number of hits.
+	 * @return strategy, never <code>null</code>
+	 */
+	public HitsStrategy getHitsStrategy() {
+		return hitsStrategy;
+	}
+
 	/**
 	 * Returns the default (i.e. the first) {@link GeometryMapping}.
 	 * @return default geometry mapping, may be <code>null</code> (no geometry mapping
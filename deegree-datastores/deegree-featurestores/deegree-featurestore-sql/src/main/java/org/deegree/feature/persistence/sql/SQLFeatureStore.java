@@ -34,9 +34,11 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.sql;
 
+import static java.lang.Boolean.TRUE;
 import static org.deegree.commons.xml.CommonNamespaces.OGCNS;
 import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_INEXACT_HITS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import javax.xml.namespace.QName;
@@ -58,6 +60,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.deegree.commons.jdbc.ResultSetIterator;
@@ -73,7 +79,9 @@ import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.tom.sql.SQLValueMangler;
 import org.deegree.commons.utils.JDBCUtils;
+import org.deegree.commons.utils.MBeanUtils;
 import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.TunableParameter;
 import org.deegree.commons.utils.kvp.InvalidParameterValueException;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
@@ -89,7 +97,8 @@ import org.deegree.feature.persistence.FeatureStoreManager;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.cache.BBoxCache;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
-import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
+import org.deegree.feature.persistence.cache.ConcurrentFeatureStoreCache;
+import org.deegree.feature.persistence.cache.ConcurrentFeatureStoreCacheMBean;
 import org.deegree.feature.persistence.lock.DefaultLockManager;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
@@ -162,6 +171,24 @@ public class SQLFeatureStore implements FeatureStore {
 
 	private static final int DEFAULT_CACHE_SIZE = 10000;
 
+	private static final boolean KEYSET_PAGING = TunableParameter.get("deegree.sqlfeaturestore.keyset-paging", true);
+
+	private static final boolean ASYNC_ENVELOPE_CALCULATION = TunableParameter
+		.get("deegree.sqlfeaturestore.bbox.async", true);
+
+	private static final long ENVELOPE_RECALCULATION_DELAY = TunableParameter
+		.get("deegree.sqlfeaturestore.bbox.recalc-delay", 30000);
+
+	private static final long ASYNC_HITS_TTL = TunableParameter.get("deegree.sqlfeaturestore.hits.async-ttl", 300000);
+
+	private static final int ASYNC_HITS_THREADS = 2;
+
+	private static final int MAX_ASYNC_HITS = 1000;
+
+	private static ScheduledExecutorService envelopeCalculator;
+
+	private static ExecutorService hitsCounter;
+
 	private final SQLFeatureStoreJAXB config;
 
 	private final URL configURL;
@@ -182,6 +209,12 @@ public class SQLFeatureStore implements FeatureStore {
 
 	private BBoxCache bboxCache;
 
+	private BBoxCacheUpdater bboxCacheUpdater;
+
+	// hits determined in the background (hits strategy ASYNC)
+	private final AsyncHitsCounter asyncHits = new AsyncHitsCounter(this::countHits,
+			r -> getHitsCounter().execute(r), ASYNC_HITS_TTL, MAX_ASYNC_HITS);
+
 	private GMLReferenceResolver resolver = new FeatureStoreGMLIdResolver(this);
 
 	private Map<String, String> nsContext;
@@ -192,6 +225,8 @@ public class SQLFeatureStore implements FeatureStore {
 
 	private final Boolean readAutoCommit;
 
+	private final int maxConcurrentQueries;
+
 	private final List<FeatureInspector> inspectors = new ArrayList<FeatureInspector>();
 
 	private boolean nullEscalation;
@@ -224,15 +259,33 @@ public class SQLFeatureStore implements FeatureStore {
 		readAutoCommit = config.getJDBCConnId().isReadAutoCommit() != null ? config.getJDBCConnId().isReadAutoCommit()
 				: !dialect.requiresTransactionForCursorMode();
 		LOG.debug("Read auto commit: {}", readAutoCommit);
+		maxConcurrentQueries = config.getJDBCConnId().getMaxConcurrentQueries() != null
+				? config.getJDBCConnId().getMaxConcurrentQueries().intValue() : 1;
+		LOG.debug("Max concurrent queries: {}", maxConcurrentQueries);
 
 		if (config.getFeatureCache() != null) {
-			cache = new SimpleFeatureStoreCache(DEFAULT_CACHE_SIZE);
+			cache = createCache(config.getFeatureCache());
+			LOG.debug("Feature cache: {}", cache);
 		}
 		else {
 			cache = null;
 		}
 	}
 
+	private FeatureStoreCache createCache(SQLFeatureStoreJAXB.FeatureCache cacheConfig) {
+		int maxEntries = cacheConfig.getMaxEntries() != null ? cacheConfig.getMaxEntries().intValue()
+				: DEFAULT_CACHE_SIZE;
+		long maxWeight = ConcurrentFeatureStoreCache.DEFAULT_MAX_WEIGHT;
+		if (cacheConfig.getMaxMemory() != null) {
+			maxWeight = cacheConfig.getMaxMemory().longValue() * 1024 * 1024;
+		}
+		long timeToLive = 0;
+		if (cacheConfig.getTimeToLive() != null) {
+			timeToLive = cacheConfig.getTimeToLive().longValue() * 1000;
+		}
+		return new ConcurrentFeatureStoreCache(maxEntries, maxWeight, timeToLive);
+	}
+
 	/**
 	 * @return the currently active transaction., may be <code>null</code> if no
 	 * transaction was acquired
@@ -371,20 +424,20 @@ public class SQLFeatureStore implements FeatureStore {
 
 	@Override
 	public Envelope getEnvelope(QName ftName) throws FeatureStoreException {
-		if (!bboxCache.contains(ftName)) {
-			calcEnvelope(ftName);
-		}
-		return bboxCache.get(ftName);
+		return bboxCacheUpdater.getEnvelope(ftName);
 	}
 
 	@Override
 	public Envelope calcEnvelope(QName ftName) throws FeatureStoreException {
+		return bboxCacheUpdater.calcEnvelope(ftName);
+	}
 
+	private Envelope queryEnvelope(QName ftName) throws FeatureStoreException {
 		Envelope env = null;
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			env = calcEnvelope(ftName, conn);
+			env = queryEnvelope(ftName, conn);
 		}
 		catch (SQLException e) {
 			throw new FeatureStoreException(e.getMessage());
@@ -468,7 +521,41 @@ public class SQLFeatureStore implements FeatureStore {
 		return null;
 	}
 
-	Envelope calcEnvelope(QName ftName, Connection conn) throws FeatureStoreException {
+	/**
+	 * Increases the cached envelope of the specified feature type after a committed
+	 * transaction inserted or updated geometries.
+	 * @param ftName name of the feature type, must not be <code>null</code>
+	 * @param bbox envelope of the new geometries (using the storage CRS), must not be
+	 * <code>null</code>
+	 */
+	void increaseEnvelope(QName ftName, Envelope bbox) {
+		bboxCacheUpdater.increase(ftName, bbox);
+	}
+
+	/**
+	 * Schedules a recalculation of the cached envelope of the specified feature type
+	 * after a committed transaction deleted features or changed them in a way that may
+	 * shrink the envelope. The recalculation is delayed, so subsequent transactions on
+	 * the same feature type are covered by a single calculation. A negative delay
+	 * disables the recalculation.
+	 * @param ftName name of the feature type, must not be <code>null</code>
+	 */
+	void recalculateEnvelope(QName ftName) {
+		bboxCacheUpdater.recalculate(ftName);
+	}
+
+	private static synchronized ScheduledExecutorService getEnvelopeCalculator() {
+		if (envelopeCalculator == null) {
+			envelopeCalculator = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "sqlfeaturestore-envelope");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return envelopeCalculator;
+	}
+
+	private Envelope queryEnvelope(QName ftName, Connection conn) throws FeatureStoreException {
 		Envelope env = null;
 		FeatureType ft = schema.getFeatureType(ftName);
 		if (ft != null) {
@@ -481,7 +568,6 @@ public class SQLFeatureStore implements FeatureStore {
 				env = calcEnvelope(ftMapping, conn);
 			}
 		}
-		bboxCache.set(ftName, env);
 		return env;
 	}
 
@@ -725,7 +811,15 @@ public class SQLFeatureStore implements FeatureStore {
 
 	@Override
 	public void destroy() {
-		// nothing to do
+		if (bboxCacheUpdater != null) {
+			bboxCacheUpdater.destroy();
+		}
+		if (cache != null) {
+			LOG.info("Feature cache statistics: {}", cache);
+			if (cache instanceof ConcurrentFeatureStoreCache) {
+				MBeanUtils.unregister(ConcurrentFeatureStoreCache.MBEAN_TYPE, getMetadata().getIdentifier().getId());
+			}
+		}
 	}
 
 	@Override
@@ -792,75 +886,45 @@ public class SQLFeatureStore implements FeatureStore {
 				hits = queryByOperatorFilter(query, ftNames, filter, false).count();
 			}
 			else {
-				StringBuilder sql = new StringBuilder("SELECT ");
+				HitsStrategy hitsStrategy = getHitsStrategy(query, featureTypeAndMappings.values());
+				List<SQLArgument> args = Collections.emptyList();
+				String sql;
 				if (wb.getWhere() == null) {
-					sql.append("COUNT(*) FROM ");
 					// TODO: check the assumption that only one feature type is requested
 					// if the where clause is null...
-					sql.append(featureTypeAndMappings.values().iterator().next().getFtTable());
-				}
-				else {
-					sql.append("COUNT(*) FROM (SELECT DISTINCT ");
-
-					boolean first = true;
-					for (FeatureTypeMapping ftMapping : featureTypeAndMappings.values()) {
-						String ftTableAlias = wb.getAliasManager().getTableAlias(ftMapping.getFtTable());
-
-						FIDMapping fidMapping = ftMapping.getFidMapping();
-						List<Pair<SQLIdentifier, BaseType>> fidCols = fidMapping.getColumns();
-						for (Pair<SQLIdentifier, BaseType> fidCol : fidCols) {
-							if (!first) {
-								sql.append(",");
-							}
-							else {
-								first = false;
-							}
-							sql.append(ftTableAlias).append('.').append(fidCol.first);
+					TableName ftTable = featureTypeAndMappings.values().iterator().next().getFtTable();
+					if (hitsStrategy == HitsStrategy.ESTIMATE) {
+						long estimate = dialect.estimateRowCount(conn, ftTable);
+						if (estimate >= 0) {
+							LOG.debug("Estimated hits: {}", estimate);
+							return (int) Math.min(estimate, Integer.MAX_VALUE);
 						}
 					}
-
-					sql.append(" FROM ");
-
-					// pure relational query
-					boolean firstTable = true;
-					for (FeatureTypeMapping ftMapping : featureTypeAndMappings.values()) {
-						TableName ftTable = ftMapping.getFtTable();
-						String ftTableAlias = wb.getAliasManager().getTableAlias(ftTable);
-						if (!firstTable)
-							sql.append(", ");
-						sql.append(ftTable);
-						sql.append(' ');
-						sql.append(ftTableAlias);
-						firstTable = false;
-					}
-					for (PropertyNameMapping mappedPropName : wb.getMappedPropertyNames()) {
-						for (Join join : mappedPropName.getJoins()) {
-							sql.append(" LEFT OUTER JOIN ");
-							sql.append(join.getToTable());
-							sql.append(' ');
-							sql.append(join.getToTableAlias());
-							sql.append(" ON ");
-							sql.append(join.getSQLJoinCondition());
+					sql = "SELECT COUNT(*) FROM " + ftTable;
+				}
+				else {
+					args = wb.getWhere().getArguments();
+					String featureIdsSql = getSelectDistinctFeatureIds(featureTypeAndMappings.values(), wb);
+					if (hitsStrategy == HitsStrategy.ESTIMATE) {
+						long estimate = dialect.estimateRowCount(conn, featureIdsSql, args);
+						if (estimate >= 0) {
+							LOG.debug("Estimated hits: {}", estimate);
+							return (int) Math.min(estimate, Integer.MAX_VALUE);
 						}
 					}
-
-					LOG.debug("WHERE clause: {}", wb.getWhere());
-					if (wb.getWhere() != null) {
-						sql.append(" WHERE ");
-						sql.append(wb.getWhere().getSQL());
-					}
-					sql.append(") featureids");
+					sql = "SELECT COUNT(*) FROM (" + featureIdsSql + ") featureids";
+				}
+				if (hitsStrategy == HitsStrategy.ASYNC) {
+					return asyncHits.getHits(sql, args);
 				}
 				LOG.debug("SQL: {}", sql);
 				long begin = System.currentTimeMillis();
-				stmt = conn.prepareStatement(sql.toString());
+				stmt = conn.prepareStatement(sql);
 				LOG.debug("Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin);
 
 				int i = 1;
-				if (wb.getWhere() != null) {
-					for (SQLArgument o : wb.getWhere().getArguments()) {
-						o.setArgument(stmt, i++);
-					}
+				for (SQLArgument o : args) {
+					o.setArgument(stmt, i++);
 				}
 
 				begin = System.currentTimeMillis();
@@ -885,6 +949,117 @@ public class SQLFeatureStore implements FeatureStore {
 		return hits;
 	}
 
+	private String getSelectDistinctFeatureIds(Collection<FeatureTypeMapping> ftMappings, AbstractWhereBuilder wb) {
+		StringBuilder sql = new StringBuilder("SELECT DISTINCT ");
+		boolean first = true;
+		for (FeatureTypeMapping ftMapping : ftMappings) {
+			String ftTableAlias = wb.getAliasManager().getTableAlias(ftMapping.getFtTable());
+
+			FIDMapping fidMapping = ftMapping.getFidMapping();
+			List<Pair<SQLIdentifier, BaseType>> fidCols = fidMapping.getColumns();
+			for (Pair<SQLIdentifier, BaseType> fidCol : fidCols) {
+				if (!first) {
+					sql.append(",");
+				}
+				else {
+					first = false;
+				}
+				sql.append(ftTableAlias).append('.').append(fidCol.first);
+			}
+		}
+
+		sql.append(" FROM ");
+
+		// pure relational query
+		boolean firstTable = true;
+		for (FeatureTypeMapping ftMapping : ftMappings) {
+			TableName ftTable = ftMapping.getFtTable();
+			String ftTableAlias = wb.getAliasManager().getTableAlias(ftTable);
+			if (!firstTable)
+				sql.append(", ");
+			sql.append(ftTable);
+			sql.append(' ');
+			sql.append(ftTableAlias);
+			firstTable = false;
+		}
+		for (PropertyNameMapping mappedPropName : wb.getMappedPropertyNames()) {
+			for (Join join : mappedPropName.getJoins()) {
+				sql.append(" LEFT OUTER JOIN ");
+				sql.append(join.getToTable());
+				sql.append(' ');
+				sql.append(join.getToTableAlias());
+				sql.append(" ON ");
+				sql.append(join.getSQLJoinCondition());
+			}
+		}
+
+		LOG.debug("WHERE clause: {}", wb.getWhere());
+		if (wb.getWhere() != null) {
+			sql.append(" WHERE ");
+			sql.append(wb.getWhere().getSQL());
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Returns the hits strategy to use for the given query. Strategies other than
+	 * {@link HitsStrategy#EXACT} are only used if the query allows inexact hits and all
+	 * queried feature types are configured with the same strategy.
+	 */
+	static HitsStrategy getHitsStrategy(Query query, Collection<FeatureTypeMapping> ftMappings) {
+		if (!TRUE.equals(query.getHint(HINT_INEXACT_HITS))) {
+			return HitsStrategy.EXACT;
+		}
+		HitsStrategy hitsStrategy = null;
+		for (FeatureTypeMapping ftMapping : ftMappings) {
+			if (hitsStrategy != null && hitsStrategy != ftMapping.getHitsStrategy()) {
+				return HitsStrategy.EXACT;
+			}
+			hitsStrategy = ftMapping.getHitsStrategy();
+		}
+		return hitsStrategy != null ? hitsStrategy : HitsStrategy.EXACT;
+	}
+
+	private int countHits(String sql, List<SQLArgument> args) throws SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = getConnection();
+			stmt = conn.prepareStatement(sql);
+			int i = 1;
+			for (SQLArgument o : args) {
+				o.setArgument(stmt, i++);
+			}
+			rs = stmt.executeQuery();
+			rs.next();
+			return rs.getInt(1);
+		}
+		finally {
+			release(rs, stmt, conn);
+		}
+	}
+
+	/**
+	 * Discards all hits that have been determined in the background, as a transaction may
+	 * have changed them.
+	 */
+	void clearAsyncHits() {
+		asyncHits.clear();
+	}
+
+	private static synchronized ExecutorService getHitsCounter() {
+		if (hitsCounter == null) {
+			AtomicInteger threadNumber = new AtomicInteger(1);
+			hitsCounter = Executors.newFixedThreadPool(ASYNC_HITS_THREADS, r -> {
+				Thread t = new Thread(r, "sqlfeaturestore-hits-" + threadNumber.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return hitsCounter;
+	}
+
 	private int queryHitsByOperatorFilterBlob(Query query, QName ftName, OperatorFilter filter)
 			throws FeatureStoreException {
 
@@ -1034,6 +1209,11 @@ public class SQLFeatureStore implements FeatureStore {
 		if (wmsStyleQuery) {
 			return queryMultipleFtsFromBlob(queries, env, isMaxFeaturesAndStartIndexApplicable);
 		}
+		if (maxConcurrentQueries > 1 && queries.length > 1 && !isTransactionActive()) {
+			LOG.debug("Performing {} queries with up to {} connections", queries.length, maxConcurrentQueries);
+			return new CombinedFeatureInputStream(new ConcurrentQueryIterator(queries, maxConcurrentQueries,
+					query -> query(query, isMaxFeaturesAndStartIndexApplicable)));
+		}
 		Iterator<FeatureInputStream> rsIter = new Iterator<FeatureInputStream>() {
 			int i = 0;
 
@@ -1456,6 +1636,15 @@ public class SQLFeatureStore implements FeatureStore {
 			LOG.debug("WHERE clause: {}", wb.getWhere());
 			LOG.debug("ORDER BY clause: {}", wb.getOrderBy());
 
+			FeatureTypeMapping keysetMapping = null;
+			IdAnalysis startAfter = null;
+			if (isMaxFeaturesAndStartIndexApplicable && isPaged(query)) {
+				keysetMapping = getKeysetMapping(query, featureTypeAndMappings.values(), wb);
+				if (keysetMapping != null) {
+					startAfter = analyzeStartAfter(query.getStartAfter(), keysetMapping);
+				}
+			}
+
 			FeatureBuilder builder = new FeatureBuilderRelational(this, featureTypeAndMappings, conn, aliasManager,
 					nullEscalation);
 			List<String> columns = builder.getInitialSelectList();
@@ -1493,6 +1682,7 @@ public class SQLFeatureStore implements FeatureStore {
 				}
 			}
 
+			String keysetAlias = keysetMapping != null ? aliasManager.getTableAlias(keysetMapping.getFtTable()) : null;
 			if (wb.getWhere() != null) {
 				if (blobMapping != null) {
 					sql.append(" AND ");
@@ -1500,15 +1690,33 @@ public class SQLFeatureStore implements FeatureStore {
 				else {
 					sql.append(" WHERE ");
 				}
-				sql.append(wb.getWhere().getSQL());
+				if (startAfter != null) {
+					sql.append('(');
+					sql.append(wb.getWhere().getSQL());
+					sql.append(") AND ");
+					appendKeysetCondition(sql, keysetMapping, keysetAlias);
+				}
+				else {
+					sql.append(wb.getWhere().getSQL());
+				}
+			}
+			else if (startAfter != null) {
+				sql.append(" WHERE ");
+				appendKeysetCondition(sql, keysetMapping, keysetAlias);
 			}
 			if (wb.getOrderBy() != null) {
 				sql.append(" ORDER BY ");
 				sql.append(wb.getOrderBy().getSQL());
 			}
+			else if (keysetMapping != null) {
+				sql.append(" ORDER BY ");
+				appendKeysetOrderBy(sql, keysetMapping, keysetAlias);
+			}
 
-			if (isMaxFeaturesAndStartIndexApplicable)
-				appendOffsetAndFetch(sql, query.getMaxFeatures(), query.getStartIndex());
+			if (isMaxFeaturesAndStartIndexApplicable) {
+				int startIndex = startAfter != null ? 0 : query.getStartIndex();
+				appendOffsetAndFetch(sql, query.getMaxFeatures(), startIndex);
+			}
 
 			LOG.debug("SQL: {}", sql);
 			long begin = System.currentTimeMillis();
@@ -1521,6 +1729,9 @@ public class SQLFeatureStore implements FeatureStore {
 					o.setArgument(stmt, i++);
 				}
 			}
+			if (startAfter != null) {
+				i = setKeysetArguments(stmt, i, keysetMapping.getFidMapping(), startAfter);
+			}
 			if (wb.getOrderBy() != null) {
 				for (SQLArgument o : wb.getOrderBy().getArguments()) {
 					o.setArgument(stmt, i++);
@@ -1813,6 +2024,10 @@ public class SQLFeatureStore implements FeatureStore {
 		else {
 			LOG.warn("Unmanaged feature store.");
 		}
+		if (cache instanceof ConcurrentFeatureStoreCache) {
+			MBeanUtils.register(ConcurrentFeatureStoreCache.MBEAN_TYPE, sqlFeatureStoreId,
+					(ConcurrentFeatureStoreCache) cache, ConcurrentFeatureStoreCacheMBean.class);
+		}
 
 		if (config.getInspectors() != null) {
 			for (CustomInspector inspectorConfig : config.getInspectors().getCustomInspector()) {
@@ -1838,6 +2053,16 @@ public class SQLFeatureStore implements FeatureStore {
 		else {
 			nullEscalation = config.isNullEscalation();
 		}
+
+		if (bboxCache != null) {
+			bboxCacheUpdater = new BBoxCacheUpdater(this, bboxCache, this::queryEnvelope, getEnvelopeCalculator(),
+					ENVELOPE_RECALCULATION_DELAY, ASYNC_ENVELOPE_CALCULATION);
+			List<QName> ftNames = new ArrayList<QName>();
+			for (FeatureType ft : schema.getFeatureTypes(null, false, false)) {
+				ftNames.add(ft.getName());
+			}
+			bboxCacheUpdater.prefetch(ftNames);
+		}
 	}
 
 	public void checkIfFeatureTypIsRequested(TypeName[] typeNames, FeatureType ft) {
@@ -1853,6 +2078,123 @@ public class SQLFeatureStore implements FeatureStore {
 		}
 	}
 
+	private boolean isPaged(Query query) {
+		return query.getMaxFeatures() > 0 || query.getStartIndex() > 0 || query.getStartAfter() != null;
+	}
+
+	/**
+	 * Returns the mapping of the feature type whose feature id columns define a
+	 * deterministic sort order for keyset paging. This is the case if the query targets
+	 * a single feature type, does not request an explicit sort order and the configured
+	 * default sort order is either undefined or consists of the feature id columns.
+	 * @return mapping of the feature type, <code>null</code> if keyset paging cannot be
+	 * applied
+	 */
+	static FeatureTypeMapping getKeysetMapping(Query query, Collection<FeatureTypeMapping> ftMappings,
+			AbstractWhereBuilder wb) {
+		if (!KEYSET_PAGING || ftMappings.size() != 1 || query.getSortProperties().length > 0) {
+			return null;
+		}
+		if (wb.getPostFilter() != null || wb.getPostSortCriteria() != null) {
+			return null;
+		}
+		FeatureTypeMapping ftMapping = ftMappings.iterator().next();
+		List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
+		List<SortCriterion> sortCriteria = ftMapping.getDefaultSortCriteria();
+		if (fidColumns.isEmpty()) {
+			return null;
+		}
+		if (sortCriteria == null || sortCriteria.isEmpty()) {
+			return ftMapping;
+		}
+		if (sortCriteria.size() != fidColumns.size()) {
+			return null;
+		}
+		boolean ascending = sortCriteria.get(0).isSortAscending();
+		for (int i = 0; i < fidColumns.size(); i++) {
+			SortCriterion sortCriterion = sortCriteria.get(i);
+			if (sortCriterion.isSortAscending() != ascending
+					|| !sortCriterion.getColumnName().equalsIgnoreCase(fidColumns.get(i).first.getName())) {
+				return null;
+			}
+		}
+		return ftMapping;
+	}
+
+	private IdAnalysis analyzeStartAfter(String startAfter, FeatureTypeMapping ftMapping) {
+		if (startAfter == null) {
+			return null;
+		}
+		try {
+			IdAnalysis analysis = getSchema().analyzeId(startAfter);
+			if (analysis.isFid() && ftMapping.getFeatureType().equals(analysis.getFeatureType().getName())) {
+				return analysis;
+			}
+		}
+		catch (IllegalArgumentException e) {
+			LOG.trace("Stack trace:", e);
+		}
+		LOG.debug("Feature id '{}' does not match the queried feature type, falling back to offset paging.",
+				startAfter);
+		return null;
+	}
+
+	private static boolean isKeysetAscending(FeatureTypeMapping ftMapping) {
+		List<SortCriterion> sortCriteria = ftMapping.getDefaultSortCriteria();
+		return sortCriteria == null || sortCriteria.isEmpty() || sortCriteria.get(0).isSortAscending();
+	}
+
+	static void appendKeysetOrderBy(StringBuilder sql, FeatureTypeMapping ftMapping, String tableAlias) {
+		boolean first = true;
+		for (Pair<SQLIdentifier, BaseType> fidColumn : ftMapping.getFidMapping().getColumns()) {
+			if (!first) {
+				sql.append(',');
+			}
+			sql.append(tableAlias).append('.').append(fidColumn.first);
+			sql.append(isKeysetAscending(ftMapping) ? " ASC" : " DESC");
+			first = false;
+		}
+	}
+
+	/**
+	 * Appends the seek condition on the feature id columns, i.e. the expanded form of
+	 * <code>(c1,...,cn) &gt; (v1,...,vn)</code>, which is supported by all dialects.
+	 */
+	static void appendKeysetCondition(StringBuilder sql, FeatureTypeMapping ftMapping, String tableAlias) {
+		List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
+		String op = isKeysetAscending(ftMapping) ? ">?" : "<?";
+		sql.append('(');
+		for (int i = 0; i < fidColumns.size(); i++) {
+			if (i > 0) {
+				sql.append(" OR ");
+			}
+			sql.append('(');
+			for (int j = 0; j < i; j++) {
+				sql.append(tableAlias).append('.').append(fidColumns.get(j).first).append("=? AND ");
+			}
+			sql.append(tableAlias).append('.').append(fidColumns.get(i).first).append(op);
+			sql.append(')');
+		}
+		sql.append(')');
+	}
+
+	static int setKeysetArguments(PreparedStatement stmt, int i, FIDMapping fidMapping, IdAnalysis startAfter)
+			throws SQLException {
+		List<Pair<SQLIdentifier, BaseType>> fidColumns = fidMapping.getColumns();
+		Object[] sqlValues = new Object[fidColumns.size()];
+		for (int j = 0; j < fidColumns.size(); j++) {
+			PrimitiveType pt = new PrimitiveType(fidColumns.get(j).getSecond());
+			PrimitiveValue value = new PrimitiveValue(startAfter.getIdKernels()[j], pt);
+			sqlValues[j] = SQLValueMangler.internalToSQL(value);
+		}
+		for (int k = 0; k < sqlValues.length; k++) {
+			for (int j = 0; j <= k; j++) {
+				stmt.setObject(i++, sqlValues[j]);
+			}
+		}
+		return i;
+	}
+
 	private void appendOffsetAndFetch(StringBuilder sql, int maxFeatures, int startIndex) {
 		String offsetAndFetchClause = dialect.getOffsetAndFetchClause(maxFeatures, startIndex);
 		if (offsetAndFetchClause != null)
@@ -76,6 +76,7 @@ import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.tom.sql.SQLValueMangler;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.TunableParameter;
 import org.deegree.commons.utils.kvp.InvalidParameterValueException;
 import org.deegree.commons.utils.kvp.MissingParameterException;
 import org.deegree.cs.coordinatesystems.ICRS;
@@ -87,6 +88,7 @@ import org.deegree.feature.persistence.FeatureInspector;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.FeatureStores;
 import org.deegree.feature.persistence.lock.Lock;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.persistence.sql.blob.BlobCodec;
@@ -131,6 +133,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 
 	private static final Logger LOG = LoggerFactory.getLogger(SQLFeatureStoreTransaction.class);
 
+	private static final int DEFAULT_INSERT_BATCH_SIZE = TunableParameter
+		.get("deegree.sqlfeaturestore.insert.batchsize", 1);
+
 	private final SQLFeatureStore fs;
 
 	private final MappedAppSchema schema;
@@ -143,6 +148,13 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 
 	private final BBoxTracker bboxTracker;
 
+	private int insertBatchSize = DEFAULT_INSERT_BATCH_SIZE;
+
+	private long insertedRows;
+
+	// ids of all features and geometries that have been inserted, updated or deleted
+	private final Set<String> modifiedIds = new HashSet<String>();
+
 	// TODO
 	private ParticleConverter<Geometry> blobGeomConverter;
 
@@ -172,12 +184,33 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 		this.bboxTracker = new BBoxTracker();
 	}
 
+	/**
+	 * Sets the number of rows that are collected in JDBC batches before they are sent to
+	 * the DB when inserting features in relational mode. Only rows whose key values are
+	 * known in advance (i.e. not generated by the DB on insert) are batched.
+	 * @param insertBatchSize number of rows, values smaller than 2 disable batching
+	 */
+	public void setInsertBatchSize(int insertBatchSize) {
+		this.insertBatchSize = insertBatchSize;
+	}
+
+	/**
+	 * Returns the number of table rows that have been inserted in relational mode during
+	 * this transaction.
+	 * @return number of inserted rows
+	 */
+	public long getInsertedRows() {
+		return insertedRows;
+	}
+
 	@Override
 	public void commit() throws FeatureStoreException {
 
 		LOG.debug("Committing transaction.");
 		try {
 			conn.commit();
+			invalidateCache();
+			fs.clearAsyncHits();
 			updateBBoxCache();
 		}
 		catch (Throwable t) {
@@ -187,44 +220,51 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 		finally {
 			fs.closeAndDetachTransactionConnection();
 		}
+		fireFeaturesChanged();
 	}
 
-	private void updateBBoxCache() throws FeatureStoreException {
-
-		// beware of concurrent transactions
-		synchronized (fs) {
-
-			Set<QName> recalcFTs = bboxTracker.getRecalcFeatureTypes();
-			Map<QName, Envelope> ftNamesToIncreaseBBoxes = bboxTracker.getIncreaseBBoxes();
+	/**
+	 * Removes the object from the cache immediately and remembers it for invalidation at
+	 * the end of the transaction, as it may have been cached again by a reader in the
+	 * meantime (possibly with uncommitted state when read through this transaction).
+	 */
+	void markModified(String id) {
+		if (fs.getCache() != null && id != null) {
+			fs.getCache().remove(id);
+			modifiedIds.add(id);
+		}
+	}
 
-			// handle bbox increases
-			for (Entry<QName, Envelope> ftNameToIncreaseBBox : ftNamesToIncreaseBBoxes.entrySet()) {
-				QName ftName = ftNameToIncreaseBBox.getKey();
-				Envelope bbox = null;
-				if (fs.getBBoxCache().contains(ftName)) {
-					bbox = ftNameToIncreaseBBox.getValue();
-				}
-				if (bbox != null) {
-					Envelope oldBbox = fs.getBBoxCache().get(ftName);
-					if (oldBbox != null) {
-						bbox = oldBbox.merge(bbox);
-					}
-					fs.getBBoxCache().set(ftName, bbox);
-				}
+	void invalidateCache() {
+		if (fs.getCache() != null) {
+			for (String id : modifiedIds) {
+				fs.getCache().remove(id);
 			}
+		}
+		modifiedIds.clear();
+	}
 
-			// TODO configuration switch for bbox recalculation strategy
-			if (!recalcFTs.isEmpty()) {
-				LOG.debug(
-						"Full recalculation of feature type envelopes required. Delete 'bbox_cache.properties' if you need minimal envelopes.");
+	private void fireFeaturesChanged() {
+		for (Entry<QName, Envelope> ftNameToIncreaseBBox : bboxTracker.getIncreaseBBoxes().entrySet()) {
+			QName ftName = ftNameToIncreaseBBox.getKey();
+			if (!bboxTracker.getRecalcFeatureTypes().contains(ftName)) {
+				FeatureStores.fireFeaturesChanged(fs, ftName, ftNameToIncreaseBBox.getValue());
 			}
+		}
+		// updated and deleted features are not tracked individually
+		for (QName ftName : bboxTracker.getRecalcFeatureTypes()) {
+			FeatureStores.fireFeaturesChanged(fs, ftName, null);
+		}
+	}
 
-			try {
-				fs.getBBoxCache().persist();
-			}
-			catch (Throwable t) {
-				LOG.error("Unable to persist bbox cache: {}", t.getMessage());
-			}
+	private void updateBBoxCache() {
+		// handle bbox increases, the bbox cache persists the changes in the background
+		for (Entry<QName, Envelope> ftNameToIncreaseBBox : bboxTracker.getIncreaseBBoxes().entrySet()) {
+			fs.increaseEnvelope(ftNameToIncreaseBBox.getKey(), ftNameToIncreaseBBox.getValue());
+		}
+		// deletes may shrink the envelopes, recalculation happens lazily in the background
+		for (QName ftName : bboxTracker.getRecalcFeatureTypes()) {
+			fs.recalculateEnvelope(ftName);
 		}
 	}
 
@@ -233,6 +273,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 		LOG.debug("Performing rollback of transaction.");
 		try {
 			conn.rollback();
+			invalidateCache();
 		}
 		catch (SQLException e) {
 			LOG.debug(e.getMessage(), e);
@@ -273,9 +314,25 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 			deleted = performDeleteRelational(filter, lock);
 		}
 
-		// TODO improve this
-		for (FeatureType ft : schema.getFeatureTypes(null, false, false)) {
-			bboxTracker.delete(ft.getName());
+		boolean allFeatureTypes = false;
+		Set<QName> ftNames = new HashSet<QName>();
+		for (ResourceId id : filter.getSelectedIds()) {
+			markModified(id.getRid());
+			try {
+				ftNames.add(schema.analyzeId(id.getRid()).getFeatureType().getName());
+			}
+			catch (Exception e) {
+				// e.g. BLOB mode without feature type specific id prefixes
+				allFeatureTypes = true;
+			}
+		}
+		if (allFeatureTypes) {
+			for (FeatureType ft : schema.getFeatureTypes(null, false, false)) {
+				ftNames.add(ft.getName());
+			}
+		}
+		for (QName ftName : ftNames) {
+			bboxTracker.delete(ftName);
 		}
 
 		return deleted;
@@ -653,21 +710,28 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 			else {
 				// pure relational mode
 				List<FeatureRow> idAssignments = new ArrayList<FeatureRow>();
-				InsertRowManager insertManager = new InsertRowManager(fs, conn, mode);
-				for (Feature feature : features) {
-					FeatureTypeMapping ftMapping = fs.getMapping(feature.getName());
-					if (ftMapping == null) {
-						continue;
-						// throw new FeatureStoreException( "Cannot insert feature of type
-						// '" + feature.getName()
-						// + "'. No mapping defined and BLOB mode is off." );
-					}
-					idAssignments.add(insertManager.insertFeature(feature, ftMapping));
-					Pair<TableName, GeometryMapping> mapping = ftMapping.getDefaultGeometryMapping();
-					if (mapping != null) {
-						ICRS storageSrs = mapping.second.getCRS();
-						bboxTracker.insert(feature, storageSrs);
+				InsertRowManager insertManager = new InsertRowManager(fs, conn, mode, insertBatchSize);
+				try {
+					for (Feature feature : features) {
+						FeatureTypeMapping ftMapping = fs.getMapping(feature.getName());
+						if (ftMapping == null) {
+							continue;
+							// throw new FeatureStoreException( "Cannot insert feature of type
+							// '" + feature.getName()
+							// + "'. No mapping defined and BLOB mode is off." );
+						}
+						idAssignments.add(insertManager.insertFeature(feature, ftMapping));
+						Pair<TableName, GeometryMapping> mapping = ftMapping.getDefaultGeometryMapping();
+						if (mapping != null) {
+							ICRS storageSrs = mapping.second.getCRS();
+							bboxTracker.insert(feature, storageSrs);
+						}
 					}
+					insertManager.flush();
+				}
+				finally {
+					insertManager.close();
+					insertedRows += insertManager.getInsertedRows();
 				}
 				if (insertManager.getDelayedRows() != 0) {
 					String msg = "After insertion, " + insertManager.getDelayedRows()
@@ -690,6 +754,12 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 
 		long elapsed = System.currentTimeMillis() - begin;
 		LOG.debug("Insertion of {} features: {} [ms]", features.size(), elapsed);
+		for (String insertedId : fids) {
+			markModified(insertedId);
+		}
+		for (String insertedId : gids) {
+			markModified(insertedId);
+		}
 		return new ArrayList<String>(fids);
 	}
 
@@ -747,10 +817,36 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 		else {
 			updatedFids = performUpdateRelational(ftName, replacementProps, filter);
 		}
-		bboxTracker.update(ftName);
+		if (updatedFids != null) {
+			for (String updatedId : updatedFids) {
+				markModified(updatedId);
+			}
+		}
+		trackBBoxUpdate(ftName, replacementProps);
 		return updatedFids;
 	}
 
+	private void trackBBoxUpdate(QName ftName, List<ParsedPropertyReplacement> replacementProps) {
+		ICRS storageSrs = null;
+		if (blobMapping != null) {
+			storageSrs = blobMapping.getCRS();
+		}
+		else if (fs.getMapping(ftName) != null && fs.getMapping(ftName).getDefaultGeometryMapping() != null) {
+			storageSrs = fs.getMapping(ftName).getDefaultGeometryMapping().second.getCRS();
+		}
+		for (ParsedPropertyReplacement replacement : replacementProps) {
+			Property newProp = replacement.getNewValue();
+			TypedObjectNode value = newProp != null ? newProp.getValue() : null;
+			if (value instanceof Geometry && storageSrs != null) {
+				bboxTracker.update(ftName, ((Geometry) value).getEnvelope(), storageSrs);
+			}
+			else if (value != null && !(value instanceof PrimitiveValue)) {
+				// complex values may contain geometries
+				bboxTracker.update(ftName);
+			}
+		}
+	}
+
 	private List<String> performUpdateBlob(final QName ftName, final List<ParsedPropertyReplacement> replacementProps,
 			final Filter filter, final Lock lock) throws FeatureStoreException {
 		final List<String> updatedFids = new ArrayList<String>();
@@ -0,0 +1,602 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.ExtraProps;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve.CurveType;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Surface.SurfaceType;
+import org.deegree.geometry.refs.GeometryReference;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.gml.GMLVersion;
+
+/**
+ * Encodes / decodes {@link Feature} instances in a compact binary format that relies on
+ * the application schema.
+ * <p>
+ * The names of the properties are stored once per feature (dictionary, the namespace is
+ * omitted if it is the one of the feature type), primitive values are stored typed if
+ * their textual representation is the canonical one (the exact type is restored from the
+ * property declaration) and geometries are stored as packed coordinates (similar to
+ * WKB). Only features that can be restored without loss are supported, see
+ * {@link #isEncodable(Feature, ICRS)}.
+ * </p>
+ * <p>
+ * As properties are looked up by name when decoding, features stay readable if
+ * properties are added to the feature type or declarations are reordered. Decoding fails
+ * if a stored property is not declared anymore.
+ * </p>
+ */
+final class BinaryFeatureCodec {
+
+	private static final byte[] MAGIC = { 'D', 'G', 'B' };
+
+	private static final int VERSION = 3;
+
+	private static final int VALUE_TEXT = 1;
+
+	private static final int VALUE_BOOLEAN = 2;
+
+	private static final int VALUE_LONG = 3;
+
+	private static final int VALUE_DOUBLE = 4;
+
+	private static final int VALUE_GEOMETRY = 5;
+
+	// geometry codes follow WKB
+	private static final int GEOM_POINT = 1;
+
+	private static final int GEOM_LINE_STRING = 2;
+
+	private static final int GEOM_POLYGON = 3;
+
+	private static final int GEOM_MULTI_POINT = 4;
+
+	private static final int GEOM_MULTI_LINE_STRING = 5;
+
+	private static final int GEOM_MULTI_POLYGON = 6;
+
+	private static final String[] GEOM_ELEMENTS = { null, "Point", "LineString", "Polygon", "MultiPoint",
+			"MultiLineString", "MultiPolygon" };
+
+	private final String gmlNs;
+
+	private final GeometryFactory geomFac = new GeometryFactory();
+
+	/**
+	 * Creates a new {@link BinaryFeatureCodec} instance.
+	 * @param gmlVersion gml version of the geometry types, must not be <code>null</code>
+	 */
+	BinaryFeatureCodec(GMLVersion gmlVersion) {
+		this.gmlNs = gmlVersion.getNamespace();
+	}
+
+	/**
+	 * Returns whether the given bytes start with the header of the binary format (of any
+	 * version).
+	 * @param header first bytes of a BLOB, must not be <code>null</code>
+	 * @param length number of valid bytes in header
+	 * @return <code>true</code>, if the BLOB has been encoded by this codec
+	 */
+	static boolean isBinary(byte[] header, int length) {
+		if (length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (header[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the given feature can be encoded (and restored) without loss.
+	 * <p>
+	 * This requires that all properties are declared by the feature type and contain
+	 * either primitive values or points, line strings, polygons (with linear rings) or
+	 * their multi variants in the storage crs. Nilled properties, properties with
+	 * attributes, extra properties, references and other values are not supported.
+	 * </p>
+	 * @param feature feature to check, must not be <code>null</code>
+	 * @param crs storage crs, may be <code>null</code>
+	 * @return <code>true</code>, if the feature can be encoded
+	 */
+	boolean isEncodable(Feature feature, ICRS crs) {
+		ExtraProps extraProps = feature.getExtraProperties();
+		if (extraProps != null && extraProps.getProperties().length > 0) {
+			return false;
+		}
+		FeatureType ft = feature.getType();
+		for (Property prop : feature.getProperties()) {
+			if (ft.getPropertyDeclaration(prop.getName()) != prop.getType()) {
+				return false;
+			}
+			if (prop.getAttributes() != null && !prop.getAttributes().isEmpty()) {
+				return false;
+			}
+			TypedObjectNode value = prop.getValue();
+			List<TypedObjectNode> children = prop.getChildren();
+			if (children != null && !children.isEmpty() && (children.size() > 1 || children.get(0) != value)) {
+				return false;
+			}
+			if (prop.getType() instanceof SimplePropertyType) {
+				BaseType declaredType = ((SimplePropertyType) prop.getType()).getPrimitiveType().getBaseType();
+				if (!(value instanceof PrimitiveValue)
+						|| ((PrimitiveValue) value).getType().getBaseType() != declaredType) {
+					return false;
+				}
+			}
+			else if (!(prop.getType() instanceof GeometryPropertyType) || !(value instanceof Geometry)
+					|| !isEncodable((Geometry) value, crs)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isEncodable(Geometry geom, ICRS crs) {
+		if (geom instanceof GeometryReference<?>
+				|| (geom.getProperties() != null && !geom.getProperties().isEmpty())) {
+			return false;
+		}
+		if (crs != null && geom.getCoordinateSystem() != null && !crs.equals(geom.getCoordinateSystem())) {
+			return false;
+		}
+		int code = getGeometryCode(geom);
+		// the decoded geometry has the type of the standard GML element
+		if (code > 0 && geom.getType() != null && !getGeometryElement(code).equals(geom.getType().getName())) {
+			return false;
+		}
+		switch (code) {
+			case GEOM_POINT:
+			case GEOM_LINE_STRING:
+				return true;
+			case GEOM_POLYGON:
+				Polygon polygon = (Polygon) geom;
+				if (!isLinearRing(polygon.getExteriorRing())) {
+					return false;
+				}
+				if (polygon.getInteriorRings() != null) {
+					for (Ring ring : polygon.getInteriorRings()) {
+						if (!isLinearRing(ring)) {
+							return false;
+						}
+					}
+				}
+				return true;
+			case GEOM_MULTI_POINT:
+			case GEOM_MULTI_LINE_STRING:
+			case GEOM_MULTI_POLYGON:
+				for (Geometry member : (MultiGeometry<?>) geom) {
+					if (!isEncodable(member, crs)) {
+						return false;
+					}
+				}
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private QName getGeometryElement(int code) {
+		return new QName(gmlNs, GEOM_ELEMENTS[code]);
+	}
+
+	private static boolean isLinearRing(Ring ring) {
+		return ring instanceof LinearRing && ring.getCurveType() == CurveType.LinearRing && ring.getId() == null;
+	}
+
+	private static int getGeometryCode(Geometry geom) {
+		if (geom instanceof Point) {
+			return GEOM_POINT;
+		}
+		if (geom instanceof LineString && ((LineString) geom).getCurveType() == CurveType.LineString) {
+			return GEOM_LINE_STRING;
+		}
+		if (geom instanceof Polygon && ((Polygon) geom).getSurfaceType() == SurfaceType.Polygon) {
+			return GEOM_POLYGON;
+		}
+		if (geom instanceof MultiGeometry<?>) {
+			switch (((MultiGeometry<?>) geom).getMultiGeometryType()) {
+				case MULTI_POINT:
+					return GEOM_MULTI_POINT;
+				case MULTI_LINE_STRING:
+					return GEOM_MULTI_LINE_STRING;
+				case MULTI_POLYGON:
+					return GEOM_MULTI_POLYGON;
+				default:
+					return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Encodes the given feature, which must be encodable (see
+	 * {@link #isEncodable(Feature, ICRS)}).
+	 * @param feature feature to encode, must not be <code>null</code>
+	 * @param os stream to write to, must not be <code>null</code>
+	 * @throws IOException
+	 */
+	void encode(Feature feature, OutputStream os) throws IOException {
+		DataOutputStream out = new DataOutputStream(os);
+		out.write(MAGIC);
+		out.writeByte(VERSION);
+		FeatureType ft = feature.getType();
+		String ftNs = ft.getName().getNamespaceURI();
+		writeQName(out, ft.getName());
+		writeString(out, feature.getId());
+		List<Property> props = feature.getProperties();
+		Map<QName, Integer> dictionary = new LinkedHashMap<QName, Integer>();
+		for (Property prop : props) {
+			dictionary.putIfAbsent(prop.getName(), dictionary.size());
+		}
+		writeVarInt(out, dictionary.size());
+		for (QName propName : dictionary.keySet()) {
+			writeString(out, ftNs.equals(propName.getNamespaceURI()) ? null : propName.getNamespaceURI());
+			writeString(out, propName.getLocalPart());
+		}
+		writeVarInt(out, props.size());
+		for (Property prop : props) {
+			writeVarInt(out, dictionary.get(prop.getName()));
+			TypedObjectNode value = prop.getValue();
+			if (value instanceof Geometry) {
+				out.writeByte(VALUE_GEOMETRY);
+				writeGeometry(out, (Geometry) value);
+			}
+			else {
+				writePrimitive(out, (PrimitiveValue) value);
+			}
+		}
+		out.flush();
+	}
+
+	private void writePrimitive(DataOutputStream out, PrimitiveValue value) throws IOException {
+		Object o = value.getValue();
+		switch (value.getType().getBaseType()) {
+			case BOOLEAN:
+				if (o instanceof Boolean && isCanonical(value)) {
+					out.writeByte(VALUE_BOOLEAN);
+					out.writeBoolean((Boolean) o);
+					return;
+				}
+				break;
+			case DOUBLE:
+				if (o instanceof Double && isCanonical(value)) {
+					out.writeByte(VALUE_DOUBLE);
+					out.writeDouble((Double) o);
+					return;
+				}
+				break;
+			case INTEGER:
+				if (o instanceof BigInteger && ((BigInteger) o).bitLength() < 64 && isCanonical(value)) {
+					out.writeByte(VALUE_LONG);
+					out.writeLong(((BigInteger) o).longValue());
+					return;
+				}
+				break;
+			default:
+				break;
+		}
+		out.writeByte(VALUE_TEXT);
+		writeString(out, value.getAsText());
+	}
+
+	private static boolean isCanonical(PrimitiveValue value) {
+		// typed values are decoded with the generated textual representation
+		return new PrimitiveValue(value.getValue(), value.getType()).getAsText().equals(value.getAsText());
+	}
+
+	private void writeGeometry(DataOutputStream out, Geometry geom) throws IOException {
+		int code = getGeometryCode(geom);
+		out.writeByte(code);
+		writeString(out, geom.getId());
+		switch (code) {
+			case GEOM_POINT:
+				double[] coords = ((Point) geom).getAsArray();
+				out.writeByte(coords.length);
+				for (double coord : coords) {
+					out.writeDouble(coord);
+				}
+				break;
+			case GEOM_LINE_STRING:
+				writePoints(out, ((LineString) geom).getControlPoints());
+				break;
+			case GEOM_POLYGON:
+				Polygon polygon = (Polygon) geom;
+				List<Ring> interiors = polygon.getInteriorRings();
+				writeVarInt(out, interiors != null ? interiors.size() : 0);
+				writePoints(out, polygon.getExteriorRing().getControlPoints());
+				if (interiors != null) {
+					for (Ring ring : interiors) {
+						writePoints(out, ring.getControlPoints());
+					}
+				}
+				break;
+			default:
+				MultiGeometry<?> multi = (MultiGeometry<?>) geom;
+				writeVarInt(out, multi.size());
+				for (Geometry member : multi) {
+					writeGeometry(out, member);
+				}
+		}
+	}
+
+	private void writePoints(DataOutputStream out, Points points) throws IOException {
+		int dim = points.getDimension();
+		int size = points.size();
+		out.writeByte(dim);
+		writeVarInt(out, size);
+		double[] coords = points.getAsArray();
+		if (coords.length == size * dim) {
+			for (double coord : coords) {
+				out.writeDouble(coord);
+			}
+		}
+		else {
+			for (Point point : points) {
+				for (int i = 0; i < dim; i++) {
+					out.writeDouble(point.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes a feature that has been encoded by {@link #encode(Feature, OutputStream)}.
+	 * @param is stream to read from, must not be <code>null</code>
+	 * @param schema application schema, must not be <code>null</code>
+	 * @param crs storage crs, may be <code>null</code>
+	 * @return decoded feature, never <code>null</code>
+	 * @throws IOException if the data is invalid or does not match the application schema
+	 */
+	Feature decode(InputStream is, AppSchema schema, ICRS crs) throws IOException {
+		DataInputStream in = new DataInputStream(is);
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if (!isBinary(magic, magic.length)) {
+			throw new IOException("Data is not a binary encoded feature.");
+		}
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version of the binary encoding: " + version);
+		}
+		QName ftName = readQName(in);
+		FeatureType ft = schema.getFeatureType(ftName);
+		if (ft == null) {
+			throw new IOException("Feature type '" + ftName + "' is not defined in the application schema.");
+		}
+		String fid = readString(in);
+		PropertyType[] dictionary = new PropertyType[readVarInt(in)];
+		for (int i = 0; i < dictionary.length; i++) {
+			String ns = readString(in);
+			QName propName = new QName(ns != null ? ns : ftName.getNamespaceURI(), readString(in));
+			dictionary[i] = ft.getPropertyDeclaration(propName);
+			if (dictionary[i] == null) {
+				throw new IOException(
+						"Property '" + propName + "' is not defined for feature type '" + ftName + "' (anymore).");
+			}
+		}
+		int numProps = readVarInt(in);
+		List<Property> props = new ArrayList<Property>(numProps);
+		for (int i = 0; i < numProps; i++) {
+			int index = readVarInt(in);
+			if (index >= dictionary.length) {
+				throw new IOException("Invalid property index " + index + " for feature type '" + ftName + "'.");
+			}
+			PropertyType pt = dictionary[index];
+			int valueType = in.readByte();
+			TypedObjectNode value;
+			if (valueType == VALUE_GEOMETRY) {
+				value = readGeometry(in, schema, crs);
+			}
+			else if (pt instanceof SimplePropertyType) {
+				value = readPrimitive(in, valueType, ((SimplePropertyType) pt).getPrimitiveType());
+			}
+			else {
+				throw new IOException("Property '" + pt.getName() + "' is not a simple property.");
+			}
+			props.add(new GenericProperty(pt, pt.getName(), value));
+		}
+		return ft.newFeature(fid, props, null);
+	}
+
+	private PrimitiveValue readPrimitive(DataInputStream in, int valueType, PrimitiveType pt) throws IOException {
+		switch (valueType) {
+			case VALUE_TEXT:
+				return new PrimitiveValue(readString(in), pt);
+			case VALUE_BOOLEAN:
+				return new PrimitiveValue(in.readBoolean(), pt);
+			case VALUE_LONG:
+				return new PrimitiveValue(BigInteger.valueOf(in.readLong()), pt);
+			case VALUE_DOUBLE:
+				return new PrimitiveValue(in.readDouble(), pt);
+			default:
+				throw new IOException("Invalid value type: " + valueType);
+		}
+	}
+
+	private Geometry readGeometry(DataInputStream in, AppSchema schema, ICRS crs) throws IOException {
+		int code = in.readByte();
+		String id = readString(in);
+		Geometry geom = readGeometry(in, code, id, schema, crs);
+		geom.setType(schema.getGeometryType(getGeometryElement(code)));
+		return geom;
+	}
+
+	private Geometry readGeometry(DataInputStream in, int code, String id, AppSchema schema, ICRS crs)
+			throws IOException {
+		switch (code) {
+			case GEOM_POINT: {
+				double[] coords = new double[in.readByte()];
+				for (int i = 0; i < coords.length; i++) {
+					coords[i] = in.readDouble();
+				}
+				return geomFac.createPoint(id, coords, crs);
+			}
+			case GEOM_LINE_STRING:
+				return geomFac.createLineString(id, crs, readPoints(in, crs));
+			case GEOM_POLYGON: {
+				int numInteriors = readVarInt(in);
+				Ring exterior = geomFac.createLinearRing(null, crs, readPoints(in, crs));
+				List<Ring> interiors = new ArrayList<Ring>(numInteriors);
+				for (int i = 0; i < numInteriors; i++) {
+					interiors.add(geomFac.createLinearRing(null, crs, readPoints(in, crs)));
+				}
+				return geomFac.createPolygon(id, crs, exterior, interiors);
+			}
+			case GEOM_MULTI_POINT: {
+				int size = readVarInt(in);
+				List<Point> members = new ArrayList<Point>(size);
+				for (int i = 0; i < size; i++) {
+					members.add((Point) readGeometry(in, schema, crs));
+				}
+				return geomFac.createMultiPoint(id, crs, members);
+			}
+			case GEOM_MULTI_LINE_STRING: {
+				int size = readVarInt(in);
+				List<LineString> members = new ArrayList<LineString>(size);
+				for (int i = 0; i < size; i++) {
+					members.add((LineString) readGeometry(in, schema, crs));
+				}
+				return geomFac.createMultiLineString(id, crs, members);
+			}
+			case GEOM_MULTI_POLYGON: {
+				int size = readVarInt(in);
+				List<Polygon> members = new ArrayList<Polygon>(size);
+				for (int i = 0; i < size; i++) {
+					members.add((Polygon) readGeometry(in, schema, crs));
+				}
+				return geomFac.createMultiPolygon(id, crs, members);
+			}
+			default:
+				throw new IOException("Invalid geometry type: " + code);
+		}
+	}
+
+	private Points readPoints(DataInputStream in, ICRS crs) throws IOException {
+		int dim = in.readByte();
+		double[] coords = new double[readVarInt(in) * dim];
+		for (int i = 0; i < coords.length; i++) {
+			coords[i] = in.readDouble();
+		}
+		return new PackedPoints(crs, coords, dim);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid variable length integer.");
+	}
+
+	private static void writeQName(DataOutputStream out, QName name) throws IOException {
+		writeString(out, name.getNamespaceURI());
+		writeString(out, name.getLocalPart());
+	}
+
+	private static QName readQName(DataInputStream in) throws IOException {
+		return new QName(readString(in), readString(in));
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
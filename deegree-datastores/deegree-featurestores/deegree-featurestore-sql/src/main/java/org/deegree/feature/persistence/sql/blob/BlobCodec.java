@@ -80,6 +80,11 @@ import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
 /**
  * Provides methods for storing / retrieving {@link GMLObject} instances in binary form,
  * e.g. in BLOBs.
+ * <p>
+ * With {@link Compression#BINARY}, features are stored in a compact, schema based binary
+ * format if possible and as (uncompressed) GML otherwise. Decoding detects the format of
+ * each BLOB, so tables can be switched to another compression without re-encoding them.
+ * </p>
  *
  * TODO improve namespace handling (should not be done for every single blob) TODO get
  * FAST_INFOSET to work TODO FAST_INFOSET with external vocabulary
@@ -102,9 +107,11 @@ public class BlobCodec {
 
 	private final Compression compression;
 
+	private final BinaryFeatureCodec binaryCodec;
+
 	public enum Compression {
 
-		NONE, GZIP, FAST_INFOSET
+		NONE, GZIP, FAST_INFOSET, BINARY
 
 	}
 
@@ -116,6 +123,15 @@ public class BlobCodec {
 	public BlobCodec(GMLVersion gmlVersion, Compression compression) {
 		this.gmlVersion = gmlVersion;
 		this.compression = compression;
+		this.binaryCodec = new BinaryFeatureCodec(gmlVersion);
+	}
+
+	/**
+	 * Returns the compression method used for encoding.
+	 * @return compression method, never <code>null</code>
+	 */
+	public Compression getCompression() {
+		return compression;
 	}
 
 	/**
@@ -136,6 +152,12 @@ public class BlobCodec {
 			TransformationException, IOException {
 
 		long begin = System.currentTimeMillis();
+		if (compression == Compression.BINARY && object instanceof Feature
+				&& binaryCodec.isEncodable((Feature) object, crs)) {
+			binaryCodec.encode((Feature) object, os);
+			LOG.debug("Encoding feature (binary) took {} [ms]", System.currentTimeMillis() - begin);
+			return;
+		}
 		XMLStreamWriter xmlWriter = getXMLWriter(os);
 		GMLStreamWriter gmlWriter = GMLOutputFactory.createGMLStreamWriter(gmlVersion, xmlWriter);
 		Map<String, String> bindings = new HashMap<String, String>(nsContext);
@@ -174,6 +196,8 @@ public class BlobCodec {
 				writer = new XMLStreamWriterWrapper(writer, gos);
 				break;
 			}
+			case BINARY:
+				// objects that cannot be encoded in binary form are stored as GML
 			case NONE: {
 				writer = xmlOutputFactory.createXMLStreamWriter(os, "UTF-8");
 				break;
@@ -202,20 +226,41 @@ public class BlobCodec {
 
 		long begin = System.currentTimeMillis();
 		BufferedInputStream bis = new BufferedInputStream(is);
-		XMLStreamReader xmlStream = getXMLReader(bis, nsContext);
+		byte[] header = new byte[4];
+		bis.mark(header.length);
+		int length = bis.readNBytes(header, 0, header.length);
+		bis.reset();
+		if (BinaryFeatureCodec.isBinary(header, length)) {
+			Feature feature = binaryCodec.decode(bis, schema, crs);
+			LOG.debug("Decoding feature (binary) took {} [ms]", System.currentTimeMillis() - begin);
+			return feature;
+		}
+		Compression xmlCompression = getXMLCompression(header, length);
+		XMLStreamReader xmlStream = getXMLReader(bis, xmlCompression);
 		GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader(gmlVersion, xmlStream);
 		gmlReader.setResolver(idResolver);
 		gmlReader.setApplicationSchema(schema);
 		gmlReader.setDefaultCRS(crs);
 		Feature feature = gmlReader.readFeature();
-		LOG.debug("Decoding feature (compression: {}) took {} [ms]", compression, System.currentTimeMillis() - begin);
+		LOG.debug("Decoding feature (compression: {}) took {} [ms]", xmlCompression,
+				System.currentTimeMillis() - begin);
 		return feature;
 	}
 
-	private XMLStreamReader getXMLReader(InputStream is, Map<String, String> nsContext)
+	private static Compression getXMLCompression(byte[] header, int length) {
+		if (length >= 2 && header[0] == (byte) 0x1F && header[1] == (byte) 0x8B) {
+			return Compression.GZIP;
+		}
+		if (length >= 4 && header[0] == (byte) 0xE0 && header[1] == 0 && header[2] == 0 && header[3] == 1) {
+			return Compression.FAST_INFOSET;
+		}
+		return Compression.NONE;
+	}
+
+	private XMLStreamReader getXMLReader(InputStream is, Compression xmlCompression)
 			throws XMLStreamException, IOException {
 		XMLStreamReader reader = null;
-		switch (compression) {
+		switch (xmlCompression) {
 			case FAST_INFOSET: {
 				reader = new StAXDocumentParser(is);
 				break;
@@ -0,0 +1,162 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.utils.JDBCUtils;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.SQLFeatureStoreTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-encodes the objects stored in the BLOB table of an {@link SQLFeatureStore} with the
+ * {@link BlobCodec} that is configured for the store, e.g. after the encoding has been
+ * changed to <code>binary</code>.
+ * <p>
+ * The table is processed in chunks (ordered by the internal id) within a single
+ * transaction.
+ * </p>
+ */
+public class BlobReencoder {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BlobReencoder.class);
+
+	private final SQLFeatureStore fs;
+
+	private final int chunkSize;
+
+	/**
+	 * Creates a new {@link BlobReencoder} instance.
+	 * @param fs feature store (BLOB mode), must not be <code>null</code>
+	 * @param chunkSize number of rows that are read and updated at once, must be > 0
+	 */
+	public BlobReencoder(SQLFeatureStore fs, int chunkSize) {
+		this.fs = fs;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Re-encodes all objects of the BLOB table.
+	 * @return number of re-encoded objects
+	 * @throws FeatureStoreException if the feature store is not in BLOB mode or
+	 * re-encoding fails (all changes are rolled back)
+	 */
+	public long reencode() throws FeatureStoreException {
+		BlobMapping blobMapping = fs.getSchema().getBlobMapping();
+		if (blobMapping == null) {
+			throw new FeatureStoreException(
+					"Feature store '" + fs.getMetadata().getIdentifier().getId() + "' is not in BLOB mode.");
+		}
+		LOG.info("Re-encoding table '{}' (compression: {}).", blobMapping.getTable(),
+				blobMapping.getCodec().getCompression());
+		SQLFeatureStoreTransaction ta = (SQLFeatureStoreTransaction) fs.acquireTransaction();
+		long count = 0;
+		try {
+			Connection conn = ta.getConnection();
+			long lastId = Long.MIN_VALUE;
+			int rows;
+			do {
+				rows = 0;
+				PreparedStatement select = null;
+				PreparedStatement update = null;
+				ResultSet rs = null;
+				try {
+					select = conn.prepareStatement(getSelect(blobMapping));
+					select.setMaxRows(chunkSize);
+					select.setLong(1, lastId);
+					rs = select.executeQuery();
+					update = conn.prepareStatement(getUpdate(blobMapping));
+					while (rs.next()) {
+						lastId = rs.getLong(1);
+						byte[] data = reencode(blobMapping, rs.getBinaryStream(2));
+						update.setBytes(1, data);
+						update.setLong(2, lastId);
+						update.addBatch();
+						rows++;
+					}
+					if (rows > 0) {
+						update.executeBatch();
+					}
+				}
+				finally {
+					JDBCUtils.close(rs, select, null, LOG);
+					JDBCUtils.close(update);
+				}
+				count += rows;
+				LOG.info("Re-encoded {} objects.", count);
+			}
+			while (rows == chunkSize);
+		}
+		catch (Exception e) {
+			ta.rollback();
+			String msg = "Unable to re-encode table '" + blobMapping.getTable() + "': " + e.getMessage();
+			LOG.trace("Stack trace:", e);
+			throw new FeatureStoreException(msg, e);
+		}
+		ta.commit();
+		return count;
+	}
+
+	private byte[] reencode(BlobMapping blobMapping, InputStream is) throws Exception {
+		BlobCodec codec = blobMapping.getCodec();
+		GMLObject object = codec.decode(is, fs.getNamespaceContext(), fs.getSchema(), blobMapping.getCRS(),
+				fs.getResolver());
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		codec.encode(object, fs.getNamespaceContext(), bos, blobMapping.getCRS());
+		return bos.toByteArray();
+	}
+
+	private String getSelect(BlobMapping blobMapping) {
+		TableName table = blobMapping.getTable();
+		String idColumn = blobMapping.getInternalIdColumn();
+		return "SELECT " + idColumn + "," + blobMapping.getDataColumn() + " FROM " + table + " WHERE " + idColumn
+				+ ">? ORDER BY " + idColumn;
+	}
+
+	private String getUpdate(BlobMapping blobMapping) {
+		return "UPDATE " + blobMapping.getTable() + " SET " + blobMapping.getDataColumn() + "=? WHERE "
+				+ blobMapping.getInternalIdColumn() + "=?";
+	}
+
+}
@@ -48,6 +48,7 @@ import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -61,6 +62,7 @@ import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.mapping.antlr.FMLLexer;
 import org.deegree.feature.persistence.mapping.antlr.FMLParser;
+import org.deegree.feature.persistence.sql.HitsStrategy;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.feature.persistence.sql.expressions.Function;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
@@ -255,4 +257,11 @@ public abstract class AbstractMappedSchemaBuilder {
 		return Collections.emptyList();
 	}
 
+	protected HitsStrategy createHitsStrategy(FeatureTypeMappingJAXB ftDecl) {
+		if (ftDecl.getHitsStrategy() != null) {
+			return HitsStrategy.valueOf(ftDecl.getHitsStrategy().toUpperCase(Locale.ROOT));
+		}
+		return HitsStrategy.EXACT;
+	}
+
 }
\ No newline at end of file
@@ -37,6 +37,8 @@ package org.deegree.feature.persistence.sql.config;
 import static java.lang.Boolean.TRUE;
 import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.BINARY;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.GZIP;
 import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.NONE;
 import static org.deegree.feature.persistence.sql.jaxb.NullEscalationType.AUTO;
 import static org.deegree.feature.persistence.sql.jaxb.NullEscalationType.FALSE;
@@ -75,9 +77,11 @@ import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.sql.BBoxTableMapping;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
 import org.deegree.feature.persistence.sql.GeometryStorageParams;
+import org.deegree.feature.persistence.sql.HitsStrategy;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.sqldialect.SortCriterion;
 import org.deegree.feature.persistence.sql.blob.BlobCodec;
+import org.deegree.feature.persistence.sql.blob.BlobCodec.Compression;
 import org.deegree.feature.persistence.sql.blob.BlobMapping;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
 import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
@@ -318,10 +322,21 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
 				: blobMappingConf.getFeatureTypeTable();
 		BBoxTableMapping bboxMapping = new BBoxTableMapping(ftTable, geometryParams.getCrs());
 		String blobTable = blobMappingConf.getBlobTable() == null ? GML_OBJECTS_TABLE : blobMappingConf.getBlobTable();
-		BlobMapping blobMapping = new BlobMapping(blobTable, geometryParams.getCrs(), new BlobCodec(gmlVersion, NONE));
+		BlobCodec codec = new BlobCodec(gmlVersion, getCompression(blobMappingConf.getEncoding()));
+		BlobMapping blobMapping = new BlobMapping(blobTable, geometryParams.getCrs(), codec);
 		return new Pair<BlobMapping, BBoxTableMapping>(blobMapping, bboxMapping);
 	}
 
+	private Compression getCompression(String encoding) {
+		if ("gzip".equals(encoding)) {
+			return GZIP;
+		}
+		if ("binary".equals(encoding)) {
+			return BINARY;
+		}
+		return NONE;
+	}
+
 	private FeatureTypeMapping buildFtMapping(FeatureTypeMappingJAXB ftMappingConf) throws FeatureStoreException {
 
 		QName ftName = ftMappingConf.getName();
@@ -334,7 +349,8 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
 				.add(buildMapping(ftTable, new Pair<XSElementDeclaration, Boolean>(elDecl, TRUE), particle.getValue()));
 		}
 		List<SortCriterion> sortCriteria = createSortCriteria(ftMappingConf, ftTable);
-		return new FeatureTypeMapping(ftName, ftTable, fidMapping, particleMappings, sortCriteria);
+		return new FeatureTypeMapping(ftName, ftTable, fidMapping, particleMappings, sortCriteria,
+				createHitsStrategy(ftMappingConf));
 	}
 
 	private FIDMapping buildFIDMapping(TableName table, QName ftName, FIDMappingJAXB config)
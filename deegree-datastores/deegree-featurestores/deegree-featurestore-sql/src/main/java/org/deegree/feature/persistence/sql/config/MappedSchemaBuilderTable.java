@@ -71,6 +71,7 @@ import org.deegree.db.ConnectionProviderProvider;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
 import org.deegree.feature.persistence.sql.GeometryStorageParams;
+import org.deegree.feature.persistence.sql.HitsStrategy;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
 import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
@@ -195,16 +196,17 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
 
 		List<JAXBElement<? extends AbstractParticleJAXB>> propDecls = ftDecl.getAbstractParticle();
 		List<SortCriterion> sortCriteria = createSortCriteria(ftDecl, table);
+		HitsStrategy hitsStrategy = createHitsStrategy(ftDecl);
 		if (propDecls != null && !propDecls.isEmpty()) {
-			buildFeatureTypeAndMapping(table, ftName, fidMapping, propDecls, sortCriteria);
+			buildFeatureTypeAndMapping(table, ftName, fidMapping, propDecls, sortCriteria, hitsStrategy);
 		}
 		else {
-			buildFeatureTypeAndMapping(table, ftName, fidMapping, sortCriteria);
+			buildFeatureTypeAndMapping(table, ftName, fidMapping, sortCriteria, hitsStrategy);
 		}
 	}
 
 	private void buildFeatureTypeAndMapping(TableName table, QName ftName, FIDMapping fidMapping,
-			List<SortCriterion> sortCriteria) throws SQLException {
+			List<SortCriterion> sortCriteria, HitsStrategy hitsStrategy) throws SQLException {
 
 		LOG.debug("Deriving properties and mapping for feature type '{}' from table '{}'", ftName, table);
 
@@ -255,13 +257,14 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
 		FeatureType ft = new GenericFeatureType(ftName, pts, false);
 		ftNameToFt.put(ftName, ft);
 
-		FeatureTypeMapping ftMapping = new FeatureTypeMapping(ftName, table, fidMapping, mappings, sortCriteria);
+		FeatureTypeMapping ftMapping = new FeatureTypeMapping(ftName, table, fidMapping, mappings, sortCriteria,
+				hitsStrategy);
 		ftNameToMapping.put(ftName, ftMapping);
 	}
 
 	private void buildFeatureTypeAndMapping(TableName table, QName ftName, FIDMapping fidMapping,
-			List<JAXBElement<? extends AbstractParticleJAXB>> propDecls, List<SortCriterion> sortCriteria)
-			throws FeatureStoreException, SQLException {
+			List<JAXBElement<? extends AbstractParticleJAXB>> propDecls, List<SortCriterion> sortCriteria,
+			HitsStrategy hitsStrategy) throws FeatureStoreException, SQLException {
 
 		List<PropertyType> pts = new ArrayList<PropertyType>();
 		List<Mapping> mappings = new ArrayList<Mapping>();
@@ -277,7 +280,8 @@ public class MappedSchemaBuilderTable extends AbstractMappedSchemaBuilder {
 		FeatureType ft = new GenericFeatureType(ftName, pts, false);
 		ftNameToFt.put(ftName, ft);
 
-		FeatureTypeMapping ftMapping = new FeatureTypeMapping(ftName, table, fidMapping, mappings, sortCriteria);
+		FeatureTypeMapping ftMapping = new FeatureTypeMapping(ftName, table, fidMapping, mappings, sortCriteria,
+				hitsStrategy);
 		ftNameToMapping.put(ftName, ftMapping);
 	}
 
@@ -35,6 +35,7 @@
 package org.deegree.feature.persistence.sql.insert;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
@@ -45,6 +46,7 @@ import org.deegree.commons.jdbc.SQLIdentifier;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.ParticleConversion;
 import org.deegree.commons.tom.sql.PrimitiveParticleConverter;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
@@ -105,6 +107,16 @@ public class FeatureRow extends InsertRow {
 	void performInsert(Connection conn, boolean propagateAutoGenColumns) throws SQLException, FeatureStoreException {
 
 		super.performInsert(conn, propagateAutoGenColumns);
+		afterInsert();
+	}
+
+	@Override
+	void addBatch(PreparedStatement stmt) throws SQLException, FeatureStoreException {
+		super.addBatch(stmt);
+		afterInsert();
+	}
+
+	private void afterInsert() throws FeatureStoreException {
 
 		newId = buildNewFid();
 		if (newId == null) {
@@ -224,6 +236,11 @@ public class FeatureRow extends InsertRow {
 		if (value == null) {
 			throw new FeatureStoreException("FIDMapping error: No value for feature id column '" + column + "'.");
 		}
+		if (value instanceof ParticleConversion<?>
+				&& ((ParticleConversion<?>) value).getParticle() instanceof PrimitiveValue) {
+			// value has not been retrieved from the DB (batched insert)
+			return ((PrimitiveValue) ((ParticleConversion<?>) value).getParticle()).getAsText();
+		}
 		return value;
 	}
 
@@ -49,6 +49,8 @@ import java.util.UUID;
 
 import org.deegree.commons.jdbc.SQLIdentifier;
 import org.deegree.commons.jdbc.TransactionRow;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
 import org.deegree.commons.tom.sql.ParticleConversion;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -212,23 +214,7 @@ public abstract class InsertRow extends TransactionRow {
 			}
 			stmt = conn.prepareStatement(sql, cols);
 		}
-		int columnId = 1;
-		for (Entry<SQLIdentifier, Object> entry : columnToObject.entrySet()) {
-			if (entry.getValue() != null) {
-				LOG.debug("- Argument {} = {} ({})", entry.getKey(), entry.getValue(), entry.getValue().getClass());
-				if (entry.getValue() instanceof ParticleConversion<?>) {
-					ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
-					conversion.setParticle(stmt, columnId++);
-				}
-				else {
-					stmt.setObject(columnId++, entry.getValue());
-				}
-			}
-			else {
-				LOG.debug("- Argument {} = NULL", entry.getKey());
-				stmt.setObject(columnId++, null);
-			}
-		}
+		setArguments(stmt);
 		stmt.execute();
 
 		if (!autoGenColumns.isEmpty()) {
@@ -256,6 +242,90 @@ public abstract class InsertRow extends TransactionRow {
 		stmt.close();
 	}
 
+	/**
+	 * Returns whether this row can be inserted as part of a JDBC batch, i.e. the values of
+	 * all key columns that need to be propagated are known before insertion.
+	 * @param propagateNonFidAutoGenColumns <code>true</code>, if auto generated key
+	 * columns need to be processed (and propagated), <code>false</code> otherwise
+	 * @return <code>true</code>, if no values need to be retrieved from the DB,
+	 * <code>false</code> otherwise
+	 */
+	boolean isBatchable(boolean propagateNonFidAutoGenColumns) {
+		for (SQLIdentifier column : getAutogenColumns(propagateNonFidAutoGenColumns)) {
+			if (get(column) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the insertion of this row to the batch of the given statement.
+	 * @param stmt statement prepared for the SQL of this row, must not be
+	 * <code>null</code>
+	 * @throws SQLException
+	 * @throws FeatureStoreException
+	 */
+	void addBatch(PreparedStatement stmt) throws SQLException, FeatureStoreException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Adding row to batch: {}", this);
+		}
+		setArguments(stmt);
+		stmt.addBatch();
+	}
+
+	/**
+	 * Returns the values of this row for bulk loading with
+	 * {@link org.deegree.sqldialect.SQLDialect#copyRows}. This is only possible if every
+	 * column is bound as a plain parameter and the values are either plain objects or
+	 * primitives handled by the {@link DefaultPrimitiveConverter}.
+	 * @return values in the order of {@link #getColumns()}, or <code>null</code> if the
+	 * row can only be inserted with its INSERT statement
+	 */
+	Object[] getCopyValues() {
+		Object[] values = new Object[columnToLiteral.size()];
+		int i = 0;
+		for (Entry<SQLIdentifier, String> entry : columnToLiteral.entrySet()) {
+			if (!"?".equals(entry.getValue())) {
+				return null;
+			}
+			Object value = columnToObject.get(entry.getKey());
+			if (value instanceof ParticleConversion<?>) {
+				ParticleConversion<?> conversion = (ParticleConversion<?>) value;
+				if (conversion.getConverter().getClass() != DefaultPrimitiveConverter.class) {
+					return null;
+				}
+				PrimitiveValue particle = (PrimitiveValue) conversion.getParticle();
+				value = null;
+				if (particle != null && particle.getValue() != null) {
+					value = ((DefaultPrimitiveConverter) conversion.getConverter()).toSqlValue(particle.getValue());
+				}
+			}
+			values[i++] = value;
+		}
+		return values;
+	}
+
+	private void setArguments(PreparedStatement stmt) throws SQLException {
+		int columnId = 1;
+		for (Entry<SQLIdentifier, Object> entry : columnToObject.entrySet()) {
+			if (entry.getValue() != null) {
+				LOG.debug("- Argument {} = {} ({})", entry.getKey(), entry.getValue(), entry.getValue().getClass());
+				if (entry.getValue() instanceof ParticleConversion<?>) {
+					ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
+					conversion.setParticle(stmt, columnId++);
+				}
+				else {
+					stmt.setObject(columnId++, entry.getValue());
+				}
+			}
+			else {
+				LOG.debug("- Argument {} = NULL", entry.getKey());
+				stmt.setObject(columnId++, null);
+			}
+		}
+	}
+
 	protected Set<SQLIdentifier> getAutogenColumns(boolean propagateNonFidAutoGenColumns) {
 		Set<SQLIdentifier> cols = new LinkedHashSet<SQLIdentifier>();
 		if (propagateNonFidAutoGenColumns) {
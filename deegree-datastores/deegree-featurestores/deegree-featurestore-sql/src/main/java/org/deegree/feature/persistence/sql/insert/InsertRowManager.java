@@ -35,6 +35,7 @@
 package org.deegree.feature.persistence.sql.insert;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -54,7 +55,9 @@ import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.TunableParameter;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
@@ -100,6 +103,8 @@ public class InsertRowManager {
 
 	private static Logger LOG = LoggerFactory.getLogger(InsertRowManager.class);
 
+	private static final boolean COPY = TunableParameter.get("deegree.sqlfeaturestore.insert.copy", true);
+
 	private final SQLFeatureStore fs;
 
 	private final SQLDialect dialect;
@@ -122,6 +127,20 @@ public class InsertRowManager {
 	// values: rows that have not been inserted yet, but can be inserted (no parents)
 	private final Set<InsertRow> rootRows = new HashSet<InsertRow>();
 
+	private final int batchSize;
+
+	private final boolean copy;
+
+	// key: insert SQL, value: prepared statement (reused for all batches)
+	private final Map<String, PreparedStatement> sqlToBatchStmt = new HashMap<String, PreparedStatement>();
+
+	// values: pending batches, in order of their first row
+	private final List<Batch> pendingBatches = new ArrayList<Batch>();
+
+	private int pendingRows;
+
+	private long insertedRows;
+
 	/**
 	 * Creates a new {@link InsertRowManager} instance.
 	 * @param fs feature store, must not be <code>null</code>
@@ -129,11 +148,37 @@ public class InsertRowManager {
 	 * @param idGenMode feature id generation mode, must not be <code>null</code>
 	 */
 	public InsertRowManager(SQLFeatureStore fs, Connection conn, IDGenMode idGenMode) {
+		this(fs, conn, idGenMode, 1);
+	}
+
+	/**
+	 * Creates a new {@link InsertRowManager} instance that uses JDBC batches for rows
+	 * whose key values are known before insertion.
+	 * <p>
+	 * Rows are grouped by their INSERT statement. The batches are executed in the order
+	 * in which they have been started, so rows providing keys are always inserted before
+	 * the rows referencing them. Callers must invoke {@link #flush()} after the last
+	 * feature has been inserted.
+	 * </p>
+	 * <p>
+	 * If the dialect supports bulk loading (e.g. COPY for PostgreSQL), batches of rows
+	 * whose columns are all bound as plain parameters are bulk loaded instead. This can
+	 * be disabled with the tunable <code>deegree.sqlfeaturestore.insert.copy</code>.
+	 * </p>
+	 * @param fs feature store, must not be <code>null</code>
+	 * @param conn connection, must not be <code>null</code>
+	 * @param idGenMode feature id generation mode, must not be <code>null</code>
+	 * @param batchSize maximum number of rows to be collected before the batches are
+	 * executed, values smaller than 2 disable batching
+	 */
+	public InsertRowManager(SQLFeatureStore fs, Connection conn, IDGenMode idGenMode, int batchSize) {
 		this.fs = fs;
 		this.dialect = fs.getDialect();
 		this.conn = conn;
 		this.idGenMode = idGenMode;
 		this.tableDeps = fs.getSchema().getKeyDependencies();
+		this.batchSize = batchSize;
+		this.copy = COPY && dialect.isCopyCapable();
 	}
 
 	/**
@@ -165,16 +210,7 @@ public class InsertRowManager {
 			}
 
 			LOG.debug("Built rows for feature '{}': {}", feature.getId(), allRows.size());
-
-			for (InsertRow insertRow : allRows) {
-				if (!insertRow.hasParents()) {
-					rootRows.add(insertRow);
-				}
-			}
-
-			LOG.debug("Before heap run: uninserted rows: {}, root rows: {}", delayedRows.size(), rootRows.size());
-			processHeap();
-			LOG.debug("After heap run: uninserted rows: {}, root rows: {}", delayedRows.size(), rootRows.size());
+			insertRows(allRows);
 
 		}
 		catch (Throwable t) {
@@ -218,16 +254,7 @@ public class InsertRowManager {
 			buildInsertRows(feature, mapping, featureRow, allRows);
 
 			LOG.debug("Built rows for feature '{}': {}", feature.getId(), allRows.size());
-
-			for (InsertRow insertRow : allRows) {
-				if (!insertRow.hasParents()) {
-					rootRows.add(insertRow);
-				}
-			}
-
-			LOG.debug("Before heap run: uninserted rows: {}, root rows: {}", delayedRows.size(), rootRows.size());
-			processHeap();
-			LOG.debug("After heap run: uninserted rows: {}, root rows: {}", delayedRows.size(), rootRows.size());
+			insertRows(allRows);
 
 		}
 		catch (Throwable t) {
@@ -237,6 +264,42 @@ public class InsertRowManager {
 		return featureRow;
 	}
 
+	/**
+	 * Inserts the given rows that don't depend on uninserted rows as well as all rows that
+	 * can be inserted afterwards.
+	 * @param rows rows to be inserted, must not be <code>null</code>
+	 */
+	void insertRows(List<InsertRow> rows) throws SQLException, FeatureStoreException {
+		for (InsertRow insertRow : rows) {
+			if (!insertRow.hasParents()) {
+				rootRows.add(insertRow);
+			}
+		}
+		LOG.debug("Before heap run: uninserted rows: {}, root rows: {}", delayedRows.size(), rootRows.size());
+		processHeap();
+		LOG.debug("After heap run: uninserted rows: {}, root rows: {}", delayedRows.size(), rootRows.size());
+	}
+
+	/**
+	 * Registers that the child row can not be inserted before the parent row, as it
+	 * receives key values from it.
+	 * @param parent row providing the keys, must not be <code>null</code>
+	 * @param child row receiving the keys, must not be <code>null</code>
+	 * @param keyPropagation propagated keys, must not be <code>null</code>
+	 * @return reference from the child to the parent row, never <code>null</code>
+	 */
+	ParentRowReference addParentRow(InsertRow parent, InsertRow child, KeyPropagation keyPropagation) {
+		ParentRowReference ref = new ParentRowReference(parent, keyPropagation);
+		child.addParent(ref);
+		List<InsertRow> children = rowToChildRows.get(parent);
+		if (children == null) {
+			children = new ArrayList<InsertRow>();
+			rowToChildRows.put(parent, children);
+		}
+		children.add(child);
+		return ref;
+	}
+
 	SQLDialect getDialect() {
 		return dialect;
 	}
@@ -374,14 +437,7 @@ public class InsertRowManager {
 						TableJoin join = jc.get(0);
 						KeyPropagation keyPropagation = getKeyPropagation((FeatureMapping) mapping, join);
 						// standard: pk in subfeature table (usually feature id)
-						ParentRowReference ref = new ParentRowReference(subFeatureRow, keyPropagation);
-						currentRow.addParent(ref);
-						List<InsertRow> children = rowToChildRows.get(subFeatureRow);
-						if (children == null) {
-							children = new ArrayList<InsertRow>();
-							rowToChildRows.put(subFeatureRow, children);
-						}
-						children.add(currentRow);
+						ParentRowReference ref = addParentRow(subFeatureRow, currentRow, keyPropagation);
 
 						SQLIdentifier hrefCol = null;
 						if (((FeatureMapping) mapping).getHrefMapping() != null) {
@@ -479,21 +535,10 @@ public class InsertRowManager {
 		}
 
 		if (keyPropagation.getSourceTable().equals(join.getFromTable())) {
-			ParentRowReference ref = new ParentRowReference(row, keyPropagation);
-			newRow.addParent(ref);
-			List<InsertRow> children = rowToChildRows.get(row);
-			if (children == null) {
-				children = new ArrayList<InsertRow>();
-				rowToChildRows.put(row, children);
-			}
-			children.add(newRow);
+			addParentRow(row, newRow, keyPropagation);
 		}
 		else {
-			ParentRowReference ref = new ParentRowReference(newRow, keyPropagation);
-			row.addParent(ref);
-			List<InsertRow> children = new ArrayList<InsertRow>();
-			rowToChildRows.put(newRow, children);
-			children.add(row);
+			addParentRow(newRow, row, keyPropagation);
 		}
 
 		return newRow;
@@ -523,7 +568,16 @@ public class InsertRowManager {
 			List<InsertRow> rootAdds = new ArrayList<InsertRow>();
 			for (InsertRow row : rootRows) {
 				LOG.debug("Inserting row {}", row);
-				row.performInsert(conn, rowToChildRows.get(row) != null);
+				boolean propagateAutoGenColumns = rowToChildRows.get(row) != null;
+				if (batchSize > 1 && row.isBatchable(propagateAutoGenColumns)) {
+					addBatch(row);
+				}
+				else {
+					// row may reference rows that are still batched
+					flush();
+					row.performInsert(conn, propagateAutoGenColumns);
+					insertedRows++;
+				}
 				delayedRows.remove(row);
 				rootRemoves.add(row);
 
@@ -545,6 +599,84 @@ public class InsertRowManager {
 		}
 	}
 
+	private void addBatch(InsertRow row) throws SQLException, FeatureStoreException {
+		String sql = row.getSql();
+		Object[] copyValues = copy ? row.getCopyValues() : null;
+		Batch batch = pendingBatches.isEmpty() ? null : pendingBatches.get(pendingBatches.size() - 1);
+		if (batch == null || !batch.sql.equals(sql) || (batch.copyRows != null) != (copyValues != null)) {
+			for (Batch pendingBatch : pendingBatches) {
+				if (pendingBatch.sql.equals(sql)) {
+					// row may reference rows of batches that have been started later
+					flush();
+					break;
+				}
+			}
+			batch = new Batch(sql, copyValues != null ? row : null);
+			pendingBatches.add(batch);
+		}
+		if (copyValues != null) {
+			batch.copyRows.add(copyValues);
+		}
+		else {
+			row.addBatch(getBatchStatement(sql));
+		}
+		if (++pendingRows >= batchSize) {
+			flush();
+		}
+	}
+
+	private PreparedStatement getBatchStatement(String sql) throws SQLException {
+		PreparedStatement stmt = sqlToBatchStmt.get(sql);
+		if (stmt == null) {
+			LOG.debug("Preparing batch statement: {}", sql);
+			stmt = conn.prepareStatement(sql);
+			sqlToBatchStmt.put(sql, stmt);
+		}
+		return stmt;
+	}
+
+	/**
+	 * Executes all pending batches.
+	 * @throws SQLException if the execution of a batch fails
+	 */
+	public void flush() throws SQLException {
+		if (pendingRows == 0) {
+			return;
+		}
+		LOG.debug("Executing {} batches with {} rows", pendingBatches.size(), pendingRows);
+		for (Batch batch : pendingBatches) {
+			if (batch.copyRows != null) {
+				dialect.copyRows(conn, batch.table, batch.columns, batch.copyRows);
+			}
+			else {
+				sqlToBatchStmt.get(batch.sql).executeBatch();
+			}
+		}
+		insertedRows += pendingRows;
+		pendingBatches.clear();
+		pendingRows = 0;
+	}
+
+	/**
+	 * Closes the prepared batch statements, pending batches are discarded.
+	 */
+	public void close() {
+		for (PreparedStatement stmt : sqlToBatchStmt.values()) {
+			JDBCUtils.close(stmt);
+		}
+		sqlToBatchStmt.clear();
+		pendingBatches.clear();
+		pendingRows = 0;
+	}
+
+	/**
+	 * Returns the number of rows that have been inserted into the DB.
+	 * @return number of inserted rows (without pending batches)
+	 */
+	public long getInsertedRows() {
+		return insertedRows;
+	}
+
 	/**
 	 * Returns the number of currently delayed rows (rows that depend on some other row to
 	 * be inserted first).
@@ -554,4 +686,35 @@ public class InsertRowManager {
 		return delayedRows.size();
 	}
 
+	/**
+	 * Rows with the same INSERT statement that are sent to the DB together, either as JDBC
+	 * batch or by bulk loading.
+	 */
+	private static class Batch {
+
+		private final String sql;
+
+		private final TableName table;
+
+		private final List<SQLIdentifier> columns;
+
+		// values of the rows to be bulk loaded, null for a JDBC batch
+		private final List<Object[]> copyRows;
+
+		private Batch(String sql, InsertRow copyRow) {
+			this.sql = sql;
+			if (copyRow != null) {
+				this.table = copyRow.getTable();
+				this.columns = new ArrayList<SQLIdentifier>(copyRow.getColumns());
+				this.copyRows = new ArrayList<Object[]>();
+			}
+			else {
+				this.table = null;
+				this.columns = null;
+				this.copyRows = null;
+			}
+		}
+
+	}
+
 }
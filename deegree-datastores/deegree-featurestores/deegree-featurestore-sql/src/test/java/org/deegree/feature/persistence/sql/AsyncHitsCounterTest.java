@@ -0,0 +1,204 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AsyncHitsCounter}.
+ */
+public class AsyncHitsCounterTest {
+
+	private static final String SQL = "SELECT COUNT(*) FROM road";
+
+	private final List<Runnable> tasks = new ArrayList<>();
+
+	private int counted;
+
+	private int hits;
+
+	private boolean fail;
+
+	@Before
+	public void setUp() {
+		tasks.clear();
+		counted = 0;
+		hits = 42;
+		fail = false;
+	}
+
+	@Test
+	public void testFirstCallReturnsUnknownAndCountsInBackground() {
+		AsyncHitsCounter counter = createCounter(300000);
+		assertThat(counter.getHits(SQL, emptyList()), is(-1));
+		assertThat(tasks.size(), is(1));
+		assertThat(counted, is(0));
+
+		runTasks();
+		assertThat(counted, is(1));
+	}
+
+	@Test
+	public void testCountInProgressIsNotStartedTwice() {
+		AsyncHitsCounter counter = createCounter(300000);
+		counter.getHits(SQL, emptyList());
+		assertThat(counter.getHits(SQL, emptyList()), is(-1));
+		assertThat(tasks.size(), is(1));
+	}
+
+	@Test
+	public void testReturnsCountedHits() {
+		AsyncHitsCounter counter = createCounter(300000);
+		counter.getHits(SQL, emptyList());
+		runTasks();
+
+		assertThat(counter.getHits(SQL, emptyList()), is(42));
+		assertThat(counter.getHits(SQL, emptyList()), is(42));
+		assertThat(tasks.size(), is(0));
+		assertThat(counted, is(1));
+	}
+
+	@Test
+	public void testExpiredHitsAreCountedAgain()
+			throws Exception {
+		AsyncHitsCounter counter = createCounter(0);
+		counter.getHits(SQL, emptyList());
+		runTasks();
+		Thread.sleep(10);
+
+		assertThat(counter.getHits(SQL, emptyList()), is(-1));
+		hits = 43;
+		runTasks();
+		assertThat(counted, is(2));
+	}
+
+	@Test
+	public void testFailedCountIsRetried() {
+		AsyncHitsCounter counter = createCounter(300000);
+		fail = true;
+		counter.getHits(SQL, emptyList());
+		runTasks();
+
+		fail = false;
+		assertThat(counter.getHits(SQL, emptyList()), is(-1));
+		runTasks();
+		assertThat(counter.getHits(SQL, emptyList()), is(42));
+	}
+
+	@Test
+	public void testClearDiscardsHits() {
+		AsyncHitsCounter counter = createCounter(300000);
+		counter.getHits(SQL, emptyList());
+		runTasks();
+
+		counter.clear();
+		assertThat(counter.getHits(SQL, emptyList()), is(-1));
+		assertThat(tasks.size(), is(1));
+	}
+
+	@Test
+	public void testClearDiscardsCountInProgress() {
+		AsyncHitsCounter counter = createCounter(300000);
+		counter.getHits(SQL, emptyList());
+		counter.clear();
+		runTasks();
+
+		assertThat(counter.getHits(SQL, emptyList()), is(-1));
+	}
+
+	@Test
+	public void testHitsAreKeptPerArguments() {
+		AsyncHitsCounter counter = createCounter(300000);
+		String sql = SQL + " WHERE name = ?";
+		counter.getHits(sql, singletonList(argument("A1")));
+		runTasks();
+
+		assertThat(counter.getHits(sql, singletonList(argument("A1"))), is(42));
+		assertThat(counter.getHits(sql, singletonList(argument("A2"))), is(-1));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedHitsAreDiscarded() {
+		AsyncHitsCounter counter = new AsyncHitsCounter((sql, args) -> hits, tasks::add, 300000, 2);
+		counter.getHits(SQL + " WHERE a", emptyList());
+		counter.getHits(SQL + " WHERE b", emptyList());
+		counter.getHits(SQL + " WHERE c", emptyList());
+		runTasks();
+
+		assertThat(counter.getHits(SQL + " WHERE a", emptyList()), is(-1));
+		assertThat(counter.getHits(SQL + " WHERE c", emptyList()), is(42));
+	}
+
+	@Test
+	public void testKeyContainsArguments() {
+		String key1 = AsyncHitsCounter.getKey(SQL, singletonList(argument("A1")));
+		String key2 = AsyncHitsCounter.getKey(SQL, singletonList(argument("A2")));
+		assertThat(key1, is(not(key2)));
+		assertThat(AsyncHitsCounter.getKey(SQL, singletonList(argument("A1"))), is(key1));
+	}
+
+	private AsyncHitsCounter createCounter(long timeToLive) {
+		return new AsyncHitsCounter((sql, args) -> {
+			counted++;
+			if (fail) {
+				throw new IllegalStateException("Connection refused");
+			}
+			return hits;
+		}, tasks::add, timeToLive, 1000);
+	}
+
+	private void runTasks() {
+		List<Runnable> pending = new ArrayList<>(tasks);
+		tasks.clear();
+		pending.forEach(Runnable::run);
+	}
+
+	private static SQLArgument argument(String value) {
+		return new SQLArgument(new PrimitiveValue(value), null);
+	}
+
+}
@@ -0,0 +1,279 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.feature.persistence.FeatureStores;
+import org.deegree.feature.persistence.cache.BBoxCache;
+import org.deegree.feature.persistence.sql.BBoxCacheUpdater.EnvelopeQuery;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests for {@link BBoxCacheUpdater}.
+ */
+public class BBoxCacheUpdaterTest {
+
+	private static final QName FT = new QName("http://www.deegree.org/app", "Road");
+
+	private static final long DELAY = 30000;
+
+	private final GeometryFactory fac = new GeometryFactory();
+
+	private final MapBBoxCache bboxCache = new MapBBoxCache();
+
+	private FeatureStore store;
+
+	private EnvelopeQuery query;
+
+	private ScheduledExecutorService executor;
+
+	private FeatureStoreChangeListener listener;
+
+	@Before
+	public void setUp() {
+		store = mock(FeatureStore.class);
+		query = mock(EnvelopeQuery.class);
+		executor = mock(ScheduledExecutorService.class);
+		listener = mock(FeatureStoreChangeListener.class);
+		FeatureStores.addChangeListener(listener);
+	}
+
+	@After
+	public void tearDown() {
+		FeatureStores.removeChangeListener(listener);
+	}
+
+	@Test
+	public void testSynchronousCalculationOnFirstMiss()
+			throws Exception {
+		Envelope env = fac.createEnvelope(0, 0, 1, 1, null);
+		when(query.query(FT)).thenReturn(env);
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, DELAY, false);
+
+		assertThat(updater.getEnvelope(FT), sameInstance(env));
+		assertThat(updater.getEnvelope(FT), sameInstance(env));
+
+		verify(query, times(1)).query(FT);
+		verify(executor, never()).schedule(any(Runnable.class), anyLong(), any());
+		assertThat(bboxCache.get(FT), sameInstance(env));
+	}
+
+	@Test
+	public void testAsynchronousCalculation()
+			throws Exception {
+		Envelope env = fac.createEnvelope(0, 0, 1, 1, null);
+		when(query.query(FT)).thenReturn(env);
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, DELAY, true);
+
+		assertThat(updater.getEnvelope(FT), nullValue());
+		// a second request does not schedule another calculation
+		assertThat(updater.getEnvelope(FT), nullValue());
+		List<Runnable> tasks = captureScheduled(1, 0);
+		verify(query, never()).query(FT);
+
+		tasks.get(0).run();
+
+		assertThat(updater.getEnvelope(FT), sameInstance(env));
+		verify(listener).envelopeChanged(store, FT, env);
+	}
+
+	@Test
+	public void testPrefetch() {
+		QName other = new QName("http://www.deegree.org/app", "River");
+		bboxCache.set(other, null);
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, DELAY, true);
+
+		updater.prefetch(asList(FT, other));
+
+		captureScheduled(1, 0);
+	}
+
+	@Test
+	public void testPrefetchSynchronousMode() {
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, DELAY, false);
+
+		updater.prefetch(singletonList(FT));
+
+		verify(executor, never()).schedule(any(Runnable.class), anyLong(), any());
+	}
+
+	@Test
+	public void testIncrease() {
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, DELAY, false);
+		updater.increase(FT, fac.createEnvelope(0, 0, 1, 1, null));
+		// not cached yet, nothing to increase
+		assertThat(bboxCache.contains(FT), is(false));
+
+		bboxCache.set(FT, fac.createEnvelope(0, 0, 1, 1, null));
+		updater.increase(FT, fac.createEnvelope(2, 2, 3, 3, null));
+
+		Envelope env = bboxCache.get(FT);
+		assertThat(env.getMin().get0(), is(0.0));
+		assertThat(env.getMax().get0(), is(3.0));
+	}
+
+	@Test
+	public void testRecalculationIsDebounced()
+			throws Exception {
+		Envelope env = fac.createEnvelope(0, 0, 1, 1, null);
+		when(query.query(FT)).thenReturn(env);
+		bboxCache.set(FT, fac.createEnvelope(0, 0, 5, 5, null));
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, DELAY, false);
+
+		updater.recalculate(FT);
+		updater.recalculate(FT);
+		updater.recalculate(FT);
+		List<Runnable> tasks = captureScheduled(1, DELAY);
+
+		tasks.get(0).run();
+		assertThat(bboxCache.get(FT), sameInstance(env));
+		verify(query, times(1)).query(FT);
+
+		// the next change schedules a new calculation
+		updater.recalculate(FT);
+		captureScheduled(2, DELAY);
+	}
+
+	@Test
+	public void testRecalculationDisabled() {
+		bboxCache.set(FT, fac.createEnvelope(0, 0, 5, 5, null));
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, -1, false);
+
+		updater.recalculate(FT);
+
+		verify(executor, never()).schedule(any(Runnable.class), anyLong(), any());
+	}
+
+	@Test
+	public void testConcurrentModificationDiscardsResult()
+			throws Exception {
+		Envelope old = fac.createEnvelope(0, 0, 5, 5, null);
+		bboxCache.set(FT, old);
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, DELAY, false);
+		when(query.query(FT)).thenAnswer(invocation -> {
+			// a transaction commits while the envelope is calculated
+			updater.increase(FT, fac.createEnvelope(6, 6, 7, 7, null));
+			return fac.createEnvelope(0, 0, 1, 1, null);
+		});
+
+		updater.recalculate(FT);
+		captureScheduled(1, DELAY).get(0).run();
+
+		assertThat(bboxCache.get(FT).getMax().get0(), is(7.0));
+		verify(listener, never()).envelopeChanged(any(), any(), any());
+		captureScheduled(2, DELAY);
+	}
+
+	@Test
+	public void testDestroyStopsScheduling()
+			throws Exception {
+		bboxCache.set(FT, fac.createEnvelope(0, 0, 5, 5, null));
+		BBoxCacheUpdater updater = new BBoxCacheUpdater(store, bboxCache, query, executor, DELAY, true);
+		updater.recalculate(FT);
+		List<Runnable> tasks = captureScheduled(1, DELAY);
+
+		updater.destroy();
+		tasks.get(0).run();
+		updater.recalculate(FT);
+
+		verify(query, never()).query(FT);
+		captureScheduled(1, DELAY);
+	}
+
+	private List<Runnable> captureScheduled(int times, long delay) {
+		ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+		verify(executor, times(times)).schedule(captor.capture(), eq(delay), eq(MILLISECONDS));
+		return captor.getAllValues();
+	}
+
+	private static class MapBBoxCache implements BBoxCache {
+
+		private final Map<QName, Envelope> envelopes = new HashMap<QName, Envelope>();
+
+		@Override
+		public Envelope get(QName ftName) {
+			if (!envelopes.containsKey(ftName)) {
+				throw new IllegalArgumentException("Unknown feature type: " + ftName);
+			}
+			return envelopes.get(ftName);
+		}
+
+		@Override
+		public void set(QName ftName, Envelope bbox) {
+			envelopes.put(ftName, bbox);
+		}
+
+		@Override
+		public boolean contains(QName ftName) {
+			return envelopes.containsKey(ftName);
+		}
+
+		@Override
+		public void persist() {
+			// nothing to do
+		}
+
+	}
+
+}
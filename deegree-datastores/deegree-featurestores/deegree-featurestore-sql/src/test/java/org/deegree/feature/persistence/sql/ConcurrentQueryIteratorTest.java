@@ -0,0 +1,125 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.utils.kvp.InvalidParameterValueException;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.CombinedFeatureInputStream;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentQueryIterator}.
+ */
+public class ConcurrentQueryIteratorTest {
+
+	@Test
+	public void testResultsInQueryOrder() {
+		Query[] queries = createQueries(5);
+		Map<Query, FeatureInputStream> results = new HashMap<>();
+		for (Query query : queries) {
+			results.put(query, mock(FeatureInputStream.class));
+		}
+		ConcurrentQueryIterator iter = new ConcurrentQueryIterator(queries, 3, query -> {
+			// later queries finish first
+			Thread.sleep(10L * (queries.length - indexOf(queries, query)));
+			return results.get(query);
+		});
+		List<FeatureInputStream> returned = new ArrayList<>();
+		while (iter.hasNext()) {
+			returned.add(iter.next());
+		}
+		assertThat(returned.size(), is(queries.length));
+		for (int i = 0; i < queries.length; i++) {
+			assertThat(returned.get(i), is(results.get(queries[i])));
+		}
+	}
+
+	@Test
+	public void testMaxConcurrentConnections() {
+		Query[] queries = createQueries(8);
+		AtomicInteger open = new AtomicInteger();
+		AtomicInteger maxOpen = new AtomicInteger();
+		ConcurrentQueryIterator iter = new ConcurrentQueryIterator(queries, 2, query -> {
+			maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+			Thread.sleep(5);
+			FeatureInputStream rs = mock(FeatureInputStream.class);
+			doAnswer(invocation -> open.decrementAndGet()).when(rs).close();
+			return rs;
+		});
+		new CombinedFeatureInputStream(iter).close();
+		assertThat(open.get(), is(0));
+		assertTrue(maxOpen.get() <= 2);
+	}
+
+	@Test(expected = InvalidParameterValueException.class)
+	public void testInvalidParameterValueIsRethrown() {
+		Query[] queries = createQueries(2);
+		ConcurrentQueryIterator iter = new ConcurrentQueryIterator(queries, 2, query -> {
+			throw new InvalidParameterValueException("invalid");
+		});
+		iter.next();
+	}
+
+	private Query[] createQueries(int num) {
+		Query[] queries = new Query[num];
+		for (int i = 0; i < num; i++) {
+			queries[i] = mock(Query.class);
+		}
+		return queries;
+	}
+
+	private int indexOf(Query[] queries, Query query) {
+		for (int i = 0; i < queries.length; i++) {
+			if (queries[i] == query) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
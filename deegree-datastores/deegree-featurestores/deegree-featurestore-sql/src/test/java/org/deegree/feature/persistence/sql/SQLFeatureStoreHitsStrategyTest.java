@@ -0,0 +1,106 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static java.lang.Boolean.TRUE;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_INEXACT_HITS;
+import static org.deegree.feature.persistence.sql.SQLFeatureStore.getHitsStrategy;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.feature.persistence.query.Query;
+import org.junit.Test;
+
+/**
+ * Tests the selection of the {@link HitsStrategy} by {@link SQLFeatureStore}.
+ */
+public class SQLFeatureStoreHitsStrategyTest {
+
+	private static final QName FT = new QName("http://www.deegree.org/app", "Road");
+
+	@Test
+	public void testExactWithoutHint() {
+		Query query = new Query(FT, null, -1, -1, -1);
+		assertThat(getHitsStrategy(query, asList(mapping(HitsStrategy.ESTIMATE))), is(HitsStrategy.EXACT));
+		assertThat(getHitsStrategy(query, asList(mapping(HitsStrategy.ASYNC))), is(HitsStrategy.EXACT));
+	}
+
+	@Test
+	public void testExact() {
+		assertThat(getHitsStrategy(inexactQuery(), asList(mapping(HitsStrategy.EXACT))), is(HitsStrategy.EXACT));
+	}
+
+	@Test
+	public void testEstimate() {
+		assertThat(getHitsStrategy(inexactQuery(), asList(mapping(HitsStrategy.ESTIMATE))),
+				is(HitsStrategy.ESTIMATE));
+	}
+
+	@Test
+	public void testAsync() {
+		assertThat(getHitsStrategy(inexactQuery(), asList(mapping(HitsStrategy.ASYNC), mapping(HitsStrategy.ASYNC))),
+				is(HitsStrategy.ASYNC));
+	}
+
+	@Test
+	public void testExactForMixedStrategies() {
+		assertThat(getHitsStrategy(inexactQuery(), asList(mapping(HitsStrategy.ASYNC), mapping(HitsStrategy.ESTIMATE))),
+				is(HitsStrategy.EXACT));
+	}
+
+	@Test
+	public void testExactWithoutMappings() {
+		assertThat(getHitsStrategy(inexactQuery(), emptyList()), is(HitsStrategy.EXACT));
+	}
+
+	private static Query inexactQuery() {
+		Query query = new Query(FT, null, -1, -1, -1);
+		query.setHint(HINT_INEXACT_HITS, TRUE);
+		return query;
+	}
+
+	private static FeatureTypeMapping mapping(HitsStrategy hitsStrategy) {
+		FeatureTypeMapping mapping = mock(FeatureTypeMapping.class);
+		when(mapping.getHitsStrategy()).thenReturn(hitsStrategy);
+		return mapping;
+	}
+
+}
@@ -0,0 +1,204 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.feature.persistence.sql.id.IdAnalysis;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.sort.SortProperty;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.deegree.sqldialect.SortCriterion;
+import org.deegree.sqldialect.filter.AbstractWhereBuilder;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Tests for the keyset paging helpers of {@link SQLFeatureStore}.
+ */
+public class SQLFeatureStoreKeysetTest {
+
+	private static final QName FT_NAME = new QName("http://www.deegree.org/app", "Road");
+
+	private static final TableName TABLE = new TableName("road");
+
+	@Test
+	public void testKeysetMappingWithoutDefaultSortOrder() {
+		FeatureTypeMapping ftMapping = createMapping(null, "id");
+		assertThat(getKeysetMapping(createQuery(null), ftMapping), is(ftMapping));
+	}
+
+	@Test
+	public void testKeysetMappingWithFidSortOrder() {
+		FeatureTypeMapping ftMapping = createMapping(
+				asList(new SortCriterion("REGION", TABLE, false), new SortCriterion("NR", TABLE, false)), "region",
+				"nr");
+		assertThat(getKeysetMapping(createQuery(null), ftMapping), is(ftMapping));
+	}
+
+	@Test
+	public void testNoKeysetMappingWithOtherSortOrder() {
+		FeatureTypeMapping ftMapping = createMapping(singletonList(new SortCriterion("name", TABLE, true)), "id");
+		assertThat(getKeysetMapping(createQuery(null), ftMapping), is(nullValue()));
+	}
+
+	@Test
+	public void testNoKeysetMappingWithMixedSortDirections() {
+		FeatureTypeMapping ftMapping = createMapping(
+				asList(new SortCriterion("region", TABLE, true), new SortCriterion("nr", TABLE, false)), "region",
+				"nr");
+		assertThat(getKeysetMapping(createQuery(null), ftMapping), is(nullValue()));
+	}
+
+	@Test
+	public void testNoKeysetMappingWithRequestedSortOrder() {
+		FeatureTypeMapping ftMapping = createMapping(null, "id");
+		SortProperty sortBy = new SortProperty(new ValueReference(new QName("name")), true);
+		assertThat(getKeysetMapping(createQuery(new SortProperty[] { sortBy }), ftMapping), is(nullValue()));
+	}
+
+	@Test
+	public void testNoKeysetMappingWithPostFilter() {
+		FeatureTypeMapping ftMapping = createMapping(null, "id");
+		AbstractWhereBuilder wb = mock(AbstractWhereBuilder.class);
+		when(wb.getPostFilter()).thenReturn(mock(OperatorFilter.class));
+		assertThat(SQLFeatureStore.getKeysetMapping(createQuery(null), singletonList(ftMapping), wb),
+				is(nullValue()));
+	}
+
+	@Test
+	public void testNoKeysetMappingForSeveralFeatureTypes() {
+		FeatureTypeMapping ftMapping = createMapping(null, "id");
+		assertThat(SQLFeatureStore.getKeysetMapping(createQuery(null), asList(ftMapping, ftMapping),
+				mock(AbstractWhereBuilder.class)), is(nullValue()));
+	}
+
+	@Test
+	public void testKeysetConditionSingleColumn() {
+		StringBuilder sql = new StringBuilder();
+		SQLFeatureStore.appendKeysetCondition(sql, createMapping(null, "id"), "X1");
+		assertThat(sql.toString(), is("((X1.id>?))"));
+	}
+
+	@Test
+	public void testKeysetConditionSeveralColumns() {
+		StringBuilder sql = new StringBuilder();
+		SQLFeatureStore.appendKeysetCondition(sql, createMapping(null, "a", "b", "c"), "X1");
+		assertThat(sql.toString(),
+				is("((X1.a>?) OR (X1.a=? AND X1.b>?) OR (X1.a=? AND X1.b=? AND X1.c>?))"));
+	}
+
+	@Test
+	public void testKeysetConditionDescending() {
+		StringBuilder sql = new StringBuilder();
+		FeatureTypeMapping ftMapping = createMapping(
+				asList(new SortCriterion("a", TABLE, false), new SortCriterion("b", TABLE, false)), "a", "b");
+		SQLFeatureStore.appendKeysetCondition(sql, ftMapping, "X1");
+		assertThat(sql.toString(), is("((X1.a<?) OR (X1.a=? AND X1.b<?))"));
+	}
+
+	@Test
+	public void testKeysetOrderBy() {
+		StringBuilder sql = new StringBuilder();
+		SQLFeatureStore.appendKeysetOrderBy(sql, createMapping(null, "a", "b"), "X1");
+		assertThat(sql.toString(), is("X1.a ASC,X1.b ASC"));
+	}
+
+	@Test
+	public void testKeysetArgumentsFollowCondition() throws Exception {
+		FeatureTypeMapping ftMapping = createMapping(null, "a", "b", "c");
+		PreparedStatement stmt = mock(PreparedStatement.class);
+		IdAnalysis startAfter = mock(IdAnalysis.class);
+		when(startAfter.getIdKernels()).thenReturn(new String[] { "7", "north", "12" });
+
+		int next = SQLFeatureStore.setKeysetArguments(stmt, 3, ftMapping.getFidMapping(), startAfter);
+
+		assertThat(next, is(9));
+		InOrder order = inOrder(stmt);
+		// (a>?)
+		order.verify(stmt).setObject(3, 7);
+		// (a=? AND b>?)
+		order.verify(stmt).setObject(4, 7);
+		order.verify(stmt).setObject(5, "north");
+		// (a=? AND b=? AND c>?)
+		order.verify(stmt).setObject(6, 7);
+		order.verify(stmt).setObject(7, "north");
+		order.verify(stmt).setObject(8, 12);
+		verifyNoMoreInteractions(stmt);
+	}
+
+	private FeatureTypeMapping getKeysetMapping(Query query, FeatureTypeMapping ftMapping) {
+		return SQLFeatureStore.getKeysetMapping(query, singletonList(ftMapping), mock(AbstractWhereBuilder.class));
+	}
+
+	private Query createQuery(SortProperty[] sortBy) {
+		return new Query(new TypeName[] { new TypeName(FT_NAME, null) }, null, sortBy, 10, 20);
+	}
+
+	private FeatureTypeMapping createMapping(List<SortCriterion> defaultSortCriteria, String... fidColumns) {
+		List<Pair<SQLIdentifier, BaseType>> columns = new ArrayList<>();
+		for (int i = 0; i < fidColumns.length; i++) {
+			BaseType type = i == 1 ? STRING : INTEGER;
+			columns.add(new Pair<>(new SQLIdentifier(fidColumns[i]), type));
+		}
+		FIDMapping fidMapping = new FIDMapping("ROAD_", "_", columns, null);
+		return new FeatureTypeMapping(FT_NAME, TABLE, fidMapping, emptyList(), defaultSortCriteria);
+	}
+
+}
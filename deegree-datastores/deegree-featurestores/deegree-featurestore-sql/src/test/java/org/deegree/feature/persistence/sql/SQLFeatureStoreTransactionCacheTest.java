@@ -0,0 +1,129 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static java.util.Collections.emptyList;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.feature.persistence.cache.ConcurrentFeatureStoreCache;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the invalidation of the feature cache by {@link SQLFeatureStoreTransaction}.
+ */
+public class SQLFeatureStoreTransactionCacheTest {
+
+	private ConcurrentFeatureStoreCache cache;
+
+	private Connection conn;
+
+	private SQLFeatureStoreTransaction ta;
+
+	@Before
+	public void setUp() {
+		cache = new ConcurrentFeatureStoreCache();
+		SQLFeatureStore fs = mock(SQLFeatureStore.class);
+		when(fs.getCache()).thenReturn(cache);
+		conn = mock(Connection.class);
+		ta = new SQLFeatureStoreTransaction(fs, conn, mock(MappedAppSchema.class), emptyList());
+	}
+
+	@Test
+	public void testMarkModifiedRemovesObject() {
+		cache.add(createObject("a"));
+		GMLObject b = createObject("b");
+		cache.add(b);
+
+		ta.markModified("a");
+
+		assertThat(cache.get("a"), nullValue());
+		assertThat(cache.get("b"), sameInstance(b));
+	}
+
+	@Test
+	public void testCommitRemovesObjectCachedAgainByReader()
+			throws Exception {
+		cache.add(createObject("a"));
+		ta.markModified("a");
+		// a concurrent reader caches the old state before the transaction ends
+		cache.add(createObject("a"));
+
+		ta.commit();
+
+		verify(conn).commit();
+		assertThat(cache.get("a"), nullValue());
+	}
+
+	@Test
+	public void testRollbackRemovesObjectCachedAgainByReader()
+			throws Exception {
+		ta.markModified("a");
+		// e.g. uncommitted state read through the transaction connection
+		cache.add(createObject("a"));
+
+		ta.rollback();
+
+		verify(conn).rollback();
+		assertThat(cache.get("a"), nullValue());
+	}
+
+	@Test
+	public void testInvalidateCacheForgetsIds() {
+		ta.markModified("a");
+		ta.invalidateCache();
+		GMLObject a = createObject("a");
+		cache.add(a);
+
+		ta.invalidateCache();
+
+		assertThat(cache.get("a"), sameInstance(a));
+	}
+
+	private static GMLObject createObject(String id) {
+		GMLObject obj = mock(GMLObject.class);
+		when(obj.getId()).thenReturn(id);
+		return obj;
+	}
+
+}
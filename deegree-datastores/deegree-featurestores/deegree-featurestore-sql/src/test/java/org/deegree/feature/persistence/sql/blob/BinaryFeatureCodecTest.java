@@ -0,0 +1,210 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import static org.deegree.commons.tom.primitive.BaseType.DOUBLE;
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.deegree.gml.GMLVersion.GML_32;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BinaryFeatureCodec}.
+ */
+public class BinaryFeatureCodecTest {
+
+	private static final String NS = "http://www.deegree.org/app";
+
+	private final SimplePropertyType name = new SimplePropertyType(new QName(NS, "name"), 0, 1, STRING, null, null);
+
+	private final SimplePropertyType area = new SimplePropertyType(new QName(NS, "area"), 0, 1, DOUBLE, null, null);
+
+	private final SimplePropertyType count = new SimplePropertyType(new QName(NS, "count"), 0, -1, INTEGER, null,
+			null);
+
+	private final GeometryPropertyType geometry = new GeometryPropertyType(new QName(NS, "geometry"), 0, 1, null,
+			null, GEOMETRY, DIM_2, BOTH);
+
+	private final FeatureType ft = new GenericFeatureType(new QName(NS, "Parcel"),
+			Arrays.<PropertyType> asList(name, area, count, geometry), false);
+
+	private final AppSchema schema = new GenericAppSchema(new FeatureType[] { ft }, null, null, null, null, null);
+
+	private final BinaryFeatureCodec codec = new BinaryFeatureCodec(GML_32);
+
+	@Test
+	public void testRoundtrip() throws Exception {
+		List<Property> props = new ArrayList<Property>();
+		props.add(new GenericProperty(name, new PrimitiveValue("Parcel 1", new PrimitiveType(STRING))));
+		props.add(new GenericProperty(area, new PrimitiveValue("1.50", new PrimitiveType(DOUBLE))));
+		props.add(new GenericProperty(count, new PrimitiveValue("7", new PrimitiveType(INTEGER))));
+		props.add(new GenericProperty(count, new PrimitiveValue("8", new PrimitiveType(INTEGER))));
+		props.add(new GenericProperty(geometry, createPolygon()));
+		Feature feature = ft.newFeature("PARCEL_1", props, null);
+
+		assertThat(codec.isEncodable(feature, null), is(true));
+		Feature decoded = roundtrip(feature);
+
+		assertThat(decoded.getId(), is("PARCEL_1"));
+		assertThat(decoded.getType(), is(ft));
+		assertThat(decoded.getProperties().size(), is(5));
+		assertThat(((PrimitiveValue) decoded.getProperties().get(0).getValue()).getAsText(), is("Parcel 1"));
+		// non-canonical text is kept
+		assertThat(((PrimitiveValue) decoded.getProperties().get(1).getValue()).getAsText(), is("1.50"));
+		assertThat(((PrimitiveValue) decoded.getProperties().get(3).getValue()).getAsText(), is("8"));
+		Polygon polygon = (Polygon) decoded.getProperties().get(4).getValue();
+		assertThat(polygon.getId(), is("PARCEL_1_GEOM"));
+		assertThat(polygon.getInteriorRings().size(), is(1));
+		assertThat(polygon.getExteriorRing().getControlPoints().getAsArray(),
+				is(new double[] { 0, 0, 10, 0, 10, 10, 0, 10, 0, 0 }));
+	}
+
+	@Test
+	public void testPropertyNamesAreStoredOnce() throws Exception {
+		List<Property> props = new ArrayList<Property>();
+		props.add(new GenericProperty(name, new PrimitiveValue("Parcel 1", new PrimitiveType(STRING))));
+		props.add(new GenericProperty(count, new PrimitiveValue("7", new PrimitiveType(INTEGER))));
+		props.add(new GenericProperty(count, new PrimitiveValue("8", new PrimitiveType(INTEGER))));
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		codec.encode(ft.newFeature("PARCEL_1", props, null), bos);
+
+		String encoded = new String(bos.toByteArray(), StandardCharsets.ISO_8859_1);
+		// the namespace of the properties is the one of the feature type
+		assertThat(encoded.indexOf(NS), is(encoded.lastIndexOf(NS)));
+		assertThat(encoded.indexOf("count"), is(encoded.lastIndexOf("count")));
+	}
+
+	@Test
+	public void testDecodeAfterPropertyHasBeenAdded() throws Exception {
+		List<Property> props = new ArrayList<Property>();
+		props.add(new GenericProperty(name, new PrimitiveValue("Parcel 1", new PrimitiveType(STRING))));
+		props.add(new GenericProperty(area, new PrimitiveValue("1.5", new PrimitiveType(DOUBLE))));
+		props.add(new GenericProperty(count, new PrimitiveValue("7", new PrimitiveType(INTEGER))));
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		codec.encode(ft.newFeature("PARCEL_1", props, null), bos);
+
+		SimplePropertyType owner = new SimplePropertyType(new QName(NS, "owner"), 0, 1, STRING, null, null);
+		FeatureType changedFt = new GenericFeatureType(ft.getName(),
+				Arrays.<PropertyType> asList(owner, name, area, count, geometry), false);
+		AppSchema changedSchema = new GenericAppSchema(new FeatureType[] { changedFt }, null, null, null, null, null);
+		Feature decoded = codec.decode(new ByteArrayInputStream(bos.toByteArray()), changedSchema, null);
+
+		assertThat(decoded.getType(), is(changedFt));
+		assertThat(decoded.getProperties().size(), is(3));
+		assertThat(decoded.getProperties().get(0).getType(), is((PropertyType) name));
+		assertThat(((PrimitiveValue) decoded.getProperties().get(0).getValue()).getAsText(), is("Parcel 1"));
+		assertThat(decoded.getProperties().get(1).getType(), is((PropertyType) area));
+		assertThat(((PrimitiveValue) decoded.getProperties().get(1).getValue()).getAsText(), is("1.5"));
+		assertThat(decoded.getProperties().get(2).getType(), is((PropertyType) count));
+		assertThat(decoded.getProperties(owner.getName()).isEmpty(), is(true));
+	}
+
+	@Test(expected = IOException.class)
+	public void testRemovedPropertyIsDetected() throws Exception {
+		List<Property> props = new ArrayList<Property>();
+		props.add(new GenericProperty(area, new PrimitiveValue("1.5", new PrimitiveType(DOUBLE))));
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		codec.encode(ft.newFeature("PARCEL_1", props, null), bos);
+
+		FeatureType changedFt = new GenericFeatureType(ft.getName(),
+				Arrays.<PropertyType> asList(name, count, geometry), false);
+		AppSchema changedSchema = new GenericAppSchema(new FeatureType[] { changedFt }, null, null, null, null, null);
+		codec.decode(new ByteArrayInputStream(bos.toByteArray()), changedSchema, null);
+	}
+
+	@Test
+	public void testNilledPropertyIsNotEncodable() {
+		List<Property> props = new ArrayList<Property>();
+		props.add(new GenericProperty(name, name.getName(), null, true));
+		Feature feature = ft.newFeature("PARCEL_2", props, null);
+
+		assertThat(codec.isEncodable(feature, null), is(false));
+	}
+
+	@Test
+	public void testIsBinary() {
+		assertThat(BinaryFeatureCodec.isBinary(new byte[] { 'D', 'G', 'B', 1 }, 4), is(true));
+		assertThat(BinaryFeatureCodec.isBinary("<app:Parcel".getBytes(), 4), is(false));
+	}
+
+	private Feature roundtrip(Feature feature) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		codec.encode(feature, bos);
+		return codec.decode(new ByteArrayInputStream(bos.toByteArray()), schema, null);
+	}
+
+	private Polygon createPolygon() {
+		GeometryFactory geomFac = new GeometryFactory();
+		Ring exterior = geomFac.createLinearRing(null, null,
+				new PackedPoints(null, new double[] { 0, 0, 10, 0, 10, 10, 0, 10, 0, 0 }, 2));
+		Ring interior = geomFac.createLinearRing(null, null,
+				new PackedPoints(null, new double[] { 2, 2, 4, 2, 4, 4, 2, 2 }, 2));
+		return geomFac.createPolygon("PARCEL_1_GEOM", null, exterior, Collections.singletonList(interior));
+	}
+
+}
@@ -0,0 +1,178 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import static java.util.Collections.singletonMap;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.gml.GMLVersion.GML_32;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.sql.blob.BlobCodec.Compression;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.gml.GMLOutputFactory;
+import org.deegree.gml.GMLStreamWriter;
+import org.junit.Test;
+
+import com.sun.xml.fastinfoset.stax.StAXDocumentSerializer;
+
+/**
+ * Tests the detection of the encoding of BLOBs by {@link BlobCodec}.
+ */
+public class BlobCodecTest {
+
+	private static final String NS = "http://www.deegree.org/app";
+
+	private static final Map<String, String> NS_CONTEXT = singletonMap("app", NS);
+
+	private final SimplePropertyType name = new SimplePropertyType(new QName(NS, "name"), 0, 1, STRING, null, null);
+
+	private final FeatureType ft = new GenericFeatureType(new QName(NS, "Parcel"),
+			Arrays.<PropertyType> asList(name), false);
+
+	private final AppSchema schema = new GenericAppSchema(new FeatureType[] { ft }, null, null, null, null, null);
+
+	@Test
+	public void testDecodeXml() throws Exception {
+		byte[] blob = encode(createFeature(), Compression.NONE);
+
+		assertThat(blob[0], is((byte) '<'));
+		assertDecoded(blob);
+	}
+
+	@Test
+	public void testDecodeGzip() throws Exception {
+		byte[] blob = encode(createFeature(), Compression.GZIP);
+
+		assertThat(blob[0], is((byte) 0x1F));
+		assertThat(blob[1], is((byte) 0x8B));
+		assertDecoded(blob);
+	}
+
+	@Test
+	public void testDecodeFastInfoset() throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		StAXDocumentSerializer serializer = new StAXDocumentSerializer();
+		serializer.setOutputStream(bos);
+		serializer.writeStartDocument();
+		GMLStreamWriter gmlWriter = GMLOutputFactory.createGMLStreamWriter(GML_32, serializer);
+		gmlWriter.setNamespaceBindings(new HashMap<String, String>(NS_CONTEXT));
+		gmlWriter.write(createFeature());
+		serializer.writeEndDocument();
+		gmlWriter.close();
+		byte[] blob = bos.toByteArray();
+
+		assertThat(blob[0], is((byte) 0xE0));
+		assertDecoded(blob);
+	}
+
+	@Test
+	public void testDecodeBinary() throws Exception {
+		byte[] blob = encode(createFeature(), Compression.BINARY);
+
+		assertThat(BinaryFeatureCodec.isBinary(blob, blob.length), is(true));
+		assertDecoded(blob);
+	}
+
+	@Test
+	public void testNotEncodableFeatureIsStoredAsXml() throws Exception {
+		List<Property> props = new ArrayList<Property>();
+		props.add(new GenericProperty(name, name.getName(), null, true));
+		byte[] blob = encode(ft.newFeature("PARCEL_1", props, null), Compression.BINARY);
+
+		assertThat(BinaryFeatureCodec.isBinary(blob, blob.length), is(false));
+		assertThat(blob[0], is((byte) '<'));
+		GMLObject decoded = decode(blob);
+		assertThat(decoded, instanceOf(Feature.class));
+		assertThat(decoded.getId(), is("PARCEL_1"));
+	}
+
+	@Test
+	public void testDecodingIsIndependentOfConfiguredCompression() throws Exception {
+		byte[] blob = encode(createFeature(), Compression.GZIP);
+		BlobCodec codec = new BlobCodec(GML_32, Compression.BINARY);
+
+		GMLObject decoded = codec.decode(new ByteArrayInputStream(blob), NS_CONTEXT, schema, null, null);
+		assertThat(decoded.getId(), is("PARCEL_1"));
+	}
+
+	private Feature createFeature() {
+		List<Property> props = new ArrayList<Property>();
+		props.add(new GenericProperty(name, new PrimitiveValue("Parcel 1", new PrimitiveType(STRING))));
+		return ft.newFeature("PARCEL_1", props, null);
+	}
+
+	private byte[] encode(Feature feature, Compression compression) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		new BlobCodec(GML_32, compression).encode(feature, NS_CONTEXT, bos, null);
+		return bos.toByteArray();
+	}
+
+	private GMLObject decode(byte[] blob) throws Exception {
+		BlobCodec codec = new BlobCodec(GML_32, Compression.NONE);
+		return codec.decode(new ByteArrayInputStream(blob), NS_CONTEXT, schema, null, null);
+	}
+
+	private void assertDecoded(byte[] blob) throws Exception {
+		Feature feature = (Feature) decode(blob);
+		assertThat(feature.getId(), is("PARCEL_1"));
+		assertThat(feature.getType(), is(ft));
+		PrimitiveValue value = (PrimitiveValue) feature.getProperties().get(0).getValue();
+		assertThat(value.getAsText(), is("Parcel 1"));
+	}
+
+}
@@ -0,0 +1,257 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.id.KeyPropagation;
+import org.deegree.feature.persistence.sql.id.TableDependencies;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.deegree.sqldialect.SQLDialect;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+/**
+ * Tests for the batching of {@link InsertRowManager}.
+ */
+public class InsertRowManagerTest {
+
+	private static final TableName PARENT = new TableName("parent");
+
+	private static final TableName CHILD = new TableName("child");
+
+	private static final SQLIdentifier ID = new SQLIdentifier("id");
+
+	private static final KeyPropagation PARENT_TO_CHILD = new KeyPropagation(PARENT, singletonList(ID), CHILD,
+			singletonList(new SQLIdentifier("parent_id")));
+
+	private static final String PARENT_SQL = "INSERT INTO parent(id) VALUES(?)";
+
+	private static final String CHILD_SQL = "INSERT INTO child(name,parent_id) VALUES(?,?)";
+
+	private final Map<String, PreparedStatement> sqlToStmt = new HashMap<>();
+
+	private SQLFeatureStore fs;
+
+	private SQLDialect dialect;
+
+	private Connection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		dialect = mock(SQLDialect.class);
+		TableDependencies tableDeps = mock(TableDependencies.class);
+		when(tableDeps.getGeneratedColumns(PARENT)).thenReturn(singleton(ID));
+		MappedAppSchema schema = mock(MappedAppSchema.class);
+		when(schema.getKeyDependencies()).thenReturn(tableDeps);
+		fs = mock(SQLFeatureStore.class);
+		when(fs.getDialect()).thenReturn(dialect);
+		when(fs.getSchema()).thenReturn(schema);
+		conn = mock(Connection.class);
+		when(conn.prepareStatement(anyString())).thenAnswer(invocation -> sqlToStmt
+			.computeIfAbsent(invocation.getArgument(0), sql -> mock(PreparedStatement.class)));
+	}
+
+	@Test
+	public void testParentRowsAreInsertedBeforeChildRows() throws Exception {
+		InsertRowManager mgr = new InsertRowManager(fs, conn, IDGenMode.USE_EXISTING, 10);
+		InsertRow parent1 = createParent(mgr, 1);
+		InsertRow child1 = createChild(mgr, parent1, "a");
+		mgr.insertRows(asList(parent1, child1));
+		InsertRow parent2 = createParent(mgr, 2);
+		InsertRow child2 = createChild(mgr, parent2, "b");
+		mgr.insertRows(asList(child2, parent2));
+		mgr.flush();
+
+		PreparedStatement parentStmt = sqlToStmt.get(PARENT_SQL);
+		PreparedStatement childStmt = sqlToStmt.get(CHILD_SQL);
+		InOrder order = inOrder(parentStmt, childStmt);
+		order.verify(parentStmt).setObject(1, 1);
+		order.verify(childStmt).setObject(2, 1);
+		// the second parent must not be appended to the batch executed before the children
+		order.verify(parentStmt).executeBatch();
+		order.verify(childStmt).executeBatch();
+		order.verify(parentStmt).setObject(1, 2);
+		order.verify(childStmt).setObject(2, 2);
+		order.verify(parentStmt).executeBatch();
+		order.verify(childStmt).executeBatch();
+		assertThat(mgr.getInsertedRows(), is(4L));
+	}
+
+	@Test
+	public void testFlushAtBatchSize() throws Exception {
+		InsertRowManager mgr = new InsertRowManager(fs, conn, IDGenMode.USE_EXISTING, 3);
+		mgr.insertRows(asList(createRow(mgr, "a"), createRow(mgr, "b")));
+		PreparedStatement stmt = sqlToStmt.get("INSERT INTO plain(name) VALUES(?)");
+		verify(stmt, times(2)).addBatch();
+		verify(stmt, never()).executeBatch();
+		assertThat(mgr.getInsertedRows(), is(0L));
+
+		mgr.insertRows(singletonList(createRow(mgr, "c")));
+		verify(stmt).executeBatch();
+		assertThat(mgr.getInsertedRows(), is(3L));
+
+		mgr.flush();
+		verify(stmt).executeBatch();
+	}
+
+	@Test
+	public void testRowsWithGeneratedKeysAreNotBatched() throws Exception {
+		ResultSet keys = mock(ResultSet.class);
+		when(keys.next()).thenReturn(true);
+		when(keys.getObject(1)).thenReturn(42);
+		PreparedStatement insertStmt = mock(PreparedStatement.class);
+		when(insertStmt.getGeneratedKeys()).thenReturn(keys);
+		when(conn.prepareStatement(eq("INSERT INTO parent() VALUES()"), any(String[].class))).thenReturn(insertStmt);
+
+		InsertRowManager mgr = new InsertRowManager(fs, conn, IDGenMode.USE_EXISTING, 10);
+		mgr.insertRows(singletonList(createRow(mgr, "a")));
+		InsertRow parent = new TestRow(mgr, PARENT);
+		InsertRow child = createChild(mgr, parent, "b");
+		assertThat(parent.isBatchable(true), is(false));
+		mgr.insertRows(asList(parent, child));
+		mgr.flush();
+
+		PreparedStatement plainStmt = sqlToStmt.get("INSERT INTO plain(name) VALUES(?)");
+		PreparedStatement childStmt = sqlToStmt.get(CHILD_SQL);
+		InOrder order = inOrder(plainStmt, insertStmt, childStmt);
+		// pending rows may be referenced, so they are executed first
+		order.verify(plainStmt).executeBatch();
+		order.verify(insertStmt).execute();
+		order.verify(childStmt).setObject(2, 42);
+		order.verify(childStmt).executeBatch();
+		verify(insertStmt, never()).addBatch();
+		assertThat(mgr.getInsertedRows(), is(3L));
+	}
+
+	@Test
+	public void testIsBatchable() throws Exception {
+		InsertRowManager mgr = new InsertRowManager(fs, conn, IDGenMode.USE_EXISTING, 10);
+		InsertRow parent = new TestRow(mgr, PARENT);
+		assertThat(parent.isBatchable(true), is(false));
+		assertThat(parent.isBatchable(false), is(true));
+		assertThat(createParent(mgr, 1).isBatchable(true), is(true));
+		assertThat(createRow(mgr, "a").isBatchable(true), is(true));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCopyPlainRows() throws Exception {
+		when(dialect.isCopyCapable()).thenReturn(true);
+		InsertRowManager mgr = new InsertRowManager(fs, conn, IDGenMode.USE_EXISTING, 3);
+		InsertRow geomRow = new TestRow(mgr, new TableName("plain"));
+		geomRow.addPreparedArgument("name", new byte[0], "ST_GeomFromWKB(?)");
+		mgr.insertRows(asList(createRow(mgr, "a"), createRow(mgr, "b")));
+		mgr.insertRows(singletonList(geomRow));
+
+		ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+		verify(dialect).copyRows(eq(conn), eq(new TableName("plain")), eq(singletonList(new SQLIdentifier("name"))),
+				rows.capture());
+		assertThat(rows.getValue().size(), is(2));
+		assertThat(rows.getValue().get(0)[0], is("a"));
+		assertThat(rows.getValue().get(1)[0], is("b"));
+		// not a plain parameter, inserted with a JDBC batch
+		verify(sqlToStmt.get("INSERT INTO plain(name) VALUES(ST_GeomFromWKB(?))")).executeBatch();
+		assertThat(mgr.getInsertedRows(), is(3L));
+	}
+
+	@Test
+	public void testCloseDiscardsPendingRows() throws Exception {
+		InsertRowManager mgr = new InsertRowManager(fs, conn, IDGenMode.USE_EXISTING, 10);
+		mgr.insertRows(singletonList(createRow(mgr, "a")));
+		mgr.close();
+		mgr.flush();
+
+		PreparedStatement stmt = sqlToStmt.get("INSERT INTO plain(name) VALUES(?)");
+		verify(stmt, never()).executeBatch();
+		verify(stmt).close();
+		assertThat(mgr.getInsertedRows(), is(0L));
+	}
+
+	private InsertRow createRow(InsertRowManager mgr, String name) {
+		InsertRow row = new TestRow(mgr, new TableName("plain"));
+		row.addPreparedArgument("name", name);
+		return row;
+	}
+
+	private InsertRow createParent(InsertRowManager mgr, int id) {
+		InsertRow row = new TestRow(mgr, PARENT);
+		row.addPreparedArgument(ID, id);
+		return row;
+	}
+
+	private InsertRow createChild(InsertRowManager mgr, InsertRow parent, String name) {
+		InsertRow row = new TestRow(mgr, CHILD);
+		row.addPreparedArgument("name", name);
+		mgr.addParentRow(parent, row, PARENT_TO_CHILD);
+		return row;
+	}
+
+	private static class TestRow extends InsertRow {
+
+		private TestRow(InsertRowManager mgr, TableName table) {
+			super(mgr);
+			this.table = table;
+		}
+
+	}
+
+}
@@ -125,7 +125,8 @@ class AutoFeatureLayerBuilder {
 			styles.put("default", new Style());
 		}
 		md.setStyles(styles);
-		Layer l = new FeatureLayer(md, store, ft.getName(), null, null, null);
+		FeatureLayer l = new FeatureLayer(md, store, ft.getName(), null, null, null);
+		l.trackStoreEnvelope();
 		map.put(name, l);
 	}
 
@@ -41,7 +41,9 @@ package org.deegree.layer.persistence.feature;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStores;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.ThreadedFeatureInputStream;
 import org.deegree.feature.types.AppSchemas;
 import org.deegree.filter.Expression;
 import org.deegree.filter.Filters;
@@ -82,9 +84,24 @@ public class FeatureLayer extends AbstractLayer {
 
 	private final DimensionFilterBuilder dimFilterBuilder;
 
+	private final int prefetchQueueSize;
+
+	private LayerEnvelopeUpdater envelopeUpdater;
+
 	public FeatureLayer(LayerMetadata md, FeatureStore featureStore, QName featureType, OperatorFilter filter,
 			List<SortProperty> sortBy, List<SortProperty> sortByFeatureInfo) {
+		this(md, featureStore, featureType, filter, sortBy, sortByFeatureInfo,
+				ThreadedFeatureInputStream.DEFAULT_QUEUE_SIZE);
+	}
+
+	/**
+	 * @param prefetchQueueSize number of features fetched in advance while rendering, 0
+	 * disables prefetching
+	 */
+	public FeatureLayer(LayerMetadata md, FeatureStore featureStore, QName featureType, OperatorFilter filter,
+			List<SortProperty> sortBy, List<SortProperty> sortByFeatureInfo, int prefetchQueueSize) {
 		super(md);
+		this.prefetchQueueSize = prefetchQueueSize;
 		this.featureStore = featureStore;
 		this.featureType = featureType;
 		this.filter = filter;
@@ -97,6 +114,38 @@ public class FeatureLayer extends AbstractLayer {
 		dimFilterBuilder = new DimensionFilterBuilder(md.getDimensions());
 	}
 
+	/**
+	 * @return the feature store the layer is rendered from, never <code>null</code>
+	 */
+	public FeatureStore getFeatureStore() {
+		return featureStore;
+	}
+
+	/**
+	 * @return the name of the rendered feature type, may be <code>null</code> (the feature
+	 * type is determined by the style)
+	 */
+	public QName getFeatureType() {
+		return featureType;
+	}
+
+	/**
+	 * Keeps the envelope of the layer metadata up to date with envelopes that the feature
+	 * store determines in the background, used if no envelope has been configured.
+	 */
+	void trackStoreEnvelope() {
+		envelopeUpdater = new LayerEnvelopeUpdater(featureStore, featureType, getMetadata().getSpatialMetadata());
+		FeatureStores.addChangeListener(envelopeUpdater);
+	}
+
+	@Override
+	public void destroy() {
+		if (envelopeUpdater != null) {
+			FeatureStores.removeChangeListener(envelopeUpdater);
+		}
+		super.destroy();
+	}
+
 	@Override
 	public FeatureLayerData mapQuery(final LayerQuery query, List<String> headers) throws OWSException {
 		Style style = resolveStyleRef(query.getStyle());
@@ -130,7 +179,7 @@ public class FeatureLayer extends AbstractLayer {
 		Integer maxFeats = query.getRenderingOptions().getMaxFeatures(getMetadata().getName());
 		final int maxFeatures = maxFeats == null ? -1 : maxFeats;
 
-		return new FeatureLayerData(queries, featureStore, maxFeatures, style, ftName);
+		return new FeatureLayerData(queries, featureStore, maxFeatures, style, ftName, prefetchQueueSize);
 	}
 
 	@Override
@@ -163,7 +212,8 @@ public class FeatureLayer extends AbstractLayer {
 
 		LOG.debug("Finished querying the feature store(s).");
 
-		return new FeatureLayerData(queries, featureStore, query.getFeatureCount(), style, featureType);
+		return new FeatureLayerData(queries, featureStore, query.getFeatureCount(), style, featureType,
+				prefetchQueueSize);
 	}
 
 	private static ValueReference findGeometryProperty(Style style) {
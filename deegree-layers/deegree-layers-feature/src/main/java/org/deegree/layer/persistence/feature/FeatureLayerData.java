@@ -76,8 +76,20 @@ public class FeatureLayerData implements LayerData {
 
 	private final FeatureStore featureStore;
 
+	private final int prefetchQueueSize;
+
 	public FeatureLayerData(List<Query> queries, FeatureStore featureStore, int maxFeatures, Style style,
 			QName ftName) {
+		this(queries, featureStore, maxFeatures, style, ftName, ThreadedFeatureInputStream.DEFAULT_QUEUE_SIZE);
+	}
+
+	/**
+	 * @param prefetchQueueSize number of features fetched in advance while rendering, 0
+	 * disables prefetching
+	 */
+	public FeatureLayerData(List<Query> queries, FeatureStore featureStore, int maxFeatures, Style style,
+			QName ftName, int prefetchQueueSize) {
+		this.prefetchQueueSize = prefetchQueueSize;
 		this.queries = queries;
 		this.featureStore = featureStore;
 		this.maxFeatures = maxFeatures;
@@ -94,9 +106,11 @@ public class FeatureLayerData implements LayerData {
 	public void render(RenderContext context) throws InterruptedException {
 		FeatureInputStream features = null;
 		try {
-			// TODO Should this always be done on this level? What about queueSize value?
+			// TODO Should this always be done on this level?
 			features = featureStore.query(queries.toArray(new Query[queries.size()]));
-			features = new ThreadedFeatureInputStream(features, 100);
+			if (prefetchQueueSize > 0) {
+				features = new ThreadedFeatureInputStream(features, prefetchQueueSize);
+			}
 
 			FeatureStreamRenderer renderer = new FeatureStreamRenderer(context, maxFeatures, evaluator);
 			renderer.renderFeatureStream(features, style);
@@ -0,0 +1,96 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.feature;
+
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayList;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.feature.persistence.FeatureStores;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.metadata.SpatialMetadata;
+
+/**
+ * Updates the envelope of a feature layer without configured envelope when the feature
+ * store determines the envelope in the background (it may not be available yet when the
+ * layer is built).
+ */
+class LayerEnvelopeUpdater implements FeatureStoreChangeListener {
+
+	private final FeatureStore store;
+
+	private final QName featureType;
+
+	private final SpatialMetadata smd;
+
+	/**
+	 * @param store feature store of the layer, must not be <code>null</code>
+	 * @param featureType feature type of the layer, <code>null</code> for all feature
+	 * types of the store
+	 * @param smd spatial metadata of the layer, must not be <code>null</code>
+	 */
+	LayerEnvelopeUpdater(FeatureStore store, QName featureType, SpatialMetadata smd) {
+		this.store = store;
+		this.featureType = featureType;
+		this.smd = smd;
+	}
+
+	@Override
+	public void featuresChanged(FeatureStore store, QName ftName, Envelope envelope) {
+		// envelope changes are announced separately
+	}
+
+	@Override
+	public void envelopeChanged(FeatureStore store, QName ftName, Envelope envelope) {
+		if (store != this.store || (featureType != null && !featureType.equals(ftName))) {
+			return;
+		}
+		Envelope env = featureType != null ? envelope : FeatureStores.getCombinedEnvelope(store);
+		if (env == null) {
+			return;
+		}
+		smd.setEnvelope(env);
+		if ((smd.getCoordinateSystems() == null || smd.getCoordinateSystems().isEmpty())
+				&& env.getCoordinateSystem() != null) {
+			smd.setCoordinateSystems(new ArrayList<ICRS>(singletonList(env.getCoordinateSystem())));
+		}
+	}
+
+}
@@ -100,7 +100,8 @@ class LayerMetadataBuilder {
 				smd.setEnvelope(getCombinedEnvelope(store));
 			}
 		}
-		if (smd.getCoordinateSystems() == null || smd.getCoordinateSystems().isEmpty()) {
+		if ((smd.getCoordinateSystems() == null || smd.getCoordinateSystems().isEmpty())
+				&& smd.getEnvelope() != null) {
 			List<ICRS> crs = new ArrayList<ICRS>();
 			crs.add(smd.getEnvelope().getCoordinateSystem());
 			smd.setCoordinateSystems(crs);
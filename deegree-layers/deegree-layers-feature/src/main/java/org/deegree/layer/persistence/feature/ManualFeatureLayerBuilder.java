@@ -54,6 +54,7 @@ import javax.xml.stream.XMLStreamException;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.stream.ThreadedFeatureInputStream;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.sort.SortProperty;
 import org.deegree.layer.Layer;
@@ -115,7 +116,15 @@ class ManualFeatureLayerBuilder {
 			Pair<Map<String, Style>, Map<String, Style>> p = parseStyles(workspace, lay.getName(), lay.getStyleRef());
 			md.setStyles(p.first);
 			md.setLegendStyles(p.second);
-			Layer l = new FeatureLayer(md, store, featureType, filter, sortBy, sortByFeatureInfo);
+			int prefetchQueueSize = ThreadedFeatureInputStream.DEFAULT_QUEUE_SIZE;
+			if (lay.getPrefetchQueueSize() != null) {
+				prefetchQueueSize = lay.getPrefetchQueueSize().intValue();
+			}
+			FeatureLayer l = new FeatureLayer(md, store, featureType, filter, sortBy, sortByFeatureInfo,
+					prefetchQueueSize);
+			if (lay.getEnvelope() == null) {
+				l.trackStoreEnvelope();
+			}
 			map.put(lay.getName(), l);
 		}
 		return new MultipleLayerStore(map, metadata);
@@ -0,0 +1,118 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.feature;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.metadata.SpatialMetadata;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LayerEnvelopeUpdater}.
+ */
+public class LayerEnvelopeUpdaterTest {
+
+	private static final QName ROAD = new QName("http://www.deegree.org/app", "Road");
+
+	private static final QName RIVER = new QName("http://www.deegree.org/app", "River");
+
+	private final GeometryFactory fac = new GeometryFactory();
+
+	@Test
+	public void testEnvelopeOfFeatureType() {
+		FeatureStore store = mock(FeatureStore.class);
+		SpatialMetadata smd = new SpatialMetadata(null, new ArrayList<ICRS>());
+		LayerEnvelopeUpdater updater = new LayerEnvelopeUpdater(store, ROAD, smd);
+		ICRS crs = mock(ICRS.class);
+		Envelope env = fac.createEnvelope(0, 0, 1, 1, crs);
+
+		updater.envelopeChanged(store, ROAD, env);
+
+		assertThat(smd.getEnvelope(), sameInstance(env));
+		assertThat(smd.getCoordinateSystems().size(), is(1));
+		assertThat(smd.getCoordinateSystems().get(0), sameInstance(crs));
+	}
+
+	@Test
+	public void testOtherFeatureTypeOrStoreIsIgnored() {
+		FeatureStore store = mock(FeatureStore.class);
+		SpatialMetadata smd = new SpatialMetadata(null, new ArrayList<ICRS>());
+		LayerEnvelopeUpdater updater = new LayerEnvelopeUpdater(store, ROAD, smd);
+		Envelope env = fac.createEnvelope(0, 0, 1, 1, null);
+
+		updater.envelopeChanged(store, RIVER, env);
+		updater.envelopeChanged(mock(FeatureStore.class), ROAD, env);
+
+		assertThat(smd.getEnvelope(), nullValue());
+	}
+
+	@Test
+	public void testCombinedEnvelopeOfAllFeatureTypes()
+			throws Exception {
+		FeatureStore store = mock(FeatureStore.class);
+		AppSchema schema = mock(AppSchema.class);
+		FeatureType road = mock(FeatureType.class);
+		when(road.getName()).thenReturn(ROAD);
+		FeatureType river = mock(FeatureType.class);
+		when(river.getName()).thenReturn(RIVER);
+		when(schema.getFeatureTypes()).thenReturn(new FeatureType[] { road, river });
+		when(store.getSchema()).thenReturn(schema);
+		when(store.getEnvelope(ROAD)).thenReturn(fac.createEnvelope(0, 0, 1, 1, null));
+		when(store.getEnvelope(RIVER)).thenReturn(fac.createEnvelope(2, 2, 3, 3, null));
+		SpatialMetadata smd = new SpatialMetadata(null, new ArrayList<ICRS>());
+		LayerEnvelopeUpdater updater = new LayerEnvelopeUpdater(store, null, smd);
+
+		updater.envelopeChanged(store, RIVER, fac.createEnvelope(2, 2, 3, 3, null));
+
+		assertThat(smd.getEnvelope().getMin().get0(), is(0.0));
+		assertThat(smd.getEnvelope().getMax().get0(), is(3.0));
+	}
+
+}
@@ -75,8 +75,27 @@ public class TileLayer extends AbstractLayer {
 	// maps crs to tile matrix set ids
 	private final Map<ICRS, String> coordinateSystems = new LinkedHashMap<ICRS, String>();
 
+	private final int concurrentTileRequests;
+
+	private final long tileRequestTimeout;
+
 	public TileLayer(LayerMetadata md, List<TileDataSet> datasets) {
+		this(md, datasets, 1, 0);
+	}
+
+	/**
+	 * @param md the layer metadata
+	 * @param datasets the tile data sets
+	 * @param concurrentTileRequests maximum number of tiles retrieved at the same time
+	 * while rendering a map
+	 * @param tileRequestTimeout maximum time in milliseconds to spend on retrieving the
+	 * tiles of a map, 0 for no limit
+	 */
+	public TileLayer(LayerMetadata md, List<TileDataSet> datasets, int concurrentTileRequests,
+			long tileRequestTimeout) {
 		super(md);
+		this.concurrentTileRequests = concurrentTileRequests;
+		this.tileRequestTimeout = tileRequestTimeout;
 		for (TileDataSet tds : datasets) {
 			coordinateSystems.put(tds.getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get(0),
 					tds.getTileMatrixSet().getIdentifier());
@@ -99,7 +118,7 @@ public class TileLayer extends AbstractLayer {
 		TileDataSet data = tileDataSets.get(tds);
 
 		Iterator<Tile> tiles = data.getTiles(env, query.getResolution());
-		return new TileLayerData(tiles);
+		return new TileLayerData(tiles, concurrentTileRequests, tileRequestTimeout);
 	}
 
 	@Override
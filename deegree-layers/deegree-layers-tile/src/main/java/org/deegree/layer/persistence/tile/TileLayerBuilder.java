@@ -74,6 +74,8 @@ class TileLayerBuilder {
 
 	private static final Logger LOG = getLogger(TileLayerStoreProvider.class);
 
+	private static final int DEFAULT_CONCURRENT_TILE_REQUESTS = 4;
+
 	private Workspace workspace;
 
 	TileLayerBuilder(Workspace workspace) {
@@ -129,7 +131,12 @@ class TileLayerBuilder {
 			md.setScaleDenominators(p);
 		}
 		md.setMetadataId(cfg.getMetadataSetId());
-		return new TileLayer(md, datasets);
+		int concurrentTileRequests = DEFAULT_CONCURRENT_TILE_REQUESTS;
+		if (cfg.getConcurrentTileRequests() != null) {
+			concurrentTileRequests = cfg.getConcurrentTileRequests();
+		}
+		long tileRequestTimeout = cfg.getTileRequestTimeout() != null ? cfg.getTileRequestTimeout() : 0;
+		return new TileLayer(md, datasets, concurrentTileRequests, tileRequestTimeout);
 	}
 
 }
@@ -39,34 +39,138 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.layer.persistence.tile;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.deegree.commons.utils.TunableParameter;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
 import org.deegree.layer.LayerData;
 import org.deegree.rendering.r2d.TileRenderer;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.slf4j.Logger;
 
 /**
  * <code>TileLayerData</code>
+ * <p>
+ * If more than one concurrent tile request is allowed, the tile images are retrieved
+ * and decoded on a shared thread pool while the tiles are drawn in order.
+ * </p>
  *
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  */
 
 public class TileLayerData implements LayerData {
 
+	private static final Logger LOG = getLogger(TileLayerData.class);
+
+	private static final int MAX_THREADS = TunableParameter.get("deegree.tile.fetch.threads", 32);
+
+	private static ExecutorService executor;
+
 	private final Iterator<Tile> tiles;
 
+	private final int concurrency;
+
+	private final long timeout;
+
 	public TileLayerData(Iterator<Tile> tiles) {
+		this(tiles, 1, 0);
+	}
+
+	/**
+	 * @param tiles the tiles to render, never <code>null</code>
+	 * @param concurrency maximum number of tile images retrieved at the same time, 1 or
+	 * less retrieves the tiles one after another while drawing
+	 * @param timeout maximum time in milliseconds to spend on retrieving all tiles, 0 or
+	 * less for no limit
+	 */
+	public TileLayerData(Iterator<Tile> tiles, int concurrency, long timeout) {
 		this.tiles = tiles;
+		this.concurrency = concurrency;
+		this.timeout = timeout;
 	}
 
 	@Override
 	public void render(RenderContext context) {
 		TileRenderer renderer = context.getTileRenderer();
-		while (tiles.hasNext()) {
-			renderer.render(tiles.next());
+		if (concurrency <= 1 || MAX_THREADS <= 1) {
+			while (tiles.hasNext()) {
+				renderer.render(tiles.next());
+			}
+			return;
+		}
+		long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+		ArrayDeque<Future<RetrievedTile>> retrieving = new ArrayDeque<Future<RetrievedTile>>(concurrency);
+		ExecutorService executor = getExecutor();
+		try {
+			while (true) {
+				while (retrieving.size() < concurrency && tiles.hasNext()) {
+					final Tile tile = tiles.next();
+					if (tile != null) {
+						retrieving.add(executor.submit(new Callable<RetrievedTile>() {
+							@Override
+							public RetrievedTile call() {
+								return new RetrievedTile(tile);
+							}
+						}));
+					}
+				}
+				Future<RetrievedTile> next = retrieving.poll();
+				if (next == null) {
+					break;
+				}
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0) {
+					next.cancel(true);
+					throw new TimeoutException();
+				}
+				RetrievedTile tile;
+				try {
+					tile = next.get(wait, MILLISECONDS);
+				}
+				catch (ExecutionException e) {
+					// skip the tile, but keep drawing the others
+					LOG.warn("Unable to retrieve tile: {}", e.getCause().getMessage());
+					LOG.trace("Stack trace:", e);
+					continue;
+				}
+				renderer.render(tile);
+			}
+		}
+		catch (TimeoutException e) {
+			LOG.warn("Retrieving tiles took longer than {} ms, skipping remaining tiles.", timeout);
 		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			for (Future<RetrievedTile> tile : retrieving) {
+				tile.cancel(true);
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(MAX_THREADS, new TileThreadFactory());
+		}
+		return executor;
 	}
 
 	@Override
@@ -74,4 +178,68 @@ public class TileLayerData implements LayerData {
 		return null;
 	}
 
+	/**
+	 * A tile whose image is retrieved on construction. Retrieval errors are kept, so the
+	 * tile renderer can handle them when drawing the tile. Unexpected runtime exceptions
+	 * are treated like retrieval errors.
+	 */
+	private static class RetrievedTile implements Tile {
+
+		private final Tile tile;
+
+		private BufferedImage image;
+
+		private TileIOException error;
+
+		RetrievedTile(Tile tile) {
+			this.tile = tile;
+			try {
+				image = tile.getAsImage();
+			}
+			catch (TileIOException e) {
+				error = e;
+			}
+			catch (RuntimeException e) {
+				error = new TileIOException(e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public BufferedImage getAsImage() throws TileIOException {
+			if (error != null) {
+				throw error;
+			}
+			return image;
+		}
+
+		@Override
+		public InputStream getAsStream() throws TileIOException {
+			return tile.getAsStream();
+		}
+
+		@Override
+		public Envelope getEnvelope() {
+			return tile.getEnvelope();
+		}
+
+		@Override
+		public FeatureCollection getFeatures(int i, int j, int limit) throws UnsupportedOperationException {
+			return tile.getFeatures(i, j, limit);
+		}
+
+	}
+
+	private static class TileThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "tile-fetch-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+
+	}
+
 }
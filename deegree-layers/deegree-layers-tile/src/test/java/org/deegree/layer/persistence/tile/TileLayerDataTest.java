@@ -0,0 +1,151 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.tile;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.rendering.r2d.TileRenderer;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests for {@link TileLayerData}.
+ */
+public class TileLayerDataTest {
+
+	private final BufferedImage image = new BufferedImage(1, 1, TYPE_INT_ARGB);
+
+	private TileRenderer renderer;
+
+	private RenderContext context;
+
+	@Before
+	public void setup() {
+		renderer = mock(TileRenderer.class);
+		context = mock(RenderContext.class);
+		when(context.getTileRenderer()).thenReturn(renderer);
+	}
+
+	@Test
+	public void testSequentialRendersAllTiles() throws Exception {
+		List<Tile> tiles = Arrays.asList(createTile(), createTile(), createTile());
+		new TileLayerData(tiles.iterator(), 1, 0).render(context);
+		for (Tile tile : tiles) {
+			verify(renderer).render(tile);
+		}
+	}
+
+	@Test
+	public void testConcurrentRendersAllTilesInOrder() throws Exception {
+		List<Tile> tiles = Arrays.asList(createTile(), createTile(), createTile(), createTile(), createTile());
+		new TileLayerData(tiles.iterator(), 4, 0).render(context);
+
+		List<Tile> rendered = captureRenderedTiles(tiles.size());
+		for (int i = 0; i < tiles.size(); ++i) {
+			assertSame(tiles.get(i).getEnvelope(), rendered.get(i).getEnvelope());
+			assertSame(image, rendered.get(i).getAsImage());
+		}
+	}
+
+	@Test
+	public void testConcurrentHandsRetrievalErrorsToRenderer() throws Exception {
+		Tile failing = createTile();
+		when(failing.getAsImage()).thenThrow(new TileIOException("unavailable"));
+		Tile broken = createTile();
+		when(broken.getAsImage()).thenThrow(new IllegalStateException("broken"));
+		List<Tile> tiles = Arrays.asList(createTile(), failing, broken, createTile());
+		new TileLayerData(tiles.iterator(), 4, 0).render(context);
+
+		List<Tile> rendered = captureRenderedTiles(tiles.size());
+		assertSame(image, rendered.get(0).getAsImage());
+		assertRetrievalError(rendered.get(1));
+		assertRetrievalError(rendered.get(2));
+		assertSame(image, rendered.get(3).getAsImage());
+	}
+
+	@Test
+	public void testConcurrentSkipsFailedTileAndDrawsOthers() throws Exception {
+		Tile failing = createTile();
+		when(failing.getAsImage()).thenThrow(new LinkageError("failed"));
+		List<Tile> tiles = Arrays.asList(createTile(), failing, createTile(), createTile());
+		new TileLayerData(tiles.iterator(), 2, 0).render(context);
+
+		List<Tile> rendered = captureRenderedTiles(3);
+		assertSame(tiles.get(0).getEnvelope(), rendered.get(0).getEnvelope());
+		assertSame(tiles.get(2).getEnvelope(), rendered.get(1).getEnvelope());
+		assertSame(tiles.get(3).getEnvelope(), rendered.get(2).getEnvelope());
+	}
+
+	private List<Tile> captureRenderedTiles(int count) {
+		ArgumentCaptor<Tile> captor = ArgumentCaptor.forClass(Tile.class);
+		verify(renderer, times(count)).render(captor.capture());
+		assertEquals(count, captor.getAllValues().size());
+		return captor.getAllValues();
+	}
+
+	private static void assertRetrievalError(Tile tile) {
+		try {
+			tile.getAsImage();
+			fail("Expected the retrieval error to be handed to the renderer.");
+		}
+		catch (TileIOException e) {
+			// expected
+		}
+	}
+
+	private Tile createTile() throws TileIOException {
+		Tile tile = mock(Tile.class);
+		when(tile.getEnvelope()).thenReturn(mock(Envelope.class));
+		when(tile.getAsImage()).thenReturn(image);
+		return tile;
+	}
+
+}
@@ -38,8 +38,10 @@ import jakarta.xml.bind.JAXBElement;
 
 import org.deegree.commons.utils.net.DURL;
 import org.deegree.commons.xml.jaxb.JAXBUtils;
+import org.deegree.feature.stream.FeaturePrefetchExecutor;
 import org.deegree.services.controller.utils.StandardRequestLogger;
 import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.FeaturePrefetch;
 import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.RequestLogging;
 import org.deegree.services.jaxb.metadata.DeegreeServicesMetadataType;
 import org.deegree.workspace.Initializable;
@@ -125,6 +127,7 @@ public class OwsGlobalConfigLoader implements Initializable {
 		}
 
 		initRequestLogger();
+		initFeaturePrefetch();
 	}
 
 	/**
@@ -155,6 +158,21 @@ public class OwsGlobalConfigLoader implements Initializable {
 		this.mainConfig = mainConfig;
 	}
 
+	private void initFeaturePrefetch() {
+		FeaturePrefetch featurePrefetch = mainConfig.getFeaturePrefetch();
+		if (featurePrefetch != null) {
+			int maxThreads = FeaturePrefetchExecutor.DEFAULT_MAX_THREADS;
+			int maxQueued = FeaturePrefetchExecutor.DEFAULT_MAX_QUEUED;
+			if (featurePrefetch.getMaxThreads() != null) {
+				maxThreads = featurePrefetch.getMaxThreads().intValue();
+			}
+			if (featurePrefetch.getMaxQueued() != null) {
+				maxQueued = featurePrefetch.getMaxQueued().intValue();
+			}
+			FeaturePrefetchExecutor.configure(maxThreads, maxQueued);
+		}
+	}
+
 	private void initRequestLogger() {
 		RequestLogging requestLogging = mainConfig.getRequestLogging();
 		if (requestLogging != null) {
@@ -5,6 +5,7 @@ import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 
+import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.FeatureStore;
@@ -39,15 +40,23 @@ public class GeoJsonGetFeatureHandler {
 
 	public void doGetFeatureResults(GetFeature request, HttpResponseBuffer response, boolean allowOtherCrsThanWGS84)
 			throws Exception {
-		QueryAnalyzer analyzer = new QueryAnalyzer(request.getQueries(), webFeatureService,
-				webFeatureService.getStoreManager(), webFeatureService.getCheckAreaOfUse());
+		int startIndex = getStartIndex(request);
+		int maxFeatures = getMaxFeatures(request);
+		QueryAnalyzer analyzer = createQueryAnalyzer(request, maxFeatures, startIndex);
+		if (analyzer.getQueries().size() > 1) {
+			// every store would apply the offset to its own results, page in memory only
+			analyzer = createQueryAnalyzer(request, -1, 0);
+		}
+		else if (!isMaxFeaturesAndStartIndexMustBeApplied(analyzer.getQueries())) {
+			// the feature store already returns the requested page
+			startIndex = 0;
+		}
+		analyzer.setStartAfter(request.getPresentationParams().getStartAfter());
 		response.setCharacterEncoding(Charset.defaultCharset().name());
 		response.setContentType(determineMimeType(request));
 		ICRS requestedCRS = determineCrs(analyzer, allowOtherCrsThanWGS84);
 		try (GeoJsonFeatureWriter geoJsonStreamWriter = new GeoJsonWriter(response.getWriter(), requestedCRS)) {
 			geoJsonStreamWriter.startFeatureCollection();
-			int startIndex = getStartIndex(request);
-			int maxFeatures = getMaxFeatures(request);
 
 			// TODO: Lock lock = acquireLock( request, analyzer );
 
@@ -83,6 +92,12 @@ public class GeoJsonGetFeatureHandler {
 		}
 	}
 
+	private QueryAnalyzer createQueryAnalyzer(GetFeature request, int maxFeatures, int startIndex)
+			throws OWSException {
+		return new QueryAnalyzer(request.getQueries(), webFeatureService, webFeatureService.getStoreManager(),
+				webFeatureService.getCheckAreaOfUse(), maxFeatures, startIndex);
+	}
+
 	private ICRS determineCrs(QueryAnalyzer analyzer, boolean allowOtherCrsThanWGS84) {
 		if (allowOtherCrsThanWGS84)
 			return analyzer.getRequestedCRS();
@@ -121,6 +136,16 @@ public class GeoJsonGetFeatureHandler {
 		return startIndex;
 	}
 
+	private boolean isMaxFeaturesAndStartIndexMustBeApplied(Map<FeatureStore, List<Query>> analysedQueries) {
+		if (analysedQueries.size() == 1) {
+			FeatureStore fs = analysedQueries.keySet().iterator().next();
+			List<Query> values = analysedQueries.values().iterator().next();
+			Query[] queries = values.toArray(new Query[values.size()]);
+			return !fs.isMaxFeaturesAndStartIndexApplicable(queries);
+		}
+		return true;
+	}
+
 	private boolean isBeforeStartIndex(int startIndex, int featuresSkipped) {
 		return featuresSkipped < startIndex;
 	}
@@ -34,6 +34,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.services.wfs.format.gml.request;
 
+import static java.lang.Boolean.TRUE;
 import static java.math.BigInteger.ZERO;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
 import static org.deegree.commons.ows.exception.OWSException.OPERATION_PROCESSING_FAILED;
@@ -42,6 +43,7 @@ import static org.deegree.commons.tom.datetime.ISO8601Converter.formatDateTime;
 import static org.deegree.commons.xml.CommonNamespaces.GML3_2_NS;
 import static org.deegree.commons.xml.CommonNamespaces.GMLNS;
 import static org.deegree.commons.xml.stax.XMLStreamUtils.writeNamespaceIfNotBound;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_INEXACT_HITS;
 import static org.deegree.gml.GMLOutputFactory.createGMLStreamWriter;
 import static org.deegree.gml.GMLVersion.GML_2;
 import static org.deegree.gml.GMLVersion.GML_32;
@@ -155,8 +157,17 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 			startIndex = request.getPresentationParams().getStartIndex().intValue();
 		}
 
+		boolean isGetFeatureById = isGetFeatureByIdRequest(request);
+
+		// whether there is a next page is determined by fetching one feature more than
+		// requested, hits of the feature stores may be estimates
+		boolean detectNextPage = !isGetFeatureById && options.isDisableStreaming()
+				&& options.isEnableResponsePaging() && count != null && returnMaxFeatures > 0;
+		int queryMaxFeatures = detectNextPage ? returnMaxFeatures + 1 : returnMaxFeatures;
+
 		QueryAnalyzer analyzer = new QueryAnalyzer(request.getQueries(), format.getMaster(),
-				format.getMaster().getStoreManager(), options.isCheckAreaOfUse(), returnMaxFeatures, startIndex);
+				format.getMaster().getStoreManager(), options.isCheckAreaOfUse(), queryMaxFeatures, startIndex);
+		analyzer.setStartAfter(request.getPresentationParams().getStartAfter());
 		Lock lock = acquireLock(request, analyzer);
 
 		String schemaLocation = getSchemaLocation(request.getVersion(), analyzer.getFeatureTypes());
@@ -202,8 +213,6 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 
 		QName responseContainerEl = options.getResponseContainerEl();
 
-		boolean isGetFeatureById = isGetFeatureByIdRequest(request);
-
 		// open "wfs:FeatureCollection" element
 		if (request.getVersion().equals(VERSION_100)) {
 			if (responseContainerEl != null) {
@@ -280,11 +289,9 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 			writeSingleFeatureMember(gmlStream, analyzer, resolveOptions);
 		}
 		else if (options.isDisableStreaming()) {
-			ResponsePagingUris responsePagingUris = null;
-			if (options.isEnableResponsePaging())
-				responsePagingUris = createResponsePagingUris(request, count, startIndex);
+			GetFeature pagingRequest = options.isEnableResponsePaging() ? request : null;
 			writeFeatureMembersCached(request.getVersion(), gmlStream, analyzer, gmlVersion, returnMaxFeatures,
-					startIndex, memberElementName, lock, responsePagingUris);
+					startIndex, memberElementName, lock, pagingRequest);
 		}
 		else {
 			writeFeatureMembersStream(request.getVersion(), gmlStream, analyzer, gmlVersion, returnMaxFeatures,
@@ -324,32 +331,33 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 			String nextUri = createUrlWithStartindex(kvpGetFeature, startIndex);
 			return new ResponsePagingUris(nextUri, null);
 		}
-		return createResponsePagingUris(nextGetFeature, count, startIndex);
+		return null;
 	}
 
-	private ResponsePagingUris createResponsePagingUris(GetFeature request, BigInteger count, int startIndex)
-			throws UnknownCRSException, XMLStreamException, TransformationException, UnsupportedEncodingException,
-			FilterEvaluationException, FeatureStoreException, OWSException {
+	/**
+	 * Creates the urls of the next and previous page.
+	 * @param request request, never <code>null</code>
+	 * @param count number of features requested, may be <code>null</code>
+	 * @param startIndex start index of the request
+	 * @param pageSize number of features per page
+	 * @param hasNextPage <code>true</code>, if more features exist after this page
+	 * @return the urls, <code>null</code> if no count has been requested
+	 */
+	private ResponsePagingUris createResponsePagingUris(GetFeature request, BigInteger count, int startIndex,
+			int pageSize, boolean hasNextPage) throws UnknownCRSException, XMLStreamException,
+			TransformationException, UnsupportedEncodingException {
 		if (count != null) {
 			Map<String, String> kvpGetFeature = GetFeature200KVPEncoder.export(request);
-			String nextUri = createNextUri(count, startIndex, kvpGetFeature, request);
+			String nextUri = null;
+			if (hasNextPage) {
+				nextUri = createUrlWithStartindex(kvpGetFeature, startIndex + pageSize);
+			}
 			String previousUri = createPreviousUri(count, startIndex, kvpGetFeature);
 			return new ResponsePagingUris(nextUri, previousUri);
 		}
 		return null;
 	}
 
-	private String createNextUri(BigInteger count, int startIndex, Map<String, String> kvpGetFeature,
-			GetFeature request) throws OWSException, FeatureStoreException, FilterEvaluationException {
-		QueryAnalyzer analyzer = new QueryAnalyzer(request.getQueries(), format.getMaster(),
-				format.getMaster().getStoreManager(), options.isCheckAreaOfUse());
-		Hits hits = retrieveHits(request, analyzer);
-		int nextStartIndex = ResponsePagingUtils.calculateNextStartIndex(startIndex, count.intValue(), hits.hitsTotal);
-		if (nextStartIndex >= 0)
-			return createUrlWithStartindex(kvpGetFeature, nextStartIndex);
-		return null;
-	}
-
 	private String createPreviousUri(BigInteger count, int startIndex, Map<String, String> kvpGetFeature) {
 		int previousStartIndex = ResponsePagingUtils.calculatePreviousStartIndex(startIndex, count.intValue());
 		if (previousStartIndex >= 0)
@@ -380,7 +388,8 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 		String contentType = options.getMimeType();
 		XMLStreamWriter xmlStream = WebFeatureService.getXMLResponseWriter(response, contentType, schemaLocation);
 
-		Hits hits = retrieveHits(request, analyzer);
+		// WFS 2.0 allows "unknown", so the feature stores may estimate or count asynchronously
+		Hits hits = retrieveHits(request, analyzer, request.getVersion().equals(VERSION_200));
 
 		// open "wfs:FeatureCollection" element
 		if (request.getVersion().equals(VERSION_100)) {
@@ -407,7 +416,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 			xmlStream.writeStartElement(WFS_200_NS, "FeatureCollection");
 			xmlStream.writeNamespace("wfs", WFS_200_NS);
 			xmlStream.writeAttribute("timeStamp", getTimestamp());
-			xmlStream.writeAttribute("numberMatched", "" + hits.hitsTotal);
+			xmlStream.writeAttribute("numberMatched", formatNumberMatched(hits.hitsTotal));
 			xmlStream.writeAttribute("numberReturned", "0");
 			if (options.isEnableResponsePaging()) {
 				ResponsePagingUris responsePagingUris = createResponsePagingUrisHits(request);
@@ -418,7 +427,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 					xmlStream.writeStartElement("wfs", "member", WFS_200_NS);
 					xmlStream.writeEmptyElement("wfs", "FeatureCollection", WFS_200_NS);
 					xmlStream.writeAttribute("timeStamp", formatDateTime(hits.queryTimeStamps[j]));
-					xmlStream.writeAttribute("numberMatched", "" + hits.queryHits[j]);
+					xmlStream.writeAttribute("numberMatched", formatNumberMatched(hits.queryHits[j]));
 					xmlStream.writeAttribute("numberReturned", "0");
 					xmlStream.writeEndElement();
 				}
@@ -439,7 +448,15 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 		xmlStream.flush();
 	}
 
-	private Hits retrieveHits(GetFeature request, QueryAnalyzer analyzer)
+	/**
+	 * Determines the number of features matched by the queries of the request.
+	 * @param request request, never <code>null</code>
+	 * @param analyzer analyzer of the request, never <code>null</code>
+	 * @param allowInexact <code>true</code>, if the feature stores may return estimated
+	 * hits or -1 (unknown)
+	 * @return hits, total and per query hits are -1 if at least one of them is unknown
+	 */
+	private Hits retrieveHits(GetFeature request, QueryAnalyzer analyzer, boolean allowInexact)
 			throws FeatureStoreException, FilterEvaluationException {
 		Map<org.deegree.protocol.wfs.query.Query, Integer> wfsQueryToIndex = new HashMap<org.deegree.protocol.wfs.query.Query, Integer>();
 		int i = 0;
@@ -454,6 +471,11 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 		for (Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet()) {
 			FeatureStore fs = fsToQueries.getKey();
 			Query[] queries = fsToQueries.getValue().toArray(new Query[fsToQueries.getValue().size()]);
+			if (allowInexact) {
+				for (Query query : queries) {
+					query.setHint(HINT_INEXACT_HITS, TRUE);
+				}
+			}
 			int[] hits = fs.queryHits(queries);
 
 			// map the hits from the feature store back to the original query sequence
@@ -462,14 +484,28 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 				int singleHits = hits[j];
 				org.deegree.protocol.wfs.query.Query wfsQuery = analyzer.getQuery(query);
 				int index = wfsQueryToIndex.get(wfsQuery);
-				hitsTotal += singleHits;
-				queryHits[index] = queryHits[index] + singleHits;
+				if (singleHits < 0 || hitsTotal < 0) {
+					hitsTotal = -1;
+				}
+				else {
+					hitsTotal += singleHits;
+				}
+				if (singleHits < 0 || queryHits[index] < 0) {
+					queryHits[index] = -1;
+				}
+				else {
+					queryHits[index] = queryHits[index] + singleHits;
+				}
 				queryTimeStamps[index] = getCurrentDateTimeWithoutMilliseconds();
 			}
 		}
 		return new Hits(hitsTotal, queryHits, queryTimeStamps);
 	}
 
+	private static String formatNumberMatched(int hits) {
+		return hits < 0 ? "unknown" : "" + hits;
+	}
+
 	private void prebindNamespaces(final XMLStreamWriter xmlStream, final NamespaceBindings prebindNamespaces)
 			throws XMLStreamException {
 		if (prebindNamespaces == null) {
@@ -548,21 +584,33 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 		}
 	}
 
+	/**
+	 * Retrieves the features of the current page and writes them.
+	 * @param maxFeatures maximum number of features to write, the queries of the analyzer
+	 * may return one more feature to determine if there is a next page
+	 * @param pagingRequest request used to create the urls of the next and previous page,
+	 * <code>null</code> if response paging is disabled
+	 */
 	private void writeFeatureMembersCached(Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
 			GMLVersion outputFormat, int maxFeatures, int startIndex, QName featureMemberEl, Lock lock,
-			ResponsePagingUris responsePagingUris)
-			throws XMLStreamException, UnknownCRSException, TransformationException, FeatureStoreException,
-			FilterEvaluationException, FactoryConfigurationError, OWSException {
+			GetFeature pagingRequest) throws XMLStreamException, UnknownCRSException, TransformationException,
+			FeatureStoreException, FilterEvaluationException, FactoryConfigurationError, OWSException,
+			UnsupportedEncodingException {
 
 		FeatureCollection allFeatures = new GenericFeatureCollection();
 		Set<String> fids = new HashSet<String>();
+		String lastFeatureId = null;
 
 		// retrieve maxfeatures features
 		int featuresAdded = 0;
 		int featuresSkipped = 0;
+		boolean hasNextPage = false;
 		Map<FeatureStore, List<Query>> analysedQueries = analyzer.getQueries();
 		boolean applyMaxFeaturesAndStartIndex = checkIfMaxFeaturesAndStartIndexMustBeApplied(analysedQueries);
 		for (Map.Entry<FeatureStore, List<Query>> fsToQueries : analysedQueries.entrySet()) {
+			if (hasNextPage) {
+				break;
+			}
 			FeatureStore fs = fsToQueries.getKey();
 			Query[] queries = fsToQueries.getValue().toArray(new Query[fsToQueries.getValue().size()]);
 			FeatureInputStream rs = fs.query(queries);
@@ -571,24 +619,18 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 					if (lock != null && !lock.isLocked(feature.getId())) {
 						continue;
 					}
-					if (applyMaxFeaturesAndStartIndex) {
-						if (featuresAdded == maxFeatures) {
-							break;
-						}
-						if (featuresSkipped < startIndex) {
-							featuresSkipped++;
-						}
-						else if (!fids.contains(feature.getId())) {
-							allFeatures.add(feature);
-							fids.add(feature.getId());
-							featuresAdded++;
-						}
+					if (applyMaxFeaturesAndStartIndex && featuresSkipped < startIndex) {
+						featuresSkipped++;
 					}
-					else {
-						if (!fids.contains(feature.getId())) {
-							allFeatures.add(feature);
-							fids.add(feature.getId());
+					else if (!fids.contains(feature.getId())) {
+						if (maxFeatures >= 0 && featuresAdded == maxFeatures) {
+							hasNextPage = true;
+							break;
 						}
+						allFeatures.add(feature);
+						fids.add(feature.getId());
+						lastFeatureId = feature.getId();
+						featuresAdded++;
 					}
 				}
 			}
@@ -602,7 +644,16 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 		if (wfsVersion.equals(VERSION_200)) {
 			xmlStream.writeAttribute("numberMatched", "" + allFeatures.size());
 			xmlStream.writeAttribute("numberReturned", "" + allFeatures.size());
-			writeResponsePagingUris(xmlStream, responsePagingUris);
+			if (pagingRequest != null) {
+				BigInteger count = pagingRequest.getPresentationParams().getCount();
+				ResponsePagingUris responsePagingUris = createResponsePagingUris(pagingRequest, count, startIndex,
+						maxFeatures, hasNextPage);
+				if (responsePagingUris != null) {
+					String nextUri = ResponsePagingUtils.appendStartAfter(responsePagingUris.nextUri, lastFeatureId);
+					responsePagingUris = new ResponsePagingUris(nextUri, responsePagingUris.previousUri);
+				}
+				writeResponsePagingUris(xmlStream, responsePagingUris);
+			}
 		}
 		else if (!wfsVersion.equals(VERSION_100) && options.getResponseContainerEl() == null) {
 			xmlStream.writeAttribute("numberOfFeatures", "" + allFeatures.size());
@@ -796,6 +847,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 	}
 
 	private String createUrlWithStartindex(Map<String, String> kvpGetFeature, int startIndex) {
+		kvpGetFeature.remove("STARTAFTER");
 		kvpGetFeature.put("STARTINDEX", "" + startIndex);
 		return OGCFrontController.getHttpGetURL() + KVPUtils.toQueryString(kvpGetFeature);
 	}
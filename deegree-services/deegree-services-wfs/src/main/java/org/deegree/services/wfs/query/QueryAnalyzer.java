@@ -362,6 +362,22 @@ public class QueryAnalyzer {
 		return fsToQueries;
 	}
 
+	/**
+	 * Sets the id of the last feature of the previous page (keyset paging). It is only
+	 * passed to the feature store if the request results in a single feature store
+	 * query, as the key is meaningless for combined result sets.
+	 * @param startAfter id of the last feature of the previous page, may be
+	 * <code>null</code>
+	 */
+	public void setStartAfter(String startAfter) {
+		if (fsToQueries.size() == 1) {
+			List<Query> queries = fsToQueries.values().iterator().next();
+			if (queries.size() == 1) {
+				queries.get(0).setStartAfter(startAfter);
+			}
+		}
+	}
+
 	/**
 	 * Returns the original <code>GetFeature</code> query that the given query was derived
 	 * from.
@@ -34,6 +34,10 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.services.wfs.util;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.net.URLEncoder;
+
 /**
  * Contains methods to calculate the start index for response paging.
  *
@@ -48,12 +52,13 @@ public final class ResponsePagingUtils {
 	 * Calculates the start index of the next url, if the last page is not reached.
 	 * @param startIndex the start index of the request, must be >= 0
 	 * @param count the number of features requested, must be > 0
-	 * @param hits the number of features matched, must be >= 0
-	 * @return a value > 0 if a next page is available; -1 if there is no next page
+	 * @param hits the number of features matched, -1 if unknown
+	 * @return a value > 0 if a next page is available (or may be available, if the number
+	 * of features matched is unknown); -1 if there is no next page
 	 */
 	public static int calculateNextStartIndex(int startIndex, int count, int hits) {
 		int nextStartIndex = startIndex + count;
-		if (nextStartIndex < hits) {
+		if (hits < 0 || nextStartIndex < hits) {
 			return nextStartIndex;
 		}
 		return -1;
@@ -76,4 +81,21 @@ public final class ResponsePagingUtils {
 		return -1;
 	}
 
+	/**
+	 * Appends the (deegree specific) STARTAFTER parameter to the url of the next page.
+	 * Feature stores that support keyset paging continue the result set directly after
+	 * the given feature instead of skipping the features before STARTINDEX.
+	 * @param nextUri url of the next page, may be <code>null</code>
+	 * @param lastFeatureId id of the last feature of the current page, may be
+	 * <code>null</code>
+	 * @return the url of the next page with the STARTAFTER parameter, the passed url if
+	 * one of the parameters is <code>null</code>
+	 */
+	public static String appendStartAfter(String nextUri, String lastFeatureId) {
+		if (nextUri == null || lastFeatureId == null) {
+			return nextUri;
+		}
+		return nextUri + "&STARTAFTER=" + URLEncoder.encode(lastFeatureId, UTF_8);
+	}
+
 }
\ No newline at end of file
@@ -76,6 +76,12 @@ public class ResponsePagingUtilsTest {
 		assertThat(nextStartIndex, is(-1));
 	}
 
+	@Test
+	public void testCalculateNextStartIndex_HitsUnknown() {
+		int nextStartIndex = ResponsePagingUtils.calculateNextStartIndex(90, 10, -1);
+		assertThat(nextStartIndex, is(100));
+	}
+
 	@Test
 	public void testCalculatePreviosStartIndex_FirstPage() {
 		int nextStartIndex = ResponsePagingUtils.calculatePreviousStartIndex(10, 20);
@@ -100,4 +106,16 @@ public class ResponsePagingUtilsTest {
 		assertThat(nextStartIndex, is(-1));
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testAppendStartAfter() {
+		String nextUri = ResponsePagingUtils.appendStartAfter("http://localhost/wfs?STARTINDEX=10", "FT_1#2");
+		assertThat(nextUri, is("http://localhost/wfs?STARTINDEX=10&STARTAFTER=FT_1%232"));
+	}
+
+	@Test
+	public void testAppendStartAfter_NoFeature() {
+		String nextUri = ResponsePagingUtils.appendStartAfter("http://localhost/wfs?STARTINDEX=10", null);
+		assertThat(nextUri, is("http://localhost/wfs?STARTINDEX=10"));
+	}
+
+}
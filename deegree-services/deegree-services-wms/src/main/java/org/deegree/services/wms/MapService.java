@@ -51,12 +51,15 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 
 import javax.imageio.ImageIO;
+import javax.xml.namespace.QName;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.utils.Pair;
@@ -65,12 +68,17 @@ import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.Features;
 import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.feature.persistence.FeatureStores;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.OperatorFilter;
+import org.deegree.geometry.Envelope;
 import org.deegree.layer.Layer;
 import org.deegree.layer.LayerData;
 import org.deegree.layer.LayerQuery;
 import org.deegree.layer.LayerRef;
+import org.deegree.layer.persistence.feature.FeatureLayer;
 import org.deegree.protocol.wms.filter.EnvFunction;
 import org.deegree.protocol.wms.filter.ScaleFunction;
 import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
@@ -124,6 +132,10 @@ public class MapService {
 
 	private final RequestedLayerVisibilityInspector visibilityInspector;
 
+	private final ParallelLayerRenderer parallelRenderer;
+
+	private FeatureStoreChangeListener envelopeListener;
+
 	/**
 	 * @param conf
 	 * @param workspace
@@ -164,10 +176,13 @@ public class MapService {
 				}
 			}
 			copyright = parseCopyright(metadata, conf.getCopyright());
+			envelopeListener = new ThemeEnvelopeUpdater();
+			FeatureStores.addChangeListener(envelopeListener);
 		}
 		getLegendHandler = new GetLegendHandler(this);
 
 		visibilityInspector = new RequestedLayerVisibilityInspector(conf.getVisibilityInspector(), workspace);
+		parallelRenderer = ParallelLayerRenderer.create(conf.getParallelRendering());
 	}
 
 	/**
@@ -238,15 +253,20 @@ public class MapService {
 
 		try {
 			List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList(gm, headers, scale, queryIter);
-			Iterator<MapOptions> optIter = mapOptions.iterator();
-			for (LayerData d : layerDataList) {
-				ctx.applyOptions(optIter.next());
-				try {
-					d.render(ctx);
-				}
-				catch (InterruptedException e) {
-					String msg = "Request time-out.";
-					throw new OWSException(msg, NO_APPLICABLE_CODE);
+			if (parallelRenderer != null && layerDataList.size() > 1 && ParallelLayerRenderer.isApplicable(ctx)) {
+				parallelRenderer.render(gm, layerDataList, mapOptions, ctx);
+			}
+			else {
+				Iterator<MapOptions> optIter = mapOptions.iterator();
+				for (LayerData d : layerDataList) {
+					ctx.applyOptions(optIter.next());
+					try {
+						d.render(ctx);
+					}
+					catch (InterruptedException e) {
+						String msg = "Request time-out.";
+						throw new OWSException(msg, NO_APPLICABLE_CODE);
+					}
 				}
 			}
 			ctx.optimizeAndDrawLabels();
@@ -260,6 +280,45 @@ public class MapService {
 		}
 	}
 
+	/**
+	 * @param gm the request, never <code>null</code>
+	 * @return <code>true</code> if the visibility of a requested layer is checked by a
+	 * {@link org.deegree.services.wms.visibility.LayerVisibilityInspector}, so the map may
+	 * depend on the context of the request
+	 */
+	public boolean hasVisibilityInspectors(org.deegree.protocol.wms.ops.GetMap gm) {
+		for (LayerRef lr : gm.getLayers()) {
+			if (lr.getName() != null && visibilityInspector.hasInspectors(lr.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param gm the request, never <code>null</code>
+	 * @return the feature stores and feature types the requested layers are rendered
+	 * from, a <code>null</code> feature type name stands for all feature types of the
+	 * store, never <code>null</code>
+	 */
+	public Set<Pair<FeatureStore, QName>> getFeatureSources(org.deegree.protocol.wms.ops.GetMap gm) {
+		Set<Pair<FeatureStore, QName>> sources = new HashSet<Pair<FeatureStore, QName>>();
+		for (LayerRef lr : gm.getLayers()) {
+			Theme theme = lr.getName() == null ? null : themeMap.get(lr.getName());
+			if (theme == null) {
+				continue;
+			}
+			for (Layer layer : getAllLayers(theme)) {
+				if (layer instanceof FeatureLayer) {
+					FeatureLayer featureLayer = (FeatureLayer) layer;
+					sources.add(new Pair<FeatureStore, QName>(featureLayer.getFeatureStore(),
+							featureLayer.getFeatureType()));
+				}
+			}
+		}
+		return sources;
+	}
+
 	private List<LayerData> checkStyleValidAndBuildLayerDataList(org.deegree.protocol.wms.ops.GetMap gm,
 			List<String> headers, double scale, ListIterator<LayerQuery> queryIter) throws OWSException {
 		List<LayerData> layerDataList = new ArrayList<LayerData>();
@@ -466,6 +525,18 @@ public class MapService {
 		return updateSequence;
 	}
 
+	/**
+	 * Releases resources held by this map service.
+	 */
+	public void destroy() {
+		if (parallelRenderer != null) {
+			parallelRenderer.destroy();
+		}
+		if (envelopeListener != null) {
+			FeatureStores.removeChangeListener(envelopeListener);
+		}
+	}
+
 	private Copyright parseCopyright(ResourceMetadata<OWS> metadata, CopyrightType copyright) {
 		if (copyright != null) {
 			String copyrightText = copyright.getText();
@@ -506,4 +577,26 @@ public class MapService {
 		return null;
 	}
 
+	/**
+	 * Aggregates the spatial metadata of the themes again when a feature store determined
+	 * a layer envelope in the background.
+	 */
+	private class ThemeEnvelopeUpdater implements FeatureStoreChangeListener {
+
+		@Override
+		public void featuresChanged(FeatureStore store, QName ftName, Envelope envelope) {
+			// envelope changes are announced separately
+		}
+
+		@Override
+		public void envelopeChanged(FeatureStore store, QName ftName, Envelope envelope) {
+			synchronized (MapService.this) {
+				for (Theme theme : themes) {
+					Themes.aggregateSpatialMetadata(theme);
+				}
+			}
+		}
+
+	}
+
 }
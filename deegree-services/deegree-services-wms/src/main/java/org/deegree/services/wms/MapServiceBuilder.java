@@ -80,6 +80,7 @@ class MapServiceBuilder {
 	MapOptions buildMapOptions() {
 		int maxFeatures = 10000;
 		int featureInfoRadius = 1;
+		double generalizationTolerance = 0;
 		if (conf != null) {
 			LayerOptionsType sf = conf.getDefaultLayerOptions();
 			alias = handleDefaultValue(sf == null ? null : sf.getAntiAliasing(), Antialias.class, BOTH);
@@ -101,11 +102,16 @@ class MapServiceBuilder {
 			else {
 				LOG.debug("Using default feature info radius of {}.", featureInfoRadius);
 			}
+			if (sf != null && sf.getGeneralizationTolerance() != null) {
+				generalizationTolerance = Math.max(0, sf.getGeneralizationTolerance());
+				LOG.debug("Using global generalization tolerance of {} pixels.", generalizationTolerance);
+			}
 			return new MapOptions.Builder().quality(quali)
 				.interpolation(interpol)
 				.antialias(alias)
 				.maxFeatures(maxFeatures)
 				.featureInfoRadius(featureInfoRadius)
+				.generalizationTolerance(generalizationTolerance)
 				.build();
 		}
 		return null;
@@ -0,0 +1,229 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.layer.LayerData;
+import org.deegree.protocol.wms.filter.EnvFunction;
+import org.deegree.protocol.wms.filter.ScaleFunction;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.rendering.r2d.context.ImageRenderContext;
+import org.deegree.rendering.r2d.context.LazyImageRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.services.jaxb.wms.ParallelRenderingType;
+import org.slf4j.Logger;
+
+/**
+ * Renders the layers of a GetMap request concurrently. Every {@link LayerData} is
+ * rendered into an off-screen image on a shared, bounded thread pool. The images are
+ * painted into the target context in request order, and the labels of all layers are
+ * handed over to the target context, so label placement still happens once for the
+ * whole map.
+ */
+class ParallelLayerRenderer {
+
+	private static final Logger LOG = getLogger(ParallelLayerRenderer.class);
+
+	private final ExecutorService executor;
+
+	private final int maxLayersPerRequest;
+
+	ParallelLayerRenderer(int maxThreads, int maxLayersPerRequest) {
+		this.executor = Executors.newFixedThreadPool(maxThreads, new RenderThreadFactory());
+		this.maxLayersPerRequest = maxLayersPerRequest;
+		LOG.info("Rendering GetMap layers in parallel using {} threads, at most {} layers per request.", maxThreads,
+				maxLayersPerRequest);
+	}
+
+	/**
+	 * @param conf may be <code>null</code>
+	 * @return a renderer configured from the given config bean, <code>null</code> if
+	 * parallel rendering is not configured
+	 */
+	static ParallelLayerRenderer create(ParallelRenderingType conf) {
+		if (conf == null) {
+			return null;
+		}
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		if (conf.getMaxThreads() != null && conf.getMaxThreads() > 0) {
+			maxThreads = conf.getMaxThreads();
+		}
+		int maxLayersPerRequest = maxThreads;
+		if (conf.getMaxLayersPerRequest() != null && conf.getMaxLayersPerRequest() > 0) {
+			maxLayersPerRequest = conf.getMaxLayersPerRequest();
+		}
+		return new ParallelLayerRenderer(maxThreads, maxLayersPerRequest);
+	}
+
+	/**
+	 * @param ctx the context to render into
+	 * @return true, if the layers to be rendered into the given context can be rendered
+	 * in parallel
+	 */
+	static boolean isApplicable(RenderContext ctx) {
+		return ctx instanceof ImageRenderContext || ctx instanceof LazyImageRenderContext;
+	}
+
+	/**
+	 * Renders the layers into the given context. Labels are not drawn, call
+	 * {@link RenderContext#optimizeAndDrawLabels()} afterwards.
+	 * @param gm the request, never <code>null</code>
+	 * @param layers the layers to render, in request order
+	 * @param options the map options of the layers, same order as the layers
+	 * @param ctx the context to composite the layer images into
+	 * @throws OWSException if rendering of a layer failed or the request timed out
+	 */
+	void render(GetMap gm, List<LayerData> layers, List<MapOptions> options, RenderContext ctx)
+			throws OWSException {
+		RenderingInfo info = new RenderingInfo("image/png", gm.getWidth(), gm.getHeight(), true, null,
+				gm.getBoundingBox(), gm.getPixelSize(), gm.getParameterMap());
+		Double scale = ScaleFunction.getCurrentScaleValue().get();
+		Map<String, Object> env = EnvFunction.getCurrentEnvValue().get();
+		if (ctx instanceof LazyImageRenderContext) {
+			// the layer images are transparent, background and format come from the request
+			((LazyImageRenderContext) ctx).createTargetImage();
+		}
+
+		List<Future<ImageRenderContext>> futures = new ArrayList<Future<ImageRenderContext>>(layers.size());
+		try {
+			for (int i = 0; i < layers.size() && i < maxLayersPerRequest; ++i) {
+				futures.add(submit(layers.get(i), options.get(i), info, scale, env));
+			}
+			for (int i = 0; i < layers.size(); ++i) {
+				ImageRenderContext layerCtx = futures.get(i).get();
+				futures.set(i, null);
+				int next = i + maxLayersPerRequest;
+				if (next < layers.size()) {
+					futures.add(submit(layers.get(next), options.get(next), info, scale, env));
+				}
+				ctx.applyOptions(options.get(i));
+				ctx.paintImage(layerCtx.getImage());
+				ctx.getLabelRenderer().getLabels().addAll(layerCtx.getLabelRenderer().getLabels());
+			}
+		}
+		catch (InterruptedException e) {
+			throw new OWSException("Request time-out.", NO_APPLICABLE_CODE);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InterruptedException) {
+				throw new OWSException("Request time-out.", NO_APPLICABLE_CODE);
+			}
+			if (cause instanceof OWSException) {
+				throw (OWSException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new OWSException(cause.getMessage(), cause, NO_APPLICABLE_CODE);
+		}
+		finally {
+			for (Future<ImageRenderContext> f : futures) {
+				if (f != null) {
+					f.cancel(true);
+				}
+			}
+		}
+	}
+
+	private Future<ImageRenderContext> submit(final LayerData layer, final MapOptions options,
+			final RenderingInfo info, final Double scale, final Map<String, Object> env) {
+		return executor.submit(new Callable<ImageRenderContext>() {
+			@Override
+			public ImageRenderContext call() throws Exception {
+				ScaleFunction.getCurrentScaleValue().set(scale);
+				EnvFunction.getCurrentEnvValue().set(env);
+				ImageRenderContext layerCtx = ImageRenderContext.createOffscreenInstance(info);
+				try {
+					layerCtx.applyOptions(options);
+					layer.render(layerCtx);
+				}
+				finally {
+					ScaleFunction.getCurrentScaleValue().remove();
+					EnvFunction.getCurrentEnvValue().remove();
+					closeQuietly(layerCtx);
+				}
+				return layerCtx;
+			}
+		});
+	}
+
+	private static void closeQuietly(ImageRenderContext ctx) {
+		try {
+			ctx.close();
+		}
+		catch (IOException e) {
+			LOG.debug("Could not close off-screen render context: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Shuts down the rendering thread pool.
+	 */
+	void destroy() {
+		executor.shutdownNow();
+	}
+
+	private static class RenderThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "wms-layer-renderer-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+
+	}
+
+}
@@ -0,0 +1,548 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.cache;
+
+import static java.util.Arrays.asList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.utils.Pair;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.FeatureStoreChangeListener;
+import org.deegree.feature.persistence.FeatureStores;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.layer.LayerRef;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.services.jaxb.wms.GetMapCacheType;
+import org.deegree.style.StyleRef;
+import org.deegree.workspace.ResourceLocation;
+import org.slf4j.Logger;
+
+/**
+ * Caches encoded GetMap responses in memory and optionally on disk. Requests are
+ * identified by a normalized key built from all request parameters, see
+ * {@link #createKey(GetMap, Map)}. Entries are dropped when features of a feature type
+ * they have been rendered from are changed within or near their bounding box by a
+ * feature store transaction. Both tiers are bounded in size and evict least recently
+ * used entries first, entries evicted from memory are moved to disk if a cache
+ * directory is configured. Files are read and written outside of the cache lock.
+ */
+public class GetMapCache implements FeatureStoreChangeListener {
+
+	private static final Logger LOG = getLogger(GetMapCache.class);
+
+	// parameters covered by the normalized part of the key
+	private static final Set<String> REQUEST_PARAMS = new HashSet<String>(asList("SERVICE", "REQUEST", "VERSION",
+			"WMTVER", "LAYERS", "STYLES", "SRS", "CRS", "BBOX", "WIDTH", "HEIGHT", "FORMAT", "TRANSPARENT", "BGCOLOR",
+			"EXCEPTIONS"));
+
+	// parameters whose values are hashed instead of being part of the key
+	private static final Set<String> HASHED_PARAMS = new HashSet<String>(asList("SLD", "SLD_BODY"));
+
+	private static final long MEGABYTE = 1024 * 1024;
+
+	private final long maxMemory;
+
+	private final File directory;
+
+	private final long maxDisk;
+
+	private final int metaTiles;
+
+	private final LinkedHashMap<String, CachedMap> memory = new LinkedHashMap<String, CachedMap>(16, 0.75f, true);
+
+	private final LinkedHashMap<String, CachedMap> disk = new LinkedHashMap<String, CachedMap>(16, 0.75f, true);
+
+	private long memorySize;
+
+	private long diskSize;
+
+	private long generation;
+
+	private long fileCounter;
+
+	/**
+	 * @param maxMemory maximum number of bytes kept in memory
+	 * @param directory directory for entries evicted from memory, may be
+	 * <code>null</code> (no disk cache)
+	 * @param maxDisk maximum number of bytes kept on disk
+	 * @param metaTiles number of tiles per row and column rendered at once for tile
+	 * requests, 1 disables meta tiling
+	 */
+	public GetMapCache(long maxMemory, File directory, long maxDisk, int metaTiles) {
+		this.maxMemory = maxMemory;
+		this.directory = directory;
+		this.maxDisk = maxDisk;
+		this.metaTiles = metaTiles;
+		if (directory != null) {
+			directory.mkdirs();
+			deleteFiles();
+		}
+		FeatureStores.addChangeListener(this);
+		LOG.info("Caching GetMap responses using {} bytes of memory{}{}.", maxMemory,
+				directory == null ? "" : " and " + maxDisk + " bytes in " + directory,
+				metaTiles > 1 ? ", meta tiles of " + metaTiles + "x" + metaTiles + " tiles" : "");
+	}
+
+	/**
+	 * @param conf may be <code>null</code>
+	 * @param location the location of the service configuration, never
+	 * <code>null</code>
+	 * @return a cache configured from the given config bean, <code>null</code> if
+	 * caching is not configured
+	 */
+	public static GetMapCache create(GetMapCacheType conf, ResourceLocation<?> location) {
+		if (conf == null) {
+			return null;
+		}
+		long maxMemory = MEGABYTE * (conf.getMaxMemory() != null ? conf.getMaxMemory() : 64);
+		long maxDisk = MEGABYTE * (conf.getMaxDiskSize() != null ? conf.getMaxDiskSize() : 1024);
+		int metaTiles = conf.getMetaTiles() != null ? conf.getMetaTiles() : 1;
+		File directory = null;
+		if (conf.getDirectory() != null) {
+			directory = new File(conf.getDirectory());
+			if (!directory.isAbsolute()) {
+				directory = location.resolveToFile(conf.getDirectory());
+			}
+		}
+		return new GetMapCache(maxMemory, directory, maxDisk, metaTiles);
+	}
+
+	/**
+	 * @param gm the request, never <code>null</code>
+	 * @param kvp the request parameters, never <code>null</code>
+	 * @return the cache key of the request, never <code>null</code>
+	 */
+	public String createKey(GetMap gm, Map<String, String> kvp) {
+		return createKeyPrefix(gm, kvp) + MetaTile.getBBoxKey(gm);
+	}
+
+	/**
+	 * @param gm the request, never <code>null</code>
+	 * @param kvp the request parameters, never <code>null</code>
+	 * @return the meta tile to render instead of the request, <code>null</code> if meta
+	 * tiling is disabled or not possible for the request
+	 */
+	public MetaTile getMetaTile(GetMap gm, Map<String, String> kvp) {
+		if (metaTiles < 2) {
+			return null;
+		}
+		return MetaTile.create(createKeyPrefix(gm, kvp), gm, kvp, metaTiles);
+	}
+
+	private static String createKeyPrefix(GetMap gm, Map<String, String> kvp) {
+		StringBuilder sb = new StringBuilder();
+		for (LayerRef layer : gm.getLayers()) {
+			sb.append(layer.getName()).append(',');
+		}
+		sb.append('|');
+		for (StyleRef style : gm.getStyles()) {
+			sb.append(style == null ? "" : style.getName()).append(',');
+		}
+		ICRS crs = gm.getCoordinateSystem();
+		sb.append('|').append(crs == null ? "" : crs.getAlias());
+		sb.append('|').append(gm.getFormat());
+		sb.append('|').append(gm.getTransparent());
+		Color bgColor = gm.getBgColor();
+		sb.append('|').append(bgColor == null ? "" : Integer.toHexString(bgColor.getRGB()));
+		sb.append('|').append(gm.getWidth()).append('x').append(gm.getHeight());
+		// vendor specific parameters, dimensions and SLDs in a defined order
+		for (Entry<String, String> param : new TreeMap<String, String>(kvp).entrySet()) {
+			String name = param.getKey().toUpperCase();
+			if (REQUEST_PARAMS.contains(name)) {
+				continue;
+			}
+			String value = param.getValue();
+			if (HASHED_PARAMS.contains(name) && value != null) {
+				value = hash(value);
+			}
+			sb.append('|').append(name).append('=').append(value);
+		}
+		sb.append('|');
+		return sb.toString();
+	}
+
+	/**
+	 * @return the current generation, pass it to
+	 * {@link #put(String, Envelope, byte[], List, Collection, long)} when storing a map
+	 * rendered afterwards
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @param key the cache key, never <code>null</code>
+	 * @return the cached map, <code>null</code> if there is none
+	 */
+	public CachedMap get(String key) {
+		CachedMap cached;
+		synchronized (this) {
+			cached = memory.get(key);
+			if (cached == null) {
+				cached = disk.get(key);
+			}
+		}
+		if (cached == null || cached.file == null) {
+			return cached;
+		}
+		try {
+			// the data of a map moved to disk is kept until the file has been written
+			byte[] data = cached.data;
+			if (data == null) {
+				data = Files.readAllBytes(cached.file.toPath());
+			}
+			return new CachedMap(cached.envelope, data, cached.headers, cached.sources);
+		}
+		catch (IOException e) {
+			// most probably invalidated concurrently
+			LOG.debug("Unable to read cached map: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stores an encoded map. The map is not stored if the cache has been invalidated
+	 * since the given generation was obtained, as it may have been rendered from
+	 * outdated data.
+	 * @param key the cache key, never <code>null</code>
+	 * @param envelope the bounding box of the map, never <code>null</code>
+	 * @param data the encoded map, never <code>null</code>
+	 * @param headers warning headers of the response, never <code>null</code>
+	 * @param sources the feature stores and feature types the map has been rendered
+	 * from, a <code>null</code> feature type name stands for all feature types of the
+	 * store, never <code>null</code>
+	 * @param generation the generation obtained before rendering started
+	 * @return the cached map, never <code>null</code>
+	 */
+	public CachedMap put(String key, Envelope envelope, byte[] data, List<String> headers,
+			Collection<Pair<FeatureStore, QName>> sources, long generation) {
+		CachedMap cached = new CachedMap(envelope, data, new ArrayList<String>(headers), sources);
+		List<Entry<String, CachedMap>> toWrite = new ArrayList<Entry<String, CachedMap>>();
+		List<File> toDelete = new ArrayList<File>();
+		synchronized (this) {
+			if (generation != this.generation || data.length > maxMemory) {
+				return cached;
+			}
+			remove(key, toDelete);
+			memory.put(key, cached);
+			memorySize += data.length;
+			Iterator<Entry<String, CachedMap>> iter = memory.entrySet().iterator();
+			while (memorySize > maxMemory && iter.hasNext()) {
+				Entry<String, CachedMap> eldest = iter.next();
+				iter.remove();
+				memorySize -= eldest.getValue().size;
+				if (directory != null) {
+					moveToDisk(eldest.getKey(), eldest.getValue(), toWrite, toDelete);
+				}
+			}
+		}
+		for (Entry<String, CachedMap> entry : toWrite) {
+			write(entry.getKey(), entry.getValue());
+		}
+		delete(toDelete);
+		return cached;
+	}
+
+	private void moveToDisk(String key, CachedMap cached, List<Entry<String, CachedMap>> toWrite,
+			List<File> toDelete) {
+		if (cached.size > maxDisk) {
+			return;
+		}
+		// the data is kept until the file has been written, see write()
+		CachedMap onDisk = new CachedMap(cached.envelope, cached.data, cached.headers, cached.sources,
+				new File(directory, hash(key) + "-" + (++fileCounter) + ".map"));
+		disk.put(key, onDisk);
+		diskSize += onDisk.size;
+		toWrite.add(new SimpleEntry<String, CachedMap>(key, onDisk));
+		Iterator<Entry<String, CachedMap>> iter = disk.entrySet().iterator();
+		while (diskSize > maxDisk && iter.hasNext()) {
+			Entry<String, CachedMap> eldest = iter.next();
+			iter.remove();
+			diskSize -= eldest.getValue().size;
+			toDelete.add(eldest.getValue().file);
+		}
+	}
+
+	private void write(String key, CachedMap cached) {
+		try {
+			Files.write(cached.file.toPath(), cached.data);
+		}
+		catch (IOException e) {
+			LOG.warn("Unable to write cached map to disk: {}", e.getMessage());
+			synchronized (this) {
+				if (disk.get(key) == cached) {
+					disk.remove(key);
+					diskSize -= cached.size;
+				}
+			}
+			cached.file.delete();
+			return;
+		}
+		boolean removed;
+		synchronized (this) {
+			removed = disk.get(key) != cached;
+			cached.data = null;
+		}
+		if (removed) {
+			// invalidated or evicted while writing
+			cached.file.delete();
+		}
+	}
+
+	private void remove(String key, List<File> toDelete) {
+		CachedMap cached = memory.remove(key);
+		if (cached != null) {
+			memorySize -= cached.size;
+		}
+		cached = disk.remove(key);
+		if (cached != null) {
+			diskSize -= cached.size;
+			toDelete.add(cached.file);
+		}
+	}
+
+	private static void delete(List<File> files) {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	@Override
+	public void featuresChanged(FeatureStore store, QName ftName, Envelope envelope) {
+		List<File> toDelete = new ArrayList<File>();
+		synchronized (this) {
+			++generation;
+			Map<ICRS, Envelope> transformed = new HashMap<ICRS, Envelope>();
+			List<String> invalid = new ArrayList<String>();
+			for (Entry<String, CachedMap> entry : memory.entrySet()) {
+				if (isAffected(entry.getValue(), store, ftName, envelope, transformed)) {
+					invalid.add(entry.getKey());
+				}
+			}
+			for (Entry<String, CachedMap> entry : disk.entrySet()) {
+				if (isAffected(entry.getValue(), store, ftName, envelope, transformed)) {
+					invalid.add(entry.getKey());
+				}
+			}
+			LOG.debug("Removing {} maps from GetMap cache after change of feature type {}.", invalid.size(), ftName);
+			for (String key : invalid) {
+				remove(key, toDelete);
+			}
+		}
+		delete(toDelete);
+	}
+
+	private static boolean isAffected(CachedMap cached, FeatureStore store, QName ftName, Envelope changed,
+			Map<ICRS, Envelope> transformed) {
+		if (!dependsOn(cached, store, ftName)) {
+			return false;
+		}
+		if (changed == null || changed.getCoordinateSystem() == null) {
+			return true;
+		}
+		return isAffected(cached.envelope, changed, transformed);
+	}
+
+	private static boolean dependsOn(CachedMap cached, FeatureStore store, QName ftName) {
+		if (store == null) {
+			return true;
+		}
+		for (Pair<FeatureStore, QName> source : cached.sources) {
+			if (source.first == store && (source.second == null || ftName == null || source.second.equals(ftName))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isAffected(Envelope cached, Envelope changed, Map<ICRS, Envelope> transformed) {
+		ICRS crs = cached.getCoordinateSystem();
+		if (crs == null) {
+			return true;
+		}
+		Envelope env = transformed.get(crs);
+		if (env == null) {
+			if (transformed.containsKey(crs)) {
+				// transformation failed before
+				return true;
+			}
+			try {
+				env = changed;
+				if (!crs.equals(changed.getCoordinateSystem())) {
+					env = new GeometryTransformer(crs).transform(changed);
+				}
+			}
+			catch (Exception e) {
+				LOG.debug("Unable to transform changed envelope to {}: {}", crs.getAlias(), e.getMessage());
+				env = null;
+			}
+			transformed.put(crs, env);
+			if (env == null) {
+				return true;
+			}
+		}
+		// symbols and labels of features outside of the map may be rendered into it
+		double buffer0 = cached.getSpan0() / 2;
+		double buffer1 = cached.getSpan1() / 2;
+		return env.getMin().get0() <= cached.getMax().get0() + buffer0
+				&& env.getMax().get0() >= cached.getMin().get0() - buffer0
+				&& env.getMin().get1() <= cached.getMax().get1() + buffer1
+				&& env.getMax().get1() >= cached.getMin().get1() - buffer1;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		List<File> toDelete = new ArrayList<File>();
+		synchronized (this) {
+			memory.clear();
+			memorySize = 0;
+			for (CachedMap cached : disk.values()) {
+				toDelete.add(cached.file);
+			}
+			disk.clear();
+			diskSize = 0;
+		}
+		delete(toDelete);
+	}
+
+	/**
+	 * Removes all entries and stops listening to feature store changes.
+	 */
+	public void destroy() {
+		FeatureStores.removeChangeListener(this);
+		clear();
+	}
+
+	private void deleteFiles() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(".map"));
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+	}
+
+	private static String hash(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			// SHA-256 is required to be supported by every JVM
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * An encoded map with the warning headers of the response.
+	 */
+	public static class CachedMap {
+
+		private final Envelope envelope;
+
+		// null for maps on disk, once the file has been written
+		private volatile byte[] data;
+
+		private final List<String> headers;
+
+		private final Collection<Pair<FeatureStore, QName>> sources;
+
+		private final long size;
+
+		private final File file;
+
+		CachedMap(Envelope envelope, byte[] data, List<String> headers,
+				Collection<Pair<FeatureStore, QName>> sources) {
+			this(envelope, data, headers, sources, null);
+		}
+
+		private CachedMap(Envelope envelope, byte[] data, List<String> headers,
+				Collection<Pair<FeatureStore, QName>> sources, File file) {
+			this.envelope = envelope;
+			this.data = data;
+			this.headers = Collections.unmodifiableList(headers);
+			this.sources = sources;
+			this.size = data.length;
+			this.file = file;
+		}
+
+		/**
+		 * @return the encoded map, never <code>null</code>
+		 */
+		public byte[] getData() {
+			return data;
+		}
+
+		/**
+		 * @return the warning headers of the response, never <code>null</code>
+		 */
+		public List<String> getHeaders() {
+			return headers;
+		}
+
+	}
+
+}
@@ -0,0 +1,243 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.cache;
+
+import static org.deegree.cs.components.Axis.AO_EAST;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.protocol.wms.ops.GetMap;
+
+/**
+ * A block of n x n tiles of a tile grid that is rendered at once. The grid is derived
+ * from the requested bounding box: a request is considered to be a tile if the lower
+ * left corner of its bounding box is a multiple of the box size (grid origin is 0, 0).
+ */
+public class MetaTile {
+
+	// tolerance in tile units when checking whether a bbox is aligned to a tile grid
+	private static final double GRID_TOLERANCE = 1e-4;
+
+	// maximum width/height of a meta tile in pixels
+	private static final int MAX_SIZE = 4096;
+
+	private static final GeometryFactory FAC = new GeometryFactory();
+
+	private final String keyPrefix;
+
+	private final double span0, span1;
+
+	private final long firstColumn, firstRow;
+
+	private final int tiles;
+
+	private final int tileWidth, tileHeight;
+
+	private final ICRS crs;
+
+	private MetaTile(String keyPrefix, double span0, double span1, long firstColumn, long firstRow, int tiles,
+			int tileWidth, int tileHeight, ICRS crs) {
+		this.keyPrefix = keyPrefix;
+		this.span0 = span0;
+		this.span1 = span1;
+		this.firstColumn = firstColumn;
+		this.firstRow = firstRow;
+		this.tiles = tiles;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.crs = crs;
+	}
+
+	/**
+	 * @param gm the request, never <code>null</code>
+	 * @return the cache key part identifying the bounding box of the request, never
+	 * <code>null</code>. Requests aligned to a tile grid are identified by their grid
+	 * position, so that rounding differences of clients do not matter.
+	 */
+	static String getBBoxKey(GetMap gm) {
+		Envelope bbox = gm.getBoundingBox();
+		long[] pos = getGridPosition(bbox);
+		if (pos != null) {
+			return getGridKey(bbox.getSpan0(), bbox.getSpan1(), pos[0], pos[1]);
+		}
+		return bbox.getMin().get0() + "," + bbox.getMin().get1() + "," + bbox.getMax().get0() + ","
+				+ bbox.getMax().get1();
+	}
+
+	/**
+	 * @param keyPrefix the cache key of the request without the bbox part
+	 * @param gm the request, never <code>null</code>
+	 * @param kvp the request parameters, never <code>null</code>
+	 * @param tiles the number of tiles per row and column
+	 * @return the meta tile containing the requested tile, or <code>null</code> if the
+	 * request is not aligned to a tile grid or can not be meta tiled
+	 */
+	static MetaTile create(String keyPrefix, GetMap gm, Map<String, String> kvp, int tiles) {
+		Envelope bbox = gm.getBoundingBox();
+		String crsParam = kvp.containsKey("CRS") ? kvp.get("CRS") : kvp.get("SRS");
+		if (tiles < 2 || crsParam == null || crsParam.toUpperCase().startsWith("AUTO") || !isXyOrdered(bbox)) {
+			return null;
+		}
+		if (gm.getWidth() * tiles > MAX_SIZE || gm.getHeight() * tiles > MAX_SIZE) {
+			return null;
+		}
+		long[] pos = getGridPosition(bbox);
+		if (pos == null) {
+			return null;
+		}
+		long firstColumn = Math.floorDiv(pos[0], tiles) * tiles;
+		long firstRow = Math.floorDiv(pos[1], tiles) * tiles;
+		return new MetaTile(keyPrefix, bbox.getSpan0(), bbox.getSpan1(), firstColumn, firstRow, tiles,
+				gm.getWidth(), gm.getHeight(), bbox.getCoordinateSystem());
+	}
+
+	private static long[] getGridPosition(Envelope bbox) {
+		double span0 = bbox.getSpan0();
+		double span1 = bbox.getSpan1();
+		if (!(span0 > 0 && span1 > 0)) {
+			return null;
+		}
+		double col = bbox.getMin().get0() / span0;
+		double row = bbox.getMin().get1() / span1;
+		double roundedCol = Math.rint(col);
+		double roundedRow = Math.rint(row);
+		if (Math.abs(col - roundedCol) > GRID_TOLERANCE || Math.abs(row - roundedRow) > GRID_TOLERANCE
+				|| Math.abs(roundedCol) > Long.MAX_VALUE / 2 || Math.abs(roundedRow) > Long.MAX_VALUE / 2) {
+			return null;
+		}
+		return new long[] { (long) roundedCol, (long) roundedRow };
+	}
+
+	private static String getGridKey(double span0, double span1, long col, long row) {
+		return String.format(Locale.ROOT, "%.9g,%.9g@%d,%d", span0, span1, col, row);
+	}
+
+	private static boolean isXyOrdered(Envelope bbox) {
+		ICRS crs = bbox.getCoordinateSystem();
+		try {
+			return crs == null || crs.getAlias().equals("CRS:1") || crs.getAxis()[0].getOrientation() == AO_EAST;
+		}
+		catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the number of tiles per row and column
+	 */
+	public int getTiles() {
+		return tiles;
+	}
+
+	/**
+	 * @return the width of the whole meta tile in pixels
+	 */
+	public int getWidth() {
+		return tileWidth * tiles;
+	}
+
+	/**
+	 * @return the height of the whole meta tile in pixels
+	 */
+	public int getHeight() {
+		return tileHeight * tiles;
+	}
+
+	/**
+	 * @return the bounding box of the whole meta tile
+	 */
+	public Envelope getEnvelope() {
+		return FAC.createEnvelope(firstColumn * span0, firstRow * span1, (firstColumn + tiles) * span0,
+				(firstRow + tiles) * span1, crs);
+	}
+
+	/**
+	 * @param column the column within the meta tile, 0 is the left column
+	 * @param row the row within the meta tile, 0 is the top row
+	 * @return the bounding box of the tile
+	 */
+	public Envelope getTileEnvelope(int column, int row) {
+		long col = firstColumn + column;
+		long gridRow = firstRow + tiles - 1 - row;
+		return FAC.createEnvelope(col * span0, gridRow * span1, (col + 1) * span0, (gridRow + 1) * span1, crs);
+	}
+
+	/**
+	 * @param column the column within the meta tile, 0 is the left column
+	 * @param row the row within the meta tile, 0 is the top row
+	 * @return the cache key of the tile
+	 */
+	public String getTileKey(int column, int row) {
+		return keyPrefix + getGridKey(span0, span1, firstColumn + column, firstRow + tiles - 1 - row);
+	}
+
+	/**
+	 * @param image the rendered meta tile
+	 * @param column the column within the meta tile, 0 is the left column
+	 * @param row the row within the meta tile, 0 is the top row
+	 * @return a copy of the tile area of the image
+	 */
+	public BufferedImage getTileImage(BufferedImage image, int column, int row) {
+		BufferedImage tile = new BufferedImage(tileWidth, tileHeight, image.getType());
+		Graphics2D g = tile.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(image, -column * tileWidth, -row * tileHeight, null);
+		g.dispose();
+		return tile;
+	}
+
+	/**
+	 * @param kvp the parameters of the tile request, never <code>null</code>
+	 * @return the parameters of a request for the whole meta tile
+	 */
+	public Map<String, String> getParameters(Map<String, String> kvp) {
+		Envelope env = getEnvelope();
+		Map<String, String> params = new HashMap<String, String>(kvp);
+		params.put("BBOX", env.getMin().get0() + "," + env.getMin().get1() + "," + env.getMax().get0() + ","
+				+ env.getMax().get1());
+		params.put("WIDTH", Integer.toString(getWidth()));
+		params.put("HEIGHT", Integer.toString(getHeight()));
+		return params;
+	}
+
+}
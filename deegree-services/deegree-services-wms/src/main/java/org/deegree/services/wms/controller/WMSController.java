@@ -34,6 +34,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.services.wms.controller;
 
+import static java.util.Arrays.asList;
 import static javax.imageio.ImageIO.write;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
 import static org.deegree.commons.ows.exception.OWSException.OPERATION_NOT_SUPPORTED;
@@ -58,11 +59,13 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
 
@@ -81,6 +84,7 @@ import jakarta.xml.soap.SOAPEnvelope;
 import jakarta.xml.soap.SOAPException;
 import jakarta.xml.soap.SOAPMessage;
 import jakarta.xml.soap.SOAPPart;
+import javax.xml.namespace.QName;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -98,6 +102,7 @@ import org.deegree.commons.ows.metadata.ServiceProvider;
 import org.deegree.commons.tom.ReferenceResolvingException;
 import org.deegree.commons.tom.ows.Version;
 import org.deegree.commons.utils.CollectionUtils;
+import org.deegree.commons.utils.Pair;
 import org.deegree.commons.utils.kvp.InvalidParameterValueException;
 import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
@@ -107,10 +112,12 @@ import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.cs.refs.coordinatesystem.CRSRef;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.featureinfo.FeatureInfoManager;
 import org.deegree.featureinfo.FeatureInfoParams;
 import org.deegree.featureinfo.serializing.FeatureInfoSerializer;
+import org.deegree.geometry.Envelope;
 import org.deegree.gml.GMLVersion;
 import org.deegree.gml.schema.GMLAppSchemaWriter;
 import org.deegree.layer.LayerRef;
@@ -126,6 +133,8 @@ import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
 import org.deegree.protocol.wms.ops.GetMap;
 import org.deegree.rendering.r2d.ImageSerializer;
+import org.deegree.rendering.r2d.PngImageSerializer;
+import org.deegree.rendering.r2d.context.ImageRenderContext;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.rendering.r2d.context.RenderingInfo;
 import org.deegree.services.OWS;
@@ -157,6 +166,9 @@ import org.deegree.services.jaxb.wms.ServiceConfigurationType;
 import org.deegree.services.metadata.OWSMetadataProvider;
 import org.deegree.services.metadata.provider.OWSMetadataProviderProvider;
 import org.deegree.services.wms.MapService;
+import org.deegree.services.wms.cache.GetMapCache;
+import org.deegree.services.wms.cache.GetMapCache.CachedMap;
+import org.deegree.services.wms.cache.MetaTile;
 import org.deegree.services.wms.controller.capabilities.serialize.CapabilitiesManager;
 import org.deegree.services.wms.controller.exceptions.ExceptionsManager;
 import org.deegree.services.wms.controller.plugins.DefaultGetFeatureInfoProvider;
@@ -181,6 +193,9 @@ public class WMSController extends AbstractOWS {
 
 	private static final Logger LOG = getLogger(WMSController.class);
 
+	private static final Set<String> META_TILE_FORMATS = new HashSet<String>(asList("image/png",
+			"image/png; subtype=8bit", "image/png; mode=8bit", "image/gif", "image/jpeg"));
+
 	private final HashMap<String, ImageSerializer> imageSerializers = new HashMap<String, ImageSerializer>();
 
 	/** The list of supported image formats. */
@@ -222,6 +237,8 @@ public class WMSController extends AbstractOWS {
 
 	private boolean isStrict;
 
+	private GetMapCache getMapCache;
+
 	public WMSController(ResourceMetadata<OWS> metadata, Workspace workspace, DeegreeWMS jaxbConfig) {
 		super(metadata, workspace, jaxbConfig);
 		capabilitiesManager = new CapabilitiesManager(isAddCapabilitiesDefaultFormatsEnabled(jaxbConfig));
@@ -342,6 +359,7 @@ public class WMSController extends AbstractOWS {
 
 			supportedEncodings = new SupportedEncodingsParser().parseEncodings(conf);
 			isStrict = conf.isStrict() != null ? conf.isStrict() : false;
+			getMapCache = GetMapCache.create(conf.getGetMapCache(), metadata.getLocation());
 		}
 		catch (Exception e) {
 			throw new ResourceInitException(e.getMessage(), e);
@@ -564,7 +582,88 @@ public class WMSController extends AbstractOWS {
 		org.deegree.protocol.wms.ops.GetMap gm2 = new org.deegree.protocol.wms.ops.GetMap(map, version,
 				service.getExtensions(), isStrict);
 
-		doGetMap(map, response, version, gm2);
+		if (getMapCache != null) {
+			doCachedGetMap(map, response, version, gm2);
+		}
+		else {
+			doGetMap(map, response, version, gm2);
+		}
+	}
+
+	private void doCachedGetMap(Map<String, String> map, HttpResponseBuffer response, Version version, GetMap gm)
+			throws OWSException, IOException {
+		checkGetMap(version, gm);
+		if (service.hasVisibilityInspectors(gm)) {
+			// the visible layers may depend on the context of the request, eg. the user
+			LinkedList<String> headers = renderMap(gm, map, response.getOutputStream());
+			response.setContentType(gm.getFormat());
+			addHeaders(response, headers);
+			return;
+		}
+		String key = getMapCache.createKey(gm, map);
+		CachedMap cached = getMapCache.get(key);
+		if (cached == null) {
+			long generation = getMapCache.getGeneration();
+			Set<Pair<FeatureStore, QName>> sources = service.getFeatureSources(gm);
+			MetaTile metaTile = getMapCache.getMetaTile(gm, map);
+			if (metaTile != null && ouputFormatProvider instanceof DefaultOutputFormatProvider
+					&& META_TILE_FORMATS.contains(gm.getFormat()) && isWithinSizeLimits(metaTile)) {
+				cached = doMetaTileGetMap(map, version, gm, metaTile, key, sources, generation);
+			}
+			else {
+				ByteArrayOutputStream stream = new ByteArrayOutputStream();
+				LinkedList<String> headers = renderMap(gm, map, stream);
+				cached = getMapCache.put(key, gm.getBoundingBox(), stream.toByteArray(), headers, sources,
+						generation);
+			}
+		}
+		response.setContentType(gm.getFormat());
+		addHeaders(response, new LinkedList<String>(cached.getHeaders()));
+		response.getOutputStream().write(cached.getData());
+	}
+
+	private boolean isWithinSizeLimits(MetaTile metaTile) {
+		if (conf.getMaxWidth() != null && metaTile.getWidth() > conf.getMaxWidth().intValue()) {
+			return false;
+		}
+		return conf.getMaxHeight() == null || metaTile.getHeight() <= conf.getMaxHeight().intValue();
+	}
+
+	private CachedMap doMetaTileGetMap(Map<String, String> map, Version version, GetMap gm, MetaTile metaTile,
+			String key, Set<Pair<FeatureStore, QName>> sources, long generation) throws OWSException, IOException {
+		Map<String, String> metaMap = metaTile.getParameters(map);
+		GetMap metaGm = new GetMap(metaMap, version, service.getExtensions(), isStrict);
+		RenderingInfo info = new RenderingInfo(metaGm.getFormat(), metaGm.getWidth(), metaGm.getHeight(),
+				metaGm.getTransparent(), metaGm.getBgColor(), metaGm.getBoundingBox(), metaGm.getPixelSize(),
+				metaMap, null);
+		ImageRenderContext ctx = ImageRenderContext.createOffscreenInstance(info);
+		LinkedList<String> headers = new LinkedList<String>();
+		service.getMap(metaGm, headers, ctx);
+		ctx.close();
+
+		CachedMap requested = null;
+		for (int row = 0; row < metaTile.getTiles(); ++row) {
+			for (int column = 0; column < metaTile.getTiles(); ++column) {
+				Envelope tileEnvelope = metaTile.getTileEnvelope(column, row);
+				RenderingInfo tileInfo = new RenderingInfo(gm.getFormat(), gm.getWidth(), gm.getHeight(),
+						gm.getTransparent(), gm.getBgColor(), tileEnvelope, gm.getPixelSize(), map,
+						imageSerializers.get(gm.getFormat()));
+				ByteArrayOutputStream stream = new ByteArrayOutputStream();
+				BufferedImage tile = metaTile.getTileImage(ctx.getImage(), column, row);
+				ImageRenderContext.createInstance(tileInfo, tile, stream).close();
+				String tileKey = metaTile.getTileKey(column, row);
+				CachedMap cached = getMapCache.put(tileKey, tileEnvelope, stream.toByteArray(), headers, sources,
+						generation);
+				if (tileKey.equals(key)) {
+					requested = cached;
+				}
+			}
+		}
+		if (requested == null) {
+			// should not happen, the requested tile is part of the meta tile
+			throw new OWSException("Requested tile is not part of the rendered meta tile.", NO_APPLICABLE_CODE);
+		}
+		return requested;
 	}
 
 	private void checkGetFeatureInfo(Version version, org.deegree.protocol.wms.ops.GetFeatureInfo gfi)
@@ -786,6 +885,10 @@ public class WMSController extends AbstractOWS {
 			format = "png";
 		}
 		LOG.debug("Sending in format {}", format);
+		if (format.equals("png") && PngImageSerializer.getDefaultInstance() != null) {
+			PngImageSerializer.getDefaultInstance().serialize(null, img, response.getOutputStream());
+			return;
+		}
 		if (!write(img, format, response.getOutputStream())) {
 			throw new OWSException(get("WMS.CANNOT_ENCODE_IMAGE", format), OWSException.NO_APPLICABLE_CODE);
 		}
@@ -910,7 +1013,11 @@ public class WMSController extends AbstractOWS {
 	private LinkedList<String> doGetMap(GetMap getMap, Map<String, String> map, Version version, OutputStream stream)
 			throws OWSException, IOException {
 		checkGetMap(version, getMap);
+		return renderMap(getMap, map, stream);
+	}
 
+	private LinkedList<String> renderMap(GetMap getMap, Map<String, String> map, OutputStream stream)
+			throws OWSException, IOException {
 		RenderingInfo info = new RenderingInfo(getMap.getFormat(), getMap.getWidth(), getMap.getHeight(),
 				getMap.getTransparent(), getMap.getBgColor(), getMap.getBoundingBox(), getMap.getPixelSize(), map,
 				imageSerializers.get(getMap.getFormat()));
@@ -1290,7 +1397,12 @@ public class WMSController extends AbstractOWS {
 
 	@Override
 	public void destroy() {
-		// nothing to do
+		if (service != null) {
+			service.destroy();
+		}
+		if (getMapCache != null) {
+			getMapCache.destroy();
+		}
 	}
 
 }
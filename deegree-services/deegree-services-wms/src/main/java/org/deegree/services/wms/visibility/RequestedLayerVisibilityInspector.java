@@ -76,6 +76,15 @@ public class RequestedLayerVisibilityInspector {
 		return true;
 	}
 
+	/**
+	 * @param requestedLayerName the name of the requested layer, never <code>null</code>
+	 * @return <code>true</code> if the visibility of the layer is checked by at least one
+	 * inspector
+	 */
+	public boolean hasInspectors(String requestedLayerName) {
+		return !inspectorMap.getInspector(requestedLayerName).isEmpty();
+	}
+
 	private InspectorMap initInspectorMap(Workspace workspace, List<VisibilityInspectorType> visibilityInspectorTypes) {
 		InspectorMap inspectorMap = new InspectorMap();
 		if (visibilityInspectorTypes != null && !visibilityInspectorTypes.isEmpty()) {
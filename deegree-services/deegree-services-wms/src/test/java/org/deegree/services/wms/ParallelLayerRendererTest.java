@@ -0,0 +1,215 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.awt.Color.BLUE;
+import static java.awt.Color.RED;
+import static java.awt.Color.WHITE;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static org.deegree.rendering.r2d.context.MapOptions.Antialias.NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.layer.LayerData;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.rendering.r2d.context.LazyImageRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.style.styling.PolygonStyling;
+import org.deegree.style.styling.components.Fill;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelLayerRenderer}: the parallel path must produce the same
+ * image as rendering the layers one after another into the target context.
+ */
+public class ParallelLayerRendererTest {
+
+	private static final Color BACKGROUND = new Color(0, 128, 0);
+
+	private final GeometryFactory fac = new GeometryFactory();
+
+	private final ParallelLayerRenderer renderer = new ParallelLayerRenderer(2, 2);
+
+	@After
+	public void destroy() {
+		renderer.destroy();
+	}
+
+	@Test
+	public void testOpaqueBackgroundPng() throws Exception {
+		GetMap gm = createGetMap("image/png");
+		BufferedImage sequential = renderSequential(gm);
+		BufferedImage parallel = renderParallel(gm);
+
+		assertEquals(BACKGROUND.getRGB(), parallel.getRGB(99, 99));
+		assertEquals(255, parallel.getRGB(99, 99) >>> 24);
+		assertSameImage(sequential, parallel, 0);
+	}
+
+	@Test
+	public void testJpeg() throws Exception {
+		GetMap gm = createGetMap("image/jpeg");
+		BufferedImage sequential = renderSequential(gm);
+		BufferedImage parallel = renderParallel(gm);
+
+		assertFalse(parallel.getColorModel().hasAlpha());
+		assertColorClose(BACKGROUND, parallel.getRGB(95, 95));
+		assertSameImage(sequential, parallel, 2);
+	}
+
+	private GetMap createGetMap(String format) {
+		Envelope bbox = fac.createEnvelope(0, 0, 100, 100, null);
+		return new GetMap(new ArrayList<>(), new ArrayList<>(), 100, 100, bbox, null, format, false, BACKGROUND,
+				emptyMap(), emptyMap());
+	}
+
+	private List<LayerData> createLayers() {
+		return Arrays.asList(new BoxLayerData(fac.createEnvelope(10, 10, 60, 60, null), RED),
+				new BoxLayerData(fac.createEnvelope(40, 40, 80, 80, null), BLUE),
+				new BoxLayerData(fac.createEnvelope(0, 70, 20, 90, null), WHITE));
+	}
+
+	private List<MapOptions> createOptions(int size) {
+		List<MapOptions> options = new ArrayList<>();
+		for (int i = 0; i < size; ++i) {
+			options.add(new MapOptions.Builder().antialias(NONE).build());
+		}
+		return options;
+	}
+
+	private BufferedImage renderSequential(GetMap gm) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		RenderContext ctx = new LazyImageRenderContext(createInfo(gm), bos);
+		List<LayerData> layers = createLayers();
+		List<MapOptions> options = createOptions(layers.size());
+		for (int i = 0; i < layers.size(); ++i) {
+			ctx.applyOptions(options.get(i));
+			layers.get(i).render(ctx);
+		}
+		ctx.optimizeAndDrawLabels();
+		ctx.close();
+		return decode(bos);
+	}
+
+	private BufferedImage renderParallel(GetMap gm) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		RenderContext ctx = new LazyImageRenderContext(createInfo(gm), bos);
+		List<LayerData> layers = createLayers();
+		renderer.render(gm, layers, createOptions(layers.size()), ctx);
+		ctx.optimizeAndDrawLabels();
+		ctx.close();
+		return decode(bos);
+	}
+
+	private static RenderingInfo createInfo(GetMap gm) {
+		return new RenderingInfo(gm.getFormat(), gm.getWidth(), gm.getHeight(), gm.getTransparent(),
+				gm.getBgColor(), gm.getBoundingBox(), gm.getPixelSize(), gm.getParameterMap());
+	}
+
+	private static BufferedImage decode(ByteArrayOutputStream bos) throws Exception {
+		BufferedImage img = ImageIO.read(new ByteArrayInputStream(bos.toByteArray()));
+		assertNotNull(img);
+		return img;
+	}
+
+	private static void assertSameImage(BufferedImage expected, BufferedImage actual, int tolerance) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		assertEquals(expected.getColorModel().hasAlpha(), actual.getColorModel().hasAlpha());
+		for (int y = 0; y < expected.getHeight(); ++y) {
+			for (int x = 0; x < expected.getWidth(); ++x) {
+				int e = expected.getRGB(x, y);
+				int a = actual.getRGB(x, y);
+				for (int shift = 0; shift < 32; shift += 8) {
+					int diff = Math.abs(((e >>> shift) & 0xff) - ((a >>> shift) & 0xff));
+					assertTrue("Pixel " + x + "/" + y + " differs", diff <= tolerance);
+				}
+			}
+		}
+	}
+
+	private static void assertColorClose(Color expected, int rgb) {
+		Color actual = new Color(rgb);
+		assertTrue(Math.abs(expected.getRed() - actual.getRed()) <= 8);
+		assertTrue(Math.abs(expected.getGreen() - actual.getGreen()) <= 8);
+		assertTrue(Math.abs(expected.getBlue() - actual.getBlue()) <= 8);
+	}
+
+	private static class BoxLayerData implements LayerData {
+
+		private final Envelope box;
+
+		private final Color color;
+
+		BoxLayerData(Envelope box, Color color) {
+			this.box = box;
+			this.color = color;
+		}
+
+		@Override
+		public void render(RenderContext context) {
+			PolygonStyling styling = new PolygonStyling();
+			styling.fill = new Fill();
+			styling.fill.color = color;
+			context.getVectorRenderer().render(styling, box);
+		}
+
+		@Override
+		public FeatureCollection info() {
+			return null;
+		}
+
+	}
+
+}
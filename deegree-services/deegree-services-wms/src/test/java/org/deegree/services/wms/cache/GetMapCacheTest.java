@@ -0,0 +1,269 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2022 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.cache;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.utils.Pair;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.layer.LayerRef;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.services.wms.cache.GetMapCache.CachedMap;
+import org.deegree.style.StyleRef;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link GetMapCache}.
+ */
+public class GetMapCacheTest {
+
+	private static final GeometryFactory FAC = new GeometryFactory();
+
+	private static final Set<Pair<FeatureStore, QName>> NO_SOURCES = emptySet();
+
+	private static final QName ROADS = new QName("http://www.deegree.org/app", "Road");
+
+	private static final QName RIVERS = new QName("http://www.deegree.org/app", "River");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private GetMapCache cache;
+
+	@After
+	public void destroy() {
+		if (cache != null) {
+			cache.destroy();
+		}
+	}
+
+	@Test
+	public void testGridAlignedRequestsShareKey() {
+		cache = new GetMapCache(1000, null, 0, 1);
+		Map<String, String> kvp = createParameters();
+		String key = cache.createKey(createGetMap(envelope(256, 512, 512, 768, null)), kvp);
+		String rounded = cache.createKey(createGetMap(envelope(256.00000001, 512.00000001, 512, 768, null)), kvp);
+		String next = cache.createKey(createGetMap(envelope(512, 512, 768, 768, null)), kvp);
+		assertEquals(key, rounded);
+		assertNotEquals(key, next);
+	}
+
+	@Test
+	public void testVendorParametersArePartOfKey() {
+		cache = new GetMapCache(1000, null, 0, 1);
+		GetMap gm = createGetMap(envelope(0, 0, 100, 100, null));
+		Map<String, String> kvp = createParameters();
+		String key = cache.createKey(gm, kvp);
+		kvp.put("BBOX", "0.0,0.0,100.0,100.0");
+		assertEquals(key, cache.createKey(gm, kvp));
+		kvp.put("ENV", "color:red");
+		assertNotEquals(key, cache.createKey(gm, kvp));
+	}
+
+	@Test
+	public void testChangeRemovesAffectedMapsOnly() {
+		cache = new GetMapCache(1000, null, 0, 1);
+		ICRS crs = CRSManager.getCRSRef("EPSG:4326");
+		cache.put("a", envelope(0, 0, 10, 10, crs), new byte[10], emptyList(), NO_SOURCES, cache.getGeneration());
+		cache.put("b", envelope(50, 50, 60, 60, crs), new byte[10], emptyList(), NO_SOURCES, cache.getGeneration());
+		cache.featuresChanged(null, null, envelope(12, 12, 13, 13, crs));
+		assertNull(cache.get("a"));
+		assertNotNull(cache.get("b"));
+		cache.featuresChanged(null, null, null);
+		assertNull(cache.get("b"));
+	}
+
+	@Test
+	public void testChangeRemovesMapsOfChangedFeatureTypeOnly() {
+		cache = new GetMapCache(1000, null, 0, 1);
+		FeatureStore store = mock(FeatureStore.class);
+		FeatureStore otherStore = mock(FeatureStore.class);
+		Envelope env = envelope(0, 0, 10, 10, null);
+		cache.put("roads", env, new byte[10], emptyList(), singleton(new Pair<>(store, ROADS)), cache.getGeneration());
+		cache.put("rivers", env, new byte[10], emptyList(), singleton(new Pair<>(store, RIVERS)),
+				cache.getGeneration());
+		cache.put("all", env, new byte[10], emptyList(), singleton(new Pair<>(store, (QName) null)),
+				cache.getGeneration());
+		cache.put("other", env, new byte[10], emptyList(), singleton(new Pair<>(otherStore, ROADS)),
+				cache.getGeneration());
+		cache.put("static", env, new byte[10], emptyList(), NO_SOURCES, cache.getGeneration());
+
+		cache.featuresChanged(store, ROADS, null);
+
+		assertNull(cache.get("roads"));
+		assertNotNull(cache.get("rivers"));
+		assertNull(cache.get("all"));
+		assertNotNull(cache.get("other"));
+		assertNotNull(cache.get("static"));
+	}
+
+	@Test
+	public void testChangeRemovesMapsOnDisk() throws Exception {
+		File dir = folder.newFolder();
+		cache = new GetMapCache(50, dir, 1000, 1);
+		FeatureStore store = mock(FeatureStore.class);
+		Set<Pair<FeatureStore, QName>> sources = singleton(new Pair<>(store, ROADS));
+		cache.put("a", envelope(0, 0, 10, 10, null), new byte[40], emptyList(), sources, cache.getGeneration());
+		cache.put("b", envelope(0, 0, 10, 10, null), new byte[40], emptyList(), NO_SOURCES, cache.getGeneration());
+		assertEquals(1, dir.listFiles().length);
+
+		cache.featuresChanged(store, ROADS, null);
+
+		assertNull(cache.get("a"));
+		assertNotNull(cache.get("b"));
+		assertEquals(0, dir.listFiles().length);
+	}
+
+	@Test
+	public void testClearRemovesFiles() throws Exception {
+		File dir = folder.newFolder();
+		cache = new GetMapCache(50, dir, 1000, 1);
+		cache.put("a", envelope(0, 0, 10, 10, null), new byte[40], emptyList(), NO_SOURCES, cache.getGeneration());
+		cache.put("b", envelope(0, 0, 10, 10, null), new byte[40], emptyList(), NO_SOURCES, cache.getGeneration());
+		cache.clear();
+		assertNull(cache.get("a"));
+		assertEquals(0, dir.listFiles().length);
+	}
+
+	@Test
+	public void testMapRenderedBeforeChangeIsNotStored() {
+		cache = new GetMapCache(1000, null, 0, 1);
+		long generation = cache.getGeneration();
+		cache.featuresChanged(null, null, null);
+		cache.put("a", envelope(0, 0, 10, 10, null), new byte[10], emptyList(), NO_SOURCES, generation);
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void testMemoryEvictsLeastRecentlyUsed() {
+		cache = new GetMapCache(100, null, 0, 1);
+		cache.put("a", envelope(0, 0, 10, 10, null), new byte[40], emptyList(), NO_SOURCES, cache.getGeneration());
+		cache.put("b", envelope(0, 0, 10, 10, null), new byte[40], emptyList(), NO_SOURCES, cache.getGeneration());
+		cache.get("a");
+		cache.put("c", envelope(0, 0, 10, 10, null), new byte[40], emptyList(), NO_SOURCES, cache.getGeneration());
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+	}
+
+	@Test
+	public void testEvictedMapsAreMovedToDisk() throws Exception {
+		cache = new GetMapCache(50, folder.newFolder(), 1000, 1);
+		byte[] data = new byte[40];
+		data[7] = 7;
+		cache.put("a", envelope(0, 0, 10, 10, null), data, emptyList(), NO_SOURCES, cache.getGeneration());
+		cache.put("b", envelope(0, 0, 10, 10, null), new byte[40], emptyList(), NO_SOURCES, cache.getGeneration());
+		CachedMap cached = cache.get("a");
+		assertNotNull(cached);
+		assertArrayEquals(data, cached.getData());
+	}
+
+	@Test
+	public void testMetaTileContainsRequestedTile() {
+		cache = new GetMapCache(1000, null, 0, 4);
+		Map<String, String> kvp = createParameters();
+		GetMap gm = createGetMap(envelope(500, 300, 600, 400, null));
+		MetaTile metaTile = cache.getMetaTile(gm, kvp);
+		assertNotNull(metaTile);
+		assertEquals(1024, metaTile.getWidth());
+		Envelope env = metaTile.getEnvelope();
+		assertEquals(400, env.getMin().get0(), 0);
+		assertEquals(0, env.getMin().get1(), 0);
+		assertEquals(800, env.getMax().get0(), 0);
+		assertEquals(400, env.getMax().get1(), 0);
+		// column 5, row 3 is the second column of the top row
+		assertEquals(cache.createKey(gm, kvp), metaTile.getTileKey(1, 0));
+		assertEquals(500, metaTile.getTileEnvelope(1, 0).getMin().get0(), 0);
+		assertEquals(300, metaTile.getTileEnvelope(1, 0).getMin().get1(), 0);
+	}
+
+	@Test
+	public void testUnalignedRequestIsNotMetaTiled() {
+		cache = new GetMapCache(1000, null, 0, 4);
+		assertNull(cache.getMetaTile(createGetMap(envelope(510, 300, 610, 400, null)), createParameters()));
+	}
+
+	private static Envelope envelope(double minx, double miny, double maxx, double maxy, ICRS crs) {
+		return FAC.createEnvelope(minx, miny, maxx, maxy, crs);
+	}
+
+	private static Map<String, String> createParameters() {
+		Map<String, String> kvp = new HashMap<String, String>();
+		kvp.put("REQUEST", "GetMap");
+		kvp.put("LAYERS", "roads");
+		kvp.put("SRS", "EPSG:3857");
+		return kvp;
+	}
+
+	private static GetMap createGetMap(Envelope bbox) {
+		GetMap gm = mock(GetMap.class);
+		LinkedList<LayerRef> layers = new LinkedList<LayerRef>();
+		layers.add(new LayerRef("roads"));
+		LinkedList<StyleRef> styles = new LinkedList<StyleRef>();
+		styles.add(new StyleRef("default"));
+		when(gm.getLayers()).thenReturn(layers);
+		when(gm.getStyles()).thenReturn(styles);
+		when(gm.getBoundingBox()).thenReturn(bbox);
+		when(gm.getFormat()).thenReturn("image/png");
+		when(gm.getWidth()).thenReturn(256);
+		when(gm.getHeight()).thenReturn(256);
+		return gm;
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.deegree.tools.featurestoresql;
 
+import org.deegree.tools.featurestoresql.blob.BlobReencoderApp;
 import org.deegree.tools.featurestoresql.config.SqlFeatureStoreConfigCreatorApp;
 import org.deegree.tools.featurestoresql.loader.GmlLoaderApp;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -22,6 +23,9 @@ public class GmlToolsApp {
 		else if ("GmlLoader".equalsIgnoreCase(args[0])) {
 			GmlLoaderApp.run(args);
 		}
+		else if ("BlobReencoder".equalsIgnoreCase(args[0])) {
+			BlobReencoderApp.run(args);
+		}
 		else {
 			printUsage();
 		}
@@ -31,9 +35,10 @@ public class GmlToolsApp {
 		System.out
 			.println("The deegree CLI includes tools to create SQLFeatureStore configurations and load GML files.");
 		System.out
-			.println("Use the keywords 'SqlFeatureStoreConfigCreator' or 'GmlLoader' to choose between the tools:");
+			.println("Use the keywords 'SqlFeatureStoreConfigCreator', 'GmlLoader' or 'BlobReencoder' to choose between the tools:");
 		System.out.println("   SqlFeatureStoreConfigCreator -h (Prints the usage for this tool)");
 		System.out.println("   GmlLoader -h (Prints the usage for this tool)");
+		System.out.println("   BlobReencoder -h (Prints the usage for this tool)");
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * deegree-cli-utility
+ * %%
+ * Copyright (C) 2016 - 2021 lat/lon GmbH
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 2.1 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-2.1.html>.
+ * #L%
+ */
+package org.deegree.tools.featurestoresql.blob;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.deegree.commons.config.DeegreeWorkspace;
+import org.deegree.feature.persistence.FeatureStoreProvider;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.blob.BlobReencoder;
+import org.deegree.tools.featurestoresql.SubcommandApp;
+
+/**
+ * Entry point of the command line interface of BlobReencoder.
+ */
+public class BlobReencoderApp extends SubcommandApp {
+
+	private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	public static void run(String[] args) throws Exception {
+		Map<String, String> params = parseParams(args);
+		String workspaceName = params.get("workspaceName");
+		String sqlFeatureStoreId = params.get("sqlFeatureStoreId");
+		if (isHelpRequested(args) || workspaceName == null || sqlFeatureStoreId == null) {
+			printUsage();
+			return;
+		}
+		int chunkSize = params.containsKey("chunkSize") ? Integer.parseInt(params.get("chunkSize"))
+				: DEFAULT_CHUNK_SIZE;
+
+		DeegreeWorkspace workspace = DeegreeWorkspace.getInstance(workspaceName);
+		workspace.initAll();
+		try {
+			SQLFeatureStore featureStore = (SQLFeatureStore) workspace.getNewWorkspace()
+				.getResource(FeatureStoreProvider.class, sqlFeatureStoreId);
+			if (featureStore == null) {
+				throw new IllegalArgumentException("SQLFeatureStore with ID " + sqlFeatureStoreId + " in workspace "
+						+ workspaceName + " does not exist or could not be initialised successful.");
+			}
+			long count = new BlobReencoder(featureStore, chunkSize).reencode();
+			System.out.println("Number of re-encoded objects: " + count);
+		}
+		finally {
+			workspace.destroyAll();
+		}
+	}
+
+	private static Map<String, String> parseParams(String[] args) {
+		Map<String, String> params = new HashMap<>();
+		for (String arg : args) {
+			if (arg.startsWith("-") && arg.contains("=")) {
+				params.put(arg.substring(1, arg.indexOf("=")), arg.substring(arg.indexOf("=") + 1));
+			}
+		}
+		return params;
+	}
+
+	private static void printUsage() {
+		// see also the webservices-handbook chapter for the CLI
+		System.out.println(
+				"Usage: java -jar deegree-tools-gml.jar BlobReencoder -workspaceName=<workspace_identifier> -sqlFeatureStoreId=<feature_store_identifier> [options]");
+		System.out.println(
+				"Description: Re-encodes the features of a SQLFeatureStore in BLOB mode with the configured encoding");
+		System.out.println();
+		System.out.println("arguments:");
+		System.out.println(
+				" -workspaceName=<workspace_identifier>, the name of the deegree workspace. Must be located at default DEEGREE_WORKSPACE_ROOT directory");
+		System.out.println(
+				" -sqlFeatureStoreId=<feature_store_identifier>, the ID of the SQLFeatureStore in the given workspace");
+		System.out.println();
+		System.out.println("options:");
+		System.out.println(" -chunkSize=<rows_per_chunk>, number of rows read and updated at once, defaults to 1000");
+		System.out.println();
+		System.out.println("Example:");
+		System.out.println(
+				" java -jar deegree-tools-gml.jar BlobReencoder -workspaceName=inspire -sqlFeatureStoreId=cadastralparcels");
+	}
+
+}
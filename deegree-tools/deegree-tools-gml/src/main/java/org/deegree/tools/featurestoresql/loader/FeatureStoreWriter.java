@@ -48,16 +48,30 @@ public class FeatureStoreWriter implements ItemWriter<Feature> {
 
 	private Summary summary;
 
+	private int insertBatchSize;
+
 	/**
 	 * @param sqlFeatureStore SQLFeatureStore to insert the features, never
 	 * <code>null</code>
 	 * @param summary writing the report, never <code>null</code>
 	 */
 	public FeatureStoreWriter(SQLFeatureStore sqlFeatureStore, Summary summary) {
+		this(sqlFeatureStore, summary, 1);
+	}
+
+	/**
+	 * @param sqlFeatureStore SQLFeatureStore to insert the features, never
+	 * <code>null</code>
+	 * @param summary writing the report, never <code>null</code>
+	 * @param insertBatchSize number of table rows inserted per JDBC batch, values smaller
+	 * than 2 disable batching
+	 */
+	public FeatureStoreWriter(SQLFeatureStore sqlFeatureStore, Summary summary, int insertBatchSize) {
 		Assert.notNull(sqlFeatureStore, "sqlFeatureStore  must not be null");
 		Assert.notNull(summary, "summary  must not be null");
 		this.sqlFeatureStore = sqlFeatureStore;
 		this.summary = summary;
+		this.insertBatchSize = insertBatchSize;
 	}
 
 	@Override
@@ -72,7 +86,10 @@ public class FeatureStoreWriter implements ItemWriter<Feature> {
 		}
 		LOG.info("Trying to write {} features", featureCollection.size());
 		SQLFeatureStoreTransaction transaction = (SQLFeatureStoreTransaction) sqlFeatureStore.getTransaction();
+		transaction.setInsertBatchSize(insertBatchSize);
+		long insertedRows = transaction.getInsertedRows();
 		transaction.performInsert(featureCollection, USE_EXISTING.withSkipResolveReferences(true));
+		summary.increaseNumberOfRows(transaction.getInsertedRows() - insertedRows);
 		LOG.info("Insert performed.");
 		LOG.info("Number of features processed: {}", summary.getNumberOfFeatures());
 	}
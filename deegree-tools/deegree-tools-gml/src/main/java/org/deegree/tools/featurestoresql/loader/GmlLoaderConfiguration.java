@@ -175,10 +175,12 @@ public class GmlLoaderConfiguration {
 	@StepScope
 	@Bean
 	public ItemWriter<Feature> featureStoreWriter(SQLFeatureStore sqlFeatureStore, Summary summary,
-			@Value("#{jobParameters['dryRun'] ?: false}") boolean dryRun) {
+			@Value("#{jobParameters['dryRun'] ?: false}") boolean dryRun,
+			@Value("#{jobParameters['insertBatchSize']}") Integer insertBatchSize) {
 		if (dryRun)
 			return new NullWriter();
-		return new FeatureStoreWriter(sqlFeatureStore, summary);
+		int batchSize = insertBatchSize != null ? insertBatchSize.intValue() : 1000;
+		return new FeatureStoreWriter(sqlFeatureStore, summary, batchSize);
 	}
 
 	@StepScope
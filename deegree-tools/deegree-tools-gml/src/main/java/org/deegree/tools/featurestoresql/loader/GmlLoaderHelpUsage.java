@@ -52,6 +52,8 @@ public class GmlLoaderHelpUsage {
 		System.out.println(
 				" -disabledResources=<urlpatterns>, a comma separated list url patterns which should not be resolved, not set by default");
 		System.out.println(" -chunkSize=<features_per_chunk>, number of features processed per chunk");
+		System.out.println(
+				" -insertBatchSize=<rows_per_batch>, number of table rows inserted per JDBC batch, defaults to 1000");
 		System.out.println(" -skipReferenceCheck=true, skip integrity check for feature references");
 		System.out.println(
 				" -dryRun=true, enable dry run where writing is skipped (checks only if all data can be read), disabled by default");
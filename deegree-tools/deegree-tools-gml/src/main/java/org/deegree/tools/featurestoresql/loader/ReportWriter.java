@@ -94,6 +94,8 @@ public class ReportWriter extends JobExecutionListenerSupport {
 			}
 			else if (ExitStatus.COMPLETED.getExitCode().equals(exitStatus.getExitCode())) {
 				writer.println("Number of processed features: " + summary.getNumberOfFeatures());
+				writer.println("Number of inserted rows: " + summary.getNumberOfRows() + " ("
+						+ getRowsPerSecond(stepExecution) + " rows/sec)");
 				if (summary.getStatistics() != null) {
 					writer.println("Written feature statistics:");
 					writer.println("===========================");
@@ -134,6 +136,15 @@ public class ReportWriter extends JobExecutionListenerSupport {
 
 	}
 
+	private String getRowsPerSecond(StepExecution stepExecution) {
+		if (stepExecution != null && stepExecution.getStartTime() != null) {
+			long millis = ChronoUnit.MILLIS.between(stepExecution.getStartTime(), LocalDateTime.now());
+			if (millis > 0)
+				return String.valueOf(summary.getNumberOfRows() * 1000 / millis);
+		}
+		return "UNKNOWN";
+	}
+
 	private String getStartTime(StepExecution stepExecution) {
 		if (stepExecution != null && stepExecution.getStartTime() != null)
 			return stepExecution.getStartTime().format(DATE_FORMAT);
@@ -39,6 +39,8 @@ public class Summary {
 
 	private int numberOfFeatures = 0;
 
+	private long numberOfRows = 0;
+
 	private Set<String> unresolvableReferences = new HashSet<>();
 
 	private FeatureStatistics statistics = null;
@@ -67,6 +69,20 @@ public class Summary {
 		return numberOfFeatures;
 	}
 
+	/**
+	 * @param increaseBy number of inserted table rows to add, must not be negative
+	 */
+	public void increaseNumberOfRows(long increaseBy) {
+		this.numberOfRows = this.numberOfRows + increaseBy;
+	}
+
+	/**
+	 * @return the number of table rows inserted, 0 if no rows have been inserted
+	 */
+	public long getNumberOfRows() {
+		return numberOfRows;
+	}
+
 	/**
 	 * @param unresolvableReferences list of unresolvable references, may be
 	 * <code>null</code>